@@ -5,13 +5,14 @@ import com.paxaris.identity_service.service.DynamicJwtDecoder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class JwtDecoderConfig {
 
     @Bean
-    public JwtDecoder jwtDecoder() {
+    public JwtDecoder jwtDecoder(RestTemplate restTemplate) {
         // No hardcoded issuer; it will be discovered per request from the to
-        return new DynamicJwtDecoder();
+        return new DynamicJwtDecoder(restTemplate);
     }
 }
@@ -0,0 +1,116 @@
+package com.paxaris.identity_service.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paxaris.identity_service.service.resilience.InboundAdmission;
+import com.paxaris.identity_service.service.resilience.RequestPriority;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.RequestPath;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lets inbound requests in through {@link InboundAdmission} by their {@link RequestPriority}, answering shed
+ * ones with 503 and {@code Retry-After}. It runs ahead of Spring Security, so a shed request costs no token
+ * decoding. Streamed and reactive responses keep their slot until the async request completes.
+ * <p>
+ * The path is parsed with {@link ServletRequestPathUtils}, as the {@code DispatcherServlet} does, so an encoded
+ * or {@code ;}-decorated path is classified as the handler it reaches.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    private final InboundAdmission admission;
+    private final ObjectMapper objectMapper;
+    private final String retryAfterSeconds;
+
+    public LoadSheddingFilter(InboundAdmission admission, ObjectMapper objectMapper,
+                              @Value("${identity.load-shedding.retry-after:2s}") Duration retryAfter) {
+        this.admission = admission;
+        this.objectMapper = objectMapper;
+        this.retryAfterSeconds = String.valueOf(Math.max(1, retryAfter.toSeconds()));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !admission.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Object previous = request.getAttribute(ServletRequestPathUtils.PATH_ATTRIBUTE);
+        RequestPath path = ServletRequestPathUtils.parseAndCache(request);
+        // The DispatcherServlet parses it again once the chain reaches it
+        ServletRequestPathUtils.setParsedRequestPath((RequestPath) previous, request);
+        RequestPriority priority = RequestPriority.of(path.pathWithinApplication());
+        if (!admission.acquire(priority)) {
+            reject(response, path.pathWithinApplication().value(), priority);
+            return;
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        if (released.compareAndSet(false, true)) admission.release();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+                async = true;
+            }
+        } finally {
+            if (!async && released.compareAndSet(false, true)) {
+                admission.release();
+            }
+        }
+    }
+
+    private void reject(HttpServletResponse response, String path, RequestPriority priority) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("timestamp", LocalDateTime.now().toString());
+        error.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        error.put("error", "Service Unavailable");
+        error.put("message", "Overloaded, " + priority + " requests are being shed");
+        error.put("path", path);
+
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), error);
+    }
+}
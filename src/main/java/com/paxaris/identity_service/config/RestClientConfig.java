@@ -0,0 +1,40 @@
+package com.paxaris.identity_service.config;
+
+import com.paxaris.identity_service.service.resilience.GuardedExchangeFilter;
+import com.paxaris.identity_service.service.resilience.GuardedRequestFactory;
+import com.paxaris.identity_service.service.resilience.OutboundGuard;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class RestClientConfig {
+
+    @Bean
+    public RestTemplate restTemplate(List<OutboundGuard> guards,
+                                     @Value("${identity.http.read-timeout:30s}") Duration readTimeout) {
+        // One JDK HttpClient keeps a shared keep-alive pool, so parallel admin calls reuse connections
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        // Without a read timeout a hung Keycloak holds the caller's thread and its bulkhead slot forever
+        requestFactory.setReadTimeout(readTimeout);
+        return new RestTemplate(new GuardedRequestFactory(requestFactory, guards));
+    }
+
+    // Applied to the auto-configured WebClient.Builder, so reactive calls pass the same guards
+    @Bean
+    public WebClientCustomizer guardedWebClient(List<OutboundGuard> guards) {
+        GuardedExchangeFilter filter = new GuardedExchangeFilter(guards);
+        return builder -> builder.filter(filter);
+    }
+}
@@ -1,7 +1,6 @@
 package com.paxaris.identity_service.controller;
 
-import com.paxaris.identity_service.dto.RoleRequest;
-import com.paxaris.identity_service.dto.UrlEntry;
+import com.paxaris.identity_service.service.AccessPolicyService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.oauth2.jwt.Jwt;
@@ -10,7 +9,6 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -22,6 +20,7 @@ import java.util.Map;
 public class AccessValidationController {
 
     private final JwtDecoder jwtDecoder;
+    private final AccessPolicyService accessPolicyService;
 
     @PostMapping("/validate-access")
     public ResponseEntity<Boolean> validateAccess(@RequestBody ValidationRequest request) {
@@ -46,30 +45,10 @@ public class AccessValidationController {
             String realmName = decodedJwt.getClaim("iss"); // issuer claim → realm info
             String productName = clientId;
 
-            // 3️⃣ Call Project Manager for each role → collect allowed URLs
-            RestTemplate restTemplate = new RestTemplate();
+            // 3️⃣ Ask Project Manager for each role → collect allowed URLs
             List<String> allowedUrls = new ArrayList<>();
-
             for (String roleName : roles) {
-                RoleRequest roleRequest = new RoleRequest();
-                roleRequest.setRealmName(realmName);
-                roleRequest.setProductName(productName);
-                roleRequest.setRoleName(roleName);
-
-                ResponseEntity<UrlEntry[]> pmResponse = restTemplate.postForEntity(
-                        "http://localhost:8088/project/roles/get-urls",
-                        roleRequest,
-                        UrlEntry[].class
-                );
-
-                if (pmResponse.getBody() != null) {
-                    for (UrlEntry entry : pmResponse.getBody()) {
-                        String fullUrl = entry.getUrl();
-                        if (!fullUrl.endsWith("/")) fullUrl += "/";
-                        fullUrl += entry.getUri();
-                        allowedUrls.add(fullUrl);
-                    }
-                }
+                allowedUrls.addAll(accessPolicyService.allowedUrls(realmName, productName, roleName));
             }
 
             // 4️⃣ Check if requestedUrl matches allowedUrls
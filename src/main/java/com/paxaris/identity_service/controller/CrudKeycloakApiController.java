@@ -1,7 +1,9 @@
 package com.paxaris.identity_service.controller;
 
 import com.paxaris.identity_service.dto.RoleCreationRequest;
+import com.paxaris.identity_service.dto.OutboxStats;
 import com.paxaris.identity_service.dto.RoleRequest;
+import com.paxaris.identity_service.service.ProjectManagerOutbox;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.*;
@@ -14,7 +16,8 @@ import org.springframework.web.client.RestTemplate;
 @Slf4j
 public class CrudKeycloakApiController {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+    private final ProjectManagerOutbox projectManagerOutbox;
 
     // ---------------- CREATE ROLE ----------------
     @PostMapping("/roles/{realm}/{client}")
@@ -45,17 +48,10 @@ public class CrudKeycloakApiController {
 
             log.info("Keycloak response: {}", keycloakResponse.getStatusCode());
 
-            // 2️⃣ Only if Keycloak succeeded, call Project Manager
+            // 2️⃣ Only if Keycloak succeeded, record the Project Manager update; the outbox delivers it
             if (keycloakResponse.getStatusCode().is2xxSuccessful()) {
-                String projectManagerUrl = "http://localhost:8088/project/roles/save-or-update";
-                log.info("Calling Project Manager CREATE/UPDATE ROLE at: {}", projectManagerUrl);
-
-                ResponseEntity<String> pmResponse = restTemplate.postForEntity(
-                        projectManagerUrl,
-                        new HttpEntity<>(request, headers),
-                        String.class
-                );
-                log.info("Project Manager response: {}", pmResponse.getStatusCode());
+                projectManagerOutbox.enqueue(HttpMethod.POST, "/project/roles/save-or-update", request);
+                log.info("Project Manager CREATE/UPDATE ROLE queued for delivery");
             } else {
                 log.warn("Keycloak CREATE ROLE failed, skipping Project Manager call.");
             }
@@ -101,15 +97,8 @@ public class CrudKeycloakApiController {
             log.info("Keycloak response: {}", keycloakResponse.getStatusCode());
 
             if (keycloakResponse.getStatusCode().is2xxSuccessful()) {
-                String projectManagerUrl = "http://localhost:8088/project/roles/save-or-update";
-                log.info("Calling Project Manager CREATE/UPDATE ROLE at: {}", projectManagerUrl);
-
-                ResponseEntity<String> pmResponse = restTemplate.postForEntity(
-                        projectManagerUrl,
-                        new HttpEntity<>(request, headers),
-                        String.class
-                );
-                log.info("Project Manager response: {}", pmResponse.getStatusCode());
+                projectManagerOutbox.enqueue(HttpMethod.POST, "/project/roles/save-or-update", request);
+                log.info("Project Manager CREATE/UPDATE ROLE queued for delivery");
             } else {
                 log.warn("Keycloak UPDATE ROLE failed, skipping Project Manager call.");
             }
@@ -149,16 +138,8 @@ public class CrudKeycloakApiController {
             log.info("Keycloak response: {}", keycloakResponse.getStatusCode());
 
             if (keycloakResponse.getStatusCode().is2xxSuccessful()) {
-                String projectManagerUrl = "http://localhost:8088/project/roles/" + id;
-                log.info("Calling Project Manager DELETE ROLE at: {}", projectManagerUrl);
-
-                ResponseEntity<String> pmResponse = restTemplate.exchange(
-                        projectManagerUrl,
-                        HttpMethod.DELETE,
-                        new HttpEntity<>(headers),
-                        String.class
-                );
-                log.info("Project Manager response: {}", pmResponse.getStatusCode());
+                projectManagerOutbox.enqueue(HttpMethod.DELETE, "/project/roles/" + id, null);
+                log.info("Project Manager DELETE ROLE queued for delivery");
             } else {
                 log.warn("Keycloak DELETE ROLE failed, skipping Project Manager call.");
             }
@@ -172,4 +153,10 @@ public class CrudKeycloakApiController {
                     .body("Error: " + e.getMessage());
         }
     }
+
+    // ---------------- OUTBOX ----------------
+    @GetMapping("/outbox")
+    public ResponseEntity<OutboxStats> getOutboxStats() {
+        return ResponseEntity.ok(projectManagerOutbox.stats());
+    }
 }
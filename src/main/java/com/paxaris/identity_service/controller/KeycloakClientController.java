@@ -1,22 +1,53 @@
 package com.paxaris.identity_service.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.paxaris.identity_service.dto.AdaptiveLimitStats;
+import com.paxaris.identity_service.dto.AdmissionStats;
+import com.paxaris.identity_service.dto.DependencyStats;
+import com.paxaris.identity_service.dto.ListingQuery;
+import com.paxaris.identity_service.dto.ProvisioningStats;
+import com.paxaris.identity_service.dto.RealmExportStatus;
+import com.paxaris.identity_service.dto.RoleAssignmentRequest;
+import com.paxaris.identity_service.dto.RoleAssignmentResult;
 import com.paxaris.identity_service.dto.RoleCreationRequest;
+import com.paxaris.identity_service.dto.RoleCreationResult;
+import com.paxaris.identity_service.dto.RoleReconciliationReport;
 
+import com.paxaris.identity_service.dto.SignupJob;
 import com.paxaris.identity_service.dto.SignupRequest;
+import com.paxaris.identity_service.dto.SignupRetryRequest;
+import com.paxaris.identity_service.dto.TenantQuotaStats;
+import com.paxaris.identity_service.dto.UploadStatus;
 import com.paxaris.identity_service.dto.UrlEntry;
 import com.paxaris.identity_service.service.DynamicJwtDecoder;
 import com.paxaris.identity_service.service.KeycloakClientService;
+import com.paxaris.identity_service.service.ProvisioningExecutor;
+import com.paxaris.identity_service.service.RealmExportService;
+import com.paxaris.identity_service.service.RoleReconciliationService;
+import com.paxaris.identity_service.service.SignupJobService;
+import com.paxaris.identity_service.service.UploadService;
+import com.paxaris.identity_service.service.UserImportService;
+import com.paxaris.identity_service.service.UserSearchIndex;
+import com.paxaris.identity_service.service.resilience.AdaptiveLimitGuard;
+import com.paxaris.identity_service.service.resilience.Dependency;
+import com.paxaris.identity_service.service.resilience.DependencyGuard;
+import com.paxaris.identity_service.service.resilience.InboundAdmission;
+import com.paxaris.identity_service.service.resilience.TenantQuotaGuard;
+import jakarta.servlet.http.HttpServletRequest;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.util.LinkedMultiValueMap;
@@ -27,22 +58,42 @@ import org.springframework.web.client.RestTemplate;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/")
 @RequiredArgsConstructor
 public class KeycloakClientController {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
     private final DynamicJwtDecoder jwtDecoder;
     private final KeycloakClientService clientService;
     private final ObjectMapper objectMapper;
+    private final UserImportService userImportService;
+    private final SignupJobService signupJobService;
+    private final RoleReconciliationService roleReconciliationService;
+    private final RealmExportService realmExportService;
+    private final UserSearchIndex userSearchIndex;
+    private final UploadService uploadService;
+    private final ProvisioningExecutor provisioningExecutor;
+    private final DependencyGuard dependencyGuard;
+    private final TenantQuotaGuard tenantQuotaGuard;
+    private final AdaptiveLimitGuard adaptiveLimitGuard;
+    private final InboundAdmission inboundAdmission;
 
     private static final Logger logger = LoggerFactory.getLogger(KeycloakClientController.class);
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
     // ------------------- TOKEN ----------------------------------------------------------------------------------------------------------------------------
     @PostMapping("/token")
     public ResponseEntity<Map<String, Object>> getToken(
@@ -259,21 +310,143 @@ public class KeycloakClientController {
 //        }
 //    }
         @PostMapping(value = "/signup", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-        public ResponseEntity<String> signup(
+        public ResponseEntity<?> signup(
                 @RequestPart("data") SignupRequest request,
                 @RequestPart("dockerImage") MultipartFile dockerImage
         ) {
             logger.info("Received signup request at Identity Service: {}", request);
 
             try {
-                clientService.signup(request, dockerImage);
-                return ResponseEntity.ok("Realm, client, admin user, and Docker image upload completed.");
+                SignupJob job = signupJobService.submit(request, dockerImage);
+                return ResponseEntity.accepted()
+                        .location(URI.create("/signup/jobs/" + job.getId()))
+                        .body(job);
             } catch (Exception e) {
                 logger.error("Signup failed at Identity Service: {}", e.getMessage(), e);
                 return ResponseEntity.badRequest().body("Signup failed: " + e.getMessage());
             }
         }
 
+    @PostMapping(value = "/signup", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> signupWithUpload(@RequestBody SignupRequest request) {
+        logger.info("Received signup request with upload '{}' at Identity Service: {}", request.getUploadId(), request);
+        if (request.getUploadId() == null) {
+            return ResponseEntity.badRequest().body("Signup failed: uploadId is required");
+        }
+        try {
+            SignupJob job = signupJobService.submit(request, request.getUploadId());
+            return ResponseEntity.accepted()
+                    .location(URI.create("/signup/jobs/" + job.getId()))
+                    .body(job);
+        } catch (Exception e) {
+            logger.error("Signup failed at Identity Service: {}", e.getMessage(), e);
+            return ResponseEntity.badRequest().body("Signup failed: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/signup/jobs/{jobId}")
+    public ResponseEntity<SignupJob> getSignupJob(@PathVariable String jobId) {
+        return signupJobService.find(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/signup/jobs/{jobId}/retry")
+    public ResponseEntity<?> retrySignupJob(@PathVariable String jobId,
+                                            @RequestBody(required = false) SignupRetryRequest retry) {
+        try {
+            return signupJobService.retry(jobId, retry == null ? null : retry.getAdminPassword())
+                    .<ResponseEntity<?>>map(job -> ResponseEntity.accepted().body(job))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/provisioning/stats")
+    public ResponseEntity<ProvisioningStats> getProvisioningStats() {
+        return ResponseEntity.ok(provisioningExecutor.stats());
+    }
+
+    @GetMapping("/resilience/stats")
+    public ResponseEntity<Map<Dependency, DependencyStats>> getResilienceStats() {
+        return ResponseEntity.ok(dependencyGuard.stats());
+    }
+
+    @GetMapping("/resilience/tenants")
+    public ResponseEntity<TenantQuotaStats> getTenantQuotaStats() {
+        return ResponseEntity.ok(tenantQuotaGuard.stats());
+    }
+
+    @GetMapping("/resilience/limits")
+    public ResponseEntity<Map<Dependency, AdaptiveLimitStats>> getAdaptiveLimitStats() {
+        return ResponseEntity.ok(adaptiveLimitGuard.stats());
+    }
+
+    @GetMapping("/resilience/inbound")
+    public ResponseEntity<AdmissionStats> getInboundAdmissionStats() {
+        return ResponseEntity.ok(inboundAdmission.stats());
+    }
+
+    // ------------------- UPLOADS -------------------
+    @PostMapping("/uploads")
+    public ResponseEntity<?> createUpload(@RequestParam long size,
+                                          @RequestParam(required = false) String sha256) {
+        try {
+            UploadStatus upload = uploadService.create(size, sha256);
+            return ResponseEntity.created(URI.create("/uploads/" + upload.id())).body(upload);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            logger.error("Cannot create upload: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Appends the raw request body to an upload. The chunk's position comes from a
+     * {@code Content-Range: bytes <start>-<end>/<size>} header; without one the chunk is appended at the
+     * current offset. A chunk that does not start at the current offset gets 409 with the upload's status.
+     */
+    @PutMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> appendUpload(@PathVariable String uploadId,
+                                          @RequestHeader(value = HttpHeaders.CONTENT_RANGE, required = false) String contentRange,
+                                          HttpServletRequest request) {
+        try (InputStream body = request.getInputStream()) {
+            UploadStatus upload = uploadService.append(uploadId, rangeStart(contentRange), body);
+            return ResponseEntity.ok(upload);
+        } catch (UploadService.OffsetMismatchException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getCurrent());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Upload '{}' interrupted: {}", uploadId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(uploadService.status(uploadId).map(Object.class::cast).orElse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadStatus> getUpload(@PathVariable String uploadId) {
+        return uploadService.status(uploadId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    private static Long rangeStart(String contentRange) {
+        if (contentRange == null || contentRange.isBlank()) {
+            return null;
+        }
+        String range = contentRange.trim();
+        int dash = range.indexOf('-');
+        if (!range.startsWith("bytes ") || dash < 0) {
+            throw new IllegalArgumentException("Unsupported Content-Range: " + contentRange);
+        }
+        return Long.parseLong(range.substring(6, dash).trim());
+    }
+
     // ------------------- REALM ----------------------------------------------------------------------------------------------------------------------------
     @PostMapping("/realm")
     public ResponseEntity<String> createRealm(@RequestParam String realmName) {
@@ -298,6 +471,18 @@ public class KeycloakClientController {
         }
     }
 
+    // Pass-through mode: Keycloak's body is copied to the response without being parsed
+    @GetMapping(value = "/realms", params = "passthrough=true")
+    public ResponseEntity<StreamingResponseBody> streamAllRealms() {
+        try {
+            String masterToken = clientService.getMyRealmToken("admin", "admin123", "admin-cli", "master")
+                    .get("access_token").toString();
+            return passthrough(clientService.streamAllRealms(masterToken));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     // ------------------- CLIENT -------------------
     @PostMapping("/identity/{realm}/clients")
     public ResponseEntity<String> createClient(
@@ -339,16 +524,56 @@ public class KeycloakClientController {
     }
 //------------------------------------------------------------------------------------------------------------------------------------------------------------
     @GetMapping("/clients/{realm}")
-    public ResponseEntity<List<Map<String, Object>>> getAllClients(@PathVariable String realm) {
+    public ResponseEntity<?> getAllClients(
+            @PathVariable String realm,
+            @RequestParam(required = false) Integer first,
+            @RequestParam(required = false) Integer max,
+            @RequestParam(required = false) String fields,
+            @RequestParam(defaultValue = "false") boolean brief) {
         try {
             String masterToken = clientService.getMyRealmToken("admin", "admin123", "admin-cli", "master")
                     .get("access_token").toString();
+            ListingQuery query = ListingQuery.all(DEFAULT_PAGE_SIZE).range(first, max).project(brief, fields);
+            if (query.projected()) {
+                return jsonArray(sink -> clientService.forEachClient(realm, masterToken, query, sink));
+            }
+            if (first != null || max != null) {
+                return ResponseEntity.ok(clientService.getClients(realm, masterToken,
+                        first != null ? first : 0, max != null ? max : DEFAULT_PAGE_SIZE));
+            }
             return ResponseEntity.ok(clientService.getAllClients(realm, masterToken));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    @GetMapping(value = "/clients/{realm}", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamClients(
+            @PathVariable String realm,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int pageSize,
+            @RequestParam(required = false) String fields,
+            @RequestParam(defaultValue = "false") boolean brief) {
+        try {
+            String masterToken = clientService.getMyRealmToken("admin", "admin123", "admin-cli", "master")
+                    .get("access_token").toString();
+            ListingQuery query = ListingQuery.all(pageSize).project(brief, fields);
+            return ndjson(out -> clientService.forEachClient(realm, masterToken, query, node -> writeLine(out, node)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(value = "/clients/{realm}", params = "passthrough=true")
+    public ResponseEntity<StreamingResponseBody> streamAllClients(@PathVariable String realm) {
+        try {
+            String masterToken = clientService.getMyRealmToken("admin", "admin123", "admin-cli", "master")
+                    .get("access_token").toString();
+            return passthrough(clientService.streamAllClients(realm, masterToken));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     // ------------------- USER -------------------
     @PostMapping("/identity/{realm}/users")
     public ResponseEntity<String> createUser(
@@ -369,21 +594,107 @@ public class KeycloakClientController {
             return ResponseEntity.badRequest().body("Failed to create user: " + e.getMessage());
         }
     }
+    // Bulk import: NDJSON (one Keycloak user per line) or CSV with a header row, answered with an NDJSON report
+    @PostMapping(value = "/identity/{realm}/users/import", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<StreamingResponseBody> importUsers(
+            @PathVariable String realm,
+            @RequestHeader("Authorization") String authorizationHeader,
+            HttpServletRequest request) throws IOException {
+
+        String token = authorizationHeader.startsWith("Bearer ")
+                ? authorizationHeader.substring(7)
+                : authorizationHeader;
+        UserImportService.Format format = request.getContentType().startsWith("text/csv")
+                ? UserImportService.Format.CSV
+                : UserImportService.Format.NDJSON;
+        InputStream body = request.getInputStream();
+
+        logger.info("Received bulk user import for realm '{}' as {}", realm, format);
+        return ndjson(out -> userImportService.importUsers(realm, token, format, body, out));
+    }
+
 //-----------------------------------------------------------------------------------------------------------------------------------------------------
     @GetMapping("/users/{realm}")
-    public ResponseEntity<List<Map<String, Object>>> getAllUsers(@PathVariable String realm) {
+    public ResponseEntity<?> getAllUsers(
+            @PathVariable String realm,
+            @RequestParam(required = false) Integer first,
+            @RequestParam(required = false) Integer max,
+            @RequestParam(required = false) String fields,
+            @RequestParam(defaultValue = "false") boolean brief) {
         try {
             String masterToken = clientService.getMyRealmToken("admin", "admin123", "admin-cli", "master")
                     .get("access_token").toString();
+            ListingQuery query = ListingQuery.all(DEFAULT_PAGE_SIZE).range(first, max).project(brief, fields);
+            if (query.projected()) {
+                return jsonArray(sink -> clientService.forEachUser(realm, masterToken, query, sink));
+            }
+            if (first != null || max != null) {
+                return ResponseEntity.ok(clientService.getUsers(realm, masterToken,
+                        first != null ? first : 0, max != null ? max : DEFAULT_PAGE_SIZE));
+            }
             return ResponseEntity.ok(clientService.getAllUsers(realm, masterToken));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    // Type-ahead search and counts, answered from the local user index instead of Keycloak
+    @GetMapping("/users/{realm}/search")
+    public ResponseEntity<?> searchUsers(
+            @PathVariable String realm,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(userSearchIndex.search(realm, q, Math.max(1, Math.min(limit, 500))));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/users/{realm}/count")
+    public ResponseEntity<?> countUsers(@PathVariable String realm) {
+        try {
+            return ResponseEntity.ok(Map.of(
+                    "realm", realm,
+                    "count", userSearchIndex.count(realm),
+                    "indexedAt", userSearchIndex.builtAt(realm)
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    // Streaming mode: walks Keycloak page by page and writes one JSON record per line
+    @GetMapping(value = "/users/{realm}", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamUsers(
+            @PathVariable String realm,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int pageSize,
+            @RequestParam(required = false) String fields,
+            @RequestParam(defaultValue = "false") boolean brief) {
+        try {
+            String masterToken = clientService.getMyRealmToken("admin", "admin123", "admin-cli", "master")
+                    .get("access_token").toString();
+            ListingQuery query = ListingQuery.all(pageSize).project(brief, fields);
+            return ndjson(out -> clientService.forEachUser(realm, masterToken, query, node -> writeLine(out, node)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(value = "/users/{realm}", params = "passthrough=true")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(@PathVariable String realm) {
+        try {
+            String masterToken = clientService.getMyRealmToken("admin", "admin123", "admin-cli", "master")
+                    .get("access_token").toString();
+            return passthrough(clientService.streamAllUsers(realm, masterToken));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     // ------------------- ROLE -------------------
     @PostMapping("/identity/{realm}/clients/{clientName}/roles")
-    public ResponseEntity<String> createClientRoles(
+    public ResponseEntity<?> createClientRoles(
             @PathVariable String realm,
             @PathVariable String clientName,
             @RequestHeader("Authorization") String authorizationHeader,
@@ -394,8 +705,10 @@ public class KeycloakClientController {
                 : authorizationHeader;
 
         try {
-            clientService.createClientRoles(realm, clientName, roleRequests, token);
-            return ResponseEntity.ok("Roles created successfully for client: " + clientName);
+            List<RoleCreationResult> results = clientService.createClientRoles(realm, clientName, roleRequests, token);
+            boolean anyFailed = results.stream().anyMatch(r -> r.status() == RoleCreationResult.Status.FAILED);
+            // 207 tells the caller to look at the per-role statuses and retry only the failures
+            return ResponseEntity.status(anyFailed ? HttpStatus.MULTI_STATUS : HttpStatus.OK).body(results);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to create roles: " + e.getMessage());
@@ -421,6 +734,41 @@ public class KeycloakClientController {
         }
     }
 
+    //-----------------------------------------------------------------------------------------------------------------------------
+    @GetMapping("/roles/{realm}/{clientName}")
+    public ResponseEntity<List<Map<String, Object>>> getAllRoles(
+            @PathVariable String realm,
+            @PathVariable String clientName,
+            @RequestParam(required = false) Integer first,
+            @RequestParam(required = false) Integer max) {
+        try {
+            String masterToken = clientService.getMyRealmToken("admin", "admin123", "admin-cli", "master")
+                    .get("access_token").toString();
+            if (first != null || max != null) {
+                return ResponseEntity.ok(clientService.getRoles(realm, clientName, masterToken,
+                        first != null ? first : 0, max != null ? max : DEFAULT_PAGE_SIZE));
+            }
+            return ResponseEntity.ok(clientService.getAllRoles(realm, clientName, masterToken));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(value = "/roles/{realm}/{clientName}", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamRoles(
+            @PathVariable String realm,
+            @PathVariable String clientName,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int pageSize) {
+        try {
+            String masterToken = clientService.getMyRealmToken("admin", "admin123", "admin-cli", "master")
+                    .get("access_token").toString();
+            ListingQuery query = ListingQuery.all(pageSize);
+            return ndjson(out -> clientService.forEachRole(realm, clientName, masterToken, query, node -> writeLine(out, node)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     //-----------------------------------------------------------------------------------------------------------------------------
     @DeleteMapping("/role/{realm}/{client}/{roleName}")
     public ResponseEntity<String> deleteRole(
@@ -463,4 +811,115 @@ public class KeycloakClientController {
         }
     }
 
+    // ------------------- BULK ASSIGN CLIENT ROLES -------------------
+    @PostMapping("/identity/{realm}/clients/{clientName}/role-assignments")
+    public ResponseEntity<?> assignClientRoles(
+            @PathVariable String realm,
+            @PathVariable String clientName,
+            @RequestHeader("Authorization") String authorizationHeader,
+            @RequestBody List<RoleAssignmentRequest> assignments) {
+
+        String token = authorizationHeader.startsWith("Bearer ")
+                ? authorizationHeader.substring(7)
+                : authorizationHeader;
+
+        try {
+            List<RoleAssignmentResult> results = clientService.assignClientRoles(realm, clientName, assignments, token);
+            boolean anyFailed = results.stream().anyMatch(r -> r.status() == RoleAssignmentResult.Status.FAILED);
+            return ResponseEntity.status(anyFailed ? HttpStatus.MULTI_STATUS : HttpStatus.OK).body(results);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Failed to assign roles: " + e.getMessage());
+        }
+    }
+
+    // ------------------- RECONCILE CLIENT ROLES -------------------
+    @PostMapping("/identity/{realm}/clients/{clientName}/roles/reconcile")
+    public ResponseEntity<?> reconcileClientRoles(
+            @PathVariable String realm,
+            @PathVariable String clientName,
+            @RequestParam(defaultValue = "true") boolean dryRun,
+            @RequestParam(defaultValue = "false") boolean allowDeletes,
+            @RequestHeader("Authorization") String authorizationHeader) {
+
+        String token = authorizationHeader.startsWith("Bearer ")
+                ? authorizationHeader.substring(7)
+                : authorizationHeader;
+
+        try {
+            RoleReconciliationReport report = roleReconciliationService.reconcile(realm, clientName, token, dryRun, allowDeletes);
+            return ResponseEntity.status(report.hasFailures() ? HttpStatus.MULTI_STATUS : HttpStatus.OK).body(report);
+        } catch (Exception e) {
+            logger.error("Role reconciliation failed for client '{}' in realm '{}': {}", clientName, realm, e.getMessage(), e);
+            return ResponseEntity.badRequest().body("Failed to reconcile roles: " + e.getMessage());
+        }
+    }
+
+    // ------------------- REALM EXPORT -------------------
+    @PostMapping("/identity/{realm}/exports")
+    public ResponseEntity<RealmExportStatus> startRealmExport(@PathVariable String realm) {
+        RealmExportStatus export = realmExportService.start(realm);
+        return ResponseEntity.accepted()
+                .location(URI.create("/identity/exports/" + export.id()))
+                .body(export);
+    }
+
+    @GetMapping("/identity/exports/{exportId}")
+    public ResponseEntity<RealmExportStatus> getRealmExport(@PathVariable String exportId) {
+        return realmExportService.status(exportId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/identity/exports/{exportId}/file")
+    public ResponseEntity<Resource> downloadRealmExport(@PathVariable String exportId) {
+        return realmExportService.file(exportId)
+                .map(file -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType("application/gzip"))
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                        .<Resource>body(new FileSystemResource(file)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // ------------------- NDJSON HELPERS -------------------
+    private ResponseEntity<StreamingResponseBody> ndjson(StreamingResponseBody body) {
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    // Keycloak's body copied through unchanged; its status was checked before this 200 was committed
+    private ResponseEntity<StreamingResponseBody> passthrough(ClientHttpResponse upstream) {
+        MediaType type = Optional.ofNullable(upstream.getHeaders().getContentType()).orElse(MediaType.APPLICATION_JSON);
+        return ResponseEntity.ok().contentType(type).body(out -> {
+            try (upstream) {
+                upstream.getBody().transferTo(out);
+            }
+        });
+    }
+
+    // Chunked JSON array: records are written as they arrive instead of being collected first
+    private ResponseEntity<StreamingResponseBody> jsonArray(Consumer<Consumer<ObjectNode>> walk) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(out -> {
+            boolean[] firstRecord = {true};
+            out.write('[');
+            walk.accept(node -> {
+                try {
+                    if (!firstRecord[0]) out.write(',');
+                    firstRecord[0] = false;
+                    out.write(objectMapper.writeValueAsBytes(node));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.write(']');
+        });
+    }
+
+    private void writeLine(OutputStream out, Object record) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(record));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
 }
@@ -0,0 +1,194 @@
+package com.paxaris.identity_service.controller;
+
+import com.paxaris.identity_service.dto.RoleRequest;
+import com.paxaris.identity_service.service.ReactiveDynamicJwtDecoder;
+import com.paxaris.identity_service.service.ReactiveKeycloakClientService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking surface for the hot token / validate / access endpoints and the admin listings.
+ * Handlers return {@link Mono}/{@link Flux}, so request threads are released while Keycloak and the
+ * Project Manager answer. Listings are emitted as NDJSON and pulled from Keycloak only as fast as the
+ * client reads them.
+ * <p>
+ * These run on Spring MVC's async request support in Tomcat, not on a WebFlux event loop: the servlet thread
+ * goes back to the pool once the handler returns, WebClient waits on Reactor Netty's I/O threads, and the
+ * response is written from an async dispatch. That frees request threads during Keycloak round trips, but
+ * each response is still written by a container thread.
+ */
+@RestController
+@RequestMapping("/reactive")
+@RequiredArgsConstructor
+public class ReactiveKeycloakController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveKeycloakController.class);
+
+    // Upper bound on concurrent Project Manager lookups per access check
+    private static final int URL_LOOKUP_CONCURRENCY = 8;
+
+    private final ReactiveKeycloakClientService clientService;
+    private final ReactiveDynamicJwtDecoder jwtDecoder;
+
+    // ------------------- TOKEN -------------------
+    @PostMapping("/token")
+    public Mono<ResponseEntity<Map<String, Object>>> getToken(
+            @RequestParam String realm,
+            @RequestParam String username,
+            @RequestParam String password,
+            @RequestParam(name = "client_id") String clientId) {
+
+        return clientService.getMyRealmToken(username, password, clientId, realm)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(Map.of("error", "Unauthorized", "message", String.valueOf(e.getMessage())))));
+    }
+
+    @GetMapping("/validate")
+    public Mono<ResponseEntity<Map<String, Object>>> validateToken(
+            @RequestHeader(HttpHeaders.AUTHORIZATION) String authHeader) {
+
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of(
+                            "status", "INVALID",
+                            "message", "Authorization header missing or malformed"
+                    )));
+        }
+
+        return jwtDecoder.decode(authHeader.substring(7).trim())
+                .map(jwt -> ResponseEntity.ok(tokenSummary(jwt)))
+                .onErrorResume(e -> {
+                    logger.warn("❌ Token validation failed: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                            .body(Map.of(
+                                    "status", "INVALID",
+                                    "message", "Token invalid or expired: " + e.getMessage()
+                            )));
+                });
+    }
+
+    @PostMapping("/identity/validate-access")
+    public Mono<ResponseEntity<Boolean>> validateAccess(@RequestBody ValidationRequest request) {
+        return jwtDecoder.decode(request.accessToken())
+                .flatMap(jwt -> {
+                    String clientId = jwt.getClaimAsString("azp");
+                    String realmName = jwt.getClaimAsString("iss");
+
+                    return Flux.fromIterable(clientRoles(jwt, clientId))
+                            .flatMap(roleName -> {
+                                RoleRequest roleRequest = new RoleRequest();
+                                roleRequest.setRealmName(realmName);
+                                roleRequest.setProductName(clientId);
+                                roleRequest.setRoleName(roleName);
+                                return clientService.getAllowedUrls(roleRequest);
+                            }, URL_LOOKUP_CONCURRENCY)
+                            .map(entry -> {
+                                String fullUrl = entry.getUrl();
+                                if (!fullUrl.endsWith("/")) fullUrl += "/";
+                                return fullUrl + entry.getUri();
+                            })
+                            // any() cancels the remaining lookups as soon as one URL matches
+                            .any(request.url()::startsWith);
+                })
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    logger.warn("Access validation failed: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.ok(false));
+                });
+    }
+
+    @GetMapping("/token/validate")
+    public Mono<ResponseEntity<String>> validateToken(
+            @RequestParam String realm,
+            @RequestHeader("Authorization") String authHeader) {
+
+        String token = authHeader.startsWith("Bearer ") ? authHeader.substring(7) : authHeader;
+        return clientService.validateToken(realm, token)
+                .map(valid -> valid
+                        ? ResponseEntity.ok("Token is valid")
+                        : ResponseEntity.badRequest().body("Token is invalid"));
+    }
+
+    // ------------------- LISTINGS -------------------
+    @GetMapping(value = "/realms", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> getAllRealms() {
+        return clientService.getMasterToken()
+                .flatMapMany(clientService::getAllRealms);
+    }
+
+    @GetMapping(value = "/clients/{realm}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> getAllClients(@PathVariable String realm) {
+        return clientService.getMasterToken()
+                .flatMapMany(token -> clientService.getAllClients(realm, token));
+    }
+
+    @GetMapping(value = "/users/{realm}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> getAllUsers(@PathVariable String realm) {
+        return clientService.getMasterToken()
+                .flatMapMany(token -> clientService.getAllUsers(realm, token));
+    }
+
+    @GetMapping(value = "/roles/{realm}/{clientName}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> getAllRoles(@PathVariable String realm, @PathVariable String clientName) {
+        return clientService.getMasterToken()
+                .flatMapMany(token -> clientService.getAllRoles(realm, clientName, token));
+    }
+
+    // ------------------- HELPERS -------------------
+    private Map<String, Object> tokenSummary(Jwt jwt) {
+        Map<String, Object> claims = jwt.getClaims();
+
+        List<String> allRoles = new ArrayList<>();
+        if (claims.get("realm_access") instanceof Map<?, ?> realmAccess
+                && realmAccess.get("roles") instanceof List<?> realmRoles) {
+            realmRoles.forEach(r -> allRoles.add(r.toString()));
+        }
+        if (claims.get("resource_access") instanceof Map<?, ?> resourceAccess) {
+            for (Object clientEntry : resourceAccess.values()) {
+                if (clientEntry instanceof Map<?, ?> clientMap && clientMap.get("roles") instanceof List<?> rolesList) {
+                    rolesList.forEach(r -> allRoles.add(r.toString()));
+                }
+            }
+        }
+
+        String realm = claims.getOrDefault("iss", "").toString();
+        if (realm.contains("/realms/")) {
+            realm = realm.substring(realm.lastIndexOf("/realms/") + 8);
+        }
+        String product = claims.getOrDefault("azp", "").toString();
+
+        return Map.of(
+                "status", "VALID",
+                "realm", realm,
+                "product", product,
+                "azp", product,
+                "roles", allRoles
+        );
+    }
+
+    private List<String> clientRoles(Jwt jwt, String clientId) {
+        Map<String, Object> resourceAccess = jwt.getClaim("resource_access");
+        if (resourceAccess != null && resourceAccess.get(clientId) instanceof Map<?, ?> clientAccess
+                && clientAccess.get("roles") instanceof List<?> roles) {
+            return roles.stream().map(Object::toString).toList();
+        }
+        return List.of();
+    }
+
+    // DTO for incoming request
+    private record ValidationRequest(String accessToken, String url) {}
+}
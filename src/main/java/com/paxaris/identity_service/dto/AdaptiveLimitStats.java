@@ -0,0 +1,19 @@
+package com.paxaris.identity_service.dto;
+
+/**
+ * Current adaptive concurrency limit for one upstream dependency, with the round trips it is derived from.
+ * {@code increases} and {@code decreases} count how often the limit moved since startup.
+ */
+public record AdaptiveLimitStats(int limit,
+                                 int minLimit,
+                                 int maxLimit,
+                                 int inFlight,
+                                 int waiting,
+                                 double minRttMs,
+                                 double lastRttMs,
+                                 long admitted,
+                                 long queued,
+                                 long rejected,
+                                 long increases,
+                                 long decreases) {
+}
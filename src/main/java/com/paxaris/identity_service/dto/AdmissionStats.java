@@ -0,0 +1,12 @@
+package com.paxaris.identity_service.dto;
+
+import java.util.Map;
+
+/**
+ * Snapshot of inbound admission: requests being handled, requests queued for a slot, and each priority class.
+ */
+public record AdmissionStats(int maxConcurrent,
+                             int inFlight,
+                             int waiting,
+                             Map<String, PriorityClassStats> classes) {
+}
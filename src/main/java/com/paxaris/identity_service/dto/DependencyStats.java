@@ -0,0 +1,18 @@
+package com.paxaris.identity_service.dto;
+
+import java.util.Map;
+
+/**
+ * Circuit breaker and bulkhead state of one upstream dependency. {@code transitions} counts how often the
+ * breaker entered each state since startup.
+ */
+public record DependencyStats(String state,
+                              double failureRate,
+                              Map<String, Long> transitions,
+                              int inFlight,
+                              int maxConcurrent,
+                              long calls,
+                              long failures,
+                              long rejectedOpen,
+                              long rejectedFull) {
+}
@@ -0,0 +1,10 @@
+package com.paxaris.identity_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The fields of a Keycloak user that the local search index keeps.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record IndexedUser(String id, String username, String email, String firstName, String lastName, boolean enabled) {
+}
@@ -0,0 +1,43 @@
+package com.paxaris.identity_service.dto;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Describes a walk over a Keycloak admin listing: which slice to read, how large each upstream page is,
+ * and which fields of every record to keep.
+ *
+ * @param first    offset of the first record
+ * @param max      maximum number of records to emit, {@link #UNBOUNDED} for all of them
+ * @param pageSize number of records requested from Keycloak per round trip
+ * @param brief    ask Keycloak for brief representations where the endpoint supports it
+ * @param fields   top-level fields to keep; empty keeps every field
+ */
+public record ListingQuery(int first, int max, int pageSize, boolean brief, Set<String> fields) {
+
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    public static ListingQuery all(int pageSize) {
+        return new ListingQuery(0, UNBOUNDED, pageSize, false, Set.of());
+    }
+
+    public ListingQuery range(Integer first, Integer max) {
+        return new ListingQuery(first != null ? first : this.first, max != null ? max : this.max, pageSize, brief, fields);
+    }
+
+    /**
+     * @param fields comma-separated field names, as passed in a {@code fields=} query parameter
+     */
+    public ListingQuery project(boolean brief, String fields) {
+        Set<String> names = fields == null ? Set.of() : Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        return new ListingQuery(first, max, pageSize, brief, names);
+    }
+
+    public boolean projected() {
+        return brief || !fields.isEmpty();
+    }
+}
@@ -0,0 +1,14 @@
+package com.paxaris.identity_service.dto;
+
+/**
+ * Snapshot of the Project Manager outbox. {@code oldestPendingAgeMs} is how far the Project Manager lags behind
+ * Keycloak.
+ */
+public record OutboxStats(int pending,
+                          long oldestPendingAgeMs,
+                          long delivered,
+                          long rejected,
+                          long retries,
+                          long fsyncs,
+                          long logBytes) {
+}
@@ -0,0 +1,15 @@
+package com.paxaris.identity_service.dto;
+
+/**
+ * Inbound admission figures of one priority class. Sojourn is the time a request spent queued before it was
+ * let in; {@code dropping} is whether the class is currently being shed because that time stayed above target.
+ */
+public record PriorityClassStats(boolean dropping,
+                                 int waiting,
+                                 long admitted,
+                                 long queued,
+                                 long shed,
+                                 long droppingEpisodes,
+                                 double averageSojournMs,
+                                 long maxSojournMs) {
+}
@@ -0,0 +1,22 @@
+package com.paxaris.identity_service.dto;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the provisioning executor. Wait times are measured from submission until a worker picks the
+ * task up.
+ */
+public record ProvisioningStats(int workers,
+                                int busy,
+                                int queued,
+                                int capacity,
+                                Map<String, Integer> queuedByRealm,
+                                long completed,
+                                long failed,
+                                long rejected,
+                                double averageWaitMs,
+                                long maxWaitMs,
+                                long usableDiskBytes,
+                                long reservedDiskBytes,
+                                boolean waitingForDisk) {
+}
@@ -0,0 +1,25 @@
+package com.paxaris.identity_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+/**
+ * Point-in-time view of a realm export: records written so far per kind, compressed bytes on disk,
+ * and where the snapshot ends up once it completes.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RealmExportStatus(String id,
+                                String realm,
+                                Status status,
+                                long users,
+                                long clients,
+                                long roles,
+                                long bytesWritten,
+                                String file,
+                                Instant startedAt,
+                                Instant finishedAt,
+                                String error) {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+}
@@ -0,0 +1,17 @@
+package com.paxaris.identity_service.dto;
+
+/**
+ * Outbound Keycloak usage of one realm. {@code borrowed} counts the in-flight calls running on the shared
+ * overflow pool; wait times cover only the calls that had to queue.
+ */
+public record RealmQuotaStats(int quota,
+                              double weight,
+                              int inFlight,
+                              int borrowed,
+                              int waiting,
+                              long admitted,
+                              long queued,
+                              long rejected,
+                              double averageWaitMs,
+                              long maxWaitMs) {
+}
@@ -0,0 +1,8 @@
+package com.paxaris.identity_service.dto;
+
+import java.util.List;
+
+/**
+ * One row of a bulk role assignment: the client roles to grant to a single user.
+ */
+public record RoleAssignmentRequest(String username, List<String> roles) {}
@@ -0,0 +1,22 @@
+package com.paxaris.identity_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk role assignment for a single user.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RoleAssignmentResult(String username, Status status, List<String> roles, String reason) {
+
+    public enum Status { ASSIGNED, FAILED }
+
+    public static RoleAssignmentResult assigned(String username, List<String> roles) {
+        return new RoleAssignmentResult(username, Status.ASSIGNED, roles, null);
+    }
+
+    public static RoleAssignmentResult failed(String username, List<String> roles, String reason) {
+        return new RoleAssignmentResult(username, Status.FAILED, roles, reason);
+    }
+}
@@ -0,0 +1,24 @@
+package com.paxaris.identity_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of creating a single role in a bulk request, so callers can retry only the failures.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RoleCreationResult(String name, Status status, String reason) {
+
+    public enum Status { CREATED, ALREADY_EXISTS, FAILED }
+
+    public static RoleCreationResult created(String name) {
+        return new RoleCreationResult(name, Status.CREATED, null);
+    }
+
+    public static RoleCreationResult alreadyExists(String name) {
+        return new RoleCreationResult(name, Status.ALREADY_EXISTS, null);
+    }
+
+    public static RoleCreationResult failed(String name, String reason) {
+        return new RoleCreationResult(name, Status.FAILED, reason);
+    }
+}
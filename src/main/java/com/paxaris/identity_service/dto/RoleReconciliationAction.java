@@ -0,0 +1,27 @@
+package com.paxaris.identity_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One change needed to bring a client's Keycloak roles in line with the Project Manager, and what became of it.
+ * In a dry run every action stays {@link Status#PLANNED}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RoleReconciliationAction(String role, Action action, Status status, String description, String reason) {
+
+    public enum Action { CREATE, UPDATE, DELETE }
+
+    public enum Status { PLANNED, APPLIED, FAILED }
+
+    public static RoleReconciliationAction planned(String role, Action action, String description) {
+        return new RoleReconciliationAction(role, action, Status.PLANNED, description, null);
+    }
+
+    public RoleReconciliationAction applied() {
+        return new RoleReconciliationAction(role, action, Status.APPLIED, description, null);
+    }
+
+    public RoleReconciliationAction failed(String reason) {
+        return new RoleReconciliationAction(role, action, Status.FAILED, description, reason);
+    }
+}
@@ -0,0 +1,19 @@
+package com.paxaris.identity_service.dto;
+
+import java.util.List;
+
+/**
+ * Result of reconciling one client's roles: how many already matched and every change planned or applied.
+ */
+public record RoleReconciliationReport(String realm,
+                                       String clientName,
+                                       boolean dryRun,
+                                       int projectManagerRoles,
+                                       int keycloakRoles,
+                                       int unchanged,
+                                       List<RoleReconciliationAction> actions) {
+
+    public boolean hasFailures() {
+        return actions.stream().anyMatch(a -> a.status() == RoleReconciliationAction.Status.FAILED);
+    }
+}
@@ -0,0 +1,46 @@
+package com.paxaris.identity_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Progress of one asynchronous signup, persisted after every step transition so it survives a restart.
+ * The signup request itself, which carries the admin password, is stored separately and never reported.
+ */
+@Data
+public class SignupJob {
+
+    public enum Status { PENDING, RUNNING, SUCCEEDED, FAILED }
+
+    public enum Step { REALM, CLIENT, ADMIN_USER, ADMIN_ROLES, PROJECT_MANAGER, REPOSITORY }
+
+    public enum StepStatus { PENDING, RUNNING, DONE, SKIPPED, FAILED }
+
+    private String id;
+    private String realmName;
+    private String clientId;
+    private Status status = Status.PENDING;
+    private Map<Step, StepState> steps = new LinkedHashMap<>();
+    private String adminUserId;
+    private String error;
+    private Instant createdAt;
+    private Instant updatedAt;
+
+    @Data
+    public static class StepState {
+        private StepStatus status = StepStatus.PENDING;
+        private int attempts;
+        private Instant startedAt;
+        private Instant finishedAt;
+        private String message;
+
+        @JsonIgnore
+        public boolean isFinished() {
+            return status == StepStatus.DONE || status == StepStatus.SKIPPED;
+        }
+    }
+}
@@ -22,4 +22,6 @@ public class SignupRequest {
     }
     private String url;
     private String uri;
+    // Id of a completed upload holding the project archive, for signups sent as JSON instead of multipart
+    private String uploadId;
 }
\ No newline at end of file
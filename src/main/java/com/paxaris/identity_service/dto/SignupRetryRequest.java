@@ -0,0 +1,12 @@
+package com.paxaris.identity_service.dto;
+
+import lombok.Data;
+
+/**
+ * Optional body of a signup job retry. A failed job keeps no admin password, so one is needed until the job
+ * has created the admin user.
+ */
+@Data
+public class SignupRetryRequest {
+    private String adminPassword;
+}
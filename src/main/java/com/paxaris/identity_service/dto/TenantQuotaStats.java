@@ -0,0 +1,11 @@
+package com.paxaris.identity_service.dto;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the per-realm outbound quotas and the overflow pool they share.
+ */
+public record TenantQuotaStats(int overflow,
+                               int overflowInUse,
+                               Map<String, RealmQuotaStats> realms) {
+}
@@ -0,0 +1,39 @@
+package com.paxaris.identity_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+/**
+ * State of a resumable upload. {@code offset} is how many bytes are safely on disk, which is where the
+ * next chunk has to start.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UploadStatus(String id,
+                           long size,
+                           long offset,
+                           Status status,
+                           String expectedSha256,
+                           String sha256,
+                           String error,
+                           Instant createdAt,
+                           Instant updatedAt) {
+
+    public enum Status { IN_PROGRESS, COMPLETE, FAILED, CLAIMED }
+
+    public UploadStatus withOffset(long offset) {
+        return new UploadStatus(id, size, offset, status, expectedSha256, sha256, error, createdAt, Instant.now());
+    }
+
+    public UploadStatus complete(String sha256) {
+        return new UploadStatus(id, size, offset, Status.COMPLETE, expectedSha256, sha256, null, createdAt, Instant.now());
+    }
+
+    public UploadStatus failed(String sha256, String error) {
+        return new UploadStatus(id, size, offset, Status.FAILED, expectedSha256, sha256, error, createdAt, Instant.now());
+    }
+
+    public UploadStatus claimed() {
+        return new UploadStatus(id, size, offset, Status.CLAIMED, expectedSha256, sha256, null, createdAt, Instant.now());
+    }
+}
@@ -0,0 +1,25 @@
+package com.paxaris.identity_service.dto;
+
+import java.util.Map;
+
+/**
+ * Published after a user has been created in Keycloak, so local views of the realm can be updated without
+ * re-reading it.
+ */
+public record UserCreatedEvent(String realm,
+                               String id,
+                               String username,
+                               String email,
+                               String firstName,
+                               String lastName,
+                               boolean enabled) {
+
+    public static UserCreatedEvent of(String realm, String id, Map<String, Object> user) {
+        return new UserCreatedEvent(realm, id,
+                (String) user.get("username"),
+                (String) user.get("email"),
+                (String) user.get("firstName"),
+                (String) user.get("lastName"),
+                !Boolean.FALSE.equals(user.get("enabled")));
+    }
+}
@@ -0,0 +1,14 @@
+package com.paxaris.identity_service.dto.keycloak;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * The subset of Keycloak's ClientRepresentation this service reads.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ClientRepresentation(
+        String id,
+        String clientId,
+        Boolean enabled,
+        Boolean publicClient
+) {}
@@ -0,0 +1,12 @@
+package com.paxaris.identity_service.dto.keycloak;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Body of Keycloak's {@code /clients/{id}/client-secret} endpoint.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record CredentialRepresentation(
+        String type,
+        String value
+) {}
@@ -0,0 +1,23 @@
+package com.paxaris.identity_service.dto.keycloak;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The subset of Keycloak's RoleRepresentation this service reads and sends in role mappings.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RoleRepresentation(
+        String id,
+        String name,
+        String description,
+        Boolean composite,
+        Boolean clientRole,
+        String containerId
+) {
+
+    public static RoleRepresentation reference(String id, String name) {
+        return new RoleRepresentation(id, name, null, null, null, null);
+    }
+}
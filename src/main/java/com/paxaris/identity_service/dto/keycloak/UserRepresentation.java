@@ -0,0 +1,16 @@
+package com.paxaris.identity_service.dto.keycloak;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * The subset of Keycloak's UserRepresentation this service reads.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record UserRepresentation(
+        String id,
+        String username,
+        String email,
+        String firstName,
+        String lastName,
+        Boolean enabled
+) {}
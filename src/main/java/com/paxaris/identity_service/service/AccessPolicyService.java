@@ -0,0 +1,101 @@
+package com.paxaris.identity_service.service;
+
+import com.paxaris.identity_service.dto.RoleRequest;
+import com.paxaris.identity_service.dto.UrlEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Looks up the URLs a role may access from the Project Manager.
+ * <p>
+ * Every answer is remembered per realm, product and role. With {@code identity.access.fallback=cached}, a
+ * lookup that fails because the Project Manager is down, slow or refusing calls through its open circuit is
+ * answered from that memory, as long as the remembered policy is no older than {@code max-stale}; with
+ * {@code deny} the failure is passed on. A 4xx is never covered up, since it means the Project Manager did
+ * answer.
+ */
+@Slf4j
+@Service
+public class AccessPolicyService {
+
+    private record CachedPolicy(List<String> urls, long fetchedAt) {
+    }
+
+    private final RestTemplate restTemplate;
+    private final String projectManagementBaseUrl;
+    private final long ttlNanos;
+    private final long maxStaleNanos;
+    private final boolean fallbackToCached;
+    private final Map<String, CachedPolicy> cache = new ConcurrentHashMap<>();
+
+    public AccessPolicyService(
+            RestTemplate restTemplate,
+            @Value("${project.management.base-url}") String projectManagementBaseUrl,
+            @Value("${identity.access.policy-cache.ttl:0s}") Duration ttl,
+            @Value("${identity.access.policy-cache.max-stale:10m}") Duration maxStale,
+            @Value("${identity.access.fallback:cached}") String fallback) {
+        this.restTemplate = restTemplate;
+        this.projectManagementBaseUrl = projectManagementBaseUrl;
+        this.ttlNanos = ttl.toNanos();
+        this.maxStaleNanos = maxStale.toNanos();
+        this.fallbackToCached = !"deny".equalsIgnoreCase(fallback);
+    }
+
+    /**
+     * @return the full URLs (base URL plus path) the role may access
+     */
+    public List<String> allowedUrls(String realmName, String productName, String roleName) {
+        String key = realmName + "|" + productName + "|" + roleName;
+        CachedPolicy cached = cache.get(key);
+        if (cached != null && System.nanoTime() - cached.fetchedAt() <= ttlNanos) {
+            return cached.urls();
+        }
+        try {
+            List<String> urls = fetch(realmName, productName, roleName);
+            cache.put(key, new CachedPolicy(urls, System.nanoTime()));
+            return urls;
+        } catch (ResourceAccessException | HttpServerErrorException e) {
+            if (fallbackToCached && cached != null && System.nanoTime() - cached.fetchedAt() <= maxStaleNanos) {
+                log.warn("⚠️ Project Manager unavailable ({}), using cached policy for role '{}' of '{}'",
+                        e.getMessage(), roleName, productName);
+                return cached.urls();
+            }
+            throw e;
+        }
+    }
+
+    private List<String> fetch(String realmName, String productName, String roleName) throws RestClientException {
+        RoleRequest roleRequest = new RoleRequest();
+        roleRequest.setRealmName(realmName);
+        roleRequest.setProductName(productName);
+        roleRequest.setRoleName(roleName);
+
+        UrlEntry[] entries = restTemplate.postForObject(
+                projectManagementBaseUrl + "/project/roles/get-urls",
+                roleRequest,
+                UrlEntry[].class
+        );
+
+        List<String> urls = new ArrayList<>();
+        if (entries != null) {
+            for (UrlEntry entry : entries) {
+                String fullUrl = entry.getUrl();
+                if (!fullUrl.endsWith("/")) fullUrl += "/";
+                fullUrl += entry.getUri();
+                urls.add(fullUrl);
+            }
+        }
+        return List.copyOf(urls);
+    }
+}
@@ -0,0 +1,43 @@
+package com.paxaris.identity_service.service;
+
+import com.nimbusds.jwt.JWTParser;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.text.ParseException;
+
+/**
+ * Issuer handling shared by {@link DynamicJwtDecoder} and {@link ReactiveDynamicJwtDecoder}.
+ */
+public final class JwtIssuers {
+
+    private JwtIssuers() {
+    }
+
+    /**
+     * Reads the {@code iss} claim of a token without verifying it, mapped to the host this service reaches
+     * Keycloak on.
+     */
+    public static String issuerOf(String token) throws JwtException {
+        String issuer;
+        try {
+            issuer = JWTParser.parse(token).getJWTClaimsSet().getIssuer();
+        } catch (ParseException e) {
+            throw new JwtException("Failed to parse token", e);
+        }
+        if (issuer == null || issuer.isBlank()) {
+            throw new JwtException("Issuer (iss) claim missing in token");
+        }
+        // Replace localhost with docker service hostname
+        if (issuer.contains("localhost")) {
+            issuer = issuer.replace("localhost", "keycloak-server");
+        }
+        return issuer;
+    }
+
+    /**
+     * Keycloak always exposes JWKS at: {@code <issuer>/protocol/openid-connect/certs}
+     */
+    public static String jwkSetUri(String issuer) {
+        return issuer + "/protocol/openid-connect/certs";
+    }
+}
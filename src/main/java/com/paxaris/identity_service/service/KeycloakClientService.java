@@ -1,15 +1,23 @@
 package com.paxaris.identity_service.service;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.paxaris.identity_service.dto.ListingQuery;
+import com.paxaris.identity_service.dto.RoleAssignmentRequest;
+import com.paxaris.identity_service.dto.RoleAssignmentResult;
 import com.paxaris.identity_service.dto.RoleCreationRequest;
+import com.paxaris.identity_service.dto.RoleCreationResult;
 import com.paxaris.identity_service.dto.SignupRequest;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.http.client.ClientHttpResponse;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface KeycloakClientService {
 
     // Token operations
+    String getMasterToken();
     Map<String, Object> getMyRealmToken(String username, String password, String clientId, String realm);
     boolean validateToken(String realm, String token);
 
@@ -20,6 +28,7 @@ public interface KeycloakClientService {
                                       String clientSecret);
     // Realm operations
     void createRealm(String realmName, String token);
+    boolean realmExists(String realm, String token);
     List<Map<String, Object>> getAllRealms(String token);
 
     // Client operations
@@ -27,27 +36,52 @@ public interface KeycloakClientService {
     List<Map<String, Object>> getAllClients(String realm, String token);
     String getClientSecret(String realm, String clientId, String token);
     String getClientUUID(String realm, String clientName, String token);
+    Optional<String> findClientUUID(String realm, String clientId, String token);
     String getClientId(String realm, String clientName, String token);
 
     // User operations
     String createUser(String realm, String token, Map<String, Object> userPayload);
+    String resolveUserId(String realm, String username, String token);
+    Optional<String> findUserId(String realm, String username, String token);
     List<Map<String, Object>> getAllUsers(String realm, String token);
+    List<Map<String, Object>> partialImportUsers(String realm, String token, List<Map<String, Object>> users);
 
     // Role operations
-    void createClientRoles(String realm, String clientName, List<RoleCreationRequest> roleRequests, String token);
+    List<RoleCreationResult> createClientRoles(String realm, String clientName, List<RoleCreationRequest> roleRequests, String token);
     void createRealmRole(String realm, String roleName, String clientId, String token);
     boolean createRole(String realm, String clientUUID, RoleCreationRequest role, String token);
     boolean updateRole(String realm, String clientUUID, String roleName, RoleCreationRequest role, String token);
     boolean deleteRole(String realm, String clientUUID, String roleName, String token);
     List<Map<String, Object>> getAllRoles(String realm, String clientId, String token);
 
+    // Paged listing operations (Keycloak's first/max)
+    List<Map<String, Object>> getClients(String realm, String token, int first, int max);
+    List<Map<String, Object>> getUsers(String realm, String token, int first, int max);
+    List<Map<String, Object>> getRoles(String realm, String clientId, String token, int first, int max);
+
+    // Cursor-streamed listing operations: walk Keycloak page by page, one record at a time, and return the count
+    long forEachClient(String realm, String token, ListingQuery query, Consumer<ObjectNode> sink);
+    long forEachUser(String realm, String token, ListingQuery query, Consumer<ObjectNode> sink);
+    long forEachRole(String realm, String clientId, String token, ListingQuery query, Consumer<ObjectNode> sink);
+    long forEachClientRole(String realm, String clientUUID, String token, ListingQuery query, Consumer<ObjectNode> sink);
+    long forEachRealmRole(String realm, String token, ListingQuery query, Consumer<ObjectNode> sink);
+
+    // Pass-through listing operations: Keycloak's response, already checked for a 2xx status, whose body the
+    // caller copies out as-is and then closes
+    ClientHttpResponse streamAllRealms(String token);
+    ClientHttpResponse streamAllClients(String realm, String token);
+    ClientHttpResponse streamAllUsers(String realm, String token);
+
     // Role assignment operations
     void assignClientRole(String realm, String username, String clientName, String roleName, String token);
     void assignClientRoleToUser(String realm, String userId, String clientUUID, String roleId, String roleName, String token);
+    List<RoleAssignmentResult> assignClientRoles(String realm, String clientName, List<RoleAssignmentRequest> assignments, String token);
 
-    // Signup operation
-//    void signup(SignupRequest request);
-
-        void signup(SignupRequest request, MultipartFile dockerImage);
+    // Individual signup steps, so they can be run and resumed one at a time
+    void applySignupDefaults(SignupRequest request);
+    boolean createTenantFromTemplate(SignupRequest request, String masterToken);
+    String createAdminUser(SignupRequest request, String masterToken);
+    void grantAdminRoles(String realm, String userId, String masterToken);
+    void registerWithProjectManager(SignupRequest request);
 
 }
\ No newline at end of file
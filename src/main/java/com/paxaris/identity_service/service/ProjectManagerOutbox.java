@@ -0,0 +1,412 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paxaris.identity_service.dto.OutboxStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durable queue of Project Manager mutations that follow a successful Keycloak write.
+ * <p>
+ * {@link #enqueue} appends the mutation to a local log and returns once it is fsynced, so a caller can answer
+ * as soon as Keycloak has succeeded without the Project Manager update ever being lost. Appends from
+ * concurrent callers are group-committed: one writer thread drains whatever is waiting, writes it and forces
+ * the log once for the whole batch.
+ * <p>
+ * A dispatcher delivers entries in log order, each with its entry id as {@code Idempotency-Key}, since an
+ * entry can be delivered twice if the process stops between delivery and acknowledgement. Network errors,
+ * 5xx, 408 and 429 are retried with exponential backoff, holding back later entries so that, say, a create and
+ * a delete of the same role never arrive swapped. Other 4xx responses can never succeed; those entries are
+ * moved to {@code rejected.ndjson} for an operator. Delivered and rejected entries are acknowledged in the
+ * log, which is compacted once mostly acknowledged.
+ * <p>
+ * Callers' tokens are neither stored nor replayed: they expire long before an outage is over. Deliveries carry
+ * the service's own master admin token, fetched when a batch is sent. A 401 or 403 drops that token and the
+ * entry is sent again at once with a fresh one; refused with a fresh token too, it is rejected like any other
+ * 4xx rather than holding back every later entry.
+ */
+@Slf4j
+@Service
+public class ProjectManagerOutbox {
+
+    private static final String LOG_FILE = "outbox.ndjson";
+    private static final String REJECTED_FILE = "rejected.ndjson";
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(5);
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Entry(String id, long seq, Instant createdAt, String method, String path, JsonNode body) {
+    }
+
+    // One log line: an entry, or the acknowledgement of one
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private record Record(String type, Entry entry, String id) {
+    }
+
+    // Lines to append; entries among them become pending once the lines are durable
+    private record Write(List<byte[]> lines, List<Entry> entries, CompletableFuture<Void> durable) {
+    }
+
+    private static final Write STOP = new Write(List.of(), List.of(), new CompletableFuture<>());
+
+    private enum Outcome { DELIVERED, REJECTED, RETRY }
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final KeycloakClientService clientService;
+    private final String projectManagementBaseUrl;
+    private final Path dir;
+    private final int batchSize;
+    private final Duration initialBackoff;
+    private final long compactBytes;
+
+    private final ConcurrentSkipListMap<Long, Entry> pending = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextSeq = new AtomicLong();
+    private final LinkedBlockingQueue<Write> writes = new LinkedBlockingQueue<>();
+    private final Semaphore arrivals = new Semaphore(0);
+    private FileChannel logChannel;
+    // Log lines that no longer describe a pending entry: acknowledged entries and their acks
+    private final AtomicLong staleRecords = new AtomicLong();
+    private Thread writer;
+    private Thread dispatcher;
+    // Set under the monitor together with queueing STOP, so no write can land behind it
+    private boolean stopped;
+    // Only touched by the dispatcher
+    private String serviceToken;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder fsyncs = new LongAdder();
+
+    public ProjectManagerOutbox(
+            RestTemplate restTemplate,
+            ObjectMapper objectMapper,
+            KeycloakClientService clientService,
+            @Value("${project.management.base-url}") String projectManagementBaseUrl,
+            @Value("${identity.outbox.dir:data/outbox}") Path dir,
+            @Value("${identity.outbox.batch-size:50}") int batchSize,
+            @Value("${identity.outbox.initial-backoff:1s}") Duration initialBackoff,
+            @Value("${identity.outbox.compact-bytes:4194304}") long compactBytes
+    ) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.clientService = clientService;
+        this.projectManagementBaseUrl = projectManagementBaseUrl;
+        this.dir = dir;
+        this.batchSize = Math.max(1, batchSize);
+        this.initialBackoff = initialBackoff;
+        this.compactBytes = compactBytes;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(dir);
+        replay();
+        compact();
+        writer = Thread.ofVirtual().name("outbox-writer").start(this::writeLoop);
+        dispatcher = Thread.ofVirtual().name("outbox-dispatcher").start(this::dispatchLoop);
+        if (!pending.isEmpty()) {
+            log.info("📬 Outbox resumed with {} undelivered Project Manager updates", pending.size());
+            arrivals.release();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        dispatcher.interrupt();
+        // Let the writer finish what callers are waiting on; interrupting it would close the channel mid-write
+        synchronized (this) {
+            stopped = true;
+            writes.add(STOP);
+        }
+        try {
+            writer.join(Duration.ofSeconds(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logChannel.close();
+    }
+
+    /**
+     * Records a Project Manager call and returns once it is durable. The call itself happens later, with the
+     * service's own credentials.
+     *
+     * @param path path below {@code project.management.base-url}
+     * @param body request body, or null
+     * @throws IllegalStateException if the outbox is shutting down
+     */
+    public Entry enqueue(HttpMethod method, String path, Object body) {
+        Entry entry = new Entry(UUID.randomUUID().toString(), nextSeq.getAndIncrement(), Instant.now(),
+                method.name(), path, body != null ? objectMapper.valueToTree(body) : null);
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        synchronized (this) {
+            if (stopped) {
+                throw new IllegalStateException("Outbox is shutting down, Project Manager update not recorded");
+            }
+            writes.add(new Write(List.of(line(new Record("entry", entry, null))), List.of(entry), durable));
+        }
+        try {
+            durable.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while recording Project Manager update", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Cannot record Project Manager update: " + e.getCause().getMessage(), e.getCause());
+        }
+        return entry;
+    }
+
+    public OutboxStats stats() {
+        Map.Entry<Long, Entry> oldest = pending.firstEntry();
+        long size;
+        try {
+            size = logChannel.size();
+        } catch (IOException e) {
+            size = -1;
+        }
+        return new OutboxStats(
+                pending.size(),
+                oldest == null ? 0 : Duration.between(oldest.getValue().createdAt(), Instant.now()).toMillis(),
+                delivered.sum(),
+                rejected.sum(),
+                retries.sum(),
+                fsyncs.sum(),
+                size);
+    }
+
+    // ---------------- LOG ----------------
+    private void writeLoop() {
+        List<Write> batch = new ArrayList<>();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(writes.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            writes.drainTo(batch);
+            stopping = batch.remove(STOP);
+            try {
+                for (Write write : batch) {
+                    for (byte[] line : write.lines()) {
+                        ByteBuffer buffer = ByteBuffer.wrap(line);
+                        while (buffer.hasRemaining()) {
+                            logChannel.write(buffer);
+                        }
+                    }
+                }
+                logChannel.force(false);
+                fsyncs.increment();
+                for (Write write : batch) {
+                    write.entries().forEach(entry -> pending.put(entry.seq(), entry));
+                    write.durable().complete(null);
+                }
+                if (batch.stream().anyMatch(write -> !write.entries().isEmpty())) {
+                    arrivals.release();
+                }
+                maybeCompact();
+            } catch (IOException e) {
+                log.error("❌ Cannot write outbox log: {}", e.getMessage(), e);
+                batch.forEach(write -> write.durable().completeExceptionally(e));
+            }
+            batch.clear();
+        }
+        // Whatever is still queued was never written
+        writes.drainTo(batch);
+        batch.forEach(write -> write.durable().completeExceptionally(new IOException("Outbox is shutting down")));
+    }
+
+    private void replay() throws IOException {
+        Path file = dir.resolve(LOG_FILE);
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                Map<String, Long> seqById = new HashMap<>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Record record;
+                    try {
+                        record = objectMapper.readValue(line, Record.class);
+                    } catch (IOException e) {
+                        // A torn last line from a crash mid-write: its caller never got an answer
+                        log.warn("Skipping unreadable outbox record: {}", e.getMessage());
+                        continue;
+                    }
+                    if ("entry".equals(record.type())) {
+                        long seq = nextSeq.getAndIncrement();
+                        Entry entry = record.entry();
+                        pending.put(seq, new Entry(entry.id(), seq, entry.createdAt(), entry.method(), entry.path(),
+                                entry.body()));
+                        seqById.put(entry.id(), seq);
+                    } else if ("ack".equals(record.type())) {
+                        Long seq = seqById.remove(record.id());
+                        if (seq != null) {
+                            pending.remove(seq);
+                        }
+                    }
+                }
+            }
+        }
+        logChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void maybeCompact() throws IOException {
+        if (logChannel.size() > compactBytes && staleRecords.get() > pending.size()) {
+            compact();
+        }
+    }
+
+    // Rewrites the log with only the pending entries; runs before the writer starts or on the writer thread
+    private void compact() throws IOException {
+        Path file = dir.resolve(LOG_FILE);
+        Path tmp = dir.resolve(LOG_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Entry entry : pending.values()) {
+                out.write(ByteBuffer.wrap(line(new Record("entry", entry, null))));
+            }
+            out.force(false);
+        }
+        logChannel.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logChannel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        staleRecords.set(0);
+    }
+
+    private byte[] line(Record record) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(record);
+            byte[] line = Arrays.copyOf(json, json.length + 1);
+            line[json.length] = '\n';
+            return line;
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot serialize outbox record", e);
+        }
+    }
+
+    // ---------------- DISPATCH ----------------
+    private void dispatchLoop() {
+        Duration backoff = initialBackoff;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (pending.isEmpty()) {
+                    arrivals.tryAcquire(1, TimeUnit.SECONDS);
+                    arrivals.drainPermits();
+                    continue;
+                }
+
+                List<byte[]> acks = new ArrayList<>();
+                boolean blocked = false;
+                // A token lives about a minute in the master realm; one per batch keeps deliveries from outliving it
+                serviceToken = null;
+                for (Entry entry : pending.values().stream().limit(batchSize).toList()) {
+                    Outcome outcome = deliver(entry);
+                    if (outcome == Outcome.RETRY) {
+                        blocked = true;
+                        break;
+                    }
+                    if (outcome == Outcome.REJECTED) {
+                        Files.write(dir.resolve(REJECTED_FILE), line(new Record("entry", entry, null)),
+                                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    }
+                    acks.add(line(new Record("ack", null, entry.id())));
+                    pending.remove(entry.seq());
+                }
+                if (!acks.isEmpty()) {
+                    // Acks need not wait for the fsync: losing one only means a duplicate, idempotent delivery
+                    writes.add(new Write(acks, List.of(), new CompletableFuture<>()));
+                    staleRecords.addAndGet(2L * acks.size());
+                }
+
+                if (blocked) {
+                    retries.increment();
+                    Thread.sleep(backoff.toMillis() + ThreadLocalRandom.current().nextLong(backoff.toMillis() / 2 + 1));
+                    backoff = backoff.multipliedBy(2).compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff.multipliedBy(2);
+                } else {
+                    backoff = initialBackoff;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("Outbox dispatcher error: {}", e.getMessage(), e);
+                try {
+                    Thread.sleep(initialBackoff.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Outcome deliver(Entry entry) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Idempotency-Key", entry.id());
+        boolean freshToken = serviceToken == null;
+        try {
+            if (freshToken) {
+                serviceToken = clientService.getMasterToken();
+            }
+        } catch (RuntimeException e) {
+            log.warn("No service token for Project Manager {} {}: {}, will retry", entry.method(), entry.path(), e.getMessage());
+            return Outcome.RETRY;
+        }
+        headers.setBearerAuth(serviceToken);
+        if (entry.body() != null) {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+        }
+
+        try {
+            restTemplate.exchange(projectManagementBaseUrl + entry.path(), HttpMethod.valueOf(entry.method()),
+                    new HttpEntity<>(entry.body(), headers), String.class);
+            delivered.increment();
+            log.info("✅ Project Manager {} {} delivered", entry.method(), entry.path());
+            return Outcome.DELIVERED;
+        } catch (HttpStatusCodeException e) {
+            int status = e.getStatusCode().value();
+            if (e.getStatusCode().is5xxServerError() || status == 408 || status == 429) {
+                log.warn("Project Manager {} {} failed with {}, will retry", entry.method(), entry.path(), status);
+                return Outcome.RETRY;
+            }
+            if ((status == 401 || status == 403) && !freshToken) {
+                serviceToken = null;
+                log.warn("Project Manager refused the service token for {} {} with {}, retrying with a new one",
+                        entry.method(), entry.path(), status);
+                return deliver(entry);
+            }
+            rejected.increment();
+            log.error("❌ Project Manager rejected {} {} with {}: {}", entry.method(), entry.path(), status,
+                    e.getResponseBodyAsString());
+            return Outcome.REJECTED;
+        } catch (RestClientException e) {
+            log.warn("Project Manager unreachable for {} {}: {}, will retry", entry.method(), entry.path(), e.getMessage());
+            return Outcome.RETRY;
+        }
+    }
+}
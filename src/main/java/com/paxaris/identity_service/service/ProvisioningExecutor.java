@@ -0,0 +1,368 @@
+package com.paxaris.identity_service.service;
+
+import com.paxaris.identity_service.dto.ProvisioningStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Runs provisioning tasks on a fixed number of workers, away from request and signup threads.
+ * <p>
+ * Waiting tasks are queued per realm and workers take them round-robin across realms, so one tenant pushing
+ * a burst of archives cannot hold everybody else back. A task declares how much disk it needs; it only
+ * starts once the workspace volume keeps {@code min-free-disk} free after every running task's share, so a
+ * burst waits in the queue instead of filling the disk. A realm whose next task has to wait for disk does not
+ * hold up other realms whose tasks fit, and a task that would not fit even with nothing else running fails
+ * right away. When the queue is full, submissions are rejected, and callers give up after {@code max-wait}.
+ * <p>
+ * Each worker owns one workspace directory that is emptied before and after every task and reused, rather
+ * than a fresh temp directory per call.
+ */
+@Slf4j
+@Service
+public class ProvisioningExecutor {
+
+    private static final long DISK_RECHECK_MILLIS = 5_000;
+
+    @FunctionalInterface
+    public interface Job {
+        void run(Path workspace) throws Exception;
+    }
+
+    private static final class Task {
+        private final String realm;
+        private final long diskBytes;
+        private final Job job;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final long submittedAt = System.nanoTime();
+
+        private Task(String realm, long diskBytes, Job job) {
+            this.realm = realm;
+            this.diskBytes = diskBytes;
+            this.job = job;
+        }
+    }
+
+    private final int workerCount;
+    private final int capacity;
+    private final long minFreeBytes;
+    private final Path workspaceRoot;
+    private final Duration maxWait;
+    private final List<Thread> workers = new ArrayList<>();
+
+    // Queue state, guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<String, ArrayDeque<Task>> queues = new HashMap<>();
+    private final ArrayDeque<String> rotation = new ArrayDeque<>();
+    private int queued;
+    private long reservedBytes;
+    private boolean waitingForDisk;
+
+    private final AtomicInteger busy = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ProvisioningExecutor(
+            @Value("${identity.provisioning.workers:2}") int workers,
+            @Value("${identity.provisioning.queue-capacity:100}") int capacity,
+            @Value("${identity.provisioning.min-free-disk:2GB}") DataSize minFreeDisk,
+            @Value("${identity.provisioning.workspace-dir:data/provisioning/workspaces}") Path workspaceRoot,
+            @Value("${identity.provisioning.max-wait:15m}") Duration maxWait
+    ) {
+        this.workerCount = Math.max(1, workers);
+        this.capacity = Math.max(1, capacity);
+        this.minFreeBytes = minFreeDisk.toBytes();
+        this.workspaceRoot = workspaceRoot.toAbsolutePath().normalize();
+        this.maxWait = maxWait;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        for (int i = 0; i < workerCount; i++) {
+            Path workspace = Files.createDirectories(workspaceRoot.resolve("worker-" + i));
+            workers.add(Thread.ofVirtual().name("provisioning-" + i).start(() -> work(workspace)));
+        }
+        log.info("Provisioning executor started with {} workers in {}", workerCount, workspaceRoot);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.forEach(Thread::interrupt);
+        lock.lock();
+        try {
+            queues.values().forEach(queue -> queue.forEach(task ->
+                    task.result.completeExceptionally(new RejectedExecutionException("Provisioning executor stopped"))));
+            queues.clear();
+            rotation.clear();
+            queued = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues {@code job} for {@code realm} and waits up to {@code max-wait} for it to finish. A job still queued
+     * by then is withdrawn; one already running carries on, but the caller stops waiting for it.
+     *
+     * @param diskBytes disk space the job needs in its workspace while it runs
+     * @throws RejectedExecutionException if the queue is full or the workspace volume can never fit the job
+     */
+    public void run(String realm, long diskBytes, Job job) {
+        Task task = submit(realm, diskBytes, job);
+        try {
+            task.result.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            boolean started = !withdraw(task);
+            throw new RuntimeException("Provisioning of realm " + realm + " did not " + (started ? "finish" : "start")
+                    + " within " + maxWait, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            withdraw(task);
+            throw new RuntimeException("Interrupted while waiting for provisioning of realm " + realm, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    public ProvisioningStats stats() {
+        lock.lock();
+        try {
+            Map<String, Integer> byRealm = new TreeMap<>();
+            queues.forEach((realm, queue) -> byRealm.put(realm, queue.size()));
+            long startedCount = started.sum();
+            return new ProvisioningStats(
+                    workerCount,
+                    busy.get(),
+                    queued,
+                    capacity,
+                    byRealm,
+                    completed.sum(),
+                    failed.sum(),
+                    rejected.sum(),
+                    startedCount == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / startedCount,
+                    TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+                    usableBytes(),
+                    reservedBytes,
+                    waitingForDisk);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---------------- QUEUE ----------------
+    private Task submit(String realm, long diskBytes, Job job) {
+        Task task = new Task(realm, Math.max(0, diskBytes), job);
+        lock.lock();
+        try {
+            if (queued >= capacity) {
+                rejected.increment();
+                throw new RejectedExecutionException("Provisioning queue is full (" + capacity + " waiting), try again later");
+            }
+            long usable = usableBytes();
+            if (neverFits(task, usable)) {
+                rejected.increment();
+                throw tooLarge(task, usable);
+            }
+            ArrayDeque<Task> queue = queues.computeIfAbsent(realm, r -> new ArrayDeque<>());
+            if (queue.isEmpty()) {
+                rotation.addLast(realm);
+            }
+            queue.addLast(task);
+            queued++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return task;
+    }
+
+    // True if the task was still queued and will not run
+    private boolean withdraw(Task task) {
+        lock.lock();
+        try {
+            ArrayDeque<Task> queue = queues.get(task.realm);
+            if (queue == null || !queue.remove(task)) {
+                return false;
+            }
+            queued--;
+            if (queue.isEmpty()) {
+                queues.remove(task.realm);
+                rotation.remove(task.realm);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Next task whose disk share fits, from the first realm in the rotation that has one
+    private Task next() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                if (rotation.isEmpty()) {
+                    changed.await();
+                    continue;
+                }
+                Task task = pollFitting();
+                if (task != null) {
+                    reservedBytes += task.diskBytes;
+                    return task;
+                }
+                changed.await(DISK_RECHECK_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Walks the rotation for the first realm whose next task fits now. Realms waiting for disk keep their place,
+     * so they go first once running tasks release their share. Tasks that can no longer fit at all, e.g. because
+     * the volume filled up since they were queued, are failed instead of blocking their realm. Caller holds lock.
+     */
+    private Task pollFitting() {
+        long usable = usableBytes();
+        Task blocked = null;
+        Iterator<String> realms = rotation.iterator();
+        while (realms.hasNext()) {
+            String realm = realms.next();
+            ArrayDeque<Task> queue = queues.get(realm);
+            while (!queue.isEmpty() && neverFits(queue.peekFirst(), usable)) {
+                Task task = queue.pollFirst();
+                queued--;
+                rejected.increment();
+                task.result.completeExceptionally(tooLarge(task, usable));
+            }
+            if (queue.isEmpty()) {
+                queues.remove(realm);
+                realms.remove();
+                continue;
+            }
+            Task task = queue.peekFirst();
+            if (usable - reservedBytes - task.diskBytes < minFreeBytes) {
+                if (blocked == null) blocked = task;
+                continue;
+            }
+            realms.remove();
+            queue.pollFirst();
+            queued--;
+            if (queue.isEmpty()) {
+                queues.remove(realm);
+            } else {
+                rotation.addLast(realm);
+            }
+            waitingForDisk = false;
+            return task;
+        }
+        if (blocked != null && !waitingForDisk) {
+            log.warn("⏳ Provisioning paused: {} bytes usable, {} reserved, next task needs {}",
+                    usable, reservedBytes, blocked.diskBytes);
+        }
+        waitingForDisk = blocked != null;
+        return null;
+    }
+
+    // Would not fit even once every running task has released its share
+    private boolean neverFits(Task task, long usable) {
+        // Saturates: an unreadable volume reports Long.MAX_VALUE usable
+        long spare = usable > Long.MAX_VALUE - reservedBytes ? Long.MAX_VALUE : usable + reservedBytes;
+        return spare - task.diskBytes < minFreeBytes;
+    }
+
+    private RejectedExecutionException tooLarge(Task task, long usable) {
+        return new RejectedExecutionException("Provisioning of realm " + task.realm + " needs " + task.diskBytes
+                + " bytes of workspace, more than the volume can spare (" + usable + " usable, "
+                + reservedBytes + " reserved, " + minFreeBytes + " kept free)");
+    }
+
+    private void work(Path workspace) {
+        while (!Thread.currentThread().isInterrupted()) {
+            Task task;
+            try {
+                task = next();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long waited = System.nanoTime() - task.submittedAt;
+            started.increment();
+            waitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            busy.incrementAndGet();
+            Throwable failure = null;
+            try {
+                clean(workspace);
+                task.job.run(workspace);
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                clean(workspace);
+                busy.decrementAndGet();
+                release(task);
+            }
+            // Completed only once the workspace is free again, so callers never see a stale busy count
+            if (failure == null) {
+                completed.increment();
+                task.result.complete(null);
+            } else {
+                failed.increment();
+                task.result.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void release(Task task) {
+        lock.lock();
+        try {
+            reservedBytes -= task.diskBytes;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Free space that cannot be read does not hold provisioning back
+    private long usableBytes() {
+        try {
+            return Files.getFileStore(workspaceRoot).getUsableSpace();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static void clean(Path workspace) {
+        try (Stream<Path> walk = Files.walk(workspace)) {
+            walk.sorted(Comparator.reverseOrder())
+                    .filter(path -> !path.equals(workspace))
+                    .forEach(path -> {
+                        try {
+                            Files.delete(path);
+                        } catch (IOException ignored) {}
+                    });
+        } catch (IOException e) {
+            log.warn("Cannot clean provisioning workspace {}: {}", workspace, e.getMessage());
+        }
+    }
+}
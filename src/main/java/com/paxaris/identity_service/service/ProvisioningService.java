@@ -1,26 +1,69 @@
 package com.paxaris.identity_service.service;
 
+import com.paxaris.identity_service.service.ProvisioningStore.Manifest;
+import com.paxaris.identity_service.service.git.GitPack;
+import com.paxaris.identity_service.service.git.GitSmartHttp;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
 import java.net.HttpURLConnection;
+import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
+@Slf4j
 @Service
 public class ProvisioningService {
 
+    private static final String BRANCH = "refs/heads/main";
+    private static final int EXTRACT_EXPANSION = 4;
+
+    private record SourceFile(String path, boolean executable, long size, GitPack.Content content) {}
+
+    private record RemoteRepo(String name, URI uri, GitSmartHttp git, String head) {}
+
     private final String githubToken;
     private final String githubOrg;
+    private final String gitBaseUrl;
+    private final String githubApiUrl;
+    private final boolean extractArchive;
+    private final ProvisioningStore store;
+    private final ProvisioningExecutor executor;
+    // Pushes to one repository must not interleave: each one builds on the head and manifest of the last
+    private final Map<String, ReentrantLock> repoLocks = new ConcurrentHashMap<>();
+    // CPU-bound inflating and hashing of archive entries
+    private final ExecutorService archivePool;
+    private final HttpClient gitHttp = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
 
     public ProvisioningService(
             @Value("${github.token}") String githubToken,
-            @Value("${github.org}") String githubOrg
+            @Value("${github.org}") String githubOrg,
+            @Value("${github.git-url:https://github.com}") String gitBaseUrl,
+            @Value("${github.api-url:https://api.github.com}") String githubApiUrl,
+            @Value("${identity.provisioning.extract-archive:false}") boolean extractArchive,
+            @Value("${identity.provisioning.archive-threads:0}") int archiveThreads,
+            ProvisioningStore store,
+            ProvisioningExecutor executor
     ) {
         if (githubToken == null || githubToken.isBlank()) {
             throw new IllegalStateException("GITHUB_TOKEN is missing");
@@ -30,6 +73,13 @@ public class ProvisioningService {
         }
         this.githubToken = githubToken;
         this.githubOrg = githubOrg;
+        this.gitBaseUrl = gitBaseUrl;
+        this.githubApiUrl = githubApiUrl;
+        this.extractArchive = extractArchive;
+        this.store = store;
+        this.executor = executor;
+        int threads = archiveThreads > 0 ? archiveThreads : Runtime.getRuntime().availableProcessors();
+        this.archivePool = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("archive-", 0).daemon().factory());
     }
 
     public void provisionRepoAndPushZip(
@@ -37,21 +87,94 @@ public class ProvisioningService {
             String clientId,
             MultipartFile zipFile
     ) {
+        // ZipFile needs a seekable file to read the central directory, so the upload is copied into the workspace
+        executor.run(realmName, workspaceBytes(zipFile.getSize()) + zipFile.getSize(), workspace -> {
+            Path archive = workspace.resolve("archive.zip");
+            zipFile.transferTo(archive);
+            provision(realmName, clientId, archive, workspace);
+        });
+    }
 
-        String repoName = realmName + "-" + clientId;
+    /**
+     * Same as {@link #provisionRepoAndPushZip(String, String, MultipartFile)} for an archive already on disk,
+     * e.g. one kept by a signup job so the step can be retried after the upload request is gone.
+     */
+    public void provisionRepoAndPushZip(
+            String realmName,
+            String clientId,
+            Path zipFile
+    ) {
+        long size;
+        try {
+            size = Files.size(zipFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Provisioning failed: " + e.getMessage(), e);
+        }
+        executor.run(realmName, workspaceBytes(size), workspace -> provision(realmName, clientId, zipFile, workspace));
+    }
 
+    // Rough disk use of one run: the pack is about the size of the archive, extracted files a few times more
+    private long workspaceBytes(long archiveSize) {
+        return archiveSize * (extractArchive ? 1 + EXTRACT_EXPANSION : 1);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        archivePool.shutdownNow();
+    }
+
+    /**
+     * Pushes the archive's files to the {@code realm-clientId} repository. The manifest of the last push tells
+     * which objects the repository already has, so only new and changed files are sent; an archive identical to
+     * the last one is not even opened.
+     */
+    private void provision(String realmName, String clientId, Path archive, Path workspace) {
+        String repoName = realmName + "-" + clientId;
+        ReentrantLock lock = repoLocks.computeIfAbsent(repoName, name -> new ReentrantLock());
+        lock.lock();
         try {
-            createGitHubRepo(repoName);
-            Path tempDir = unzip(zipFile);
-            gitInitAddCommitPush(tempDir, repoName);
-            deleteDirectory(tempDir);
+            String archiveSha256 = ProvisioningStore.sha256(archive);
+            Manifest previous = store.find(repoName).orElse(null);
+            if (previous == null) {
+                createGitHubRepo(repoName);
+            }
+
+            URI remote = URI.create(gitBaseUrl + "/" + githubOrg + "/" + repoName + ".git");
+            GitSmartHttp git = new GitSmartHttp(gitHttp, GitSmartHttp.basicAuth("x-access-token", githubToken));
+            String head = git.advertisedRefs(remote).getOrDefault(BRANCH, GitPack.ZERO_ID);
+            // The manifest only describes the repository as long as nobody else pushed on top of it
+            if (previous != null && !previous.commit().equals(head)) {
+                log.info("{} moved to {} since the last provisioning, pushing everything", repoName, head);
+                previous = null;
+            }
+            if (previous != null && previous.archiveSha256().equals(archiveSha256)) {
+                log.info("♻️ Archive {} is already on {} as {}, nothing to push", archiveSha256, repoName, head);
+                return;
+            }
+
+            RemoteRepo repo = new RemoteRepo(repoName, remote, git, head);
+            try (ZipFile zip = new ZipFile(archive.toFile())) {
+                List<ZipEntry> entries = fileEntries(zip);
+                if (!extractArchive) {
+                    List<SourceFile> files = new ArrayList<>(entries.size());
+                    for (ZipEntry entry : entries) {
+                        files.add(new SourceFile(entry.getName(), false, entry.getSize(), () -> zip.getInputStream(entry)));
+                    }
+                    packAndPush(files, repo, archiveSha256, previous, workspace);
+                    return;
+                }
+                Path filesDir = extract(zip, entries, workspace.resolve("files"));
+                packAndPush(listFiles(filesDir), repo, archiveSha256, previous, workspace);
+            }
         } catch (Exception e) {
             throw new RuntimeException("Provisioning failed: " + e.getMessage(), e);
+        } finally {
+            lock.unlock();
         }
     }
 
     private void createGitHubRepo(String repoName) throws IOException {
-        String apiUrl = "https://api.github.com/user/repos"; // or org repos if org
+        String apiUrl = githubApiUrl + "/user/repos"; // or org repos if org
 
         String payload = """
         {
@@ -80,78 +203,153 @@ public class ProvisioningService {
             if (errorStream != null) {
                 errorMsg = new String(errorStream.readAllBytes(), StandardCharsets.UTF_8);
             }
+            // Created by an earlier run whose push never completed, or before manifests were kept
+            if (responseCode == 422 && errorMsg.contains("already exists")) {
+                log.info("GitHub repo {} already exists, reusing it", repoName);
+                return;
+            }
             System.out.println("GitHub API error: " + errorMsg);
             throw new IOException("GitHub repo creation failed: HTTP " + responseCode + " - " + errorMsg);
         }
     }
 
-    private Path unzip(MultipartFile zipFile) throws IOException {
-        Path tempDir = Files.createTempDirectory("repo-");
-
-        try (ZipInputStream zis = new ZipInputStream(zipFile.getInputStream())) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                Path path = tempDir.resolve(entry.getName());
-                if (entry.isDirectory()) {
-                    Files.createDirectories(path);
-                } else {
-                    Files.createDirectories(path.getParent());
-                    Files.copy(zis, path, StandardCopyOption.REPLACE_EXISTING);
-                }
-                zis.closeEntry();
+    // ---------------- ARCHIVE ----------------
+    /**
+     * File entries of the archive, from its central directory. Entry names become paths in the repository and,
+     * when extracting, on disk, so anything absolute or climbing out with ".." is rejected, as are the
+     * archive's own .git files.
+     */
+    static List<ZipEntry> fileEntries(ZipFile zip) throws IOException {
+        List<ZipEntry> entries = new ArrayList<>();
+        for (ZipEntry entry : Collections.list(zip.entries())) {
+            String name = entry.getName();
+            if (name.startsWith("/") || name.contains("\\")) {
+                throw new IOException("Archive entry '" + name + "' is not a relative path");
+            }
+            List<String> parts = Arrays.asList(name.split("/"));
+            if (parts.contains("..")) {
+                throw new IOException("Archive entry '" + name + "' points outside the repository");
+            }
+            if (entry.isDirectory() || parts.contains(".git")) {
+                continue;
+            }
+            if (entry.getSize() < 0) {
+                throw new IOException("Archive entry '" + name + "' has no size in the central directory");
             }
+            entries.add(entry);
         }
-        return tempDir;
+        return entries;
     }
 
-    private void gitInitAddCommitPush(Path repoDir, String repoName)
-            throws IOException, InterruptedException {
-
-        run(repoDir, "git", "init");
-        run(repoDir, "git", "config", "user.name", "Paxaris CI");
-        run(repoDir, "git", "config", "user.email", "ci@paxaris.com");
-        run(repoDir, "git", "branch", "-M", "main");
-
-        run(repoDir, "git", "remote", "add", "origin",
-                "https://github.com/" + githubOrg + "/" + repoName + ".git");
-
-        run(repoDir, "git", "add", ".");
-        run(repoDir, "git", "commit", "-m", "Initial commit");
+    /**
+     * Extracts the entries into {@code targetDir}, spread over the archive pool. Each entry is inflated
+     * straight into a {@link FileChannel}; directories are created up front so workers never race on them.
+     */
+    Path extract(ZipFile zip, List<ZipEntry> entries, Path targetDir) throws IOException {
+        Files.createDirectories(targetDir);
+        Map<ZipEntry, Path> targets = new LinkedHashMap<>();
+        Set<Path> dirs = new HashSet<>();
+        for (ZipEntry entry : entries) {
+            Path target = targetDir.resolve(entry.getName()).normalize();
+            if (!target.startsWith(targetDir) || target.equals(targetDir)) {
+                throw new IOException("Archive entry '" + entry.getName() + "' points outside the repository");
+            }
+            targets.put(entry, target);
+            if (dirs.add(target.getParent())) {
+                Files.createDirectories(target.getParent());
+            }
+        }
 
-        run(repoDir, "git", "push",
-                "https://x-access-token:" + githubToken +
-                        "@github.com/" + githubOrg + "/" + repoName + ".git",
-                "main");
+        runInParallel(targets.entrySet().stream().<Callable<Void>>map(target -> () -> {
+            try (ReadableByteChannel in = Channels.newChannel(zip.getInputStream(target.getKey()));
+                 FileChannel out = FileChannel.open(target.getValue(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long size = target.getKey().getSize();
+                long copied = 0;
+                while (copied < size) {
+                    long n = out.transferFrom(in, copied, size - copied);
+                    if (n <= 0) break;
+                    copied += n;
+                }
+                if (copied != size) {
+                    throw new IOException("Archive entry '" + target.getKey().getName() + "' is truncated");
+                }
+            }
+            return null;
+        }).toList());
+        log.info("Extracted {} files from the archive", targets.size());
+        return targetDir;
     }
 
-    private void run(Path dir, String... cmd)
-            throws IOException, InterruptedException {
-
-        ProcessBuilder pb = new ProcessBuilder(cmd);
-        pb.directory(dir.toFile());
-        pb.redirectErrorStream(true);
-
-        Process p = pb.start();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
+    private static List<SourceFile> listFiles(Path dir) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            List<SourceFile> files = new ArrayList<>();
+            for (Path file : walk.filter(Files::isRegularFile).toList()) {
+                String path = dir.relativize(file).toString().replace(File.separatorChar, '/');
+                files.add(new SourceFile(path, Files.isExecutable(file), Files.size(file), () -> Files.newInputStream(file)));
             }
+            return files;
         }
-        int exitCode = p.waitFor();
+    }
 
-        if (exitCode != 0) {
-            throw new IOException("Command failed (" + exitCode + "): " + String.join(" ", cmd));
+    private <T> List<T> runInParallel(List<Callable<T>> tasks) throws IOException {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            List<Future<T>> futures = archivePool.invokeAll(tasks);
+            try {
+                for (Future<T> future : futures) {
+                    results.add(future.get());
+                }
+            } finally {
+                futures.forEach(future -> future.cancel(true));
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing the archive", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException(e.getCause());
         }
     }
 
-    private void deleteDirectory(Path path) throws IOException {
-        Files.walk(path)
-                .sorted((a, b) -> b.compareTo(a))
-                .forEach(p -> {
-                    try {
-                        Files.delete(p);
-                    } catch (IOException ignored) {}
-                });
+    /**
+     * Packs the files into a single commit and pushes it to {@code main} over smart HTTP, in-process.
+     * If the branch already exists the commit goes on top of it, and objects listed in {@code previous} are
+     * left out of the pack. Blobs are hashed on the archive pool.
+     */
+    private void packAndPush(List<SourceFile> files, RemoteRepo repo, String archiveSha256, Manifest previous,
+                             Path workspace) throws IOException {
+        List<String> blobIds = runInParallel(files.stream()
+                .<Callable<String>>map(file -> () -> GitPack.hashBlob(file.size(), file.content()))
+                .toList());
+        GitPack pack = new GitPack();
+        for (int i = 0; i < files.size(); i++) {
+            SourceFile file = files.get(i);
+            pack.addFile(file.path(), file.executable(), file.size(), blobIds.get(i), file.content());
+        }
+
+        String tree = pack.tree();
+        if (previous != null && previous.tree().equals(tree)) {
+            // A different archive with the same files, e.g. re-zipped: the repository is already up to date
+            store.save(new Manifest(repo.name(), archiveSha256, previous.commit(), tree, previous.objects(), Instant.now()));
+            log.info("♻️ Files of archive {} are already on {} as {}, nothing to push", archiveSha256, repo.name(), repo.head());
+            return;
+        }
+        if (previous != null) {
+            pack.omit(previous.objects());
+        }
+
+        String message = repo.head().equals(GitPack.ZERO_ID) ? "Initial commit" : "Update project archive";
+        String commit = pack.commit(repo.head(), message, "Paxaris CI", "ci@paxaris.com", Instant.now());
+
+        Path packFile = workspace.resolve("push.pack");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(packFile))) {
+            pack.writePack(out);
+        }
+        repo.git().push(repo.uri(), BRANCH, repo.head(), commit, packFile);
+        log.info("Pushed {} files ({} of {} objects new) to {} as {}",
+                files.size(), pack.objectCount(), pack.objectIds().size(), repo.name(), commit);
+        store.save(new Manifest(repo.name(), archiveSha256, commit, tree, pack.objectIds(), Instant.now()));
     }
 }
@@ -0,0 +1,96 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * What was last pushed to each provisioned repository, keyed by content hash: the SHA-256 of the archive and
+ * the git ids of every file, tree and commit in it. Git ids are content hashes themselves, so two archives
+ * sharing a file share its blob id and the file is never pushed twice.
+ * <p>
+ * One manifest per repository, under {@code <store-dir>/repos/<repo>.json}, replaced atomically after a
+ * successful push. A missing or stale manifest only costs a full push.
+ */
+@Slf4j
+@Component
+public class ProvisioningStore {
+
+    public record Manifest(String repository,
+                           String archiveSha256,
+                           String commit,
+                           String tree,
+                           Set<String> objects,
+                           Instant pushedAt) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Path reposDir;
+
+    public ProvisioningStore(
+            ObjectMapper objectMapper,
+            @Value("${identity.provisioning.store-dir:data/provisioning}") Path storeDir
+    ) {
+        this.objectMapper = objectMapper;
+        this.reposDir = storeDir.resolve("repos");
+    }
+
+    public Optional<Manifest> find(String repository) {
+        Path file = manifestFile(repository);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(file.toFile(), Manifest.class));
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable provisioning manifest {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public void save(Manifest manifest) throws IOException {
+        Path file = manifestFile(manifest.repository());
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, objectMapper.writeValueAsBytes(manifest));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private Path manifestFile(String repository) {
+        Path file = reposDir.resolve(repository + ".json").normalize();
+        if (!file.getParent().equals(reposDir.normalize())) {
+            throw new IllegalArgumentException("Invalid repository name: " + repository);
+        }
+        return file;
+    }
+}
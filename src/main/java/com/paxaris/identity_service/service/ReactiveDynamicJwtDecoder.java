@@ -0,0 +1,44 @@
+package com.paxaris.identity_service.service;
+
+import org.springframework.security.oauth2.jwt.*;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reactive variant of {@link DynamicJwtDecoder}.
+ * JWKS documents are fetched with a non-blocking client, so validation never parks the request thread. The
+ * client comes from the shared builder, so JWKS fetches pass the outbound guards like the blocking ones.
+ */
+@Component
+public class ReactiveDynamicJwtDecoder implements ReactiveJwtDecoder {
+
+    private final Map<String, ReactiveJwtDecoder> decoderCache = new ConcurrentHashMap<>();
+    private final WebClient webClient;
+
+    public ReactiveDynamicJwtDecoder(WebClient.Builder webClientBuilder) {
+        this.webClient = webClientBuilder.build();
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) throws JwtException {
+        String issuer;
+        try {
+            issuer = JwtIssuers.issuerOf(token);
+        } catch (JwtException e) {
+            return Mono.error(e);
+        }
+        return decoderCache
+                .computeIfAbsent(issuer, this::buildDecoder)
+                .decode(token);
+    }
+
+    private ReactiveJwtDecoder buildDecoder(String issuer) {
+        return NimbusReactiveJwtDecoder.withJwkSetUri(JwtIssuers.jwkSetUri(issuer))
+                .webClient(webClient)
+                .build();
+    }
+}
@@ -0,0 +1,46 @@
+package com.paxaris.identity_service.service;
+
+import com.paxaris.identity_service.dto.RoleCreationRequest;
+import com.paxaris.identity_service.dto.RoleRequest;
+import com.paxaris.identity_service.dto.UrlEntry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of {@link KeycloakClientService}.
+ * Every call is backed by {@code WebClient}, so nothing here parks a thread while Keycloak answers.
+ */
+public interface ReactiveKeycloakClientService {
+
+    // Token operations
+    Mono<String> getMasterToken();
+    Mono<Map<String, Object>> getMyRealmToken(String username, String password, String clientId, String realm);
+    Mono<Boolean> validateToken(String realm, String token);
+
+    // Realm operations
+    Mono<Void> createRealm(String realmName, String token);
+    Flux<Map<String, Object>> getAllRealms(String token);
+
+    // Client operations
+    Mono<String> createClient(String realm, String clientId, boolean isPublicClient, String token);
+    Flux<Map<String, Object>> getAllClients(String realm, String token);
+    Mono<String> getClientSecret(String realm, String clientUUID, String token);
+    Mono<String> getClientUUID(String realm, String clientName, String token);
+
+    // User operations
+    Mono<String> createUser(String realm, String token, Map<String, Object> userPayload);
+    Flux<Map<String, Object>> getAllUsers(String realm, String token);
+
+    // Role operations
+    Mono<Boolean> createRole(String realm, String clientUUID, RoleCreationRequest role, String token);
+    Flux<Map<String, Object>> getAllRoles(String realm, String clientName, String token);
+
+    // Role assignment operations
+    Mono<Void> assignClientRole(String realm, String username, String clientName, String roleName, String token);
+
+    // Project Manager operations
+    Mono<Void> saveProjectRole(RoleRequest roleRequest);
+    Flux<UrlEntry> getAllowedUrls(RoleRequest roleRequest);
+}
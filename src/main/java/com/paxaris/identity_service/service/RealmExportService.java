@@ -0,0 +1,354 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.paxaris.identity_service.dto.ListingQuery;
+import com.paxaris.identity_service.dto.RealmExportStatus;
+import com.paxaris.identity_service.dto.RealmExportStatus.Status;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Snapshots a realm's users, clients and roles to a gzip-compressed NDJSON file for audit and disaster recovery.
+ * <p>
+ * Records are read page by page from the Keycloak admin API and written straight through a JSON generator,
+ * gzip and a {@link FileChannel}, so memory use does not depend on realm size. Each line is
+ * {@code {"type": "...", "record": {...}}}. The file is written under a {@code .part} name, forced to disk and
+ * renamed on completion, so a snapshot that exists is always complete. Only {@code concurrency} exports run at
+ * once and each reads one page at a time, which keeps the load an export puts on Keycloak predictable.
+ * <p>
+ * Every export's status is kept next to the snapshots as {@code <id>.json}, so finished exports can still be
+ * looked up and downloaded after a restart; exports cut short by a restart are reported as failed. Exports
+ * older than {@code retention} are deleted with their snapshot on startup and whenever a new export starts.
+ */
+@Slf4j
+@Service
+public class RealmExportService {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    // Master tokens are short-lived, so a fresh one is fetched for every window of this many pages
+    private static final int PAGES_PER_TOKEN = 50;
+    private static final int GZIP_BUFFER = 64 * 1024;
+    private static final String STATUS_SUFFIX = ".json";
+
+    private final KeycloakClientService clientService;
+    private final ObjectMapper objectMapper;
+    private final Path exportDir;
+    private final int pageSize;
+    private final Duration retention;
+    private final Semaphore slots;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Progress> exports = new ConcurrentHashMap<>();
+
+    public RealmExportService(
+            KeycloakClientService clientService,
+            ObjectMapper objectMapper,
+            @Value("${identity.export.dir:data/exports}") Path exportDir,
+            @Value("${identity.export.page-size:200}") int pageSize,
+            @Value("${identity.export.concurrency:1}") int concurrency,
+            @Value("${identity.export.retention:30d}") Duration retention
+    ) {
+        this.clientService = clientService;
+        this.objectMapper = objectMapper;
+        this.exportDir = exportDir;
+        this.pageSize = pageSize;
+        this.retention = retention;
+        this.slots = new Semaphore(Math.max(1, concurrency));
+    }
+
+    public RealmExportStatus start(String realm) {
+        if (!realm.matches("[A-Za-z0-9._-]+") || realm.startsWith(".")) {
+            throw new IllegalArgumentException("Realm name cannot be used as a file name: " + realm);
+        }
+        pruneExpired();
+        Progress progress = new Progress(UUID.randomUUID().toString(), realm);
+        exports.put(progress.id, progress);
+        persist(progress);
+        workers.submit(() -> {
+            try {
+                slots.acquire();
+                try {
+                    export(progress);
+                } finally {
+                    slots.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                progress.fail("Interrupted");
+                persist(progress);
+            }
+        });
+        log.info("📦 Export '{}' of realm '{}' queued", progress.id, realm);
+        return progress.snapshot();
+    }
+
+    public Optional<RealmExportStatus> status(String id) {
+        return Optional.ofNullable(exports.get(id)).map(Progress::snapshot);
+    }
+
+    /**
+     * @return the snapshot file of a completed export
+     */
+    public Optional<Path> file(String id) {
+        return Optional.ofNullable(exports.get(id))
+                .filter(progress -> progress.status == Status.COMPLETED)
+                .map(progress -> progress.file)
+                .filter(Files::exists);
+    }
+
+    // ---------------- RECOVERY ----------------
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPersistedExports() {
+        if (!Files.isDirectory(exportDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(exportDir)) {
+            files.filter(file -> file.getFileName().toString().endsWith(STATUS_SUFFIX)).forEach(file -> {
+                try {
+                    Progress progress = new Progress(objectMapper.readValue(file.toFile(), RealmExportStatus.class));
+                    if (progress.status == Status.QUEUED || progress.status == Status.RUNNING) {
+                        progress.fail("Interrupted by a restart");
+                        persist(progress);
+                    }
+                    exports.putIfAbsent(progress.id, progress);
+                } catch (IOException e) {
+                    log.error("Cannot read export status {}: {}", file, e.getMessage());
+                }
+            });
+            // Snapshots whose export never finished
+            try (Stream<Path> parts = Files.list(exportDir)) {
+                parts.filter(file -> file.getFileName().toString().endsWith(".part")).forEach(RealmExportService::deleteQuietly);
+            }
+        } catch (IOException e) {
+            log.error("Cannot scan exports in {}: {}", exportDir, e.getMessage(), e);
+        }
+        pruneExpired();
+        log.info("📦 {} realm exports on record in {}", exports.size(), exportDir);
+    }
+
+    private void pruneExpired() {
+        Instant expiry = Instant.now().minus(retention);
+        exports.values().removeIf(progress -> {
+            if (progress.finishedAt == null || !progress.finishedAt.isBefore(expiry)) {
+                return false;
+            }
+            if (progress.file != null) {
+                deleteQuietly(progress.file);
+            }
+            deleteQuietly(statusFile(progress.id));
+            log.info("🧹 Export '{}' of realm '{}' expired and was deleted", progress.id, progress.realm);
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void export(Progress progress) {
+        String realm = progress.realm;
+        progress.status = Status.RUNNING;
+        progress.startedAt = Instant.now();
+        // The id keeps two exports of a realm started within the same second apart
+        Path target = exportDir.resolve(realm + "-" + FILE_TIMESTAMP.format(progress.startedAt) + "-" + progress.id + ".ndjson.gz");
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        log.info("📦 Exporting realm '{}' to {}", realm, target);
+
+        try {
+            Files.createDirectories(exportDir);
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputStream counted = new CountingOutputStream(Channels.newOutputStream(channel), progress.bytesWritten);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(counted, GZIP_BUFFER);
+                     JsonGenerator generator = objectMapper.getFactory().createGenerator(gzip)) {
+                    // Lines are separated explicitly; Jackson's default root separator is a space
+                    generator.setRootValueSeparator(null);
+
+                    List<String> clientUUIDs = new ArrayList<>();
+                    walkInWindows((token, query, sink) -> clientService.forEachUser(realm, token, query, sink),
+                            line(generator, "user", progress.users));
+                    walkInWindows((token, query, sink) -> clientService.forEachClient(realm, token, query, sink),
+                            line(generator, "client", progress.clients).andThen(client -> clientUUIDs.add(client.path("id").asText())));
+                    walkInWindows((token, query, sink) -> clientService.forEachRealmRole(realm, token, query, sink),
+                            line(generator, "realm-role", progress.roles));
+                    for (String clientUUID : clientUUIDs) {
+                        walkInWindows((token, query, sink) -> clientService.forEachClientRole(realm, clientUUID, token, query, sink),
+                                line(generator, "client-role", progress.roles));
+                    }
+                }
+                channel.force(true);
+            }
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            progress.file = target;
+            progress.finishedAt = Instant.now();
+            progress.status = Status.COMPLETED;
+            persist(progress);
+            log.info("✅ Export of realm '{}' finished: users={}, clients={}, roles={}, {} bytes",
+                    realm, progress.users.get(), progress.clients.get(), progress.roles.get(), progress.bytesWritten.get());
+        } catch (Exception e) {
+            log.error("💥 Export of realm '{}' failed: {}", realm, e.getMessage(), e);
+            progress.fail(e.getMessage());
+            persist(progress);
+            deleteQuietly(part);
+        }
+    }
+
+    // ---------------- STORAGE ----------------
+    private Path statusFile(String id) {
+        return exportDir.resolve(id + STATUS_SUFFIX);
+    }
+
+    // Write-then-rename, so a crash mid-write never leaves a truncated status file behind
+    private void persist(Progress progress) {
+        Path target = statusFile(progress.id);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(exportDir);
+            Files.write(tmp, objectMapper.writeValueAsBytes(progress.snapshot()));
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not persist status of export '{}': {}", progress.id, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Consumer<ObjectNode> line(JsonGenerator generator, String type, AtomicLong counter) {
+        return record -> {
+            ObjectNode line = objectMapper.createObjectNode();
+            line.put("type", type);
+            line.set("record", record);
+            try {
+                generator.writeTree(line);
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            counter.incrementAndGet();
+        };
+    }
+
+    private void walkInWindows(Walker walker, Consumer<ObjectNode> sink) {
+        int window = pageSize * PAGES_PER_TOKEN;
+        int first = 0;
+        while (true) {
+            ListingQuery query = ListingQuery.all(pageSize).range(first, window);
+            long count = walker.walk(clientService.getMasterToken(), query, sink);
+            if (count < window) {
+                return;
+            }
+            first += window;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Walker {
+        long walk(String token, ListingQuery query, Consumer<ObjectNode> sink);
+    }
+
+    private static final class Progress {
+        private final String id;
+        private final String realm;
+        private final AtomicLong users = new AtomicLong();
+        private final AtomicLong clients = new AtomicLong();
+        private final AtomicLong roles = new AtomicLong();
+        private final AtomicLong bytesWritten = new AtomicLong();
+        private volatile Status status = Status.QUEUED;
+        private volatile Path file;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        Progress(String id, String realm) {
+            this.id = id;
+            this.realm = realm;
+        }
+
+        Progress(RealmExportStatus persisted) {
+            this(persisted.id(), persisted.realm());
+            users.set(persisted.users());
+            clients.set(persisted.clients());
+            roles.set(persisted.roles());
+            bytesWritten.set(persisted.bytesWritten());
+            status = persisted.status();
+            file = persisted.file() != null ? Path.of(persisted.file()) : null;
+            startedAt = persisted.startedAt();
+            finishedAt = persisted.finishedAt();
+            error = persisted.error();
+        }
+
+        void fail(String message) {
+            error = message;
+            finishedAt = Instant.now();
+            status = Status.FAILED;
+        }
+
+        RealmExportStatus snapshot() {
+            return new RealmExportStatus(id, realm, status, users.get(), clients.get(), roles.get(), bytesWritten.get(),
+                    file != null ? file.toString() : null, startedAt, finishedAt, error);
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private final AtomicLong count;
+
+        CountingOutputStream(OutputStream out, AtomicLong count) {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count.addAndGet(len);
+        }
+
+        // The channel is forced and closed by its owner after the gzip trailer is written
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.paxaris.identity_service.service;
+
+import com.paxaris.identity_service.dto.ListingQuery;
+import com.paxaris.identity_service.dto.RoleCreationRequest;
+import com.paxaris.identity_service.dto.RoleReconciliationAction;
+import com.paxaris.identity_service.dto.RoleReconciliationAction.Action;
+import com.paxaris.identity_service.dto.RoleReconciliationReport;
+import com.paxaris.identity_service.dto.RoleRequest;
+import com.paxaris.identity_service.service.impl.BoundedParallel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Brings a client's roles in Keycloak in line with the roles the Project Manager holds for the same product.
+ * Both sides are fetched in bulk, diffed by role name in memory, and only the differences are written back:
+ * roles missing from Keycloak are created, roles whose description differs are updated, and roles Keycloak
+ * has but the Project Manager does not are deleted, except for those listed in {@code keep-roles}.
+ * <p>
+ * Deletes are the one change that cannot be undone, so a run that would delete roles is refused unless the
+ * caller passes {@code allowDeletes} whenever the Project Manager returned no roles at all (an outage or a
+ * wrong product name looks exactly like that) or more than {@code max-deletes} roles would go.
+ */
+@Slf4j
+@Service
+public class RoleReconciliationService {
+
+    private static final int PAGE_SIZE = 100;
+
+    private final KeycloakClientService clientService;
+    private final RestTemplate restTemplate;
+    private final String projectManagementBaseUrl;
+    private final String projectManagerRolesPath;
+    private final Set<String> keepRoles;
+    private final int parallelism;
+    private final Duration deadline;
+    private final int maxDeletes;
+
+    public RoleReconciliationService(
+            KeycloakClientService clientService,
+            RestTemplate restTemplate,
+            @Value("${project.management.base-url}") String projectManagementBaseUrl,
+            @Value("${identity.reconcile.pm-roles-path:/project/roles/{realm}/{product}}") String projectManagerRolesPath,
+            @Value("${identity.reconcile.keep-roles:uma_protection}") Set<String> keepRoles,
+            @Value("${keycloak.bulk.parallelism:8}") int parallelism,
+            @Value("${keycloak.bulk.deadline:60s}") Duration deadline,
+            @Value("${identity.reconcile.max-deletes:10}") int maxDeletes
+    ) {
+        this.clientService = clientService;
+        this.restTemplate = restTemplate;
+        this.projectManagementBaseUrl = projectManagementBaseUrl;
+        this.projectManagerRolesPath = projectManagerRolesPath;
+        this.keepRoles = keepRoles;
+        this.parallelism = parallelism;
+        this.deadline = deadline;
+        this.maxDeletes = maxDeletes;
+    }
+
+    public RoleReconciliationReport reconcile(String realm, String clientName, String token, boolean dryRun, boolean allowDeletes) {
+        log.info("🔄 Reconciling roles of client '{}' in realm '{}' (dryRun={})", clientName, realm, dryRun);
+
+        Map<String, String> wanted = projectManagerRoles(realm, clientName, token);
+        Map<String, String> actual = new HashMap<>();
+        clientService.forEachRole(realm, clientName, token, ListingQuery.all(PAGE_SIZE), role ->
+                actual.put(role.path("name").asText(), role.path("description").asText("")));
+
+        List<RoleReconciliationAction> plan = new ArrayList<>();
+        wanted.forEach((name, description) -> {
+            if (!actual.containsKey(name)) {
+                plan.add(RoleReconciliationAction.planned(name, Action.CREATE, description));
+            } else if (!actual.get(name).equals(description)) {
+                plan.add(RoleReconciliationAction.planned(name, Action.UPDATE, description));
+            }
+        });
+        actual.keySet().stream()
+                .filter(name -> !wanted.containsKey(name) && !keepRoles.contains(name))
+                .forEach(name -> plan.add(RoleReconciliationAction.planned(name, Action.DELETE, null)));
+        plan.sort(Comparator.comparing(RoleReconciliationAction::action).thenComparing(RoleReconciliationAction::role));
+
+        int unchanged = (int) wanted.keySet().stream().filter(actual::containsKey).count()
+                - (int) plan.stream().filter(a -> a.action() == Action.UPDATE).count();
+        log.info("Role diff for client '{}': {} to change, {} unchanged", clientName, plan.size(), unchanged);
+
+        long deletes = plan.stream().filter(a -> a.action() == Action.DELETE).count();
+        if (!dryRun && !allowDeletes && deletes > 0 && (wanted.isEmpty() || deletes > maxDeletes)) {
+            log.warn("⚠️ Refusing to delete {} roles of client '{}' in realm '{}' (Project Manager lists {})",
+                    deletes, clientName, realm, wanted.size());
+            throw new IllegalStateException("Reconciliation would delete " + deletes + " roles while the Project Manager lists "
+                    + wanted.size() + "; review a dry run and repeat with allowDeletes=true");
+        }
+
+        List<RoleReconciliationAction> actions = dryRun || plan.isEmpty()
+                ? plan
+                : apply(realm, clientService.getClientUUID(realm, clientName, token), plan, token);
+
+        return new RoleReconciliationReport(realm, clientName, dryRun, wanted.size(), actual.size(), unchanged, actions);
+    }
+
+    private List<RoleReconciliationAction> apply(String realm, String clientUUID, List<RoleReconciliationAction> plan, String token) {
+        return BoundedParallel.map(plan, parallelism, deadline,
+                action -> {
+                    RoleCreationRequest role = new RoleCreationRequest();
+                    role.setName(action.role());
+                    role.setDescription(action.description());
+                    boolean ok = switch (action.action()) {
+                        case CREATE -> clientService.createRole(realm, clientUUID, role, token);
+                        case UPDATE -> clientService.updateRole(realm, clientUUID, action.role(), role, token);
+                        case DELETE -> clientService.deleteRole(realm, clientUUID, action.role(), token);
+                    };
+                    return ok ? action.applied() : action.failed("Keycloak rejected the " + action.action() + " call");
+                },
+                (action, error) -> action.failed(error.getMessage()));
+    }
+
+    // Role name -> description as the Project Manager sees it; a role listed more than once keeps its first entry
+    private Map<String, String> projectManagerRoles(String realm, String product, String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+
+        List<RoleRequest> roles = restTemplate.exchange(
+                projectManagementBaseUrl + projectManagerRolesPath,
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
+                new ParameterizedTypeReference<List<RoleRequest>>() {},
+                Map.of("realm", realm, "product", product)
+        ).getBody();
+
+        Map<String, String> byName = new LinkedHashMap<>();
+        for (RoleRequest role : roles != null ? roles : List.<RoleRequest>of()) {
+            String name = role.getRoleName() != null ? role.getRoleName() : role.getName();
+            if (name != null && !name.isBlank()) {
+                byName.putIfAbsent(name, role.getDescription() != null ? role.getDescription() : "");
+            }
+        }
+        return byName;
+    }
+}
@@ -0,0 +1,402 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paxaris.identity_service.dto.SignupJob;
+import com.paxaris.identity_service.dto.SignupJob.Step;
+import com.paxaris.identity_service.dto.SignupJob.StepState;
+import com.paxaris.identity_service.dto.SignupJob.StepStatus;
+import com.paxaris.identity_service.dto.SignupRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Runs signups in the background as a persisted state machine.
+ * Each job lives in its own directory: {@code job.json} holds the step states and is rewritten atomically
+ * after every transition, {@code request.json} holds the signup request, with the admin password only until
+ * the admin user exists or the job fails, and {@code archive.zip} holds the uploaded project until the
+ * repository is pushed. On startup every unfinished job is picked up again and continues from its first step
+ * that is not done.
+ * <p>
+ * An attempt interrupted by a restart, or one that failed after Keycloak had already acted, may have
+ * landed anyway, so steps check Keycloak before creating anything. The realm is looked up only when
+ * its step runs again: on a first attempt an existing realm belongs to someone else and is a conflict.
+ * The client and admin user are always looked up first, because anything inside the realm was created
+ * by this job.
+ */
+@Slf4j
+@Service
+public class SignupJobService {
+
+    private static final String JOB_FILE = "job.json";
+    private static final String REQUEST_FILE = "request.json";
+    private static final String ARCHIVE_FILE = "archive.zip";
+
+    private final KeycloakClientService clientService;
+    private final ProvisioningService provisioningService;
+    private final UploadService uploadService;
+    private final ObjectMapper objectMapper;
+    private final Path jobsDir;
+    private final Duration retention;
+    private final Semaphore slots;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    // Job id to the run handling it
+    private final Map<String, Object> active = new ConcurrentHashMap<>();
+
+    public SignupJobService(
+            KeycloakClientService clientService,
+            ProvisioningService provisioningService,
+            UploadService uploadService,
+            ObjectMapper objectMapper,
+            @Value("${identity.signup.jobs-dir:data/signup-jobs}") Path jobsDir,
+            @Value("${identity.signup.jobs-retention:7d}") Duration retention,
+            @Value("${identity.signup.concurrency:4}") int concurrency
+    ) {
+        this.clientService = clientService;
+        this.provisioningService = provisioningService;
+        this.uploadService = uploadService;
+        this.objectMapper = objectMapper;
+        this.jobsDir = jobsDir;
+        this.retention = retention;
+        this.slots = new Semaphore(Math.max(1, concurrency));
+    }
+
+    // ---------------- API ----------------
+    public SignupJob submit(SignupRequest request, MultipartFile archive) throws IOException {
+        return submit(request, archive::transferTo);
+    }
+
+    /**
+     * Submits a signup whose archive was sent beforehand through {@link UploadService}; the completed upload
+     * is moved into the job directory, so it is never copied.
+     */
+    public SignupJob submit(SignupRequest request, String uploadId) throws IOException {
+        return submit(request, target -> uploadService.claim(uploadId, target));
+    }
+
+    @FunctionalInterface
+    private interface ArchiveSource {
+        void writeTo(Path target) throws IOException;
+    }
+
+    private SignupJob submit(SignupRequest request, ArchiveSource archive) throws IOException {
+        clientService.applySignupDefaults(request);
+
+        SignupJob job = new SignupJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setRealmName(request.getRealmName());
+        job.setClientId(request.getClientId());
+        job.setCreatedAt(Instant.now());
+        for (Step step : Step.values()) {
+            job.getSteps().put(step, new StepState());
+        }
+
+        Path dir = Files.createDirectories(jobsDir.resolve(job.getId()));
+        try {
+            archive.writeTo(dir.resolve(ARCHIVE_FILE));
+        } catch (IOException | RuntimeException e) {
+            try {
+                deleteJobDir(dir);
+            } catch (IOException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            throw e;
+        }
+        writeAtomically(dir.resolve(REQUEST_FILE), objectMapper.writeValueAsBytes(request));
+        save(job);
+
+        log.info("📝 Signup job '{}' accepted for realm '{}'", job.getId(), job.getRealmName());
+        schedule(job);
+        return job;
+    }
+
+    public Optional<SignupJob> find(String id) {
+        Path file = jobsDir.resolve(id).normalize().resolve(JOB_FILE);
+        if (!file.startsWith(jobsDir.normalize()) || !Files.exists(file)) {
+            return Optional.empty();
+        }
+        return Optional.of(load(file));
+    }
+
+    /**
+     * Re-runs a failed job from its failed step; completed steps are not repeated. A failed job no longer has
+     * the admin password, so it has to be given again if the admin user does not exist yet.
+     *
+     * @throws IllegalArgumentException if the job needs the admin password and none is given
+     */
+    public Optional<SignupJob> retry(String id, String adminPassword) {
+        return find(id).map(job -> {
+            if (job.getStatus() == SignupJob.Status.FAILED) {
+                if (!job.getSteps().get(Step.ADMIN_USER).isFinished()) {
+                    supplyPassword(job, adminPassword);
+                }
+                job.getSteps().values().stream()
+                        .filter(state -> state.getStatus() == StepStatus.FAILED)
+                        .forEach(state -> state.setStatus(StepStatus.PENDING));
+                job.setStatus(SignupJob.Status.PENDING);
+                job.setError(null);
+                save(job);
+                schedule(job);
+            }
+            return job;
+        });
+    }
+
+    // ---------------- RECOVERY ----------------
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        if (!Files.isDirectory(jobsDir)) {
+            return;
+        }
+        Instant expiry = Instant.now().minus(retention);
+        try (Stream<Path> dirs = Files.list(jobsDir)) {
+            dirs.map(dir -> dir.resolve(JOB_FILE)).filter(Files::exists).forEach(file -> {
+                try {
+                    SignupJob job = load(file);
+                    switch (job.getStatus()) {
+                        case PENDING, RUNNING -> {
+                            log.info("🔁 Resuming signup job '{}' for realm '{}'", job.getId(), job.getRealmName());
+                            schedule(job);
+                        }
+                        case SUCCEEDED, FAILED -> {
+                            if (job.getUpdatedAt() != null && job.getUpdatedAt().isBefore(expiry)) {
+                                deleteJobDir(file.getParent());
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    log.error("Cannot read signup job {}: {}", file, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.error("Cannot scan signup jobs in {}: {}", jobsDir, e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Running jobs stay RUNNING on disk and are resumed on the next start
+        workers.shutdownNow();
+    }
+
+    // ---------------- EXECUTION ----------------
+    private void schedule(SignupJob job) {
+        Object run = new Object();
+        if (active.putIfAbsent(job.getId(), run) != null) {
+            return;
+        }
+        workers.submit(() -> {
+            try {
+                slots.acquire();
+                try {
+                    run(job, run);
+                } finally {
+                    slots.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // Only if no retry has taken over the job since it finished
+                active.remove(job.getId(), run);
+            }
+        });
+    }
+
+    private void run(SignupJob job, Object run) {
+        Path dir = jobsDir.resolve(job.getId());
+        job.setStatus(SignupJob.Status.RUNNING);
+        save(job);
+
+        for (Step step : Step.values()) {
+            StepState state = job.getSteps().get(step);
+            if (state.isFinished()) {
+                continue;
+            }
+            state.setStatus(StepStatus.RUNNING);
+            state.setAttempts(state.getAttempts() + 1);
+            state.setStartedAt(Instant.now());
+            state.setMessage(null);
+            save(job);
+
+            try {
+                execute(step, job, dir, state.getAttempts() > 1);
+                if (state.getStatus() == StepStatus.RUNNING) {
+                    state.setStatus(StepStatus.DONE);
+                }
+                state.setFinishedAt(Instant.now());
+                log.info("✅ Signup job '{}': step {} done", job.getId(), step);
+            } catch (Exception e) {
+                log.error("💥 Signup job '{}' failed at step {}: {}", job.getId(), step, e.getMessage(), e);
+                state.setStatus(StepStatus.FAILED);
+                state.setFinishedAt(Instant.now());
+                state.setMessage(e.getMessage());
+                job.setStatus(SignupJob.Status.FAILED);
+                job.setError(step + " failed: " + e.getMessage());
+                // A retry supplies the password again; until then, don't keep it on disk for the whole retention
+                scrubPassword(dir);
+                finish(job, run);
+                return;
+            }
+
+            if (job.getSteps().get(Step.ADMIN_USER).isFinished()) {
+                // The admin password is only needed until the user exists; don't keep it on disk any longer
+                scrubPassword(dir);
+            }
+            save(job);
+        }
+
+        deleteQuietly(dir.resolve(ARCHIVE_FILE));
+        job.setStatus(SignupJob.Status.SUCCEEDED);
+        finish(job, run);
+        log.info("🎉 Signup job '{}' completed for realm '{}'", job.getId(), job.getRealmName());
+    }
+
+    private void execute(Step step, SignupJob job, Path dir, boolean rerun) throws IOException {
+        String realm = job.getRealmName();
+        switch (step) {
+            case REALM -> {
+                SignupRequest request = readRequest(dir);
+                String token = clientService.getMasterToken();
+                if (rerun && clientService.realmExists(realm, token)) {
+                    log.info("Realm '{}' was created by an earlier attempt", realm);
+                } else if (clientService.createTenantFromTemplate(request, token)) {
+                    skip(job, "Created with the realm from template", Step.CLIENT, Step.ADMIN_USER, Step.ADMIN_ROLES);
+                } else {
+                    clientService.createRealm(realm, token);
+                }
+            }
+            case CLIENT -> {
+                SignupRequest request = readRequest(dir);
+                String token = clientService.getMasterToken();
+                if (clientService.findClientUUID(realm, job.getClientId(), token).isPresent()) {
+                    skip(job, "Already present in Keycloak", Step.CLIENT);
+                } else {
+                    clientService.createClient(realm, job.getClientId(), request.isPublicClient(), token);
+                }
+            }
+            case ADMIN_USER -> {
+                SignupRequest request = readRequest(dir);
+                String token = clientService.getMasterToken();
+                Optional<String> existing = clientService.findUserId(realm, request.getAdminUser().getUsername(), token);
+                if (existing.isPresent()) {
+                    job.setAdminUserId(existing.get());
+                    skip(job, "Already present in Keycloak", Step.ADMIN_USER);
+                } else {
+                    job.setAdminUserId(clientService.createAdminUser(request, token));
+                }
+            }
+            case ADMIN_ROLES -> clientService.grantAdminRoles(realm, job.getAdminUserId(), clientService.getMasterToken());
+            case PROJECT_MANAGER -> clientService.registerWithProjectManager(readRequest(dir));
+            case REPOSITORY -> provisioningService.provisionRepoAndPushZip(realm, job.getClientId(), dir.resolve(ARCHIVE_FILE));
+        }
+    }
+
+    // Leaves the active set before the final state is written: a retry that sees FAILED must be able to schedule
+    private void finish(SignupJob job, Object run) {
+        active.remove(job.getId(), run);
+        save(job);
+    }
+
+    private void skip(SignupJob job, String reason, Step... steps) {
+        for (Step step : steps) {
+            StepState state = job.getSteps().get(step);
+            state.setStatus(StepStatus.SKIPPED);
+            state.setMessage(reason);
+            state.setFinishedAt(Instant.now());
+        }
+    }
+
+    // ---------------- STORAGE ----------------
+    private SignupRequest readRequest(Path dir) throws IOException {
+        return objectMapper.readValue(dir.resolve(REQUEST_FILE).toFile(), SignupRequest.class);
+    }
+
+    private void scrubPassword(Path dir) {
+        try {
+            SignupRequest request = readRequest(dir);
+            if (request.getAdminUser() != null && request.getAdminUser().getPassword() != null) {
+                request.getAdminUser().setPassword(null);
+                writeAtomically(dir.resolve(REQUEST_FILE), objectMapper.writeValueAsBytes(request));
+            }
+        } catch (IOException e) {
+            log.warn("Could not scrub admin password from {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private void supplyPassword(SignupJob job, String adminPassword) {
+        Path dir = jobsDir.resolve(job.getId());
+        try {
+            SignupRequest request = readRequest(dir);
+            SignupRequest.AdminUser admin = request.getAdminUser();
+            if (admin == null) {
+                return;
+            }
+            if (adminPassword != null && !adminPassword.isBlank()) {
+                admin.setPassword(adminPassword);
+                writeAtomically(dir.resolve(REQUEST_FILE), objectMapper.writeValueAsBytes(request));
+            } else if (admin.getPassword() == null) {
+                throw new IllegalArgumentException("Signup job " + job.getId()
+                        + " has not created the admin user yet; retry it with the admin password");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the request of signup job " + job.getId(), e);
+        }
+    }
+
+    private void save(SignupJob job) {
+        job.setUpdatedAt(Instant.now());
+        try {
+            writeAtomically(jobsDir.resolve(job.getId()).resolve(JOB_FILE), objectMapper.writeValueAsBytes(job));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot persist signup job " + job.getId(), e);
+        }
+    }
+
+    private SignupJob load(Path file) {
+        try {
+            return objectMapper.readValue(file.toFile(), SignupJob.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read signup job " + file, e);
+        }
+    }
+
+    // Write-then-rename, so a crash mid-write never leaves a truncated state file behind
+    private static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, content);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static void deleteJobDir(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(SignupJobService::deleteQuietly);
+        }
+        Files.deleteIfExists(dir);
+    }
+}
@@ -0,0 +1,332 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paxaris.identity_service.dto.UploadStatus;
+import com.paxaris.identity_service.dto.UploadStatus.Status;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Resumable, checksummed uploads streamed straight to disk.
+ * <p>
+ * A client creates an upload with its total size, then sends the bytes in one or more chunks, each starting
+ * at the current {@code offset}. Chunks are copied from the request body into a {@link FileChannel} through a
+ * fixed buffer while a SHA-256 is updated on the fly, so no part of the upload is held in memory. After every
+ * chunk, and after a chunk that broke off half-way, the data is forced to disk and the offset recorded, so a
+ * client that lost its connection only re-sends what is missing. When the last byte arrives the digest is
+ * compared with the checksum given at creation, if any. Unfinished and unclaimed uploads are removed once
+ * they have not changed for {@code expiry}, checked on startup and every {@code cleanup-interval}.
+ */
+@Slf4j
+@Service
+public class UploadService {
+
+    private static final String DATA_FILE = "data.part";
+    private static final String META_FILE = "upload.json";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A chunk did not start at the upload's current offset; {@link #getCurrent()} tells the client where to resume.
+     */
+    @Getter
+    public static class OffsetMismatchException extends RuntimeException {
+        private final UploadStatus current;
+
+        public OffsetMismatchException(UploadStatus current, long start) {
+            super("Chunk starts at " + start + " but upload " + current.id() + " continues at " + current.offset());
+            this.current = current;
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Path uploadDir;
+    private final long maxSize;
+    private final Duration expiry;
+    // Per-upload lock and running digest; the digest is rebuilt from disk if the process restarted mid-upload
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("upload-cleanup").daemon().factory());
+
+    private static final class Session {
+        private final ReentrantLock lock = new ReentrantLock();
+        private MessageDigest digest;
+        private long digested = -1;
+    }
+
+    public UploadService(
+            ObjectMapper objectMapper,
+            @Value("${identity.upload.dir:data/uploads}") Path uploadDir,
+            @Value("${identity.upload.max-size:2GB}") DataSize maxSize,
+            @Value("${identity.upload.expiry:24h}") Duration expiry,
+            @Value("${identity.upload.cleanup-interval:1h}") Duration cleanupInterval
+    ) {
+        this.objectMapper = objectMapper;
+        this.uploadDir = uploadDir;
+        this.maxSize = maxSize.toBytes();
+        this.expiry = expiry;
+        long period = cleanupInterval.toMillis();
+        cleaner.scheduleWithFixedDelay(this::removeExpiredUploads, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public UploadStatus create(long size, String expectedSha256) throws IOException {
+        if (size <= 0 || size > maxSize) {
+            throw new IllegalArgumentException("Upload size must be between 1 and " + maxSize + " bytes");
+        }
+        if (expectedSha256 != null && !expectedSha256.matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("sha256 must be 64 hex characters");
+        }
+        Instant now = Instant.now();
+        UploadStatus upload = new UploadStatus(UUID.randomUUID().toString(), size, 0, Status.IN_PROGRESS,
+                expectedSha256 != null ? expectedSha256.toLowerCase() : null, null, null, now, now);
+        Path dir = Files.createDirectories(uploadDir.resolve(upload.id()));
+        Files.createFile(dir.resolve(DATA_FILE));
+        save(upload);
+        log.info("📤 Upload '{}' created for {} bytes", upload.id(), size);
+        return upload;
+    }
+
+    public Optional<UploadStatus> status(String id) {
+        Path meta = metaFile(id);
+        return meta != null && Files.exists(meta) ? Optional.of(load(meta)) : Optional.empty();
+    }
+
+    /**
+     * Appends one chunk read from {@code body}.
+     *
+     * @param start offset the chunk starts at, or null to append at the current offset
+     */
+    public UploadStatus append(String id, Long start, InputStream body) throws IOException {
+        Session session = session(id);
+        session.lock.lock();
+        try {
+            UploadStatus upload = status(id).orElseThrow(() -> new IllegalArgumentException("Unknown upload " + id));
+            if (upload.status() != Status.IN_PROGRESS) {
+                sessions.remove(id, session);
+                throw new IllegalStateException("Upload " + id + " is " + upload.status());
+            }
+            if (start != null && start != upload.offset()) {
+                throw new OffsetMismatchException(upload, start);
+            }
+
+            Path data = uploadDir.resolve(id).resolve(DATA_FILE);
+            if (session.digested != upload.offset()) {
+                session.digest = digestOf(data, upload.offset());
+                session.digested = upload.offset();
+            }
+
+            try (FileChannel channel = FileChannel.open(data, StandardOpenOption.WRITE)) {
+                // Drop anything past the recorded offset, e.g. half a buffer written before a crash
+                channel.truncate(upload.offset());
+                channel.position(upload.offset());
+                try {
+                    copy(body, channel, session.digest, upload.size());
+                } catch (IOException | RuntimeException e) {
+                    channel.force(false);
+                    session.digested = channel.position();
+                    save(upload.withOffset(channel.position()));
+                    log.warn("Upload '{}' chunk broke off at offset {}: {}", id, channel.position(), e.getMessage());
+                    throw e;
+                }
+                channel.force(false);
+                upload = upload.withOffset(channel.position());
+                session.digested = upload.offset();
+            }
+
+            if (upload.offset() == upload.size()) {
+                upload = finish(upload, session);
+            }
+            save(upload);
+            return upload;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Hands a completed upload over to its consumer by moving the file to {@code target}.
+     * An upload can be claimed only once.
+     */
+    public void claim(String id, Path target) throws IOException {
+        Session session = session(id);
+        session.lock.lock();
+        try {
+            UploadStatus upload = status(id).orElseThrow(() -> new IllegalArgumentException("Unknown upload " + id));
+            if (upload.status() != Status.COMPLETE) {
+                sessions.remove(id, session);
+                throw new IllegalStateException("Upload " + id + " is " + upload.status() + ", not COMPLETE");
+            }
+            Path data = uploadDir.resolve(id).resolve(DATA_FILE);
+            try {
+                Files.move(data, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(data, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            save(upload.claimed());
+            sessions.remove(id, session);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void removeExpiredUploads() {
+        if (!Files.isDirectory(uploadDir)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(expiry);
+        try (Stream<Path> dirs = Files.list(uploadDir)) {
+            dirs.filter(dir -> Files.exists(dir.resolve(META_FILE))).forEach(dir -> {
+                String id = dir.getFileName().toString();
+                Session active = sessions.get(id);
+                if (active != null && active.lock.isLocked()) {
+                    // A chunk is being written right now
+                    return;
+                }
+                try {
+                    if (load(dir.resolve(META_FILE)).updatedAt().isBefore(cutoff)) {
+                        deleteDir(dir);
+                        sessions.remove(id);
+                        log.info("Removed expired upload {}", id);
+                    }
+                } catch (Exception e) {
+                    log.warn("Cannot inspect upload {}: {}", dir, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.error("Cannot scan uploads in {}: {}", uploadDir, e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+    }
+
+    // ---------------- INTERNALS ----------------
+    // Only uploads that exist get a session, so requests for made-up ids cannot grow the map
+    private Session session(String id) {
+        if (status(id).isEmpty()) {
+            throw new IllegalArgumentException("Unknown upload " + id);
+        }
+        return sessions.computeIfAbsent(id, k -> new Session());
+    }
+
+    private UploadStatus finish(UploadStatus upload, Session session) throws IOException {
+        String sha256 = HexFormat.of().formatHex(session.digest.digest());
+        sessions.remove(upload.id());
+        if (upload.expectedSha256() != null && !upload.expectedSha256().equals(sha256)) {
+            Files.deleteIfExists(uploadDir.resolve(upload.id()).resolve(DATA_FILE));
+            log.warn("❌ Upload '{}' failed its checksum: expected {}, got {}", upload.id(), upload.expectedSha256(), sha256);
+            return upload.failed(sha256, "SHA-256 mismatch");
+        }
+        log.info("✅ Upload '{}' complete ({} bytes, sha256 {})", upload.id(), upload.size(), sha256);
+        return upload.complete(sha256);
+    }
+
+    private static void copy(InputStream body, FileChannel channel, MessageDigest digest, long size) throws IOException {
+        ReadableByteChannel in = Channels.newChannel(body);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        while (in.read(buffer) != -1) {
+            buffer.flip();
+            if (channel.position() + buffer.remaining() > size) {
+                throw new IllegalArgumentException("Chunk runs past the declared upload size of " + size + " bytes");
+            }
+            ByteBuffer digested = buffer.duplicate();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            // Only bytes that reached the file go into the digest
+            digest.update(digested);
+            buffer.clear();
+        }
+    }
+
+    private static MessageDigest digestOf(Path data, long length) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                int n = channel.read(buffer);
+                if (n < 0) {
+                    throw new IOException("Upload data is shorter than its recorded offset");
+                }
+                buffer.flip();
+                digest.update(buffer);
+                remaining -= n;
+            }
+        }
+        return digest;
+    }
+
+    private Path metaFile(String id) {
+        Path dir = uploadDir.resolve(id).normalize();
+        return dir.startsWith(uploadDir.normalize()) && !dir.equals(uploadDir.normalize()) ? dir.resolve(META_FILE) : null;
+    }
+
+    private void save(UploadStatus upload) {
+        Path target = uploadDir.resolve(upload.id()).resolve(META_FILE);
+        Path tmp = target.resolveSibling(META_FILE + ".tmp");
+        try {
+            Files.write(tmp, objectMapper.writeValueAsBytes(upload));
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot persist upload " + upload.id(), e);
+        }
+    }
+
+    private UploadStatus load(Path meta) {
+        try {
+            return objectMapper.readValue(meta.toFile(), UploadStatus.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read upload " + meta, e);
+        }
+    }
+
+    private static void deleteDir(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
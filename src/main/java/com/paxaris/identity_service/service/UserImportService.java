@@ -0,0 +1,334 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams users from an NDJSON or CSV body into Keycloak.
+ * Records are read lazily and grouped into chunks; each chunk goes through Keycloak's partial import,
+ * falling back to one create call per user when Keycloak rejects the partial import with a 4xx. At most
+ * {@code concurrency} chunks are in flight, and the reader blocks until one finishes, so memory stays
+ * flat no matter how large the upload is. One report line is written per record as soon as its chunk
+ * completes.
+ */
+@Slf4j
+@Service
+public class UserImportService {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final List<String> DEFAULT_CSV_COLUMNS = List.of("username", "email", "firstName", "lastName", "password", "enabled");
+
+    private final KeycloakClientService clientService;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int concurrency;
+
+    public UserImportService(
+            KeycloakClientService clientService,
+            ObjectMapper objectMapper,
+            @Value("${identity.import.chunk-size:500}") int chunkSize,
+            @Value("${identity.import.concurrency:4}") int concurrency
+    ) {
+        this.clientService = clientService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.concurrency = concurrency;
+    }
+
+    public void importUsers(String realm, String token, Format format, InputStream in, OutputStream out) throws IOException {
+        log.info("📥 Starting bulk user import into realm '{}' ({})", realm, format);
+        Report report = new Report(out);
+        Semaphore inFlight = new Semaphore(concurrency);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+             ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            List<String> columns = format == Format.CSV ? csvHeader(reader) : null;
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            long[] lineNumber = {columns == null ? 0 : 1};
+
+            while (true) {
+                long recordLine = lineNumber[0] + 1;
+                String line = format == Format.CSV ? csvRecord(reader, lineNumber) : ndjsonRecord(reader, lineNumber);
+                if (line == null) break;
+                report.checkOpen();
+                if (line.isBlank()) continue;
+                try {
+                    Map<String, Object> user = format == Format.CSV ? fromCsv(columns, line) : fromNdjson(line);
+                    chunk.add(new Row(recordLine, user));
+                } catch (Exception e) {
+                    report.failed(recordLine, null, "Unparseable record: " + e.getMessage());
+                    continue;
+                }
+                if (chunk.size() == chunkSize) {
+                    submit(realm, token, chunk, workers, inFlight, report);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                submit(realm, token, chunk, workers, inFlight, report);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        }
+        report.checkOpen();
+        // Closing the executor waited for every chunk, so the counts are final
+        report.summary();
+        log.info("✅ Bulk import into realm '{}' finished: added={}, skipped={}, failed={}",
+                realm, report.added.get(), report.skipped.get(), report.failed.get());
+    }
+
+    private void submit(String realm, String token, List<Row> chunk, ExecutorService workers,
+                        Semaphore inFlight, Report report) throws InterruptedException {
+        // Blocks the reader (and so the upload) while enough chunks are already in flight
+        inFlight.acquire();
+        workers.submit(() -> {
+            try {
+                importChunk(realm, token, chunk, report);
+            } catch (UncheckedIOException e) {
+                report.close(e);
+            } catch (RuntimeException e) {
+                // The future is never read, so anything escaping the chunk has to be reported here
+                log.error("Importing a chunk of {} users into realm '{}' failed: {}", chunk.size(), realm, e.getMessage(), e);
+                try {
+                    chunk.forEach(row -> report.failed(row.line(), row.username(), e.getMessage()));
+                } catch (UncheckedIOException gone) {
+                    report.close(gone);
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void importChunk(String realm, String token, List<Row> chunk, Report report) {
+        List<Map<String, Object>> results;
+        try {
+            results = clientService.partialImportUsers(realm, token, chunk.stream().map(Row::user).toList());
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode().value() == 401 || e.getStatusCode().value() == 403) {
+                throw e;
+            }
+            // Keycloak rejected the partial import request itself (e.g. unsupported or a bad record): retry per user
+            log.warn("Partial import rejected for a chunk of {} users ({}), creating them one by one",
+                    chunk.size(), e.getStatusCode());
+            importOneByOne(realm, token, chunk, report);
+            return;
+        }
+
+        Map<String, Map<String, Object>> byUsername = new HashMap<>();
+        for (Map<String, Object> result : results) {
+            byUsername.put(String.valueOf(result.get("resourceName")), result);
+        }
+        for (Row row : chunk) {
+            String username = row.username();
+            Map<String, Object> result = byUsername.get(username);
+            if (result == null) {
+                report.failed(row.line(), username, "No result returned by partial import");
+            } else if ("SKIPPED".equals(result.get("action"))) {
+                report.skipped(row.line(), username, (String) result.get("id"));
+            } else {
+                report.added(row.line(), username, (String) result.get("id"));
+            }
+        }
+    }
+
+    private void importOneByOne(String realm, String token, List<Row> chunk, Report report) {
+        for (Row row : chunk) {
+            try {
+                String userId = clientService.createUser(realm, token, row.user());
+                report.added(row.line(), row.username(), userId);
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof HttpClientErrorException.Conflict) {
+                    // Same outcome as partial import's SKIP policy: the user already exists
+                    report.skipped(row.line(), row.username(), null);
+                } else {
+                    report.failed(row.line(), row.username(), cause.getMessage());
+                }
+            }
+        }
+    }
+
+    // ---------------- PARSING ----------------
+    private Map<String, Object> fromNdjson(String line) throws IOException {
+        return objectMapper.readValue(line, Map.class);
+    }
+
+    private static String ndjsonRecord(BufferedReader reader, long[] lineNumber) throws IOException {
+        String line = reader.readLine();
+        if (line != null) lineNumber[0]++;
+        return line;
+    }
+
+    // One CSV record, joining physical lines while a quoted field is still open
+    private static String csvRecord(BufferedReader reader, long[] lineNumber) throws IOException {
+        String line = reader.readLine();
+        if (line == null) return null;
+        lineNumber[0]++;
+        StringBuilder record = new StringBuilder(line);
+        while (openQuote(record)) {
+            String next = reader.readLine();
+            if (next == null) break;
+            lineNumber[0]++;
+            record.append('\n').append(next);
+        }
+        return record.toString();
+    }
+
+    private static boolean openQuote(CharSequence record) {
+        int quotes = 0;
+        for (int i = 0; i < record.length(); i++) {
+            if (record.charAt(i) == '"') quotes++;
+        }
+        return quotes % 2 == 1;
+    }
+
+    private List<String> csvHeader(BufferedReader reader) throws IOException {
+        String header = reader.readLine();
+        if (header == null || header.isBlank()) {
+            return DEFAULT_CSV_COLUMNS;
+        }
+        return splitCsv(header).stream().map(String::trim).toList();
+    }
+
+    private Map<String, Object> fromCsv(List<String> columns, String line) {
+        List<String> values = splitCsv(line);
+        Map<String, Object> user = new HashMap<>();
+        for (int i = 0; i < columns.size() && i < values.size(); i++) {
+            String value = values.get(i);
+            if (value.isEmpty()) continue;
+            switch (columns.get(i)) {
+                case "password" -> user.put("credentials", List.of(Map.of(
+                        "type", "password",
+                        "value", value,
+                        "temporary", false
+                )));
+                case "enabled", "emailVerified" -> user.put(columns.get(i), Boolean.parseBoolean(value));
+                default -> user.put(columns.get(i), value);
+            }
+        }
+        user.putIfAbsent("enabled", true);
+        if (user.get("username") == null) {
+            throw new IllegalArgumentException("username column is empty");
+        }
+        return user;
+    }
+
+    // Minimal RFC 4180 splitting: quoted fields may contain commas, line breaks and doubled quotes
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private record Row(long line, Map<String, Object> user) {
+        String username() {
+            return String.valueOf(user.get("username"));
+        }
+    }
+
+    /**
+     * Per-record NDJSON report. Chunks finish on different threads, so writes are serialized here.
+     */
+    private class Report {
+        private final OutputStream out;
+        private final AtomicLong added = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile UncheckedIOException closed;
+
+        Report(OutputStream out) {
+            this.out = out;
+        }
+
+        // Once the client has gone there is nobody to report to, so the reader stops feeding chunks
+        void close(UncheckedIOException cause) {
+            closed = cause;
+        }
+
+        void checkOpen() throws IOException {
+            if (closed != null) {
+                throw closed.getCause();
+            }
+        }
+
+        void added(long line, String username, String id) {
+            added.incrementAndGet();
+            write(record(line, username, "ADDED", id, null));
+        }
+
+        void skipped(long line, String username, String id) {
+            skipped.incrementAndGet();
+            write(record(line, username, "SKIPPED", id, null));
+        }
+
+        void failed(long line, String username, String error) {
+            failed.incrementAndGet();
+            write(record(line, username, "FAILED", null, error));
+        }
+
+        void summary() {
+            write(Map.of("summary", Map.of(
+                    "added", added.get(),
+                    "skipped", skipped.get(),
+                    "failed", failed.get()
+            )));
+        }
+
+        private Map<String, Object> record(long line, String username, String status, String id, String error) {
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("line", line);
+            record.put("username", username);
+            record.put("status", status);
+            if (id != null) record.put("id", id);
+            if (error != null) record.put("error", error);
+            return record;
+        }
+
+        private synchronized void write(Map<String, Object> record) {
+            try {
+                out.write(objectMapper.writeValueAsBytes(record));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Client stopped reading the import report", e);
+            }
+        }
+    }
+}
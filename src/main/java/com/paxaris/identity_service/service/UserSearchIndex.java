@@ -0,0 +1,258 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.paxaris.identity_service.dto.IndexedUser;
+import com.paxaris.identity_service.dto.ListingQuery;
+import com.paxaris.identity_service.dto.UserCreatedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * In-memory per-realm index of users for type-ahead search and counts.
+ * <p>
+ * A realm is indexed the first time it is queried, by paging through the Keycloak admin API, and is rebuilt
+ * in the background every {@code refresh-interval} to pick up changes made outside this service. Users
+ * created through this service are added as soon as Keycloak confirms them. Lookups never call Keycloak:
+ * a prefix search is a range scan over a sorted map of lower-cased username, email and name terms, and a
+ * count is the size of the id map.
+ * <p>
+ * At most {@code max-realms} realms are held; a new realm evicts the one queried least recently. Realms not
+ * queried for {@code idle-eviction}, and realms whose background rebuild fails (for example because the
+ * realm was deleted), are dropped instead of being refreshed, so the next query builds them from scratch.
+ */
+@Slf4j
+@Service
+public class UserSearchIndex {
+
+    // Master tokens are short-lived, so a fresh one is fetched for every window of this many pages
+    private static final int PAGES_PER_TOKEN = 50;
+
+    private final KeycloakClientService clientService;
+    private final int pageSize;
+    private final Duration buildTimeout;
+    private final int maxRealms;
+    private final Duration idleEviction;
+    private final Map<String, RealmEntry> realms = new ConcurrentHashMap<>();
+    private final ExecutorService builders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("user-index-refresh").daemon().factory());
+
+    public UserSearchIndex(
+            KeycloakClientService clientService,
+            @Value("${identity.user-index.page-size:500}") int pageSize,
+            @Value("${identity.user-index.refresh-interval:10m}") Duration refreshInterval,
+            @Value("${identity.user-index.build-timeout:60s}") Duration buildTimeout,
+            @Value("${identity.user-index.max-realms:100}") int maxRealms,
+            @Value("${identity.user-index.idle-eviction:1h}") Duration idleEviction
+    ) {
+        this.clientService = clientService;
+        this.pageSize = pageSize;
+        this.buildTimeout = buildTimeout;
+        this.maxRealms = Math.max(1, maxRealms);
+        this.idleEviction = idleEviction;
+        long period = refreshInterval.toMillis();
+        refresher.scheduleWithFixedDelay(this::refreshAll, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public List<IndexedUser> search(String realm, String query, int limit) {
+        return index(realm).search(query.trim().toLowerCase(Locale.ROOT), limit);
+    }
+
+    public int count(String realm) {
+        return index(realm).size();
+    }
+
+    public Instant builtAt(String realm) {
+        return index(realm).builtAt;
+    }
+
+    @EventListener
+    public void onUserCreated(UserCreatedEvent event) {
+        RealmEntry entry = realms.get(event.realm());
+        if (entry == null) {
+            // Not indexed yet; the first build will read the user from Keycloak
+            return;
+        }
+        IndexedUser user = new IndexedUser(event.id(), event.username(), event.email(),
+                event.firstName(), event.lastName(), event.enabled());
+        entry.add(user);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+        builders.shutdownNow();
+    }
+
+    // ---------------- BUILD ----------------
+    private RealmIndex index(String realm) {
+        if (!realms.containsKey(realm) && realms.size() >= maxRealms) {
+            evictLeastRecentlyQueried();
+        }
+        RealmEntry entry = realms.computeIfAbsent(realm, r -> {
+            RealmEntry created = new RealmEntry();
+            builders.submit(() -> rebuild(r, created));
+            return created;
+        });
+        entry.lastQueried = System.nanoTime();
+        try {
+            return entry.firstBuild.get(buildTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("User index for realm '" + realm + "' is still being built");
+        } catch (ExecutionException e) {
+            // Let the next query try again instead of caching the failure
+            realms.remove(realm, entry);
+            throw new IllegalStateException("Failed to index users of realm '" + realm + "': " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the user index", e);
+        }
+    }
+
+    private void refreshAll() {
+        long idleSince = System.nanoTime() - idleEviction.toNanos();
+        realms.forEach((realm, entry) -> {
+            if (entry.lastQueried - idleSince < 0) {
+                if (realms.remove(realm, entry)) {
+                    log.info("🔎 Dropped the user index of realm '{}' after {} without queries", realm, idleEviction);
+                }
+            } else if (entry.firstBuild.isDone() && !entry.firstBuild.isCompletedExceptionally()) {
+                rebuild(realm, entry);
+            }
+        });
+    }
+
+    private void evictLeastRecentlyQueried() {
+        long now = System.nanoTime();
+        realms.entrySet().stream()
+                .max(Comparator.comparingLong(e -> now - e.getValue().lastQueried))
+                .ifPresent(oldest -> {
+                    if (realms.remove(oldest.getKey(), oldest.getValue())) {
+                        log.info("🔎 Dropped the user index of realm '{}' to stay within {} realms", oldest.getKey(), maxRealms);
+                    }
+                });
+    }
+
+    private void rebuild(String realm, RealmEntry entry) {
+        long started = System.nanoTime();
+        RealmIndex next = new RealmIndex();
+        entry.building = next;
+        try {
+            int window = pageSize * PAGES_PER_TOKEN;
+            int first = 0;
+            while (true) {
+                ListingQuery query = ListingQuery.all(pageSize).range(first, window).project(true, null);
+                long count = clientService.forEachUser(realm, clientService.getMasterToken(), query, node -> next.add(toUser(node)));
+                if (count < window) {
+                    break;
+                }
+                first += window;
+            }
+            next.builtAt = Instant.now();
+            entry.current = next;
+            entry.firstBuild.complete(next);
+            log.info("🔎 Indexed {} users of realm '{}' in {} ms", next.size(), realm,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (Exception e) {
+            log.error("Failed to index users of realm '{}': {}", realm, e.getMessage(), e);
+            if (!entry.firstBuild.completeExceptionally(e)) {
+                // A refresh failed: stop serving the stale index and let the next query rebuild it
+                realms.remove(realm, entry);
+            }
+        } finally {
+            entry.building = null;
+        }
+    }
+
+    private static IndexedUser toUser(ObjectNode node) {
+        return new IndexedUser(
+                node.path("id").asText(),
+                node.path("username").asText(null),
+                node.path("email").asText(null),
+                node.path("firstName").asText(null),
+                node.path("lastName").asText(null),
+                node.path("enabled").asBoolean(true));
+    }
+
+    /**
+     * The index being served plus, during a rebuild, the one being filled. Users created meanwhile go into
+     * both, so swapping in the rebuilt index does not drop them.
+     */
+    private static final class RealmEntry {
+        private final CompletableFuture<RealmIndex> firstBuild = new CompletableFuture<>();
+        private volatile RealmIndex current;
+        private volatile RealmIndex building;
+        private volatile long lastQueried = System.nanoTime();
+
+        void add(IndexedUser user) {
+            RealmIndex served = current;
+            if (served != null) {
+                served.add(user);
+            }
+            RealmIndex next = building;
+            if (next != null) {
+                next.add(user);
+            }
+        }
+    }
+
+    private static final class RealmIndex {
+        private final Map<String, IndexedUser> byId = new ConcurrentHashMap<>();
+        // term -> ids of the users with a field starting with that term
+        private final ConcurrentSkipListMap<String, Set<String>> terms = new ConcurrentSkipListMap<>();
+        private volatile Instant builtAt;
+
+        // Synchronized so that replacing a user's terms is never interleaved with another write for the same id
+        synchronized void add(IndexedUser user) {
+            IndexedUser previous = byId.put(user.id(), user);
+            if (user.equals(previous)) {
+                return;
+            }
+            if (previous != null) {
+                // The user changed: drop the terms that no longer describe it
+                termsOf(previous).forEach(term -> terms.computeIfPresent(term, (k, ids) -> {
+                    ids.remove(previous.id());
+                    return ids.isEmpty() ? null : ids;
+                }));
+            }
+            termsOf(user).forEach(term -> terms.computeIfAbsent(term, k -> ConcurrentHashMap.newKeySet()).add(user.id()));
+        }
+
+        private static Set<String> termsOf(IndexedUser user) {
+            Set<String> values = new HashSet<>();
+            for (String value : new String[]{user.username(), user.email(), user.firstName(), user.lastName()}) {
+                if (value != null && !value.isBlank()) {
+                    values.add(value.toLowerCase(Locale.ROOT));
+                }
+            }
+            if (user.firstName() != null && user.lastName() != null) {
+                values.add((user.firstName() + " " + user.lastName()).toLowerCase(Locale.ROOT));
+            }
+            return values;
+        }
+
+        List<IndexedUser> search(String prefix, int limit) {
+            Set<String> ids = new LinkedHashSet<>();
+            for (Set<String> matches : terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                for (String id : matches) {
+                    if (ids.add(id) && ids.size() == limit) {
+                        return ids.stream().map(byId::get).toList();
+                    }
+                }
+            }
+            return ids.stream().map(byId::get).toList();
+        }
+
+        int size() {
+            return byId.size();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.paxaris.identity_service.service.git;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Builds git objects for a set of files and writes them as a version 2 packfile, without a working
+ * repository or a {@code git} binary.
+ * <p>
+ * Files are added with their path and a way to open their content. Each one is read once to hash it as a
+ * blob, then trees are derived from the paths and a single commit is created on top of an optional parent.
+ * {@link #writePack} reads every blob a second time to deflate it into the pack, so content is streamed and
+ * never held in memory; only the small tree and commit objects are buffered.
+ */
+public final class GitPack {
+
+    public static final String ZERO_ID = "0".repeat(40);
+
+    private static final int TYPE_COMMIT = 1;
+    private static final int TYPE_TREE = 2;
+    private static final int TYPE_BLOB = 3;
+    private static final String MODE_FILE = "100644";
+    private static final String MODE_EXECUTABLE = "100755";
+    private static final String MODE_TREE = "40000";
+
+    @FunctionalInterface
+    public interface Content {
+        InputStream open() throws IOException;
+    }
+
+    private record Blob(long size, Content content) {}
+
+    private record FileEntry(String mode, String blobId) {}
+
+    private static final class Dir {
+        private final Map<String, Dir> dirs = new HashMap<>();
+        private final Map<String, FileEntry> files = new HashMap<>();
+    }
+
+    private final Dir root = new Dir();
+    private final Map<String, Blob> blobs = new LinkedHashMap<>();
+    // trees and the commit: id -> type and raw content
+    private final Map<String, Map.Entry<Integer, byte[]>> objects = new LinkedHashMap<>();
+    // objects the receiving repository already has; referenced, but left out of the pack
+    private final Set<String> omitted = new HashSet<>();
+
+    /**
+     * @param path       slash-separated path relative to the repository root
+     * @param executable whether the file gets mode 100755 instead of 100644
+     * @param size       exact content length in bytes
+     */
+    public String addFile(String path, boolean executable, long size, Content content) throws IOException {
+        String blobId = hashBlob(size, content);
+        addFile(path, executable, size, blobId, content);
+        return blobId;
+    }
+
+    /**
+     * Adds a file whose blob id was already computed with {@link #hashBlob}, e.g. on another thread.
+     */
+    public void addFile(String path, boolean executable, long size, String blobId, Content content) {
+        blobs.putIfAbsent(blobId, new Blob(size, content));
+
+        String[] parts = path.split("/");
+        Dir dir = root;
+        for (int i = 0; i < parts.length - 1; i++) {
+            if (parts[i].isEmpty() || parts[i].equals(".")) continue;
+            dir = dir.dirs.computeIfAbsent(parts[i], name -> new Dir());
+        }
+        dir.files.put(parts[parts.length - 1], new FileEntry(executable ? MODE_EXECUTABLE : MODE_FILE, blobId));
+    }
+
+    /**
+     * Creates the trees for every added file and a commit pointing at the root tree.
+     *
+     * @param parent id of the parent commit, or null for a root commit
+     * @return id of the new commit
+     */
+    public String commit(String parent, String message, String authorName, String authorEmail, Instant when) {
+        String treeId = tree();
+        String ident = authorName + " <" + authorEmail + "> " + when.getEpochSecond() + " +0000";
+        StringBuilder commit = new StringBuilder()
+                .append("tree ").append(treeId).append('\n');
+        if (parent != null && !parent.equals(ZERO_ID)) {
+            commit.append("parent ").append(parent).append('\n');
+        }
+        commit.append("author ").append(ident).append('\n')
+                .append("committer ").append(ident).append('\n')
+                .append('\n')
+                .append(message).append('\n');
+        return store(TYPE_COMMIT, commit.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates the trees for every added file.
+     *
+     * @return id of the root tree, equal to the tree of any earlier commit with exactly the same files
+     */
+    public String tree() {
+        return writeTree(root);
+    }
+
+    /**
+     * Leaves these objects out of the pack, for a push to a repository that already has them, e.g. everything
+     * reachable from the parent commit. A receiving repository that lacks one of them rejects the push.
+     */
+    public void omit(Collection<String> ids) {
+        omitted.addAll(ids);
+    }
+
+    /**
+     * Ids of every object the commit references, omitted or not.
+     */
+    public Set<String> objectIds() {
+        Set<String> ids = new LinkedHashSet<>(blobs.keySet());
+        ids.addAll(objects.keySet());
+        return ids;
+    }
+
+    /**
+     * Number of objects {@link #writePack} writes.
+     */
+    public int objectCount() {
+        return (int) objectIds().stream().filter(id -> !omitted.contains(id)).count();
+    }
+
+    /**
+     * Writes every object as a packfile, trailing checksum included.
+     */
+    public void writePack(OutputStream target) throws IOException {
+        MessageDigest sha1 = sha1();
+        DigestOutputStream out = new DigestOutputStream(new NonClosing(target), sha1);
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeBytes("PACK");
+        header.writeInt(2);
+        header.writeInt(objectCount());
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        byte[] buffer = new byte[64 * 1024];
+        try {
+            for (Map.Entry<String, Blob> blob : blobs.entrySet()) {
+                if (omitted.contains(blob.getKey())) continue;
+                writeObjectHeader(out, TYPE_BLOB, blob.getValue().size());
+                deflater.reset();
+                DeflaterOutputStream deflated = new DeflaterOutputStream(new NonClosing(out), deflater, buffer.length);
+                long copied = 0;
+                try (InputStream in = blob.getValue().content().open()) {
+                    int n;
+                    while ((n = in.read(buffer)) != -1) {
+                        deflated.write(buffer, 0, n);
+                        copied += n;
+                    }
+                }
+                deflated.finish();
+                if (copied != blob.getValue().size()) {
+                    throw new IOException("Content of blob " + blob.getKey() + " changed while packing");
+                }
+            }
+            for (Map.Entry<String, Map.Entry<Integer, byte[]>> object : objects.entrySet()) {
+                if (omitted.contains(object.getKey())) continue;
+                byte[] content = object.getValue().getValue();
+                writeObjectHeader(out, object.getValue().getKey(), content.length);
+                deflater.reset();
+                DeflaterOutputStream deflated = new DeflaterOutputStream(new NonClosing(out), deflater, buffer.length);
+                deflated.write(content);
+                deflated.finish();
+            }
+        } finally {
+            deflater.end();
+        }
+        out.flush();
+        target.write(sha1.digest());
+        target.flush();
+    }
+
+    // ---------------- OBJECTS ----------------
+    private String writeTree(Dir dir) {
+        record Entry(byte[] sortKey, String mode, String name, String id) {}
+        List<Entry> entries = new ArrayList<>();
+        dir.dirs.forEach((name, child) -> {
+            if (hasFiles(child)) {
+                entries.add(new Entry((name + "/").getBytes(StandardCharsets.UTF_8), MODE_TREE, name, writeTree(child)));
+            }
+        });
+        dir.files.forEach((name, file) ->
+                entries.add(new Entry(name.getBytes(StandardCharsets.UTF_8), file.mode(), name, file.blobId())));
+        // git orders entries by raw bytes, with directory names compared as if they ended in '/'
+        entries.sort((a, b) -> Arrays.compareUnsigned(a.sortKey(), b.sortKey()));
+
+        ByteArrayOutputStream tree = new ByteArrayOutputStream();
+        for (Entry entry : entries) {
+            tree.writeBytes((entry.mode() + " " + entry.name()).getBytes(StandardCharsets.UTF_8));
+            tree.write(0);
+            tree.writeBytes(HexFormat.of().parseHex(entry.id()));
+        }
+        return store(TYPE_TREE, tree.toByteArray());
+    }
+
+    private static boolean hasFiles(Dir dir) {
+        return !dir.files.isEmpty() || dir.dirs.values().stream().anyMatch(GitPack::hasFiles);
+    }
+
+    private String store(int type, byte[] content) {
+        MessageDigest sha1 = sha1();
+        sha1.update((typeName(type) + " " + content.length).getBytes(StandardCharsets.US_ASCII));
+        sha1.update((byte) 0);
+        sha1.update(content);
+        String id = HexFormat.of().formatHex(sha1.digest());
+        objects.putIfAbsent(id, Map.entry(type, content));
+        return id;
+    }
+
+    /**
+     * Id git gives a blob with this content. Reads the content once; safe to call concurrently.
+     */
+    public static String hashBlob(long size, Content content) throws IOException {
+        MessageDigest sha1 = sha1();
+        sha1.update(("blob " + size).getBytes(StandardCharsets.US_ASCII));
+        sha1.update((byte) 0);
+        byte[] buffer = new byte[64 * 1024];
+        long read = 0;
+        try (InputStream in = content.open()) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                sha1.update(buffer, 0, n);
+                read += n;
+            }
+        }
+        if (read != size) {
+            throw new IOException("Expected " + size + " bytes but read " + read);
+        }
+        return HexFormat.of().formatHex(sha1.digest());
+    }
+
+    // Type in bits 4-6 of the first byte, size as a little-endian base-128 varint starting with 4 bits
+    private static void writeObjectHeader(OutputStream out, int type, long size) throws IOException {
+        int b = (type << 4) | (int) (size & 0x0f);
+        size >>>= 4;
+        while (size != 0) {
+            out.write(b | 0x80);
+            b = (int) (size & 0x7f);
+            size >>>= 7;
+        }
+        out.write(b);
+    }
+
+    private static String typeName(int type) {
+        return switch (type) {
+            case TYPE_COMMIT -> "commit";
+            case TYPE_TREE -> "tree";
+            case TYPE_BLOB -> "blob";
+            default -> throw new IllegalArgumentException("Unknown object type " + type);
+        };
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class NonClosing extends FilterOutputStream {
+        NonClosing(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
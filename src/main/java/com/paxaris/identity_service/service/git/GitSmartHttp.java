@@ -0,0 +1,146 @@
+package com.paxaris.identity_service.service.git;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Minimal client for git's smart HTTP protocol: reads the refs a repository advertises for receive-pack and
+ * pushes a packfile with a single ref update. Speaks pkt-lines directly, so no {@code git} process is needed.
+ */
+public final class GitSmartHttp {
+
+    private static final String RECEIVE_PACK = "git-receive-pack";
+
+    private final HttpClient http;
+    private final String authorization;
+
+    /**
+     * @param authorization value of the {@code Authorization} header sent with every request, or null
+     */
+    public GitSmartHttp(HttpClient http, String authorization) {
+        this.http = http;
+        this.authorization = authorization;
+    }
+
+    public static String basicAuth(String username, String password) {
+        return "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param repository repository URL, e.g. {@code https://github.com/org/repo.git}
+     * @return ref name -> object id; empty for an empty repository
+     */
+    public Map<String, String> advertisedRefs(URI repository) throws IOException {
+        HttpRequest request = request(URI.create(repository + "/info/refs?service=" + RECEIVE_PACK))
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = send(request);
+        if (response.statusCode() != 200) {
+            throw new IOException("Ref advertisement failed for " + repository + ": HTTP " + response.statusCode());
+        }
+
+        Map<String, String> refs = new LinkedHashMap<>();
+        try (InputStream in = response.body()) {
+            for (String line : readPktLines(in)) {
+                if (line.startsWith("#")) continue;
+                int nul = line.indexOf('\0');
+                String ref = (nul >= 0 ? line.substring(0, nul) : line).trim();
+                int space = ref.indexOf(' ');
+                if (space != 40) continue;
+                String name = ref.substring(41);
+                if (!name.equals("capabilities^{}")) {
+                    refs.put(name, ref.substring(0, 40));
+                }
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * Sends {@code pack} and moves {@code ref} from {@code oldId} to {@code newId}.
+     * Use {@link GitPack#ZERO_ID} as {@code oldId} to create the ref.
+     */
+    public void push(URI repository, String ref, String oldId, String newId, Path pack) throws IOException {
+        ByteArrayOutputStream commands = new ByteArrayOutputStream();
+        writePktLine(commands, oldId + " " + newId + " " + ref + "\0report-status agent=identity-service\n");
+        commands.writeBytes("0000".getBytes(StandardCharsets.US_ASCII));
+
+        HttpRequest request = request(URI.create(repository + "/" + RECEIVE_PACK))
+                .header("Content-Type", "application/x-" + RECEIVE_PACK + "-request")
+                .header("Accept", "application/x-" + RECEIVE_PACK + "-result")
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofByteArray(commands.toByteArray()),
+                        HttpRequest.BodyPublishers.ofFile(pack)))
+                .build();
+        HttpResponse<InputStream> response = send(request);
+        if (response.statusCode() != 200) {
+            throw new IOException("Push to " + repository + " failed: HTTP " + response.statusCode());
+        }
+
+        List<String> report;
+        try (InputStream in = response.body()) {
+            report = readPktLines(in);
+        }
+        String unpack = report.isEmpty() ? "" : report.get(0).trim();
+        if (!unpack.equals("unpack ok")) {
+            throw new IOException("Push to " + repository + " rejected: " + (unpack.isEmpty() ? "no status report" : unpack));
+        }
+        for (String line : report.subList(1, report.size())) {
+            String status = line.trim();
+            if (status.startsWith("ng ")) {
+                throw new IOException("Push to " + repository + " rejected: " + status.substring(3));
+            }
+        }
+    }
+
+    private HttpRequest.Builder request(URI uri) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).header("User-Agent", "git/identity-service");
+        if (authorization != null) {
+            builder.header("Authorization", authorization);
+        }
+        return builder;
+    }
+
+    private HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+        try {
+            return http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while talking to " + request.uri(), e);
+        }
+    }
+
+    // ---------------- PKT-LINE ----------------
+    // Each line is prefixed with its total length as 4 hex digits; "0000" is a flush packet and is skipped here
+    private static List<String> readPktLines(InputStream in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        byte[] length = new byte[4];
+        while (in.readNBytes(length, 0, 4) == 4) {
+            int size = Integer.parseInt(new String(length, StandardCharsets.US_ASCII), 16);
+            if (size == 0) continue;
+            if (size < 4) {
+                throw new IOException("Malformed pkt-line length " + size);
+            }
+            byte[] payload = in.readNBytes(size - 4);
+            if (payload.length != size - 4) {
+                throw new IOException("Truncated pkt-line");
+            }
+            lines.add(new String(payload, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    private static void writePktLine(ByteArrayOutputStream out, String line) {
+        byte[] payload = line.getBytes(StandardCharsets.UTF_8);
+        out.writeBytes(String.format("%04x", payload.length + 4).getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(payload);
+    }
+}
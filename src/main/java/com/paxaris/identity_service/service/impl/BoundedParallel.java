@@ -0,0 +1,63 @@
+package com.paxaris.identity_service.service.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Runs one blocking call per item with a cap on how many run at once and a deadline for the whole batch.
+ * Calls run on virtual threads, so waiting on Keycloak costs no platform threads; the cap is what keeps
+ * the batch from flooding the connection pool. Results come back in input order, with failures and
+ * calls still running at the deadline mapped through {@code onFailure} instead of aborting the batch.
+ */
+public final class BoundedParallel {
+
+    private BoundedParallel() {
+    }
+
+    public static <T, R> List<R> map(List<T> items,
+                                     int parallelism,
+                                     Duration deadline,
+                                     Function<T, R> call,
+                                     BiFunction<T, Throwable, R> onFailure) {
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        List<Future<R>> futures = new ArrayList<>(items.size());
+        List<R> results = new ArrayList<>(items.size());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (T item : items) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return call.apply(item);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < items.size(); i++) {
+                T item = items.get(i);
+                Future<R> future = futures.get(i);
+                try {
+                    long remaining = deadlineNanos - System.nanoTime();
+                    results.add(future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS));
+                } catch (ExecutionException e) {
+                    results.add(onFailure.apply(item, e.getCause()));
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    results.add(onFailure.apply(item, new TimeoutException("Deadline of " + deadline + " exceeded")));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    futures.forEach(f -> f.cancel(true));
+                    throw new IllegalStateException("Interrupted while waiting for parallel calls", e);
+                }
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,97 @@
+package com.paxaris.identity_service.service.impl;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * A scoped fork/join with shutdown-on-failure semantics and a shared deadline, shaped like
+ * {@code StructuredTaskScope.ShutdownOnFailure} (still a preview API on Java 21).
+ * Subtasks run on virtual threads. The first failure cancels every sibling, and so does running past
+ * the deadline, so the caller waits for the slowest branch at most and never for work whose result
+ * is already useless.
+ *
+ * <pre>{@code
+ * try (ForkJoinScope scope = new ForkJoinScope(Duration.ofSeconds(5))) {
+ *     Supplier<String> a = scope.fork(() -> lookupA());
+ *     Supplier<String> b = scope.fork(() -> lookupB());
+ *     scope.join();
+ *     use(a.get(), b.get());
+ * }
+ * }</pre>
+ */
+public final class ForkJoinScope implements AutoCloseable {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<Future<?>> forks = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    private final long deadlineNanos;
+    private final Duration deadline;
+
+    public ForkJoinScope(Duration deadline) {
+        this.deadline = deadline;
+        this.deadlineNanos = System.nanoTime() + deadline.toNanos();
+    }
+
+    public <T> Supplier<T> fork(Callable<T> task) {
+        Future<T> future = executor.submit(() -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                if (firstFailure.compareAndSet(null, e)) {
+                    cancelAll();
+                }
+                throw e;
+            }
+        });
+        forks.add(future);
+        if (firstFailure.get() != null) {
+            future.cancel(true);
+        }
+        return future::resultNow;
+    }
+
+    /**
+     * Waits for every subtask, and rethrows the first failure if one of them failed.
+     * Results can be read from the suppliers returned by {@link #fork} only after this returns.
+     */
+    public void join() {
+        try {
+            for (Future<?> fork : forks) {
+                long remaining = deadlineNanos - System.nanoTime();
+                try {
+                    fork.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+                } catch (ExecutionException | CancellationException ignored) {
+                    // recorded in firstFailure by the failing subtask
+                }
+            }
+        } catch (TimeoutException e) {
+            cancelAll();
+            throw new RuntimeException("Deadline of " + deadline + " exceeded", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelAll();
+            throw new RuntimeException("Interrupted while waiting for subtasks", e);
+        }
+
+        Throwable failure = firstFailure.get();
+        if (failure instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (failure != null) {
+            throw new RuntimeException(failure.getMessage(), failure);
+        }
+    }
+
+    private void cancelAll() {
+        forks.forEach(fork -> fork.cancel(true));
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+        executor.shutdownNow();
+    }
+}
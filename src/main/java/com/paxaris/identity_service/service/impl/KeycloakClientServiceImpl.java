@@ -1,55 +1,77 @@
 package com.paxaris.identity_service.service.impl;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.paxaris.identity_service.dto.*;
+import com.paxaris.identity_service.dto.keycloak.ClientRepresentation;
+import com.paxaris.identity_service.dto.keycloak.CredentialRepresentation;
+import com.paxaris.identity_service.dto.keycloak.RoleRepresentation;
+import com.paxaris.identity_service.dto.keycloak.UserRepresentation;
 import com.paxaris.identity_service.service.KeycloakClientService;
-import com.paxaris.identity_service.service.ProvisioningService;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.reactive.function.client.WebClient;
 
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 public class KeycloakClientServiceImpl implements KeycloakClientService {
 
     private static final Logger log = LoggerFactory.getLogger(KeycloakClientServiceImpl.class);
+    private static final List<String> DEFAULT_ADMIN_ROLES = List.of("create-client", "impersonation", "manage-realm", "manage-users", "manage-clients");
+    private static final Set<String> BRIEF_CLIENT_FIELDS = Set.of("id", "clientId", "name", "enabled", "publicClient", "protocol");
 
     private final KeycloakConfig config;
     private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
-    private final ProvisioningService provisioningService;
+    private final KeycloakCodecs codecs;
+    private final RealmTemplate realmTemplate;
+    private final ApplicationEventPublisher events;
+    // realm -> realm-management client UUID and role representations; stable for the life of a realm
+    private final Map<String, RealmManagementRoles> realmManagementCache = new ConcurrentHashMap<>();
     @Value("${project.management.base-url}")
     private String projectManagementBaseUrl;
-
-    // This method is now private and used internally to avoid duplication
-    private String getMasterToken() {
+    @Value("${keycloak.bulk.parallelism:8}")
+    private int bulkParallelism;
+    @Value("${keycloak.bulk.deadline:60s}")
+    private Duration bulkDeadline;
+    @Value("${keycloak.resolve.deadline:10s}")
+    private Duration resolveDeadline;
+    @Value("${identity.signup.provisioning-mode:template}")
+    private RealmTemplate.Mode signupProvisioningMode;
+
+    // Token for the configured master admin, shared by signup and its job steps
+    @Override
+    public String getMasterToken() {
         log.info("Attempting to get master token from Keycloak...");
-        String tokenUrl = config.getBaseUrl() + "/realms/master/protocol/openid-connect/token";
+        String tokenUrl = config.getBaseUrl() + KeycloakRequests.tokenPath("master");
 
         log.debug("Master token URL: {}", tokenUrl);
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
 
-        MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
-        body.add("grant_type", "password");
-        body.add("client_id", "admin-cli");
-        body.add("username", config.getAdminUsername());
-        body.add("password", config.getAdminPassword());
+        MultiValueMap<String, String> body = KeycloakRequests.passwordGrant(
+                KeycloakRequests.ADMIN_CLI, null, config.getAdminUsername(), config.getAdminPassword());
 
         HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(body, headers);
 
@@ -78,19 +100,12 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
                                              String clientId,
                                              String clientSecret) {
 
-        String tokenUrl = config.getBaseUrl() + "/realms/" + realm + "/protocol/openid-connect/token";
+        String tokenUrl = config.getBaseUrl() + KeycloakRequests.tokenPath(realm);
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
 
-        MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
-        body.add("grant_type", "password");
-        body.add("client_id", clientId);
-        if (clientSecret != null && !clientSecret.isBlank()) {
-            body.add("client_secret", clientSecret);
-        }
-        body.add("username", username);
-        body.add("password", password);
+        MultiValueMap<String, String> body = KeycloakRequests.passwordGrant(clientId, clientSecret, username, password);
 
         HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(body, headers);
 
@@ -119,7 +134,7 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
 
             // 2️⃣ Fetch client secret dynamically, skip for admin-cli
             String clientSecret = null; // declare outside
-            if (!"admin-cli".equals(clientId)) {
+            if (!KeycloakRequests.ADMIN_CLI.equals(clientId)) {
                 clientSecret = getClientSecretFromKeycloak(realm, clientId);
                 log.info("🔐 Client secret retrieved for client '{}': {}", clientId, clientSecret);
             } else {
@@ -127,20 +142,13 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
             }
 
             // 3️⃣ Build token URL
-            String tokenUrl = config.getBaseUrl() + "/realms/" + realm + "/protocol/openid-connect/token";
+            String tokenUrl = config.getBaseUrl() + KeycloakRequests.tokenPath(realm);
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
             headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
 
-            MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
-            formData.add("grant_type", "password");
-            formData.add("client_id", clientId);
-            if (clientSecret != null) {
-                formData.add("client_secret", clientSecret); // only add if not null
-            }
-            formData.add("username", username);
-            formData.add("password", password);
+            MultiValueMap<String, String> formData = KeycloakRequests.passwordGrant(clientId, clientSecret, username, password);
 
             HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(formData, headers);
 
@@ -149,7 +157,7 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
                     restTemplate.exchange(tokenUrl, HttpMethod.POST, request, String.class);
 
             // 5️⃣ Return parsed token JSON
-            return objectMapper.readValue(response.getBody(), new TypeReference<>() {});
+            return codecs.getMapReader().readValue(response.getBody());
 
         } catch (Exception e) {
             log.error("💥 Failed to get realm token for user '{}': {}", username, e.getMessage(), e);
@@ -167,40 +175,22 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
 
             // Step 2: Get client internal ID
             String clientsUrl = config.getBaseUrl() + "/admin/realms/" + realm + "/clients?clientId=" + clientId;
-            HttpHeaders headers = new HttpHeaders();
-            headers.setBearerAuth(adminToken);
-            HttpEntity<Void> request = new HttpEntity<>(headers);
-
-            ResponseEntity<List<Map<String, Object>>> clientsResponse = restTemplate.exchange(
-                    clientsUrl,
-                    HttpMethod.GET,
-                    request,
-                    new ParameterizedTypeReference<>() {}
-            );
-
-            List<Map<String, Object>> clients = clientsResponse.getBody();
+            List<ClientRepresentation> clients = getJson(clientsUrl, adminToken, codecs.getClientListReader());
             if (clients == null || clients.isEmpty()) {
                 throw new RuntimeException("Client not found in Keycloak for clientId: " + clientId);
             }
 
-            String internalClientId = (String) clients.get(0).get("id");
+            String internalClientId = clients.get(0).id();
             log.info("Found internal client ID: {}", internalClientId);
 
             // Step 3: Get the secret for this client
             String secretUrl = config.getBaseUrl() + "/admin/realms/" + realm + "/clients/" + internalClientId + "/client-secret";
-            ResponseEntity<Map<String, Object>> secretResponse = restTemplate.exchange(
-                    secretUrl,
-                    HttpMethod.GET,
-                    request,
-                    new ParameterizedTypeReference<>() {}
-            );
-
-            Map<String, Object> secretBody = secretResponse.getBody();
-            if (secretBody == null || secretBody.get("value") == null) {
+            CredentialRepresentation secretBody = getJson(secretUrl, adminToken, codecs.getCredentialReader());
+            if (secretBody == null || secretBody.value() == null) {
                 throw new RuntimeException("Client secret not found for clientId: " + clientId);
             }
 
-            String clientSecret = (String) secretBody.get("value");
+            String clientSecret = secretBody.value();
             log.info("Successfully fetched client secret for '{}'", clientId);
             return clientSecret;
 
@@ -216,7 +206,7 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
     public boolean validateToken(String realm, String token) {
         log.info("Attempting to validate token for realm '{}'", realm);
         try {
-            String userInfoUrl = config.getBaseUrl() + "/realms/" + realm + "/protocol/openid-connect/userinfo";
+            String userInfoUrl = config.getBaseUrl() + KeycloakRequests.userInfoPath(realm);
             log.debug("User info validation URL: {}", userInfoUrl);
             HttpHeaders headers = new HttpHeaders();
             headers.setBearerAuth(token);
@@ -242,7 +232,7 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
         log.info("Attempting to create realm: {}", realmName);
         String url = config.getBaseUrl() + "/admin/realms";
         log.debug("Create realm URL: {}", url);
-        Map<String, Object> body = Map.of("realm", realmName, "enabled", true);
+        Map<String, Object> body = KeycloakRequests.realm(realmName);
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         headers.setBearerAuth(token);
@@ -256,18 +246,25 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
         }
     }
 
+    @Override
+    public boolean realmExists(String realm, String token) {
+        try {
+            getJson(config.getBaseUrl() + "/admin/realms/" + realm, token, codecs.getMapReader());
+            return true;
+        } catch (HttpClientErrorException.NotFound e) {
+            return false;
+        }
+    }
+
     @Override
     public List<Map<String, Object>> getAllRealms(String token) {
         log.info("Attempting to fetch all realms...");
         String url = config.getBaseUrl() + "/admin/realms";
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token);
-        HttpEntity<Void> entity = new HttpEntity<>(headers);
 
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+            List<Map<String, Object>> realms = getJson(url, token, codecs.getMapListReader());
             log.info("Successfully fetched all realms.");
-            return objectMapper.readValue(response.getBody(), new TypeReference<>() {});
+            return realms;
         } catch (Exception e) {
             log.error("Failed to fetch realms: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to fetch realms", e);
@@ -281,23 +278,7 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
         String url = config.getBaseUrl() + "/admin/realms/" + realm + "/clients";
 
         // Build request body
-        Map<String, Object> body = new HashMap<>();
-        body.put("clientId", clientId);
-        body.put("enabled", true);
-        body.put("protocol", "openid-connect");
-        body.put("publicClient", isPublicClient);
-        body.put("standardFlowEnabled", true);
-        body.put("directAccessGrantsEnabled", true);
-        body.put("authorizationServicesEnabled", true);
-
-        if (isPublicClient) {
-            body.put("clientAuthenticatorType", "client-id");
-            body.put("redirectUris", Collections.singletonList("*"));
-            body.put("serviceAccountsEnabled", false);
-        } else {
-            body.put("clientAuthenticatorType", "client-secret");
-            body.put("serviceAccountsEnabled", true);
-        }
+        Map<String, Object> body = KeycloakRequests.client(clientId, isPublicClient);
 
         // Set headers
         HttpHeaders headers = new HttpHeaders();
@@ -313,7 +294,12 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
             throw new RuntimeException("Failed to create client with status code: " + response.getStatusCode());
         }
 
-        // Return the client UUID
+        // Keycloak answers 201 with the new client's URL; only look the UUID up when that header is missing
+        URI location = response.getHeaders().getLocation();
+        if (location != null) {
+            String path = location.getPath();
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
         return getClientUUID(realm, clientId, token);
     }
 
@@ -323,13 +309,11 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
     public List<Map<String, Object>> getAllClients(String realm, String token) {
         log.info("Attempting to fetch all clients for realm '{}'", realm);
         String url = config.getBaseUrl() + "/admin/realms/" + realm + "/clients";
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token);
 
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+            List<Map<String, Object>> clients = getJson(url, token, codecs.getMapListReader());
             log.info("Successfully fetched all clients for realm '{}'.", realm);
-            return objectMapper.readValue(response.getBody(), new TypeReference<>() {});
+            return clients;
         } catch (Exception e) {
             log.error("Failed to fetch clients for realm '{}': {}", realm, e.getMessage(), e);
             throw new RuntimeException("Failed to fetch clients", e);
@@ -340,15 +324,11 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
     public String getClientSecret(String realm, String clientId, String token) {
         log.info("Attempting to get client secret for client '{}' in realm '{}'", clientId, realm);
         String url = config.getBaseUrl() + "/admin/realms/" + realm + "/clients/" + clientId + "/client-secret";
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token);
-        HttpEntity<Void> entity = new HttpEntity<>(headers);
 
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            Map<String, Object> map = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
+            CredentialRepresentation secret = getJson(url, token, codecs.getCredentialReader());
             log.info("Successfully fetched client secret for client '{}'.", clientId);
-            return (String) map.get("value");
+            return secret.value();
         } catch (Exception e) {
             log.error("Failed to fetch client secret for client '{}': {}", clientId, e.getMessage(), e);
             throw new RuntimeException("Failed to fetch client secret", e);
@@ -362,15 +342,10 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
         if (token == null || !validateToken("master", token)) {
             token = getMasterToken();
         }
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token);
 
-        ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
-                url, HttpMethod.GET, new HttpEntity<>(headers),
-                new ParameterizedTypeReference<>() {}
-        );
-        if (response.getBody() != null && !response.getBody().isEmpty()) {
-            String uuid = (String) response.getBody().get(0).get("id");
+        List<ClientRepresentation> clients = getJson(url, token, codecs.getClientListReader());
+        if (clients != null && !clients.isEmpty()) {
+            String uuid = clients.get(0).id();
             log.info("Found UUID for client '{}': {}", clientName, uuid);
             return uuid;
         }
@@ -378,6 +353,16 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
         throw new RuntimeException("Client not found: " + clientName);
     }
 
+    @Override
+    public Optional<String> findClientUUID(String realm, String clientId, String token) {
+        String url = config.getBaseUrl() + "/admin/realms/" + realm + "/clients?clientId=" + clientId;
+        List<ClientRepresentation> clients = getJson(url, token, codecs.getClientListReader());
+        return clients.stream()
+                .filter(client -> clientId.equals(client.clientId()))
+                .map(ClientRepresentation::id)
+                .findFirst();
+    }
+
     @Override
     public String getClientId(String realm, String clientName, String token) {
         log.info("Attempting to get client ID for name '{}'", clientName);
@@ -390,20 +375,21 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
     public String createUser(String realm, String token, Map<String, Object> userPayload) {
         String username = (String) userPayload.get("username");
         log.info("Attempting to create user '{}' in realm '{}'", username, realm);
-        userPayload.put("emailVerified", true);
+        Map<String, Object> payload = KeycloakRequests.user(userPayload);
         String url = config.getBaseUrl() + "/admin/realms/" + realm + "/users";
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         headers.setBearerAuth(token);  // <-- use provided token
 
         try {
-            ResponseEntity<Void> response = restTemplate.postForEntity(url, new HttpEntity<>(userPayload, headers), Void.class);
+            ResponseEntity<Void> response = restTemplate.postForEntity(url, new HttpEntity<>(payload, headers), Void.class);
 
             if (response.getStatusCode() == HttpStatus.CREATED) {
                 String location = response.getHeaders().getFirst("Location");
                 if (location != null) {
-                    String userId = location.substring(location.lastIndexOf("/") + 1);
+                    String userId = KeycloakRequests.idFromLocation(location);
                     log.info("User '{}' created successfully with ID: {}", username, userId);
+                    events.publishEvent(UserCreatedEvent.of(realm, userId, payload));
                     return userId;
                 }
             }
@@ -418,17 +404,46 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
     }
 
 
+    @Override
+    public List<Map<String, Object>> partialImportUsers(String realm, String token, List<Map<String, Object>> users) {
+        log.info("Partial-importing {} users into realm '{}'", users.size(), realm);
+        String url = config.getBaseUrl() + "/admin/realms/" + realm + "/partialImport";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(token);
+
+        Map<String, Object> body = Map.of(
+                "ifResourceExists", "SKIP",
+                "users", users
+        );
+
+        ResponseEntity<Map> response = restTemplate.postForEntity(url, new HttpEntity<>(body, headers), Map.class);
+        Map<String, Object> summary = response.getBody();
+        if (summary == null || !(summary.get("results") instanceof List<?> results)) {
+            throw new RuntimeException("Partial import returned no results for realm " + realm);
+        }
+        log.info("Partial import into realm '{}': added={}, skipped={}", realm, summary.get("added"), summary.get("skipped"));
+
+        Map<Object, Map<String, Object>> byUsername = new HashMap<>();
+        users.forEach(user -> byUsername.put(user.get("username"), user));
+        for (Object item : results) {
+            if (item instanceof Map<?, ?> result && "ADDED".equals(result.get("action"))
+                    && byUsername.get(result.get("resourceName")) instanceof Map<String, Object> user) {
+                events.publishEvent(UserCreatedEvent.of(realm, (String) result.get("id"), user));
+            }
+        }
+        return (List<Map<String, Object>>) results;
+    }
+
     @Override
     public List<Map<String, Object>> getAllUsers(String realm, String token) {
         log.info("Attempting to fetch all users for realm '{}'", realm);
         String url = config.getBaseUrl() + "/admin/realms/" + realm + "/users";
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token);
 
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+            List<Map<String, Object>> users = getJson(url, token, codecs.getMapListReader());
             log.info("Successfully fetched all users for realm '{}'.", realm);
-            return objectMapper.readValue(response.getBody(), new TypeReference<>() {});
+            return users;
         } catch (Exception e) {
             log.error("Failed to fetch users for realm '{}': {}", realm, e.getMessage(), e);
             throw new RuntimeException("Failed to fetch users", e);
@@ -437,7 +452,7 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
 
     // ---------------- ROLE ----------------
     @Override
-    public void createClientRoles(String realm, String clientName, List<RoleCreationRequest> roleRequests, String token) {
+    public List<RoleCreationResult> createClientRoles(String realm, String clientName, List<RoleCreationRequest> roleRequests, String token) {
         log.info("Attempting to create {} client roles for client '{}' in realm '{}'", roleRequests.size(), clientName, realm);
         String clientUUID = getClientUUID(realm, clientName, token);
         log.info("Client UUID for '{}' is '{}'", clientName, clientUUID);
@@ -448,24 +463,29 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
         headers.setBearerAuth(token);
         headers.setContentType(MediaType.APPLICATION_JSON);
 
-        List<String> failedRoles = new ArrayList<>();
-        for (RoleCreationRequest role : roleRequests) {
-            Map<String, Object> body = Map.of(
-                    "name", role.getName(),
-                    "description", role.getDescription()
-            );
-            try {
-                restTemplate.postForEntity(url, new HttpEntity<>(body, headers), String.class);
-                log.info("Role '{}' created successfully.", role.getName());
-            } catch (Exception e) {
-                failedRoles.add(role.getName());
-                log.error("Failed to create role '{}': {}", role.getName(), e.getMessage());
-            }
-        }
-
-        if (!failedRoles.isEmpty()) {
-            throw new RuntimeException("Failed to create roles: " + String.join(", ", failedRoles));
-        }
+        List<RoleCreationResult> results = BoundedParallel.map(roleRequests, bulkParallelism, bulkDeadline,
+                role -> {
+                    Map<String, Object> body = new HashMap<>();
+                    body.put("name", role.getName());
+                    if (role.getDescription() != null) {
+                        body.put("description", role.getDescription());
+                    }
+                    restTemplate.postForEntity(url, new HttpEntity<>(body, headers), String.class);
+                    log.info("Role '{}' created successfully.", role.getName());
+                    return RoleCreationResult.created(role.getName());
+                },
+                (role, e) -> {
+                    if (e instanceof HttpClientErrorException.Conflict) {
+                        log.info("Role '{}' already exists.", role.getName());
+                        return RoleCreationResult.alreadyExists(role.getName());
+                    }
+                    log.error("Failed to create role '{}': {}", role.getName(), e.getMessage());
+                    return RoleCreationResult.failed(role.getName(), e.getMessage());
+                });
+
+        long failed = results.stream().filter(r -> r.status() == RoleCreationResult.Status.FAILED).count();
+        log.info("Created roles for client '{}': {} requested, {} failed", clientName, results.size(), failed);
+        return results;
     }
 
 
@@ -554,47 +574,130 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
         log.info("Attempting to fetch all roles for client '{}' in realm '{}'", clientId, realm);
         String clientUUID = getClientUUID(realm, clientId, token);
         String url = config.getBaseUrl() + "/admin/realms/" + realm + "/clients/" + clientUUID + "/roles";
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token);
 
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+            List<Map<String, Object>> roles = getJson(url, token, codecs.getMapListReader());
             log.info("Successfully fetched all roles for client '{}'.", clientId);
-            return objectMapper.readValue(response.getBody(), new TypeReference<>() {});
+            return roles;
+        } catch (Exception e) {
+            log.error("Failed to fetch roles for client '{}': {}", clientId, e.getMessage(), e);
+            throw new RuntimeException("Failed to fetch roles", e);
+        }
+    }
+
+    // ---------------- PAGED LISTINGS ----------------
+    @Override
+    public List<Map<String, Object>> getClients(String realm, String token, int first, int max) {
+        log.info("Fetching clients {}..{} for realm '{}'", first, first + max, realm);
+        String url = config.getBaseUrl() + "/admin/realms/" + realm + "/clients" + page(first, max);
+        try {
+            return getJson(url, token, codecs.getMapListReader());
+        } catch (Exception e) {
+            log.error("Failed to fetch clients for realm '{}': {}", realm, e.getMessage(), e);
+            throw new RuntimeException("Failed to fetch clients", e);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> getUsers(String realm, String token, int first, int max) {
+        log.info("Fetching users {}..{} for realm '{}'", first, first + max, realm);
+        String url = config.getBaseUrl() + "/admin/realms/" + realm + "/users" + page(first, max);
+        try {
+            return getJson(url, token, codecs.getMapListReader());
+        } catch (Exception e) {
+            log.error("Failed to fetch users for realm '{}': {}", realm, e.getMessage(), e);
+            throw new RuntimeException("Failed to fetch users", e);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> getRoles(String realm, String clientId, String token, int first, int max) {
+        log.info("Fetching roles {}..{} for client '{}' in realm '{}'", first, first + max, clientId, realm);
+        String clientUUID = getClientUUID(realm, clientId, token);
+        String url = config.getBaseUrl() + "/admin/realms/" + realm + "/clients/" + clientUUID + "/roles" + page(first, max);
+        try {
+            return getJson(url, token, codecs.getMapListReader());
         } catch (Exception e) {
             log.error("Failed to fetch roles for client '{}': {}", clientId, e.getMessage(), e);
             throw new RuntimeException("Failed to fetch roles", e);
         }
     }
 
+    @Override
+    public long forEachClient(String realm, String token, ListingQuery query, Consumer<ObjectNode> sink) {
+        // The clients endpoint has no briefRepresentation flag, so brief mode is a local projection
+        if (query.brief() && query.fields().isEmpty()) {
+            query = new ListingQuery(query.first(), query.max(), query.pageSize(), false, BRIEF_CLIENT_FIELDS);
+        }
+        return walkPages(config.getBaseUrl() + "/admin/realms/" + realm + "/clients", token, query, sink);
+    }
+
+    @Override
+    public long forEachUser(String realm, String token, ListingQuery query, Consumer<ObjectNode> sink) {
+        return walkPages(config.getBaseUrl() + "/admin/realms/" + realm + "/users", token, query, sink);
+    }
+
+    @Override
+    public long forEachRole(String realm, String clientId, String token, ListingQuery query, Consumer<ObjectNode> sink) {
+        return forEachClientRole(realm, getClientUUID(realm, clientId, token), token, query, sink);
+    }
+
+    @Override
+    public long forEachClientRole(String realm, String clientUUID, String token, ListingQuery query, Consumer<ObjectNode> sink) {
+        return walkPages(config.getBaseUrl() + "/admin/realms/" + realm + "/clients/" + clientUUID + "/roles", token, query, sink);
+    }
+
+    @Override
+    public long forEachRealmRole(String realm, String token, ListingQuery query, Consumer<ObjectNode> sink) {
+        return walkPages(config.getBaseUrl() + "/admin/realms/" + realm + "/roles", token, query, sink);
+    }
+
+    // ---------------- PASS-THROUGH ----------------
+    @Override
+    public ClientHttpResponse streamAllRealms(String token) {
+        log.info("Streaming all realms straight from Keycloak...");
+        return open(config.getBaseUrl() + "/admin/realms", token);
+    }
+
+    @Override
+    public ClientHttpResponse streamAllClients(String realm, String token) {
+        log.info("Streaming all clients for realm '{}' straight from Keycloak", realm);
+        return open(config.getBaseUrl() + "/admin/realms/" + realm + "/clients", token);
+    }
+
+    @Override
+    public ClientHttpResponse streamAllUsers(String realm, String token) {
+        log.info("Streaming all users for realm '{}' straight from Keycloak", realm);
+        return open(config.getBaseUrl() + "/admin/realms/" + realm + "/users", token);
+    }
+
     // ---------------- ROLE ASSIGN ----------------
     @Override
     public void assignClientRole(String realm, String username, String clientName, String roleName, String token) {
-        // Resolve IDs automatically
-        String userId = resolveUserId(realm, username, token);
-        String clientUUID = getClientUUID(realm, clientName, token);
-        String roleId = getClientRoleId(realm, clientUUID, roleName, token);
+        // Resolve IDs automatically; the user lookup and the client -> role lookups are independent,
+        // so they run side by side and a failure in either cancels the other
+        Supplier<String> userId;
+        Supplier<ClientRoleIds> clientRole;
+        try (ForkJoinScope scope = new ForkJoinScope(resolveDeadline)) {
+            userId = scope.fork(() -> resolveUserId(realm, username, token));
+            clientRole = scope.fork(() -> {
+                String clientUUID = getClientUUID(realm, clientName, token);
+                return new ClientRoleIds(clientUUID, getClientRoleId(realm, clientUUID, roleName, token));
+            });
+            scope.join();
+        }
 
         // Perform assignment
-        assignClientRoleToUser(realm, userId, clientUUID, roleId, roleName, token);
+        ClientRoleIds ids = clientRole.get();
+        assignClientRoleToUser(realm, userId.get(), ids.clientUUID(), ids.roleId(), roleName, token);
     }
 
     @Override
     public void assignClientRoleToUser(String realm, String userId, String clientUUID, String roleId, String roleName, String token) {
         String url = config.getBaseUrl() + "/admin/realms/" + realm + "/users/" + userId + "/role-mappings/clients/" + clientUUID;
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token);
-        headers.setContentType(MediaType.APPLICATION_JSON);
-
-        // Prepare role payload
-        List<Map<String, Object>> roles = List.of(Map.of(
-                "id", roleId,
-                "name", roleName
-        ));
-
         try {
-            restTemplate.postForEntity(url, new HttpEntity<>(roles, headers), String.class);
+            postRoleMappings(url, token, List.of(RoleRepresentation.reference(roleId, roleName)));
             log.info("Assigned role '{}' to user '{}' in client '{}'", roleName, userId, clientUUID);
         } catch (Exception e) {
             log.error("Failed to assign role '{}' to user '{}': {}", roleName, userId, e.getMessage(), e);
@@ -602,129 +705,201 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
         }
     }
 
-
-    // ---------------- SIGNUP ----------------
     @Override
-    public void signup(SignupRequest request , MultipartFile dockerImage) {
-        log.info("🚀 Starting signup process for product '{}', realm '{}'",
-                request.getClientId(), request.getRealmName());
-
-        String masterToken = getMasterToken();
-        log.debug("✅ Master token retrieved successfully (length = {})",
-                masterToken != null ? masterToken.length() : 0);
-
-        String realm = request.getRealmName() != null ? request.getRealmName() : "default-realm";
-        String clientId = request.getClientId() != null ? request.getClientId() : "default-client";
+    public List<RoleAssignmentResult> assignClientRoles(String realm, String clientName, List<RoleAssignmentRequest> assignments, String token) {
+        log.info("Attempting bulk assignment of client '{}' roles to {} users in realm '{}'", clientName, assignments.size(), realm);
 
-        try {
-            // Step 1: Create Realm
-            log.info("🧱 Step 1: Creating realm '{}'", realm);
-            createRealm(realm, masterToken);
-            log.info("✅ Realm '{}' created successfully", realm);
-
-            // Step 2: Create Client
-            log.info("🧩 Step 2: Creating client '{}'", clientId);
-            String clientUUID = createClient(realm, clientId, request.isPublicClient(), masterToken);
-            log.info("✅ Client created successfully with ID: {}", clientUUID);
-
-            // Step 3: Create Admin User
-            log.info("👤 Step 3: Creating admin user '{}'", request.getAdminUser().getUsername());
-
-            Map<String, Object> userMap = new HashMap<>();
-            userMap.put("username", request.getAdminUser().getUsername());
-            userMap.put("email", request.getAdminUser().getEmail());
-            userMap.put("firstName", request.getAdminUser().getFirstName());
-            userMap.put("lastName", request.getAdminUser().getLastName());
-            userMap.put("enabled", true);
-
-            Map<String, Object> credentials = Map.of(
-                    "type", "password",
-                    "value", request.getAdminUser().getPassword(),
-                    "temporary", false
-            );
-            userMap.put("credentials", List.of(credentials));
+        // Client and role IDs are resolved once for the whole batch
+        String clientUUID = getClientUUID(realm, clientName, token);
+        String rolesUrl = config.getBaseUrl() + "/admin/realms/" + realm + "/clients/" + clientUUID + "/roles";
+        List<RoleRepresentation> clientRoles = getJson(rolesUrl, token, codecs.getRoleListReader());
+        Map<String, RoleRepresentation> rolesByName = new HashMap<>();
+        for (RoleRepresentation role : clientRoles) {
+            rolesByName.put(role.name(), RoleRepresentation.reference(role.id(), role.name()));
+        }
 
-            log.debug("🧾 User payload: {}", userMap);
+        List<RoleAssignmentResult> results = BoundedParallel.map(assignments, bulkParallelism, bulkDeadline,
+                assignment -> {
+                    List<String> unknown = assignment.roles().stream().filter(r -> !rolesByName.containsKey(r)).toList();
+                    if (!unknown.isEmpty()) {
+                        return RoleAssignmentResult.failed(assignment.username(), assignment.roles(), "Role not found: " + String.join(", ", unknown));
+                    }
+                    String userId = resolveUserId(realm, assignment.username(), token);
+                    List<RoleRepresentation> roles = assignment.roles().stream().map(rolesByName::get).toList();
+                    // One role-mapping POST per user, carrying all of that user's roles
+                    postRoleMappings(config.getBaseUrl() + "/admin/realms/" + realm + "/users/" + userId
+                            + "/role-mappings/clients/" + clientUUID, token, roles);
+                    log.info("Assigned roles {} to user '{}' in client '{}'", assignment.roles(), assignment.username(), clientName);
+                    return RoleAssignmentResult.assigned(assignment.username(), assignment.roles());
+                },
+                (assignment, e) -> {
+                    log.error("Failed to assign roles {} to user '{}': {}", assignment.roles(), assignment.username(), e.getMessage());
+                    return RoleAssignmentResult.failed(assignment.username(), assignment.roles(), e.getMessage());
+                });
+
+        long failed = results.stream().filter(r -> r.status() == RoleAssignmentResult.Status.FAILED).count();
+        log.info("Bulk role assignment for client '{}': {} users, {} failed", clientName, results.size(), failed);
+        return results;
+    }
 
-            String userId = createUser(realm, masterToken, userMap);
-            log.info("✅ Admin user created successfully with ID: {}", userId);
 
-            // Step 4: Assign default roles
-            log.info("🔑 Step 4: Assigning default admin roles to '{}'", request.getAdminUser().getUsername());
-            List<String> defaultRoles = List.of("create-client", "impersonation", "manage-realm", "manage-users","manage-clients");
-            for (String role : defaultRoles) {
-                assignRealmManagementRoleToUser(realm, userId, role, masterToken);
-                log.debug("➡️ Assigned realm-management role '{}'", role);
-            }
-            log.info("✅ Default admin roles assigned successfully.");
-
-            // Step 5: Send data to Project Management Service
-            log.info("📤 Step 5: Sending project info to Project Management Service...");
-
-            // Create UrlEntry
-            UrlEntry urlEntry = new UrlEntry();
-            urlEntry.setUrl(request.getUrl());
-            urlEntry.setUri(request.getUri());
-
-            // Create RoleRequest
-            RoleRequest roleRequest = new RoleRequest();
-            roleRequest.setRealmName(realm);
-            roleRequest.setProductName(clientId);
-            roleRequest.setRoleName("admin");
-            roleRequest.setUrls(List.of(urlEntry));
-
-            log.debug("📦 Payload to Project Manager: {}", roleRequest);
-
-            WebClient webClient = WebClient.builder()
-                    .baseUrl(projectManagementBaseUrl)
-                    .build();
-
-            webClient.post()
-                    .uri("/project/roles/save-or-update")
-                    .bodyValue(roleRequest)
-                    .retrieve()
-                    .toBodilessEntity()
-                    .doOnSubscribe(s -> log.info("🌐 Sending data to Project Manager..."))
-                    .doOnSuccess(r -> log.info("✅ Successfully stored data in Project Manager."))
-                    .doOnError(e -> log.error("❌ Error storing data in Project Manager: {}", e.getMessage(), e))
-                    .block();
+    // ---------------- SIGNUP ----------------
+    @Override
+    public void applySignupDefaults(SignupRequest request) {
+        if (request.getRealmName() == null) {
+            request.setRealmName("default-realm");
+        }
+        if (request.getClientId() == null) {
+            request.setClientId("default-client");
+        }
+    }
 
+    /**
+     * Creates the realm with its client, admin user and role mappings in one call from {@link RealmTemplate}.
+     * Keycloak imports a realm representation atomically, so a template rejected as invalid (400) leaves
+     * nothing behind and the caller can fall back to the step-by-step path; a realm that already exists is
+     * a real conflict, and any other error fails the signup rather than retrying against a sick server.
+     *
+     * @return false if template provisioning is switched off, or the template could not be rendered or was
+     *         rejected, and the caller should fall back to the step-by-step path
+     */
+    @Override
+    public boolean createTenantFromTemplate(SignupRequest request, String masterToken) {
+        if (signupProvisioningMode != RealmTemplate.Mode.TEMPLATE) {
+            return false;
+        }
+        String realm = request.getRealmName();
+        log.info("🧱 Steps 1-4: Creating realm '{}' with client '{}' and admin user '{}' from template",
+                realm, request.getClientId(), request.getAdminUser().getUsername());
+        ObjectNode representation;
+        try {
+            representation = realmTemplate.render(tenantVariables(request));
         } catch (Exception e) {
-            log.error("💥 Signup process failed: {}", e.getMessage(), e);
-            throw new RuntimeException("Signup failed: " + e.getMessage(), e);
+            log.warn("⚠️ Realm template unusable, falling back to step-by-step signup: {}", e.getMessage());
+            return false;
         }
 
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(masterToken);
+        try {
+            restTemplate.postForEntity(config.getBaseUrl() + "/admin/realms", new HttpEntity<>(representation, headers), String.class);
+        } catch (HttpClientErrorException.Conflict e) {
+            throw new RuntimeException("Realm already exists: " + realm, e);
+        } catch (HttpClientErrorException.BadRequest e) {
+            log.warn("⚠️ Keycloak rejected the realm template ({}), falling back to step-by-step signup: {}",
+                    e.getStatusCode(), e.getResponseBodyAsString());
+            return false;
+        }
+        log.info("✅ Realm '{}' created from template in a single call", realm);
+        publishTemplateUsers(realm, representation, masterToken);
+        return true;
+    }
 
+    // The import response carries no IDs, so each user created by the template is looked up once
+    private void publishTemplateUsers(String realm, ObjectNode representation, String token) {
+        for (JsonNode user : representation.path("users")) {
+            String username = user.path("username").asText();
+            try {
+                String userId = resolveUserId(realm, username, token);
+                events.publishEvent(UserCreatedEvent.of(realm, userId, codecs.getMapReader().readValue(user)));
+            } catch (Exception e) {
+                log.warn("⚠️ Could not announce template user '{}' in realm '{}': {}", username, realm, e.getMessage());
+            }
+        }
+    }
 
-// After clientService.signup(request, dockerImage);
+    private Map<String, Object> tenantVariables(SignupRequest request) {
+        SignupRequest.AdminUser admin = request.getAdminUser();
+        boolean publicClient = request.isPublicClient();
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("realm", request.getRealmName());
+        variables.put("clientId", request.getClientId());
+        variables.put("publicClient", publicClient);
+        variables.put("clientAuthenticatorType", publicClient ? "client-id" : "client-secret");
+        variables.put("serviceAccountsEnabled", !publicClient);
+        variables.put("redirectUris", publicClient ? List.of("*") : List.of());
+        variables.put("admin.username", admin.getUsername());
+        variables.put("admin.email", admin.getEmail());
+        variables.put("admin.firstName", admin.getFirstName());
+        variables.put("admin.lastName", admin.getLastName());
+        variables.put("admin.password", admin.getPassword());
+        variables.put("admin.roles", DEFAULT_ADMIN_ROLES);
+        return variables;
+    }
 
-        provisioningService.provisionRepoAndPushZip(
-                request.getRealmName(),
-                request.getClientId(),
-                dockerImage
+    @Override
+    public String createAdminUser(SignupRequest request, String masterToken) {
+        log.info("👤 Step 3: Creating admin user '{}'", request.getAdminUser().getUsername());
+
+        Map<String, Object> userMap = new HashMap<>();
+        userMap.put("username", request.getAdminUser().getUsername());
+        userMap.put("email", request.getAdminUser().getEmail());
+        userMap.put("firstName", request.getAdminUser().getFirstName());
+        userMap.put("lastName", request.getAdminUser().getLastName());
+        userMap.put("enabled", true);
+
+        Map<String, Object> credentials = Map.of(
+                "type", "password",
+                "value", request.getAdminUser().getPassword(),
+                "temporary", false
         );
+        userMap.put("credentials", List.of(credentials));
 
+        String userId = createUser(request.getRealmName(), masterToken, userMap);
+        log.info("✅ Admin user created successfully with ID: {}", userId);
+        return userId;
+    }
 
-        log.info("🎉 Signup process completed for realm '{}'", realm);
+    @Override
+    public void grantAdminRoles(String realm, String userId, String masterToken) {
+        log.info("🔑 Step 4: Assigning default admin roles to user ID '{}'", userId);
+        grantRealmManagementRoles(realm, userId, DEFAULT_ADMIN_ROLES, masterToken);
+        log.info("✅ Default admin roles assigned successfully.");
     }
 
+    @Override
+    public void registerWithProjectManager(SignupRequest request) {
+        log.info("📤 Step 5: Sending project info to Project Management Service...");
+
+        // Create UrlEntry
+        UrlEntry urlEntry = new UrlEntry();
+        urlEntry.setUrl(request.getUrl());
+        urlEntry.setUri(request.getUri());
+
+        // Create RoleRequest
+        RoleRequest roleRequest = new RoleRequest();
+        roleRequest.setRealmName(request.getRealmName());
+        roleRequest.setProductName(request.getClientId());
+        roleRequest.setRoleName("admin");
+        roleRequest.setUrls(List.of(urlEntry));
 
+        log.debug("📦 Payload to Project Manager: {}", roleRequest);
+
+        // Through the shared RestTemplate, so the call counts against the Project Manager breaker and bulkhead
+        try {
+            log.info("🌐 Sending data to Project Manager...");
+            restTemplate.postForEntity(projectManagementBaseUrl + "/project/roles/save-or-update", roleRequest, Void.class);
+            log.info("✅ Successfully stored data in Project Manager.");
+        } catch (RestClientException e) {
+            log.error("❌ Error storing data in Project Manager: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
 
     // ---------------- UTILITY ----------------
-    private String resolveUserId(String realm, String username, String token) {
+    @Override
+    public String resolveUserId(String realm, String username, String token) {
         log.info("Resolving user ID for username '{}' in realm '{}'", username, realm);
         String url = config.getBaseUrl() + "/admin/realms/" + realm + "/users?username=" + username;
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token);
 
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
-            List<Map<String, Object>> users = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
+            List<UserRepresentation> users = getJson(url, token, codecs.getUserListReader());
             if (users.isEmpty()) {
                 log.error("User not found: {}", username);
                 throw new RuntimeException("User not found: " + username);
             }
-            String userId = (String) users.get(0).get("id");
+            String userId = users.get(0).id();
             log.info("Resolved user ID: '{}' for username '{}'", userId, username);
             return userId;
         } catch (Exception e) {
@@ -733,18 +908,25 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
         }
     }
 
+    @Override
+    public Optional<String> findUserId(String realm, String username, String token) {
+        String url = config.getBaseUrl() + "/admin/realms/" + realm + "/users?exact=true&username=" + username;
+        List<UserRepresentation> users = getJson(url, token, codecs.getUserListReader());
+        return users.stream()
+                .filter(user -> username.equalsIgnoreCase(user.username()))
+                .map(UserRepresentation::id)
+                .findFirst();
+    }
+
     private String getClientRoleId(String realm, String clientUUID, String roleName, String token) {
         log.info("Fetching client role ID for role '{}' on client UUID '{}'", roleName, clientUUID);
         String url = config.getBaseUrl() + "/admin/realms/" + realm + "/clients/" + clientUUID + "/roles";
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token);
 
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
-            List<Map<String, Object>> roles = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
+            List<RoleRepresentation> roles = getJson(url, token, codecs.getRoleListReader());
             String roleId = roles.stream()
-                    .filter(r -> r.get("name").equals(roleName))
-                    .map(r -> (String) r.get("id"))
+                    .filter(r -> roleName.equals(r.name()))
+                    .map(RoleRepresentation::id)
                     .findFirst()
                     .orElseThrow(() -> new RuntimeException("Role not found: " + roleName));
             log.info("Fetched role ID: '{}' for role name '{}'", roleId, roleName);
@@ -755,39 +937,70 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
         }
     }
 
-    private void assignRealmManagementRoleToUser(String realm, String userId, String roleName, String token) {
-        log.info("Assigning realm management role '{}' to user ID '{}'", roleName, userId);
-        String clientId = getRealmManagementClientId(realm, token);
-        String roleId = getRealmManagementRoleId(realm, roleName, token);
-        String url = config.getBaseUrl() + "/admin/realms/" + realm + "/users/" + userId + "/role-mappings/clients/" + clientId;
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token);
-        headers.setContentType(MediaType.APPLICATION_JSON);
-
-        List<Map<String, Object>> roles = List.of(Map.of("id", roleId, "name", roleName));
-
+    /**
+     * Grants realm-management client roles with a single role-mapping POST.
+     * The realm-management client UUID and its role representations are looked up once per realm and
+     * cached; if a cached entry turns out to be stale (e.g. the realm was recreated) it is reloaded once.
+     */
+    private void grantRealmManagementRoles(String realm, String userId, List<String> roleNames, String token) {
+        log.info("Assigning realm management roles {} to user ID '{}'", roleNames, userId);
         try {
-            restTemplate.postForEntity(url, new HttpEntity<>(roles, headers), String.class);
-            log.info("Realm management role '{}' assigned successfully to user ID '{}'", roleName, userId);
+            try {
+                postRealmManagementRoles(realm, userId, roleNames, realmManagementRoles(realm, token), token);
+            } catch (HttpClientErrorException.NotFound e) {
+                log.warn("Cached realm-management roles for realm '{}' are stale, reloading", realm);
+                realmManagementCache.remove(realm);
+                postRealmManagementRoles(realm, userId, roleNames, realmManagementRoles(realm, token), token);
+            }
         } catch (Exception e) {
-            log.error("Failed to assign realm role '{}' to user ID '{}': {}", roleName, userId, e.getMessage(), e);
+            log.error("Failed to assign realm roles {} to user ID '{}': {}", roleNames, userId, e.getMessage(), e);
             throw new RuntimeException("Failed to assign realm role to user: " + e.getMessage(), e);
         }
+        log.info("Realm management roles {} assigned successfully to user ID '{}'", roleNames, userId);
+    }
+
+    private void postRealmManagementRoles(String realm, String userId, List<String> roleNames,
+                                          RealmManagementRoles realmManagement, String token) {
+        List<RoleRepresentation> roles = roleNames.stream()
+                .map(name -> {
+                    RoleRepresentation role = realmManagement.roles().get(name);
+                    if (role == null) {
+                        throw new RuntimeException("realm-management role not found: " + name);
+                    }
+                    return role;
+                })
+                .toList();
+        String url = config.getBaseUrl() + "/admin/realms/" + realm + "/users/" + userId
+                + "/role-mappings/clients/" + realmManagement.clientUUID();
+        postRoleMappings(url, token, roles);
+    }
+
+    private RealmManagementRoles realmManagementRoles(String realm, String token) {
+        RealmManagementRoles cached = realmManagementCache.get(realm);
+        if (cached != null) {
+            return cached;
+        }
+        String clientUUID = getRealmManagementClientId(realm, token);
+        String url = config.getBaseUrl() + "/admin/realms/" + realm + "/clients/" + clientUUID + "/roles";
+        List<RoleRepresentation> roles = getJson(url, token, codecs.getRoleListReader());
+
+        Map<String, RoleRepresentation> byName = new HashMap<>();
+        for (RoleRepresentation role : roles) {
+            byName.put(role.name(), RoleRepresentation.reference(role.id(), role.name()));
+        }
+        RealmManagementRoles loaded = new RealmManagementRoles(clientUUID, Map.copyOf(byName));
+        realmManagementCache.put(realm, loaded);
+        log.info("Cached {} realm-management roles for realm '{}'", byName.size(), realm);
+        return loaded;
     }
 
     private String getRealmManagementClientId(String realm, String token) {
         log.info("Fetching realm-management client ID for realm '{}'", realm);
         String url = config.getBaseUrl() + "/admin/realms/" + realm + "/clients?clientId=realm-management";
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token);
 
-        ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
-                url, HttpMethod.GET, new HttpEntity<>(headers),
-                new ParameterizedTypeReference<>() {}
-        );
-        if (response.getBody() != null && !response.getBody().isEmpty()) {
-            String clientId = (String) response.getBody().get(0).get("id");
+        List<ClientRepresentation> clients = getJson(url, token, codecs.getClientListReader());
+        if (clients != null && !clients.isEmpty()) {
+            String clientId = clients.get(0).id();
             log.info("Found realm-management client ID: {}", clientId);
             return clientId;
         }
@@ -795,22 +1008,77 @@ public class KeycloakClientServiceImpl implements KeycloakClientService {
         throw new RuntimeException("realm-management client not found");
     }
 
-    private String getRealmManagementRoleId(String realm, String roleName, String token) {
-        log.info("Fetching realm management role ID for role '{}'", roleName);
-        String clientId = getRealmManagementClientId(realm, token);
-        String url = config.getBaseUrl() + "/admin/realms/" + realm + "/clients/" + clientId + "/roles/" + roleName;
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token);
+    private <T> T getJson(String url, String token, ObjectReader reader) {
+        return restTemplate.execute(url, HttpMethod.GET,
+                request -> request.getHeaders().setBearerAuth(token),
+                KeycloakCodecs.extractor(reader));
+    }
+
+    private static String page(int first, int max) {
+        return "?first=" + first + "&max=" + max;
+    }
 
+    /**
+     * Requests {@code baseUrl} one page at a time and decodes each page element by element.
+     * At most one record is held in memory; a short page marks the end of the listing.
+     * Field projection happens while parsing, so dropped fields are never materialized.
+     */
+    private long walkPages(String baseUrl, String token, ListingQuery query, Consumer<ObjectNode> sink) {
+        if (query.pageSize() <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        long total = 0;
+        int first = query.first();
+        long remaining = query.max();
+        while (remaining > 0) {
+            int size = (int) Math.min(query.pageSize(), remaining);
+            String url = baseUrl + (baseUrl.contains("?") ? "&" : "?") + "first=" + first + "&max=" + size;
+            if (query.brief()) {
+                url += "&briefRepresentation=true";
+            }
+            Integer count = restTemplate.execute(url, HttpMethod.GET,
+                    request -> request.getHeaders().setBearerAuth(token),
+                    response -> codecs.forEachElement(response.getBody(), query.fields(), sink));
+            int pageCount = count != null ? count : 0;
+            total += pageCount;
+            log.debug("Fetched page at {} with {} records from {}", first, pageCount, baseUrl);
+            if (pageCount < size) {
+                break;
+            }
+            first += pageCount;
+            remaining -= pageCount;
+        }
+        return total;
+    }
+
+    // Sends the GET and hands back the open response, so a non-2xx status surfaces before anything is streamed
+    private ClientHttpResponse open(String url, String token) {
+        URI uri = URI.create(url);
         try {
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
-            Map<String, Object> role = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
-            String roleId = (String) role.get("id");
-            log.info("Found realm management role ID: {}", roleId);
-            return roleId;
-        } catch (Exception e) {
-            log.error("Failed to fetch realm management role ID for '{}': {}", roleName, e.getMessage(), e);
-            throw new RuntimeException("Failed to fetch role ID: " + roleName, e);
+            ClientHttpRequest request = restTemplate.getRequestFactory().createRequest(uri, HttpMethod.GET);
+            request.getHeaders().setBearerAuth(token);
+            request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON));
+            ClientHttpResponse response = request.execute();
+            if (restTemplate.getErrorHandler().hasError(response)) {
+                try (response) {
+                    restTemplate.getErrorHandler().handleError(uri, HttpMethod.GET, response);
+                }
+            }
+            return response;
+        } catch (IOException e) {
+            throw new ResourceAccessException("I/O error on GET request for \"" + url + "\": " + e.getMessage(), e);
         }
     }
+
+    private void postRoleMappings(String url, String token, List<RoleRepresentation> roles) {
+        restTemplate.execute(url, HttpMethod.POST, request -> {
+            request.getHeaders().setBearerAuth(token);
+            request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            codecs.getRoleListWriter().writeValue(request.getBody(), roles);
+        }, null);
+    }
+
+    private record ClientRoleIds(String clientUUID, String roleId) {}
+
+    private record RealmManagementRoles(String clientUUID, Map<String, RoleRepresentation> roles) {}
 }
@@ -0,0 +1,115 @@
+package com.paxaris.identity_service.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.paxaris.identity_service.dto.keycloak.ClientRepresentation;
+import com.paxaris.identity_service.dto.keycloak.CredentialRepresentation;
+import com.paxaris.identity_service.dto.keycloak.RoleRepresentation;
+import com.paxaris.identity_service.dto.keycloak.UserRepresentation;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResponseExtractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Precompiled Jackson readers and writers for Keycloak admin payloads.
+ * ObjectReader/ObjectWriter are immutable and thread-safe, so they are resolved once here instead of
+ * building a new TypeReference and deserializer lookup on every call.
+ */
+@Getter
+@Component
+public class KeycloakCodecs {
+
+    private final ObjectReader mapReader;
+    private final ObjectReader mapListReader;
+    private final ObjectReader clientListReader;
+    private final ObjectReader userListReader;
+    private final ObjectReader roleReader;
+    private final ObjectReader roleListReader;
+    private final ObjectReader credentialReader;
+    private final ObjectReader nodeReader;
+    private final ObjectWriter roleListWriter;
+
+    public KeycloakCodecs(ObjectMapper objectMapper) {
+        this.mapReader = objectMapper.readerFor(new TypeReference<Map<String, Object>>() {});
+        this.mapListReader = objectMapper.readerFor(new TypeReference<List<Map<String, Object>>>() {});
+        this.clientListReader = objectMapper.readerFor(new TypeReference<List<ClientRepresentation>>() {});
+        this.userListReader = objectMapper.readerFor(new TypeReference<List<UserRepresentation>>() {});
+        this.roleReader = objectMapper.readerFor(RoleRepresentation.class);
+        this.roleListReader = objectMapper.readerFor(new TypeReference<List<RoleRepresentation>>() {});
+        this.credentialReader = objectMapper.readerFor(CredentialRepresentation.class);
+        this.nodeReader = objectMapper.readerFor(ObjectNode.class);
+        // Request bodies are owned by RestTemplate, so the writer must not close them
+        this.roleListWriter = objectMapper.writerFor(new TypeReference<List<RoleRepresentation>>() {})
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Decodes the response body straight from the socket stream, without an intermediate String.
+     */
+    public static <T> ResponseExtractor<T> extractor(ObjectReader reader) {
+        return response -> reader.readValue(response.getBody());
+    }
+
+    /**
+     * Walks a JSON array element by element, so only the current element is ever materialized.
+     *
+     * @return the number of elements handed to {@code sink}
+     */
+    public int forEachElement(InputStream in, Consumer<ObjectNode> sink) throws IOException {
+        int count = 0;
+        try (MappingIterator<ObjectNode> elements = nodeReader.readValues(in)) {
+            while (elements.hasNextValue()) {
+                sink.accept(elements.nextValue());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Like {@link #forEachElement(InputStream, Consumer)}, but keeps only the named top-level fields.
+     * Unwanted values are skipped at the token level and never turned into nodes, so large nested
+     * structures such as protocol mappers or attributes cost nothing but parsing.
+     */
+    public int forEachElement(InputStream in, Set<String> fields, Consumer<ObjectNode> sink) throws IOException {
+        if (fields.isEmpty()) {
+            return forEachElement(in, sink);
+        }
+        int count = 0;
+        try (JsonParser parser = nodeReader.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array from Keycloak");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                ObjectNode node = JsonNodeFactory.instance.objectNode();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    if (fields.contains(name)) {
+                        node.set(name, nodeReader.readTree(parser));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                sink.accept(node);
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,84 @@
+package com.paxaris.identity_service.service.impl;
+
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Paths and request bodies shared by the blocking and the reactive Keycloak client, so both send Keycloak
+ * exactly the same requests.
+ */
+final class KeycloakRequests {
+
+    static final String ADMIN_CLI = "admin-cli";
+
+    private KeycloakRequests() {
+    }
+
+    static String tokenPath(String realm) {
+        return "/realms/" + realm + "/protocol/openid-connect/token";
+    }
+
+    static String userInfoPath(String realm) {
+        return "/realms/" + realm + "/protocol/openid-connect/userinfo";
+    }
+
+    /**
+     * Resource owner password grant; {@code clientSecret} may be null for public clients such as admin-cli.
+     */
+    static MultiValueMap<String, String> passwordGrant(String clientId, String clientSecret, String username, String password) {
+        MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
+        body.add("grant_type", "password");
+        body.add("client_id", clientId);
+        if (clientSecret != null && !clientSecret.isBlank()) {
+            body.add("client_secret", clientSecret);
+        }
+        body.add("username", username);
+        body.add("password", password);
+        return body;
+    }
+
+    static Map<String, Object> realm(String realmName) {
+        return Map.of("realm", realmName, "enabled", true);
+    }
+
+    static Map<String, Object> client(String clientId, boolean isPublicClient) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("clientId", clientId);
+        body.put("enabled", true);
+        body.put("protocol", "openid-connect");
+        body.put("publicClient", isPublicClient);
+        body.put("standardFlowEnabled", true);
+        body.put("directAccessGrantsEnabled", true);
+        body.put("authorizationServicesEnabled", true);
+
+        if (isPublicClient) {
+            body.put("clientAuthenticatorType", "client-id");
+            body.put("redirectUris", List.of("*"));
+            body.put("serviceAccountsEnabled", false);
+        } else {
+            body.put("clientAuthenticatorType", "client-secret");
+            body.put("serviceAccountsEnabled", true);
+        }
+        return body;
+    }
+
+    /**
+     * Copy of the caller's user representation, so their map is left untouched, with the email marked verified.
+     */
+    static Map<String, Object> user(Map<String, Object> userPayload) {
+        Map<String, Object> payload = new HashMap<>(userPayload);
+        payload.put("emailVerified", true);
+        return payload;
+    }
+
+    /**
+     * Keycloak answers a create with 201 and the new resource's URL; its last segment is the id.
+     */
+    static String idFromLocation(String location) {
+        return location.substring(location.lastIndexOf('/') + 1);
+    }
+}
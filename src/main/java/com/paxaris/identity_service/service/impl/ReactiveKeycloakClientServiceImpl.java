@@ -0,0 +1,287 @@
+package com.paxaris.identity_service.service.impl;
+
+import com.paxaris.identity_service.dto.KeycloakConfig;
+import com.paxaris.identity_service.dto.RoleCreationRequest;
+import com.paxaris.identity_service.dto.RoleRequest;
+import com.paxaris.identity_service.dto.UrlEntry;
+import com.paxaris.identity_service.service.ReactiveKeycloakClientService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+public class ReactiveKeycloakClientServiceImpl implements ReactiveKeycloakClientService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveKeycloakClientServiceImpl.class);
+
+    private static final ParameterizedTypeReference<Map<String, Object>> MAP_TYPE = new ParameterizedTypeReference<>() {};
+
+    private final KeycloakConfig config;
+    private final WebClient keycloak;
+    private final WebClient projectManager;
+
+    public ReactiveKeycloakClientServiceImpl(
+            KeycloakConfig config,
+            WebClient.Builder webClientBuilder,
+            @Value("${project.management.base-url}") String projectManagementBaseUrl
+    ) {
+        this.config = config;
+        this.keycloak = webClientBuilder.clone().baseUrl(config.getBaseUrl()).build();
+        this.projectManager = webClientBuilder.clone().baseUrl(projectManagementBaseUrl).build();
+    }
+
+    // ---------------- TOKEN ----------------
+    @Override
+    public Mono<String> getMasterToken() {
+        MultiValueMap<String, String> body = KeycloakRequests.passwordGrant(
+                KeycloakRequests.ADMIN_CLI, null, config.getAdminUsername(), config.getAdminPassword());
+
+        return requestToken("master", body)
+                .map(token -> (String) token.get("access_token"))
+                .onErrorMap(e -> new RuntimeException("Failed to get master token", e));
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getMyRealmToken(String username, String password, String clientId, String realm) {
+        log.info("🚀 Starting reactive login flow for user '{}' in realm '{}'", username, realm);
+
+        // admin-cli is a public client and has no secret to look up
+        Mono<String> clientSecret = KeycloakRequests.ADMIN_CLI.equals(clientId)
+                ? Mono.empty()
+                : getMasterToken().flatMap(adminToken -> getClientUUID(realm, clientId, adminToken)
+                        .flatMap(clientUUID -> getClientSecret(realm, clientUUID, adminToken)));
+
+        return clientSecret
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(secret -> requestToken(realm,
+                        KeycloakRequests.passwordGrant(clientId, secret.orElse(null), username, password)))
+                .doOnError(e -> log.error("💥 Failed to get realm token for user '{}': {}", username, e.getMessage()))
+                .onErrorMap(e -> new RuntimeException("Failed to get realm token", e));
+    }
+
+    private Mono<Map<String, Object>> requestToken(String realm, MultiValueMap<String, String> body) {
+        return keycloak.post()
+                .uri(KeycloakRequests.tokenPath(realm))
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .accept(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromFormData(body))
+                .retrieve()
+                .bodyToMono(MAP_TYPE);
+    }
+
+    @Override
+    public Mono<Boolean> validateToken(String realm, String token) {
+        return keycloak.get()
+                .uri(KeycloakRequests.userInfoPath(realm))
+                .headers(h -> h.setBearerAuth(token))
+                .retrieve()
+                .bodyToMono(MAP_TYPE)
+                .map(body -> true)
+                .defaultIfEmpty(false)
+                .onErrorResume(e -> {
+                    log.warn("Token validation failed for realm '{}': {}", realm, e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    // ---------------- REALM ----------------
+    @Override
+    public Mono<Void> createRealm(String realmName, String token) {
+        return keycloak.post()
+                .uri("/admin/realms")
+                .headers(h -> h.setBearerAuth(token))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(KeycloakRequests.realm(realmName))
+                .retrieve()
+                .toBodilessEntity()
+                .doOnSuccess(r -> log.info("Realm '{}' created successfully.", realmName))
+                .onErrorMap(e -> new RuntimeException("Failed to create realm: " + e.getMessage(), e))
+                .then();
+    }
+
+    @Override
+    public Flux<Map<String, Object>> getAllRealms(String token) {
+        return listing("/admin/realms", token);
+    }
+
+    // ---------------- CLIENT ----------------
+    @Override
+    public Mono<String> createClient(String realm, String clientId, boolean isPublicClient, String token) {
+        return keycloak.post()
+                .uri("/admin/realms/{realm}/clients", realm)
+                .headers(h -> h.setBearerAuth(token))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(KeycloakRequests.client(clientId, isPublicClient))
+                .retrieve()
+                .toBodilessEntity()
+                .then(getClientUUID(realm, clientId, token));
+    }
+
+    @Override
+    public Flux<Map<String, Object>> getAllClients(String realm, String token) {
+        return listing("/admin/realms/" + realm + "/clients", token);
+    }
+
+    @Override
+    public Mono<String> getClientSecret(String realm, String clientUUID, String token) {
+        return keycloak.get()
+                .uri("/admin/realms/{realm}/clients/{id}/client-secret", realm, clientUUID)
+                .headers(h -> h.setBearerAuth(token))
+                .retrieve()
+                .bodyToMono(MAP_TYPE)
+                .flatMap(secret -> Mono.justOrEmpty((String) secret.get("value")))
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Client secret not found for client: " + clientUUID)));
+    }
+
+    @Override
+    public Mono<String> getClientUUID(String realm, String clientName, String token) {
+        return keycloak.get()
+                .uri(b -> b.path("/admin/realms/{realm}/clients").queryParam("clientId", clientName).build(realm))
+                .headers(h -> h.setBearerAuth(token))
+                .retrieve()
+                .bodyToFlux(MAP_TYPE)
+                .next()
+                .map(client -> (String) client.get("id"))
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Client not found: " + clientName)));
+    }
+
+    // ---------------- USER ----------------
+    @Override
+    public Mono<String> createUser(String realm, String token, Map<String, Object> userPayload) {
+        return keycloak.post()
+                .uri("/admin/realms/{realm}/users", realm)
+                .headers(h -> h.setBearerAuth(token))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(KeycloakRequests.user(userPayload))
+                .retrieve()
+                .toBodilessEntity()
+                .flatMap(response -> {
+                    String location = response.getHeaders().getFirst(HttpHeaders.LOCATION);
+                    if (response.getStatusCode() != HttpStatus.CREATED || location == null) {
+                        return Mono.error(new RuntimeException("Failed to create user with status: " + response.getStatusCode()));
+                    }
+                    return Mono.just(KeycloakRequests.idFromLocation(location));
+                });
+    }
+
+    @Override
+    public Flux<Map<String, Object>> getAllUsers(String realm, String token) {
+        return listing("/admin/realms/" + realm + "/users", token);
+    }
+
+    // ---------------- ROLE ----------------
+    @Override
+    public Mono<Boolean> createRole(String realm, String clientUUID, RoleCreationRequest role, String token) {
+        return keycloak.post()
+                .uri("/admin/realms/{realm}/clients/{id}/roles", realm, clientUUID)
+                .headers(h -> h.setBearerAuth(token))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("name", role.getName(), "description", role.getDescription()))
+                .retrieve()
+                .toBodilessEntity()
+                .map(r -> true)
+                .onErrorResume(e -> {
+                    log.error("Failed to create role '{}': {}", role.getName(), e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    @Override
+    public Flux<Map<String, Object>> getAllRoles(String realm, String clientName, String token) {
+        return getClientUUID(realm, clientName, token)
+                .flatMapMany(clientUUID -> listing("/admin/realms/" + realm + "/clients/" + clientUUID + "/roles", token));
+    }
+
+    // ---------------- ROLE ASSIGN ----------------
+    @Override
+    public Mono<Void> assignClientRole(String realm, String username, String clientName, String roleName, String token) {
+        Mono<String> userId = keycloak.get()
+                .uri(b -> b.path("/admin/realms/{realm}/users").queryParam("username", username).build(realm))
+                .headers(h -> h.setBearerAuth(token))
+                .retrieve()
+                .bodyToFlux(MAP_TYPE)
+                .next()
+                .map(user -> (String) user.get("id"))
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("User not found: " + username)));
+
+        Mono<Map<String, Object>> clientAndRole = getClientUUID(realm, clientName, token)
+                .flatMap(clientUUID -> listing("/admin/realms/" + realm + "/clients/" + clientUUID + "/roles", token)
+                        .filter(r -> roleName.equals(r.get("name")))
+                        .next()
+                        .switchIfEmpty(Mono.error(() -> new RuntimeException("Role not found: " + roleName)))
+                        .map(role -> Map.of("clientUUID", clientUUID, "role", role)));
+
+        // The user lookup does not depend on the client/role lookups, so both run at once
+        return Mono.zip(userId, clientAndRole)
+                .flatMap(ids -> {
+                    String clientUUID = (String) ids.getT2().get("clientUUID");
+                    Map<?, ?> role = (Map<?, ?>) ids.getT2().get("role");
+                    return keycloak.post()
+                            .uri("/admin/realms/{realm}/users/{userId}/role-mappings/clients/{clientUUID}",
+                                    realm, ids.getT1(), clientUUID)
+                            .headers(h -> h.setBearerAuth(token))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(List.of(Map.of("id", role.get("id"), "name", roleName)))
+                            .retrieve()
+                            .toBodilessEntity();
+                })
+                .doOnSuccess(r -> log.info("Assigned role '{}' to user '{}' in client '{}'", roleName, username, clientName))
+                .onErrorMap(e -> new RuntimeException("Failed to assign client role: " + e.getMessage(), e))
+                .then();
+    }
+
+    // ---------------- PROJECT MANAGER ----------------
+    @Override
+    public Mono<Void> saveProjectRole(RoleRequest roleRequest) {
+        return projectManager.post()
+                .uri("/project/roles/save-or-update")
+                .bodyValue(roleRequest)
+                .retrieve()
+                .toBodilessEntity()
+                .doOnSuccess(r -> log.info("✅ Successfully stored data in Project Manager."))
+                .doOnError(e -> log.error("❌ Error storing data in Project Manager: {}", e.getMessage()))
+                .then();
+    }
+
+    @Override
+    public Flux<UrlEntry> getAllowedUrls(RoleRequest roleRequest) {
+        return projectManager.post()
+                .uri("/project/roles/get-urls")
+                .bodyValue(roleRequest)
+                .retrieve()
+                .bodyToFlux(UrlEntry.class);
+    }
+
+    // ---------------- UTILITY ----------------
+
+    /**
+     * Streams a Keycloak admin listing element by element.
+     * The JSON array is decoded incrementally, so demand from the subscriber bounds how much is buffered.
+     */
+    private Flux<Map<String, Object>> listing(String path, String token) {
+        return keycloak.get()
+                .uri(path)
+                .headers(h -> h.setBearerAuth(token))
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToFlux(MAP_TYPE)
+                .onErrorMap(WebClientResponseException.class,
+                        e -> new RuntimeException("Keycloak listing failed for " + path + ": " + e.getStatusCode(), e));
+    }
+}
@@ -0,0 +1,109 @@
+package com.paxaris.identity_service.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders a tenant (realm, client, admin user and its role mappings) from a JSON template into one
+ * Keycloak realm representation, so signup can create the whole tenant with a single call.
+ * <p>
+ * Placeholders are {@code ${name}} and are substituted on the parsed tree rather than the raw text,
+ * so values never need escaping. A string that is exactly one placeholder takes the variable's JSON
+ * type (boolean, list, ...); placeholders inside a longer string are spliced in as text.
+ */
+@Component
+public class RealmTemplate {
+
+    public enum Mode { TEMPLATE, STEPS }
+
+    private static final Logger log = LoggerFactory.getLogger(RealmTemplate.class);
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([A-Za-z0-9_.]+)}");
+
+    private final ObjectMapper objectMapper;
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private volatile ObjectNode template;
+
+    public RealmTemplate(ObjectMapper objectMapper,
+                         ResourceLoader resourceLoader,
+                         @Value("${identity.signup.realm-template:classpath:templates/tenant-realm.json}") String location) {
+        this.objectMapper = objectMapper;
+        this.resourceLoader = resourceLoader;
+        this.location = location;
+    }
+
+    public ObjectNode render(Map<String, Object> variables) {
+        return (ObjectNode) substitute(template().deepCopy(), variables);
+    }
+
+    private ObjectNode template() {
+        ObjectNode loaded = template;
+        if (loaded == null) {
+            Resource resource = resourceLoader.getResource(location);
+            try (InputStream in = resource.getInputStream()) {
+                loaded = (ObjectNode) objectMapper.readTree(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read realm template " + location, e);
+            }
+            log.info("Loaded realm template from {}", location);
+            template = loaded;
+        }
+        return loaded;
+    }
+
+    private JsonNode substitute(JsonNode node, Map<String, Object> variables) {
+        if (node instanceof ObjectNode object) {
+            List<String> names = new ArrayList<>();
+            object.fieldNames().forEachRemaining(names::add);
+            for (String name : names) {
+                object.set(name, substitute(object.get(name), variables));
+            }
+            return object;
+        }
+        if (node instanceof ArrayNode array) {
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, substitute(array.get(i), variables));
+            }
+            return array;
+        }
+        if (!node.isTextual()) {
+            return node;
+        }
+
+        String text = node.textValue();
+        Matcher whole = PLACEHOLDER.matcher(text);
+        if (whole.matches()) {
+            return objectMapper.valueToTree(lookup(variables, whole.group(1)));
+        }
+        Matcher inline = PLACEHOLDER.matcher(text);
+        if (!inline.find()) {
+            return node;
+        }
+        String rendered = inline.reset().replaceAll(m -> Matcher.quoteReplacement(String.valueOf(lookup(variables, m.group(1)))));
+        return objectMapper.getNodeFactory().textNode(rendered);
+    }
+
+    private Object lookup(Map<String, Object> variables, String name) {
+        if (!variables.containsKey(name)) {
+            throw new IllegalArgumentException("Realm template " + location + " uses unknown placeholder ${" + name + "}");
+        }
+        return variables.get(name);
+    }
+}
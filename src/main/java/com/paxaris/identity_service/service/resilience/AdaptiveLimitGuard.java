@@ -0,0 +1,96 @@
+package com.paxaris.identity_service.service.resilience;
+
+import com.paxaris.identity_service.dto.AdaptiveLimitStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Adaptive in-flight limit for each Keycloak dependency (token, admin API, JWKS), so calls run at
+ * Keycloak's best throughput without a hand-tuned pool size per environment; see {@link AdaptiveLimiter}.
+ * <p>
+ * It runs last, after the tenant quota and the circuit breaker, so only calls that would otherwise go out
+ * count against the limit, and the latency it samples is Keycloak's alone. The bulkhead's
+ * {@code max-concurrent} stays as a hard ceiling above {@code max-limit}.
+ * <p>
+ * Bulk calls, i.e. partial imports, realm creation and listing, and page reads of at least
+ * {@code bulk-page-size} records, count against the limit but are not sampled: they are slower than the
+ * single-object calls that set the baseline round trip by design, and would otherwise read as a queue building
+ * up and drive the limit down for everybody.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class AdaptiveLimitGuard implements OutboundGuard {
+
+    private final boolean enabled;
+    private final int bulkPageSize;
+    private final Map<Dependency, AdaptiveLimiter> limiters = new EnumMap<>(Dependency.class);
+
+    public AdaptiveLimitGuard(
+            @Value("${identity.adaptive-limit.enabled:true}") boolean enabled,
+            @Value("${identity.adaptive-limit.initial-limit:16}") int initialLimit,
+            @Value("${identity.adaptive-limit.min-limit:4}") int minLimit,
+            @Value("${identity.adaptive-limit.max-limit:64}") int maxLimit,
+            @Value("${identity.adaptive-limit.queue-timeout:50ms}") Duration queueTimeout,
+            @Value("${identity.adaptive-limit.bulk-page-size:100}") int bulkPageSize
+    ) {
+        this.enabled = enabled;
+        this.bulkPageSize = bulkPageSize;
+        for (Dependency dependency : Dependency.values()) {
+            if (dependency.isKeycloak()) {
+                limiters.put(dependency, new AdaptiveLimiter(dependency.key(), initialLimit, minLimit, maxLimit, queueTimeout));
+            }
+        }
+    }
+
+    @Override
+    public Permit admit(URI uri, HttpMethod method) {
+        if (!enabled) {
+            return Permit.NONE;
+        }
+        Dependency dependency = Dependency.of(uri, null);
+        AdaptiveLimiter limiter = limiters.get(dependency);
+        if (limiter == null) {
+            return Permit.NONE;
+        }
+        int startedInFlight = limiter.acquire();
+        if (startedInFlight < 0) {
+            throw new DependencyUnavailableException(dependency, "adaptive concurrency limit reached");
+        }
+        boolean sampled = !isBulk(uri, bulkPageSize);
+        return outcome -> limiter.release(startedInFlight, outcome, sampled);
+    }
+
+    static boolean isBulk(URI uri, int bulkPageSize) {
+        String path = uri.getRawPath() != null ? uri.getRawPath() : "";
+        // Creating a realm from the template and listing every realm are as heavy as an import
+        if (path.endsWith("/partialImport") || path.endsWith("/admin/realms")) {
+            return true;
+        }
+        String max = UriComponentsBuilder.fromUri(uri).build().getQueryParams().getFirst("max");
+        if (max == null) {
+            return false;
+        }
+        try {
+            int size = Integer.parseInt(max);
+            return size < 0 || size >= bulkPageSize;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    public Map<Dependency, AdaptiveLimitStats> stats() {
+        Map<Dependency, AdaptiveLimitStats> stats = new LinkedHashMap<>();
+        limiters.forEach((dependency, limiter) -> stats.put(dependency, limiter.stats()));
+        return stats;
+    }
+}
@@ -0,0 +1,193 @@
+package com.paxaris.identity_service.service.resilience;
+
+import com.paxaris.identity_service.dto.AdaptiveLimitStats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that follows the upstream's latency, in the style of TCP Vegas.
+ * <p>
+ * The lowest round trip seen stands for the upstream with nothing queued. For every successful call the
+ * limiter estimates how many calls are queueing upstream as {@code limit × (1 − minRtt / rtt)}: with almost
+ * none the limit grows quickly, with a few it grows by a step, and with more than {@code beta} it shrinks by a
+ * step. A failed call cuts the limit by a tenth. The limit only grows while callers actually use at least half
+ * of it. Every so often the lowest round trip is forgotten and measured anew, so the limiter follows the
+ * upstream when its baseline latency changes. Calls that are slow by nature, like bulk imports, can hold a slot
+ * without being sampled, so their round trips are not taken for queueing.
+ * <p>
+ * A call over the limit waits at most {@code queueTimeout} for a slot, and is refused at once when as many
+ * calls are already waiting as the limit allows in flight.
+ */
+@Slf4j
+public final class AdaptiveLimiter {
+
+    private static final int PROBE_MULTIPLIER = 30;
+    private static final double BACKOFF = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long queueTimeoutNanos;
+    private final RandomGenerator random;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    // Guarded by lock
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long minRttNanos = Long.MAX_VALUE;
+    private long lastRttNanos;
+    private long samples;
+    private long nextProbe;
+    private long admitted;
+    private long queued;
+    private long rejected;
+    private long increases;
+    private long decreases;
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, Duration queueTimeout) {
+        this(name, initialLimit, minLimit, maxLimit, queueTimeout, new SplittableRandom());
+    }
+
+    // Seeded in tests, so the probe jitter and with it the limit's course are reproducible
+    AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, Duration queueTimeout, RandomGenerator random) {
+        this.name = name;
+        this.random = random;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.nextProbe = nextProbe();
+    }
+
+    /**
+     * @return the number of calls in flight including this one, or {@code -1} if the call must not be made;
+     * every admitted call must be followed by {@link #release}
+     */
+    public int acquire() {
+        lock.lock();
+        try {
+            if (waiting == 0 && inFlight < limit) {
+                return admit();
+            }
+            if (queueTimeoutNanos <= 0 || waiting >= (int) limit) {
+                rejected++;
+                return -1;
+            }
+            waiting++;
+            queued++;
+            long remaining = queueTimeoutNanos;
+            try {
+                while (inFlight >= limit && remaining > 0) {
+                    remaining = available.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                waiting--;
+            }
+            if (inFlight < limit && !Thread.currentThread().isInterrupted()) {
+                return admit();
+            }
+            rejected++;
+            return -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param startedInFlight what {@link #acquire} returned for this call
+     * @param sampled         whether the call's round trip says something about upstream queueing; failures
+     *                        back off either way
+     */
+    public void release(int startedInFlight, OutboundGuard.Outcome outcome, boolean sampled) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (outcome.executed()) {
+                if (outcome.failed()) {
+                    decrease(limit * BACKOFF);
+                } else if (sampled) {
+                    sample(startedInFlight, Math.max(1, outcome.latencyNanos()));
+                }
+            }
+            for (int free = (int) limit - inFlight; free > 0 && waiting > 0; free--) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int admit() {
+        admitted++;
+        return ++inFlight;
+    }
+
+    private void sample(int startedInFlight, long rttNanos) {
+        lastRttNanos = rttNanos;
+        if (++samples >= nextProbe) {
+            // Start over from this call, so a baseline that went up is not held against every later call
+            minRttNanos = rttNanos;
+            nextProbe = samples + nextProbe();
+            return;
+        }
+        minRttNanos = Math.min(minRttNanos, rttNanos);
+
+        int step = Math.max(1, (int) Math.ceil(Math.log10(limit)));
+        int alpha = 3 * step;
+        int beta = 6 * step;
+        double queue = limit * (1 - (double) minRttNanos / rttNanos);
+        boolean used = startedInFlight * 2 >= limit;
+        if (queue <= step && used) {
+            increase(limit + beta);
+        } else if (queue < alpha && used) {
+            increase(limit + step);
+        } else if (queue > beta) {
+            decrease(limit - step);
+        }
+    }
+
+    private void increase(double to) {
+        double next = Math.min(maxLimit, to);
+        if (next > limit) {
+            limit = next;
+            increases++;
+        }
+    }
+
+    private void decrease(double to) {
+        double next = Math.max(minLimit, to);
+        if (next < limit) {
+            limit = next;
+            decreases++;
+            if (next == minLimit) {
+                log.warn("📉 Adaptive limit for '{}' is down to its minimum of {}", name, minLimit);
+            }
+        }
+    }
+
+    private long nextProbe() {
+        // Jittered, so limiters started together don't all re-measure at once
+        return (long) (PROBE_MULTIPLIER * limit * (1 + random.nextDouble() / 2));
+    }
+
+    public AdaptiveLimitStats stats() {
+        lock.lock();
+        try {
+            return new AdaptiveLimitStats((int) limit, minLimit, maxLimit, inFlight, waiting,
+                    minRttNanos == Long.MAX_VALUE ? 0 : minRttNanos / 1_000_000.0, lastRttNanos / 1_000_000.0,
+                    admitted, queued, rejected, increases, decreases);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.paxaris.identity_service.service.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Count-based circuit breaker.
+ * <p>
+ * While CLOSED, the outcomes of the last {@code windowSize} calls are kept; once at least {@code minimumCalls}
+ * are recorded and the share of bad ones (failed or slower than {@code slowCall}) reaches
+ * {@code failureRateThreshold} percent, the breaker OPENs and refuses every call for {@code openFor}. It then
+ * lets {@code halfOpenCalls} trial calls through: all of them good closes it again, any bad one reopens it.
+ */
+@Slf4j
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    // Guarded by this
+    private final boolean[] window;
+    private int next;
+    private int recorded;
+    private int bad;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+    private final Map<State, Long> transitions = new EnumMap<>(State.class);
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+                          Duration slowCall, Duration openFor, int halfOpenCalls) {
+        this.name = name;
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCall.toNanos();
+        this.openNanos = openFor.toNanos();
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    }
+
+    /**
+     * @return whether a call may be made now; every permitted call must be followed by {@link #record}
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED -> {
+                return true;
+            }
+            case OPEN -> {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+                trialsStarted = 1;
+                return true;
+            }
+            default -> {
+                if (trialsStarted >= halfOpenCalls) {
+                    return false;
+                }
+                trialsStarted++;
+                return true;
+            }
+        }
+    }
+
+    public synchronized void record(boolean failed, long latencyNanos) {
+        boolean isBad = failed || latencyNanos > slowCallNanos;
+        switch (state) {
+            case CLOSED -> {
+                if (recorded == window.length) {
+                    if (window[next]) bad--;
+                } else {
+                    recorded++;
+                }
+                window[next] = isBad;
+                if (isBad) bad++;
+                next = (next + 1) % window.length;
+                if (recorded >= minimumCalls && bad * 100 >= failureRateThreshold * recorded) {
+                    log.warn("🔌 Circuit '{}' opened: {} of the last {} calls failed or were slow", name, bad, recorded);
+                    open();
+                }
+            }
+            case HALF_OPEN -> {
+                if (isBad) {
+                    log.warn("🔌 Circuit '{}' reopened: a trial call failed", name);
+                    open();
+                } else if (++trialsSucceeded >= halfOpenCalls) {
+                    log.info("🔌 Circuit '{}' closed again", name);
+                    transition(State.CLOSED);
+                    next = 0;
+                    recorded = 0;
+                    bad = 0;
+                }
+            }
+            case OPEN -> {
+                // a call admitted before the breaker opened; it no longer matters
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit whose call never happened, e.g. because a later guard refused it.
+     */
+    public synchronized void cancel() {
+        if (state == State.HALF_OPEN && trialsStarted > trialsSucceeded) {
+            trialsStarted--;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized double failureRate() {
+        return recorded == 0 ? 0 : bad * 100.0 / recorded;
+    }
+
+    /**
+     * How many times the breaker entered each state.
+     */
+    public synchronized Map<State, Long> transitions() {
+        return new EnumMap<>(transitions);
+    }
+
+    private void open() {
+        transition(State.OPEN);
+        openedAt = System.nanoTime();
+    }
+
+    private void transition(State to) {
+        state = to;
+        trialsStarted = 0;
+        trialsSucceeded = 0;
+        transitions.merge(to, 1L, Long::sum);
+    }
+}
@@ -0,0 +1,54 @@
+package com.paxaris.identity_service.service.resilience;
+
+import java.net.URI;
+
+/**
+ * Upstream services this service calls, each with its own circuit breaker and bulkhead, so that one of them
+ * slowing down cannot use up the capacity the others need.
+ */
+public enum Dependency {
+    KEYCLOAK_TOKEN("keycloak-token"),
+    KEYCLOAK_ADMIN("keycloak-admin"),
+    KEYCLOAK_JWKS("keycloak-jwks"),
+    PROJECT_MANAGER("project-manager"),
+    OTHER("other");
+
+    private final String key;
+
+    Dependency(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Name used in property keys, e.g. {@code identity.resilience.keycloak-admin.max-concurrent}.
+     */
+    public String key() {
+        return key;
+    }
+
+    public boolean isKeycloak() {
+        return this == KEYCLOAK_TOKEN || this == KEYCLOAK_ADMIN || this == KEYCLOAK_JWKS;
+    }
+
+    /**
+     * Keycloak calls are told apart by path, which holds for every realm and Keycloak host; the Project Manager
+     * by its base URL.
+     */
+    public static Dependency of(URI uri, URI projectManager) {
+        String path = uri.getRawPath() != null ? uri.getRawPath() : "";
+        if (path.endsWith("/protocol/openid-connect/token")) return KEYCLOAK_TOKEN;
+        if (path.endsWith("/protocol/openid-connect/certs")) return KEYCLOAK_JWKS;
+        if (path.contains("/admin/realms")) return KEYCLOAK_ADMIN;
+        if (projectManager != null && sameOrigin(uri, projectManager)) return PROJECT_MANAGER;
+        return OTHER;
+    }
+
+    private static boolean sameOrigin(URI a, URI b) {
+        return a.getHost() != null && a.getHost().equalsIgnoreCase(b.getHost()) && port(a) == port(b);
+    }
+
+    private static int port(URI uri) {
+        if (uri.getPort() != -1) return uri.getPort();
+        return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+    }
+}
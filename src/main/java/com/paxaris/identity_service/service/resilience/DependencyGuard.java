@@ -0,0 +1,143 @@
+package com.paxaris.identity_service.service.resilience;
+
+import com.paxaris.identity_service.dto.DependencyStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker plus bulkhead per {@link Dependency}. The bulkhead caps how many calls to one dependency can
+ * be in flight, waiting at most {@code max-wait} for a slot, so a slow Keycloak admin API ties up a bounded
+ * number of threads and token or JWKS calls still get through. The breaker fails calls fast while a dependency
+ * keeps failing.
+ * <p>
+ * Every setting can be overridden per dependency as {@code identity.resilience.<dependency>.<setting>}, e.g.
+ * {@code identity.resilience.project-manager.max-concurrent}; calls to anything unclassified are not guarded.
+ * <p>
+ * Bulk calls (see {@link AdaptiveLimitGuard}) are slow by design, so only their failures reach the breaker: a
+ * single large import would otherwise count as a run of slow calls and open the circuit for every tenant.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class DependencyGuard implements OutboundGuard {
+
+    private static final class Guarded {
+        private final CircuitBreaker breaker;
+        private final Semaphore bulkhead;
+        private final int maxConcurrent;
+        private final long maxWaitNanos;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rejectedOpen = new LongAdder();
+        private final LongAdder rejectedFull = new LongAdder();
+
+        private Guarded(CircuitBreaker breaker, int maxConcurrent, Duration maxWait) {
+            this.breaker = breaker;
+            this.bulkhead = new Semaphore(maxConcurrent);
+            this.maxConcurrent = maxConcurrent;
+            this.maxWaitNanos = maxWait.toNanos();
+        }
+    }
+
+    private final URI projectManager;
+    private final int bulkPageSize;
+    private final Map<Dependency, Guarded> guards = new EnumMap<>(Dependency.class);
+
+    public DependencyGuard(Environment env,
+                           @Value("${project.management.base-url:}") String projectManagementBaseUrl,
+                           @Value("${identity.adaptive-limit.bulk-page-size:100}") int bulkPageSize) {
+        this.projectManager = projectManagementBaseUrl.isBlank() ? null : URI.create(projectManagementBaseUrl);
+        this.bulkPageSize = bulkPageSize;
+        for (Dependency dependency : Dependency.values()) {
+            if (dependency == Dependency.OTHER) continue;
+            String prefix = "identity.resilience." + dependency.key() + ".";
+            CircuitBreaker breaker = new CircuitBreaker(
+                    dependency.key(),
+                    setting(env, prefix, "window-size", Integer.class, 50),
+                    setting(env, prefix, "minimum-calls", Integer.class, 20),
+                    setting(env, prefix, "failure-rate-threshold", Integer.class, 50),
+                    setting(env, prefix, "slow-call", Duration.class, Duration.ofSeconds(5)),
+                    setting(env, prefix, "open-for", Duration.class, Duration.ofSeconds(30)),
+                    setting(env, prefix, "half-open-calls", Integer.class, 5));
+            guards.put(dependency, new Guarded(breaker,
+                    setting(env, prefix, "max-concurrent", Integer.class, 64),
+                    setting(env, prefix, "max-wait", Duration.class, Duration.ofMillis(100))));
+        }
+    }
+
+    public Dependency classify(URI uri) {
+        return Dependency.of(uri, projectManager);
+    }
+
+    @Override
+    public Permit admit(URI uri, HttpMethod method) {
+        Dependency dependency = classify(uri);
+        Guarded guarded = guards.get(dependency);
+        if (guarded == null) {
+            return Permit.NONE;
+        }
+        if (!guarded.breaker.tryAcquire()) {
+            guarded.rejectedOpen.increment();
+            throw new DependencyUnavailableException(dependency, "circuit open");
+        }
+        boolean acquired;
+        try {
+            acquired = guarded.bulkhead.tryAcquire(guarded.maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            guarded.breaker.cancel();
+            guarded.rejectedFull.increment();
+            throw new DependencyUnavailableException(dependency, guarded.maxConcurrent + " calls already in flight");
+        }
+        boolean bulk = AdaptiveLimitGuard.isBulk(uri, bulkPageSize);
+        return outcome -> {
+            guarded.bulkhead.release();
+            if (!outcome.executed()) {
+                guarded.breaker.cancel();
+                return;
+            }
+            guarded.calls.increment();
+            if (outcome.failed()) guarded.failures.increment();
+            guarded.breaker.record(outcome.failed(), bulk && !outcome.failed() ? 0 : outcome.latencyNanos());
+        };
+    }
+
+    public Map<Dependency, DependencyStats> stats() {
+        Map<Dependency, DependencyStats> stats = new LinkedHashMap<>();
+        guards.forEach((dependency, guarded) -> {
+            Map<String, Long> transitions = new LinkedHashMap<>();
+            guarded.breaker.transitions().forEach((state, count) -> transitions.put(state.name(), count));
+            stats.put(dependency, new DependencyStats(
+                    guarded.breaker.state().name(),
+                    guarded.breaker.failureRate(),
+                    transitions,
+                    guarded.maxConcurrent - guarded.bulkhead.availablePermits(),
+                    guarded.maxConcurrent,
+                    guarded.calls.sum(),
+                    guarded.failures.sum(),
+                    guarded.rejectedOpen.sum(),
+                    guarded.rejectedFull.sum()));
+        });
+        return stats;
+    }
+
+    private static <T> T setting(Environment env, String prefix, String name, Class<T> type, T fallback) {
+        T shared = env.getProperty("identity.resilience.default." + name, type, fallback);
+        return env.getProperty(prefix + name, type, shared);
+    }
+}
@@ -0,0 +1,21 @@
+package com.paxaris.identity_service.service.resilience;
+
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Thrown instead of making an outbound call that an {@link OutboundGuard} refused. It is a
+ * {@link ResourceAccessException}, so callers that already handle an unreachable dependency handle this too.
+ */
+public class DependencyUnavailableException extends ResourceAccessException {
+
+    private final Dependency dependency;
+
+    public DependencyUnavailableException(Dependency dependency, String reason) {
+        super(dependency + " unavailable: " + reason);
+        this.dependency = dependency;
+    }
+
+    public Dependency getDependency() {
+        return dependency;
+    }
+}
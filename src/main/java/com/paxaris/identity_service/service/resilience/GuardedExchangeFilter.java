@@ -0,0 +1,77 @@
+package com.paxaris.identity_service.service.resilience;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@link GuardedRequestFactory} of {@code WebClient}s: runs every exchange through the
+ * {@link OutboundGuard}s, and releases their permits once the response body is consumed or cancelled.
+ * <p>
+ * Guards may wait for a slot (up to their {@code max-wait}), so admission runs on the bounded elastic
+ * scheduler rather than on the event loop.
+ */
+public final class GuardedExchangeFilter implements ExchangeFilterFunction {
+
+    private final List<OutboundGuard> guards;
+
+    public GuardedExchangeFilter(List<OutboundGuard> guards) {
+        this.guards = List.copyOf(guards);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.fromCallable(() -> admit(request))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(permits -> {
+                    AtomicBoolean released = new AtomicBoolean();
+                    long start = System.nanoTime();
+                    return next.exchange(request)
+                            .map(response -> {
+                                OutboundGuard.Outcome outcome = new OutboundGuard.Outcome(
+                                        true, response.statusCode().is5xxServerError(), System.nanoTime() - start);
+                                // The connection stays busy until the body has been read. Released before the
+                                // end of the body is passed on, so the permits are free once the caller has it
+                                return response.mutate()
+                                        .body(body -> body
+                                                .doOnTerminate(() -> release(permits, released, outcome))
+                                                .doOnCancel(() -> release(permits, released, outcome)))
+                                        .build();
+                            })
+                            .doOnError(e -> release(permits, released,
+                                    new OutboundGuard.Outcome(true, true, System.nanoTime() - start)))
+                            .doOnCancel(() -> release(permits, released,
+                                    new OutboundGuard.Outcome(true, false, System.nanoTime() - start)));
+                });
+    }
+
+    private List<OutboundGuard.Permit> admit(ClientRequest request) {
+        List<OutboundGuard.Permit> permits = new ArrayList<>(guards.size());
+        try {
+            for (OutboundGuard guard : guards) {
+                permits.add(guard.admit(request.url(), request.method()));
+            }
+        } catch (RuntimeException e) {
+            release(permits, new AtomicBoolean(), OutboundGuard.Outcome.NOT_EXECUTED);
+            throw e;
+        }
+        return permits;
+    }
+
+    private static void release(List<OutboundGuard.Permit> permits, AtomicBoolean released, OutboundGuard.Outcome outcome) {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+        // In reverse, so the outermost guard lets go last
+        for (int i = permits.size() - 1; i >= 0; i--) {
+            permits.get(i).release(outcome);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.paxaris.identity_service.service.resilience;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs every request through the {@link OutboundGuard}s before it is sent, and releases their permits when
+ * the response is closed.
+ * <p>
+ * This wraps the request factory instead of using {@code RestTemplate} interceptors because interceptors buffer
+ * the whole request body, which would undo the streamed bulk imports. Requests keep streaming exactly as the
+ * underlying factory does.
+ */
+public final class GuardedRequestFactory implements ClientHttpRequestFactory {
+
+    private final ClientHttpRequestFactory delegate;
+    private final List<OutboundGuard> guards;
+
+    public GuardedRequestFactory(ClientHttpRequestFactory delegate, List<OutboundGuard> guards) {
+        this.delegate = delegate;
+        this.guards = List.copyOf(guards);
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        return new GuardedRequest(delegate.createRequest(uri, httpMethod));
+    }
+
+    private final class GuardedRequest implements ClientHttpRequest, StreamingHttpOutputMessage {
+
+        private final ClientHttpRequest request;
+
+        private GuardedRequest(ClientHttpRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            List<OutboundGuard.Permit> permits = new ArrayList<>(guards.size());
+            try {
+                for (OutboundGuard guard : guards) {
+                    permits.add(guard.admit(request.getURI(), request.getMethod()));
+                }
+            } catch (RuntimeException e) {
+                release(permits, OutboundGuard.Outcome.NOT_EXECUTED);
+                throw e;
+            }
+
+            long start = System.nanoTime();
+            ClientHttpResponse response;
+            try {
+                response = request.execute();
+            } catch (IOException | RuntimeException e) {
+                release(permits, new OutboundGuard.Outcome(true, true, System.nanoTime() - start));
+                throw e;
+            }
+            long latency = System.nanoTime() - start;
+            boolean failed;
+            try {
+                failed = response.getStatusCode().is5xxServerError();
+            } catch (IOException e) {
+                failed = true;
+            }
+            return new GuardedResponse(response, permits, new OutboundGuard.Outcome(true, failed, latency));
+        }
+
+        @Override
+        public void setBody(Body body) {
+            if (request instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(body);
+            } else {
+                try {
+                    body.writeTo(request.getBody());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return request.getBody();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return request.getAttributes();
+        }
+    }
+
+    // Holds the permits until the body has been read, since the connection stays busy until then
+    private static final class GuardedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final List<OutboundGuard.Permit> permits;
+        private final OutboundGuard.Outcome outcome;
+        private boolean closed;
+
+        private GuardedResponse(ClientHttpResponse response, List<OutboundGuard.Permit> permits, OutboundGuard.Outcome outcome) {
+            this.response = response;
+            this.permits = permits;
+            this.outcome = outcome;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (!closed) {
+                    closed = true;
+                    release(permits, outcome);
+                }
+            }
+        }
+    }
+
+    private static void release(List<OutboundGuard.Permit> permits, OutboundGuard.Outcome outcome) {
+        // In reverse, so the outermost guard lets go last
+        for (int i = permits.size() - 1; i >= 0; i--) {
+            permits.get(i).release(outcome);
+        }
+    }
+}
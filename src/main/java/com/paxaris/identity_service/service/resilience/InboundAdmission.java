@@ -0,0 +1,247 @@
+package com.paxaris.identity_service.service.resilience;
+
+import com.paxaris.identity_service.dto.AdmissionStats;
+import com.paxaris.identity_service.dto.PriorityClassStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for inbound requests, with controlled-delay (CoDel) shedding by {@link RequestPriority}.
+ * <p>
+ * At most {@code max-concurrent} requests are handled at once; the rest queue, and a freed slot always goes to
+ * the oldest request of the highest waiting class. How long a request queued before it was let in (its
+ * sojourn) is tracked per class: once a class's sojourn has stayed above {@code target} for a whole
+ * {@code interval}, the class is dropping. Every class below a dropping one is shed outright, so capacity goes
+ * back to the higher class, and requests of the dropping class itself wait at most {@code target}. The first
+ * request of a class let in within target ends its dropping state, as does an interval without any.
+ * <p>
+ * The queue holds at most {@code max-queue} requests; when full, a newcomer displaces the newest waiter of a
+ * lower class, or is shed itself.
+ */
+@Slf4j
+@Component
+public class InboundAdmission {
+
+    private static final class Waiter {
+        private final RequestPriority priority;
+        private final Condition signal;
+        private final long enqueuedAt = System.nanoTime();
+        private boolean admitted;
+        private boolean evicted;
+
+        private Waiter(RequestPriority priority, Condition signal) {
+            this.priority = priority;
+            this.signal = signal;
+        }
+    }
+
+    // All fields guarded by the admission lock
+    private static final class PriorityClass {
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private long firstAboveTargetAt;
+        private long lastAdmittedAt;
+        private boolean dropping;
+        private long admitted;
+        private long queued;
+        private long shed;
+        private long droppingEpisodes;
+        private long sojournNanos;
+        private long maxSojournNanos;
+    }
+
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<RequestPriority, PriorityClass> classes = new EnumMap<>(RequestPriority.class);
+    private int inFlight;
+    private int waiting;
+
+    public InboundAdmission(
+            @Value("${identity.load-shedding.enabled:true}") boolean enabled,
+            @Value("${identity.load-shedding.max-concurrent:64}") int maxConcurrent,
+            @Value("${identity.load-shedding.max-queue:128}") int maxQueue,
+            @Value("${identity.load-shedding.target:20ms}") Duration target,
+            @Value("${identity.load-shedding.interval:200ms}") Duration interval,
+            @Value("${identity.load-shedding.max-wait:2s}") Duration maxWait
+    ) {
+        this.enabled = enabled;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.targetNanos = target.toNanos();
+        this.intervalNanos = interval.toNanos();
+        this.maxWaitNanos = maxWait.toNanos();
+        for (RequestPriority priority : RequestPriority.values()) {
+            classes.put(priority, new PriorityClass());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Waits for a slot to handle a request of the given priority.
+     *
+     * @return false if the request is shed; if true, {@link #release} must follow once it is handled
+     */
+    public boolean acquire(RequestPriority priority) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            PriorityClass pc = classes.get(priority);
+            if (higherDropping(priority, now)) {
+                pc.shed++;
+                return false;
+            }
+            if (inFlight < maxConcurrent && !waitingAtOrAbove(priority)) {
+                inFlight++;
+                admitted(priority, 0, now);
+                return true;
+            }
+            if (waiting >= maxQueue && !evictBelow(priority)) {
+                pc.shed++;
+                return false;
+            }
+
+            long remaining = dropping(pc, now) ? targetNanos : maxWaitNanos;
+            Waiter waiter = new Waiter(priority, lock.newCondition());
+            pc.waiters.addLast(waiter);
+            pc.queued++;
+            waiting++;
+            try {
+                while (!waiter.admitted && !waiter.evicted && remaining > 0) {
+                    remaining = waiter.signal.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (waiter.admitted) {
+                return true;
+            }
+            if (!waiter.evicted) {
+                pc.waiters.remove(waiter);
+                waiting--;
+            }
+            pc.shed++;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            for (PriorityClass pc : classes.values()) {
+                Waiter next = pc.waiters.pollFirst();
+                if (next != null) {
+                    waiting--;
+                    inFlight++;
+                    next.admitted = true;
+                    admitted(next.priority, System.nanoTime() - next.enqueuedAt, System.nanoTime());
+                    next.signal.signal();
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public AdmissionStats stats() {
+        lock.lock();
+        try {
+            Map<String, PriorityClassStats> stats = new LinkedHashMap<>();
+            classes.forEach((priority, pc) -> stats.put(priority.name(), new PriorityClassStats(
+                    pc.dropping,
+                    pc.waiters.size(),
+                    pc.admitted,
+                    pc.queued,
+                    pc.shed,
+                    pc.droppingEpisodes,
+                    pc.admitted == 0 ? 0 : pc.sojournNanos / 1_000_000.0 / pc.admitted,
+                    pc.maxSojournNanos / 1_000_000)));
+            return new AdmissionStats(maxConcurrent, inFlight, waiting, stats);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // CoDel: track how long the sojourn has stayed above target
+    private void admitted(RequestPriority priority, long sojournNanos, long now) {
+        PriorityClass pc = classes.get(priority);
+        pc.admitted++;
+        pc.lastAdmittedAt = now;
+        pc.sojournNanos += sojournNanos;
+        pc.maxSojournNanos = Math.max(pc.maxSojournNanos, sojournNanos);
+        if (sojournNanos < targetNanos) {
+            pc.firstAboveTargetAt = 0;
+            if (pc.dropping) {
+                pc.dropping = false;
+                log.debug("🚦 {} requests are no longer shed", priority);
+            }
+        } else if (pc.firstAboveTargetAt == 0) {
+            pc.firstAboveTargetAt = now + intervalNanos;
+        } else if (now >= pc.firstAboveTargetAt && !pc.dropping) {
+            pc.dropping = true;
+            pc.droppingEpisodes++;
+            log.debug("🚦 {} requests queued over {} ms for {} ms, shedding lower classes",
+                    priority, targetNanos / 1_000_000, intervalNanos / 1_000_000);
+        }
+    }
+
+    private boolean waitingAtOrAbove(RequestPriority priority) {
+        for (RequestPriority p : RequestPriority.values()) {
+            if (p.compareTo(priority) > 0) break;
+            if (!classes.get(p).waiters.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    private boolean higherDropping(RequestPriority priority, long now) {
+        for (RequestPriority p : RequestPriority.values()) {
+            if (p.compareTo(priority) >= 0) break;
+            if (dropping(classes.get(p), now)) return true;
+        }
+        return false;
+    }
+
+    // A class that stopped sending requests while dropping must not hold the classes below it back for good
+    private boolean dropping(PriorityClass pc, long now) {
+        if (pc.dropping && pc.waiters.isEmpty() && now - pc.lastAdmittedAt > intervalNanos) {
+            pc.dropping = false;
+            pc.firstAboveTargetAt = 0;
+        }
+        return pc.dropping;
+    }
+
+    // Makes room by shedding the newest waiter of the lowest class below the given one
+    private boolean evictBelow(RequestPriority priority) {
+        RequestPriority[] all = RequestPriority.values();
+        for (int i = all.length - 1; i > priority.ordinal(); i--) {
+            Waiter victim = classes.get(all[i]).waiters.pollLast();
+            if (victim != null) {
+                waiting--;
+                victim.evicted = true;
+                victim.signal.signal();
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,35 @@
+package com.paxaris.identity_service.service.resilience;
+
+import org.springframework.http.HttpMethod;
+
+import java.net.URI;
+
+/**
+ * Decides whether an outbound HTTP call may go ahead. Guards run in order before every call made through the
+ * shared {@code RestTemplate} or a {@code WebClient} built from the shared builder; a guard that refuses throws
+ * {@link DependencyUnavailableException}.
+ */
+public interface OutboundGuard {
+
+    /**
+     * @return a permit released once the call is over, or {@link Permit#NONE} if this guard ignores the call
+     * @throws DependencyUnavailableException if the call must not be made now
+     */
+    Permit admit(URI uri, HttpMethod method);
+
+    @FunctionalInterface
+    interface Permit {
+        Permit NONE = outcome -> {};
+
+        void release(Outcome outcome);
+    }
+
+    /**
+     * @param executed     false when a later guard refused the call, so it never reached the network
+     * @param failed       I/O error or 5xx response
+     * @param latencyNanos time until the response headers arrived, or until the failure
+     */
+    record Outcome(boolean executed, boolean failed, long latencyNanos) {
+        public static final Outcome NOT_EXECUTED = new Outcome(false, false, 0);
+    }
+}
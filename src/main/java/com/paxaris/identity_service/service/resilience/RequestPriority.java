@@ -0,0 +1,86 @@
+package com.paxaris.identity_service.service.resilience;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Priority classes of inbound requests, highest first. Under overload the lower classes are shed first.
+ * <p>
+ * Paths are matched the way Spring MVC matches its handlers: as parsed {@link PathPattern}s against the decoded
+ * path within the application, with {@code ;} parameters removed.
+ */
+public enum RequestPriority {
+    /**
+     * Token validation and login, which every product calls on its request path.
+     */
+    CRITICAL,
+    NORMAL,
+    /**
+     * Listings and bulk administration, which can wait or be retried.
+     */
+    ADMIN;
+
+    private static final List<PathPattern> CRITICAL_PATHS = parse(
+            "/validate",
+            "/token",
+            "/token/validate",
+            "/*/login",
+            "/auth/**",
+            "/identity/validate-access",
+            "/reactive/validate",
+            "/reactive/token",
+            "/reactive/token/validate",
+            "/reactive/identity/validate-access",
+            // Monitoring has to keep answering while the service sheds load
+            "/resilience/**",
+            "/provisioning/stats"
+    );
+
+    private static final List<PathPattern> ADMIN_PATHS = parse(
+            "/users/**",
+            "/reactive/users/**",
+            // Full-realm listings, streamed or passed through
+            "/realms",
+            "/reactive/realms",
+            "/clients/**",
+            "/reactive/clients/**",
+            "/roles/**",
+            "/reactive/roles/**",
+            "/signup",
+            "/signup/**",
+            "/uploads",
+            "/uploads/**",
+            "/realm",
+            "/identity/*/users/import",
+            "/identity/*/clients/*/roles",
+            "/identity/*/clients/*/role-assignments",
+            "/identity/*/clients/*/roles/reconcile",
+            "/identity/*/exports",
+            "/identity/exports/**"
+    );
+
+    public static RequestPriority of(String path) {
+        return of(PathContainer.parsePath(path));
+    }
+
+    public static RequestPriority of(PathContainer path) {
+        if (matches(CRITICAL_PATHS, path)) return CRITICAL;
+        if (matches(ADMIN_PATHS, path)) return ADMIN;
+        return NORMAL;
+    }
+
+    private static List<PathPattern> parse(String... patterns) {
+        return Arrays.stream(patterns).map(PathPatternParser.defaultInstance::parse).toList();
+    }
+
+    private static boolean matches(List<PathPattern> patterns, PathContainer path) {
+        for (PathPattern pattern : patterns) {
+            if (pattern.matches(path)) return true;
+        }
+        return false;
+    }
+}
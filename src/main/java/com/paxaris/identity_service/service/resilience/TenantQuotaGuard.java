@@ -0,0 +1,284 @@
+package com.paxaris.identity_service.service.resilience;
+
+import com.paxaris.identity_service.dto.RealmQuotaStats;
+import com.paxaris.identity_service.dto.TenantQuotaStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per-realm concurrency quota for outbound Keycloak calls, so that one tenant's bulk import or login storm
+ * cannot use up the connections and threads every other realm needs.
+ * <p>
+ * Each realm may have {@code base} calls in flight, scaled by {@code identity.tenant-quota.weights.<realm>}.
+ * Beyond that it borrows from a shared {@code overflow} pool. When both are used up the call waits, at most
+ * {@code max-wait}: a freed quota slot goes to the next waiter of the same realm, and a freed overflow slot to
+ * the realms with waiters in turn, so a realm with a thousand queued calls gets no more of the pool than one
+ * with a single call waiting. The realm is taken from the Keycloak URL ({@code /realms/{realm}/…} or
+ * {@code /admin/realms/{realm}/…}); calls without one are not limited here. Nor is the master token fetch
+ * the service makes on behalf of every tenant: charged to {@code master}, one tenant's burst of admin work would
+ * use up the quota the master realm's own calls need. It is bounded by {@link DependencyGuard} and
+ * {@link AdaptiveLimitGuard} like every token call.
+ * <p>
+ * A realm that has had nothing in flight or waiting for {@code idle-eviction} is forgotten, with its
+ * figures, the next time an unknown realm shows up, so realm names taken from request paths cannot pile up.
+ * <p>
+ * This runs before {@link DependencyGuard}, so calls queued behind their realm's quota don't hold a bulkhead
+ * slot meanwhile.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TenantQuotaGuard implements OutboundGuard {
+
+    private static final Pattern REALM = Pattern.compile("/realms/([^/]+)");
+
+    private enum Slot { QUOTA, OVERFLOW }
+
+    private static final class Waiter {
+        private final Condition granted;
+        private Slot slot;
+
+        private Waiter(Condition granted) {
+            this.granted = granted;
+        }
+    }
+
+    // All fields guarded by the guard's lock
+    private static final class Tenant {
+        private final int quota;
+        private final double weight;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private int inQuota;
+        private int borrowed;
+        private long admitted;
+        private long queued;
+        private long rejected;
+        private long waitNanos;
+        private long maxWaitNanos;
+        private long idleSince = System.nanoTime();
+
+        private Tenant(int quota, double weight) {
+            this.quota = quota;
+            this.weight = weight;
+        }
+
+        private boolean idle() {
+            return inQuota == 0 && borrowed == 0 && waiters.isEmpty();
+        }
+    }
+
+    private final Environment env;
+    private final boolean enabled;
+    private final int base;
+    private final int overflow;
+    private final long maxWaitNanos;
+    private final long idleEvictionNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    // Realms with waiters, in the order they get the next overflow slot
+    private final ArrayDeque<Tenant> rotation = new ArrayDeque<>();
+    private int overflowInUse;
+
+    public TenantQuotaGuard(
+            Environment env,
+            @Value("${identity.tenant-quota.enabled:true}") boolean enabled,
+            @Value("${identity.tenant-quota.base:8}") int base,
+            @Value("${identity.tenant-quota.overflow:32}") int overflow,
+            @Value("${identity.tenant-quota.max-wait:5s}") Duration maxWait,
+            @Value("${identity.tenant-quota.idle-eviction:10m}") Duration idleEviction
+    ) {
+        this.env = env;
+        this.enabled = enabled;
+        this.base = Math.max(1, base);
+        this.overflow = Math.max(0, overflow);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.idleEvictionNanos = idleEviction.toNanos();
+    }
+
+    @Override
+    public Permit admit(URI uri, HttpMethod method) {
+        if (!enabled) {
+            return Permit.NONE;
+        }
+        Dependency dependency = Dependency.of(uri, null);
+        String realm = dependency.isKeycloak() ? realmOf(uri) : null;
+        if (realm == null || dependency == Dependency.KEYCLOAK_TOKEN && "master".equals(realm)) {
+            return Permit.NONE;
+        }
+
+        lock.lock();
+        try {
+            if (!tenants.containsKey(realm)) {
+                evictIdle();
+            }
+            Tenant tenant = tenants.computeIfAbsent(realm, this::newTenant);
+            Slot slot = tryTake(tenant);
+            if (slot == null) {
+                slot = await(tenant);
+            }
+            if (slot == null) {
+                tenant.rejected++;
+                if (tenant.idle()) {
+                    tenant.idleSince = System.nanoTime();
+                }
+                throw new DependencyUnavailableException(dependency,
+                        "realm '" + realm + "' is using its quota of " + tenant.quota + " calls and the shared overflow");
+            }
+            tenant.admitted++;
+            Slot held = slot;
+            return outcome -> release(tenant, held);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public TenantQuotaStats stats() {
+        lock.lock();
+        try {
+            Map<String, RealmQuotaStats> realms = new TreeMap<>();
+            tenants.forEach((realm, tenant) -> realms.put(realm, new RealmQuotaStats(
+                    tenant.quota,
+                    tenant.weight,
+                    tenant.inQuota + tenant.borrowed,
+                    tenant.borrowed,
+                    tenant.waiters.size(),
+                    tenant.admitted,
+                    tenant.queued,
+                    tenant.rejected,
+                    tenant.queued == 0 ? 0 : tenant.waitNanos / 1_000_000.0 / tenant.queued,
+                    tenant.maxWaitNanos / 1_000_000)));
+            return new TenantQuotaStats(overflow, overflowInUse, realms);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static String realmOf(URI uri) {
+        String path = uri.getPath();
+        if (path == null) {
+            return null;
+        }
+        Matcher matcher = REALM.matcher(path);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private Tenant newTenant(String realm) {
+        double weight = env.getProperty("identity.tenant-quota.weights." + realm, Double.class, 1.0);
+        return new Tenant(Math.max(1, (int) Math.round(base * weight)), weight);
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        tenants.values().removeIf(tenant -> tenant.idle() && now - tenant.idleSince >= idleEvictionNanos);
+    }
+
+    private Slot tryTake(Tenant tenant) {
+        // Never overtake this realm's own waiters, nor other realms waiting for overflow
+        if (!tenant.waiters.isEmpty()) {
+            return null;
+        }
+        if (tenant.inQuota < tenant.quota) {
+            tenant.inQuota++;
+            return Slot.QUOTA;
+        }
+        if (overflowInUse < overflow && rotation.isEmpty()) {
+            overflowInUse++;
+            tenant.borrowed++;
+            return Slot.OVERFLOW;
+        }
+        return null;
+    }
+
+    private Slot await(Tenant tenant) {
+        if (maxWaitNanos <= 0) {
+            return null;
+        }
+        Waiter waiter = new Waiter(lock.newCondition());
+        if (tenant.waiters.isEmpty()) {
+            rotation.addLast(tenant);
+        }
+        tenant.waiters.addLast(waiter);
+        tenant.queued++;
+
+        long start = System.nanoTime();
+        long remaining = maxWaitNanos;
+        try {
+            while (waiter.slot == null && remaining > 0) {
+                remaining = waiter.granted.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long waited = System.nanoTime() - start;
+        tenant.waitNanos += waited;
+        tenant.maxWaitNanos = Math.max(tenant.maxWaitNanos, waited);
+
+        if (waiter.slot == null) {
+            tenant.waiters.remove(waiter);
+            if (tenant.waiters.isEmpty()) {
+                rotation.remove(tenant);
+            }
+        }
+        return waiter.slot;
+    }
+
+    private void release(Tenant tenant, Slot slot) {
+        lock.lock();
+        try {
+            if (slot == Slot.QUOTA) {
+                Waiter next = tenant.waiters.pollFirst();
+                if (next != null) {
+                    // The slot passes straight to the realm's next waiter
+                    if (tenant.waiters.isEmpty()) {
+                        rotation.remove(tenant);
+                    }
+                    grant(next, Slot.QUOTA);
+                } else {
+                    tenant.inQuota--;
+                }
+            } else {
+                tenant.borrowed--;
+                overflowInUse--;
+                grantOverflow();
+            }
+            if (tenant.idle()) {
+                tenant.idleSince = System.nanoTime();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void grantOverflow() {
+        while (overflowInUse < overflow && !rotation.isEmpty()) {
+            Tenant tenant = rotation.pollFirst();
+            Waiter next = tenant.waiters.pollFirst();
+            if (!tenant.waiters.isEmpty()) {
+                rotation.addLast(tenant);
+            }
+            overflowInUse++;
+            tenant.borrowed++;
+            grant(next, Slot.OVERFLOW);
+        }
+    }
+
+    private static void grant(Waiter waiter, Slot slot) {
+        waiter.slot = slot;
+        waiter.granted.signal();
+    }
+}
@@ -0,0 +1,78 @@
+package com.paxaris.identity_service.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paxaris.identity_service.service.resilience.InboundAdmission;
+import com.paxaris.identity_service.service.resilience.RequestPriority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LoadSheddingFilterTest {
+
+    private final InboundAdmission admission = mock(InboundAdmission.class);
+    private final LoadSheddingFilter filter = new LoadSheddingFilter(admission, new ObjectMapper(), Duration.ofSeconds(2));
+
+    @BeforeEach
+    void enable() {
+        when(admission.isEnabled()).thenReturn(true);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "/token, CRITICAL",
+            "/%74oken, CRITICAL",
+            "/token;jsessionid=abc, CRITICAL",
+            "/acme/login, CRITICAL",
+            "/users/acme, ADMIN",
+            "/%75sers/acme, ADMIN",
+            "/users;x=1/acme, ADMIN",
+            "/identity/acme/users/import, ADMIN",
+            "/identity/acme/users%2Fimport, NORMAL",
+            "/realms, ADMIN",
+            "/reactive/realms, ADMIN",
+            "/clients/acme, ADMIN",
+            "/reactive/clients/acme, ADMIN",
+            "/roles/acme/portal, ADMIN",
+            "/reactive/roles/acme/portal, ADMIN",
+            "/crud/roles/acme/portal, NORMAL",
+            "/identity/acme/clients, NORMAL"
+    })
+    void classifiesTheDecodedPathTheHandlerIsMappedTo(String uri, RequestPriority expected) throws Exception {
+        when(admission.acquire(any())).thenReturn(true);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/identity-service" + uri);
+        request.setContextPath("/identity-service");
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        verify(admission).acquire(expected);
+        verify(admission).release();
+        // Left for the DispatcherServlet to parse
+        assertFalse(ServletRequestPathUtils.hasParsedRequestPath(request));
+    }
+
+    @Test
+    void shedRequestGets503WithRetryAfterAndNeverReachesTheChain() throws Exception {
+        when(admission.acquire(RequestPriority.ADMIN)).thenReturn(false);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/%75sers/acme");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(503, response.getStatus());
+        assertEquals("2", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("\"path\":\"/%75sers/acme\""), response.getContentAsString());
+        assertNull(chain.getRequest());
+        verify(admission, never()).release();
+    }
+}
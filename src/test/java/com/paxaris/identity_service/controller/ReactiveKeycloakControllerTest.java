@@ -0,0 +1,105 @@
+package com.paxaris.identity_service.controller;
+
+import com.paxaris.identity_service.service.ReactiveDynamicJwtDecoder;
+import com.paxaris.identity_service.service.ReactiveKeycloakClientService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class ReactiveKeycloakControllerTest {
+
+    private final ReactiveKeycloakClientService clientService = mock(ReactiveKeycloakClientService.class);
+    private final ReactiveDynamicJwtDecoder jwtDecoder = mock(ReactiveDynamicJwtDecoder.class);
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.standaloneSetup(new ReactiveKeycloakController(clientService, jwtDecoder)).build();
+    }
+
+    @Test
+    void usersAreStreamedAsNdjson() throws Exception {
+        when(clientService.getMasterToken()).thenReturn(Mono.just("admin-token"));
+        when(clientService.getAllUsers("acme", "admin-token")).thenReturn(Flux.just(
+                Map.of("username", "alice"), Map.of("username", "bob")));
+
+        MvcResult started = mvc.perform(get("/reactive/users/acme").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(List.of("{\"username\":\"alice\"}", "{\"username\":\"bob\"}"), body.lines().toList());
+    }
+
+    @Test
+    void validTokenIsSummarised() throws Exception {
+        Jwt jwt = Jwt.withTokenValue("t")
+                .header("alg", "RS256")
+                .claim("iss", "http://keycloak-server:8080/realms/acme")
+                .claim("azp", "shop")
+                .claim("realm_access", Map.of("roles", List.of("user")))
+                .claim("resource_access", Map.of("shop", Map.of("roles", List.of("buyer"))))
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build();
+        when(jwtDecoder.decode("t")).thenReturn(Mono.just(jwt));
+
+        MvcResult started = mvc.perform(get("/reactive/validate").header("Authorization", "Bearer t"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("VALID"))
+                .andExpect(jsonPath("$.realm").value("acme"))
+                .andExpect(jsonPath("$.product").value("shop"))
+                .andExpect(jsonPath("$.roles[0]").value("user"))
+                .andExpect(jsonPath("$.roles[1]").value("buyer"));
+    }
+
+    @Test
+    void invalidTokenIsUnauthorized() throws Exception {
+        when(jwtDecoder.decode(any())).thenReturn(Mono.error(new JwtException("expired")));
+
+        MvcResult started = mvc.perform(get("/reactive/validate").header("Authorization", "Bearer t"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.status").value("INVALID"));
+    }
+
+    @Test
+    void malformedHeaderIsRejectedWithoutDecoding() throws Exception {
+        MvcResult started = mvc.perform(get("/reactive/validate").header("Authorization", "Basic abc")).andReturn();
+
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.status").value("INVALID"));
+        verifyNoInteractions(jwtDecoder);
+    }
+}
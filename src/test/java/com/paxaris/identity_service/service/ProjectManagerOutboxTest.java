@@ -0,0 +1,115 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paxaris.identity_service.support.StubHttpServer;
+import com.paxaris.identity_service.support.StubHttpServer.Request;
+import com.paxaris.identity_service.support.StubHttpServer.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProjectManagerOutboxTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final StubHttpServer projectManager = new StubHttpServer();
+    private final KeycloakClientService clientService = mock(KeycloakClientService.class);
+
+    @TempDir
+    Path dir;
+    private ProjectManagerOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        outbox = new ProjectManagerOutbox(new RestTemplate(), objectMapper, clientService, projectManager.url(), dir,
+                50, Duration.ofMillis(20), 4_194_304);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        outbox.shutdown();
+        projectManager.close();
+    }
+
+    @Test
+    void deliversWithTheServiceTokenAndNeverStoresOne() throws Exception {
+        when(clientService.getMasterToken()).thenReturn("service-token");
+        projectManager.on("POST", "/project/roles/save-or-update", Response.status(200));
+        outbox.start();
+
+        outbox.enqueue(HttpMethod.POST, "/project/roles/save-or-update", Map.of("roleName", "admin"));
+        awaitDelivered(1);
+
+        List<Request> calls = projectManager.requests("POST", "/project/roles/save-or-update");
+        assertEquals(List.of("Bearer service-token"), calls.stream().map(call -> call.header("Authorization")).toList());
+        assertNotNull(calls.get(0).header("Idempotency-Key"));
+        assertFalse(Files.readString(dir.resolve("outbox.ndjson")).contains("Bearer"));
+    }
+
+    @Test
+    void tokenRefusedMidBatchIsRefreshedAndTheEntrySentAgain() throws Exception {
+        when(clientService.getMasterToken()).thenReturn("stale", "fresh");
+        projectManager.on("POST", "/project/roles/save-or-update", Response.status(200));
+        projectManager.on("DELETE", "/project/roles/7", request ->
+                "Bearer fresh".equals(request.header("Authorization")) ? Response.status(204) : Response.status(401));
+        // Both in the log before the dispatcher starts, so they go out in one batch with one token
+        Files.writeString(dir.resolve("outbox.ndjson"), """
+                {"type":"entry","entry":{"id":"e-1","seq":0,"createdAt":"2026-01-01T00:00:00Z","method":"POST","path":"/project/roles/save-or-update","body":{"roleName":"admin"}}}
+                {"type":"entry","entry":{"id":"e-2","seq":1,"createdAt":"2026-01-01T00:00:00Z","method":"DELETE","path":"/project/roles/7"}}
+                """);
+        outbox.start();
+
+        awaitDelivered(2);
+
+        assertEquals(List.of("Bearer stale", "Bearer fresh"), projectManager.requests("DELETE", "/project/roles/7")
+                .stream().map(call -> call.header("Authorization")).toList());
+        assertEquals(0, outbox.stats().rejected());
+        assertEquals(0, outbox.stats().retries());
+        assertFalse(Files.exists(dir.resolve("rejected.ndjson")));
+    }
+
+    @Test
+    void entryRefusedWithAFreshTokenIsRejectedAndLaterEntriesStillGoOut() throws Exception {
+        when(clientService.getMasterToken()).thenReturn("service-token");
+        projectManager.on("DELETE", "/project/roles/7", Response.status(403));
+        projectManager.on("POST", "/project/roles/save-or-update", Response.status(200));
+        outbox.start();
+
+        outbox.enqueue(HttpMethod.DELETE, "/project/roles/7", null);
+        outbox.enqueue(HttpMethod.POST, "/project/roles/save-or-update", Map.of("roleName", "admin"));
+        awaitDelivered(1);
+
+        assertEquals(1, projectManager.requests("DELETE", "/project/roles/7").size());
+        assertEquals(1, outbox.stats().rejected());
+        assertTrue(Files.readString(dir.resolve("rejected.ndjson")).contains("/project/roles/7"));
+    }
+
+    @Test
+    void enqueueAfterShutdownFailsInsteadOfBlocking() throws Exception {
+        outbox.start();
+        outbox.shutdown();
+
+        IllegalStateException thrown = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(
+                IllegalStateException.class, () -> outbox.enqueue(HttpMethod.DELETE, "/project/roles/7", null)));
+        assertTrue(thrown.getMessage().contains("shutting down"), thrown.getMessage());
+    }
+
+    private void awaitDelivered(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (outbox.stats().delivered() < count) {
+            assertTrue(System.nanoTime() < deadline, "not delivered: " + outbox.stats());
+            Thread.sleep(20);
+        }
+    }
+}
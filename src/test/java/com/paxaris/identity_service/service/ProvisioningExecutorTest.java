@@ -0,0 +1,136 @@
+package com.paxaris.identity_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProvisioningExecutorTest {
+
+    @TempDir
+    Path workspaces;
+    private ProvisioningExecutor executor;
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) executor.shutdown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void taskThatCanNeverFitFailsRightAway() throws Exception {
+        executor = start(1, Duration.ofMinutes(1));
+        long usable = Files.getFileStore(workspaces).getUsableSpace();
+
+        RejectedExecutionException thrown = assertThrows(RejectedExecutionException.class,
+                () -> executor.run("acme", usable * 2, workspace -> fail("must not run")));
+
+        assertTrue(thrown.getMessage().contains("acme"), thrown.getMessage());
+        assertEquals(1, executor.stats().rejected());
+        assertEquals(0, executor.stats().queued());
+    }
+
+    @Test
+    void otherRealmsRunPastATaskWaitingForDisk() throws Exception {
+        executor = start(2, Duration.ofMinutes(1));
+        long large = Files.getFileStore(workspaces).getUsableSpace() * 6 / 10;
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstRunning = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        Future<?> first = call("acme", large, workspace -> {
+            order.add("acme");
+            firstRunning.countDown();
+            release.await();
+        });
+        assertTrue(firstRunning.await(10, TimeUnit.SECONDS));
+        // Fits once the first task is done, but not next to it
+        Future<?> waiting = call("globex", large, workspace -> order.add("globex"));
+        awaitWaitingForDisk();
+        Future<?> small = call("initech", 1, workspace -> order.add("initech"));
+
+        small.get(10, TimeUnit.SECONDS);
+        assertFalse(waiting.isDone());
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        waiting.get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of("acme", "initech", "globex"), order);
+    }
+
+    @Test
+    void callerStopsWaitingAndTheQueuedTaskIsWithdrawn() throws Exception {
+        executor = start(1, Duration.ofMillis(300));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        Future<?> busy = call("acme", 0, workspace -> {
+            running.countDown();
+            release.await();
+        });
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+
+        RuntimeException thrown = assertThrows(RuntimeException.class,
+                () -> executor.run("globex", 0, workspace -> fail("must not run once withdrawn")));
+
+        assertTrue(thrown.getMessage().contains("did not start"), thrown.getMessage());
+        assertEquals(0, executor.stats().queued());
+        ExecutionException abandoned = assertThrows(ExecutionException.class, () -> busy.get(10, TimeUnit.SECONDS));
+        assertTrue(abandoned.getCause().getMessage().contains("did not finish"), abandoned.getCause().getMessage());
+        release.countDown();
+    }
+
+    @Test
+    void unreadableVolumeDoesNotFailTasksWhileSpaceIsReserved() throws Exception {
+        Path root = workspaces.resolve("root");
+        executor = start(2, Duration.ofMinutes(1), root);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch rootGone = new CountDownLatch(1);
+        Future<?> reserving = call("acme", 1_000, workspace -> {
+            FileSystemUtils.deleteRecursively(root);
+            rootGone.countDown();
+            release.await();
+        });
+        assertTrue(rootGone.await(10, TimeUnit.SECONDS));
+
+        executor.run("globex", 1, workspace -> { });
+
+        assertEquals(0, executor.stats().rejected());
+        release.countDown();
+        reserving.get(10, TimeUnit.SECONDS);
+    }
+
+    private ProvisioningExecutor start(int workers, Duration maxWait) throws Exception {
+        return start(workers, maxWait, workspaces);
+    }
+
+    private ProvisioningExecutor start(int workers, Duration maxWait, Path root) throws Exception {
+        ProvisioningExecutor started = new ProvisioningExecutor(workers, 10, DataSize.ofBytes(0), root, maxWait);
+        started.start();
+        return started;
+    }
+
+    private Future<?> call(String realm, long diskBytes, ProvisioningExecutor.Job job) {
+        return callers.submit(() -> {
+            executor.run(realm, diskBytes, job);
+            return null;
+        });
+    }
+
+    private void awaitWaitingForDisk() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!executor.stats().waitingForDisk()) {
+            assertTrue(System.nanoTime() < deadline, "task never waited for disk");
+            Thread.sleep(10);
+        }
+    }
+}
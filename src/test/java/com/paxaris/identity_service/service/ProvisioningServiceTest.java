@@ -0,0 +1,214 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paxaris.identity_service.support.GitHttpBackend;
+import com.paxaris.identity_service.support.StubHttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static com.paxaris.identity_service.support.GitHttpBackend.git;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+class ProvisioningServiceTest {
+
+    @TempDir
+    Path tmp;
+    private ProvisioningService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ProvisioningService("token", "paxaris", "http://git.invalid", "http://api.invalid", true, 2,
+                mock(ProvisioningStore.class), mock(ProvisioningExecutor.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"../evil.sh", "src/../../evil.sh", "src/..", "/etc/cron.d/evil", "..\\evil.sh", "src\\main\\App.java"})
+    void entriesOutsideTheRepositoryAreRejected(String name) throws Exception {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("README.md", bytes("hello\n"));
+        files.put(name, bytes("evil\n"));
+        Path archive = zip(files);
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            IOException thrown = assertThrows(IOException.class,
+                    () -> ProvisioningService.fileEntries(zip));
+            assertTrue(thrown.getMessage().contains(name), thrown.getMessage());
+        }
+        try (Stream<Path> written = Files.walk(tmp)) {
+            assertEquals(List.of(archive), written.filter(Files::isRegularFile).toList());
+        }
+    }
+
+    @Test
+    void extractRefusesEntriesThatResolveOutsideTheTarget() throws Exception {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("src/../../evil.sh", bytes("evil\n"));
+        Path archive = zip(files);
+
+        Path target = tmp.resolve("files");
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            IOException thrown = assertThrows(IOException.class,
+                    () -> service.extract(zip, List.of(zip.getEntry("src/../../evil.sh")), target));
+            assertTrue(thrown.getMessage().contains("outside the repository"), thrown.getMessage());
+        }
+        assertFalse(Files.exists(tmp.resolve("evil.sh")));
+    }
+
+    @Test
+    void extractedFilesMatchTheArchive() throws Exception {
+        byte[] binary = new byte[3_000_000];
+        new Random(43).nextBytes(binary);
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("README.md", bytes("hello\n"));
+        files.put("src/main/App.java", bytes("class App {}\n"));
+        files.put("src/main/resources/", new byte[0]);
+        files.put("assets/blob.bin", binary);
+        files.put("empty.txt", new byte[0]);
+        files.put(".git/config", bytes("[core]\n"));
+        files.put("nested/.git/HEAD", bytes("ref: refs/heads/main\n"));
+        Path archive = zip(files);
+
+        Path target = tmp.resolve("files");
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            List<ZipEntry> entries = ProvisioningService.fileEntries(zip);
+            assertEquals(List.of("README.md", "src/main/App.java", "assets/blob.bin", "empty.txt"),
+                    entries.stream().map(ZipEntry::getName).toList());
+            service.extract(zip, entries, target);
+        }
+
+        try (Stream<Path> extracted = Files.walk(target)) {
+            assertEquals(4, extracted.filter(Files::isRegularFile).count());
+        }
+        assertArrayEquals(bytes("hello\n"), Files.readAllBytes(target.resolve("README.md")));
+        assertArrayEquals(bytes("class App {}\n"), Files.readAllBytes(target.resolve("src/main/App.java")));
+        assertArrayEquals(binary, Files.readAllBytes(target.resolve("assets/blob.bin")));
+        assertEquals(0, Files.size(target.resolve("empty.txt")));
+        assertFalse(Files.exists(target.resolve(".git")));
+    }
+
+    /**
+     * Provisions archives end to end against a stubbed GitHub API and a bare repository served by
+     * {@code git http-backend}.
+     */
+    @Nested
+    class PushingToGit {
+
+        private static final String REPO = "paxaris/acme-portal.git";
+
+        private final StubHttpServer github = new StubHttpServer();
+        private GitHttpBackend gitServer;
+        private ProvisioningExecutor executor;
+        private ProvisioningService provisioning;
+        private Path bare;
+
+        @BeforeEach
+        void setUp() throws Exception {
+            assumeTrue(git(tmp, "--version").startsWith("git version"), "git is not installed");
+            Path gitRoot = Files.createDirectories(tmp.resolve("git"));
+            bare = gitRoot.resolve(REPO);
+            github.on("POST", "/user/repos", request -> {
+                try {
+                    git(gitRoot, "init", "--bare", "-q", "--initial-branch=main", bare.toString());
+                    git(bare, "config", "http.receivepack", "true");
+                } catch (Exception e) {
+                    return StubHttpServer.Response.status(500);
+                }
+                return StubHttpServer.Response.json(201, "{}");
+            });
+            gitServer = new GitHttpBackend(gitRoot);
+
+            executor = new ProvisioningExecutor(1, 10, DataSize.ofBytes(0), tmp.resolve("workspaces"), Duration.ofMinutes(1));
+            executor.start();
+            ProvisioningStore store = new ProvisioningStore(new ObjectMapper().findAndRegisterModules(), tmp.resolve("store"));
+            provisioning = new ProvisioningService("token", "paxaris", gitServer.url(), github.url(), false, 2, store, executor);
+        }
+
+        @AfterEach
+        void tearDown() {
+            if (provisioning != null) provisioning.shutdown();
+            if (executor != null) executor.shutdown();
+            if (gitServer != null) gitServer.close();
+            github.close();
+        }
+
+        @Test
+        void unchangedArchiveIsNotPushedAgainAndAChangedOneOnlySendsNewObjects() throws Exception {
+            Map<String, byte[]> files = new LinkedHashMap<>();
+            files.put("README.md", bytes("hello\n"));
+            files.put("src/main/App.java", bytes("class App {}\n"));
+            files.put("docs/guide.md", bytes("guide\n"));
+
+            provisioning.provisionRepoAndPushZip("acme", "portal", zip("first.zip", files));
+            String first = git(bare, "rev-parse", "main").trim();
+            assertEquals(1, github.requests("POST", "/user/repos").size());
+            assertEquals(1, gitServer.pushes().size());
+
+            // Same archive, then the same files zipped in another order: nothing to push
+            provisioning.provisionRepoAndPushZip("acme", "portal", zip("first.zip", files));
+            Map<String, byte[]> reordered = new LinkedHashMap<>();
+            files.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> reordered.put(e.getKey(), e.getValue()));
+            provisioning.provisionRepoAndPushZip("acme", "portal", zip("rezipped.zip", reordered));
+            assertEquals(1, gitServer.pushes().size());
+            assertEquals(first, git(bare, "rev-parse", "main").trim());
+
+            files.put("README.md", bytes("hello again\n"));
+            provisioning.provisionRepoAndPushZip("acme", "portal", zip("second.zip", files));
+
+            List<byte[]> pushes = gitServer.pushes();
+            assertEquals(2, pushes.size());
+            // new README blob, new root tree and the commit; src, src/main and docs trees are already there
+            assertEquals(3, GitHttpBackend.packObjectCount(pushes.get(1)));
+            assertEquals(first, git(bare, "rev-parse", "main^").trim());
+            assertEquals("hello again\n", git(bare, "show", "main:README.md"));
+            assertEquals("", git(bare, "fsck", "--strict", "--no-progress"));
+            assertEquals(1, github.requests("POST", "/user/repos").size());
+        }
+    }
+
+    private Path zip(Map<String, byte[]> files) throws IOException {
+        return zip("archive.zip", files);
+    }
+
+    private Path zip(String name, Map<String, byte[]> files) throws IOException {
+        Path archive = tmp.resolve(name);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(archive))) {
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                out.putNextEntry(new ZipEntry(file.getKey()));
+                out.write(file.getValue());
+                out.closeEntry();
+            }
+        }
+        return archive;
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
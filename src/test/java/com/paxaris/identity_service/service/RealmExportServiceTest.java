@@ -0,0 +1,135 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.paxaris.identity_service.dto.RealmExportStatus;
+import com.paxaris.identity_service.dto.RealmExportStatus.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RealmExportServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final KeycloakClientService clientService = mock(KeycloakClientService.class);
+    private final List<RealmExportService> services = new ArrayList<>();
+
+    @TempDir
+    Path exportDir;
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(RealmExportService::shutdown);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void finishedExportIsStillAvailableAfterARestart() throws Exception {
+        when(clientService.getMasterToken()).thenReturn("master");
+        doAnswer(call -> {
+            ((Consumer<ObjectNode>) call.getArgument(3)).accept(objectMapper.createObjectNode().put("username", "alice"));
+            return 1L;
+        }).when(clientService).forEachUser(eq("acme"), eq("master"), any(), any(Consumer.class));
+
+        RealmExportService first = service(Duration.ofDays(30));
+        String id = first.start("acme").id();
+        RealmExportStatus finished = awaitFinished(first, id);
+        assertEquals(Status.COMPLETED, finished.status());
+        assertEquals(1, finished.users());
+
+        RealmExportService restarted = service(Duration.ofDays(30));
+        restarted.loadPersistedExports();
+
+        assertEquals(finished, restarted.status(id).orElseThrow());
+        assertEquals(Path.of(finished.file()), restarted.file(id).orElseThrow());
+    }
+
+    @Test
+    void exportsOfTheSameRealmStartedTogetherKeepTheirOwnSnapshots() throws Exception {
+        when(clientService.getMasterToken()).thenReturn("master");
+        RealmExportService service = new RealmExportService(clientService, objectMapper, exportDir, 100, 2, Duration.ofDays(30));
+        services.add(service);
+
+        String first = service.start("acme").id();
+        String second = service.start("acme").id();
+        RealmExportStatus firstDone = awaitFinished(service, first);
+        RealmExportStatus secondDone = awaitFinished(service, second);
+
+        assertEquals(Status.COMPLETED, firstDone.status());
+        assertEquals(Status.COMPLETED, secondDone.status());
+        assertNotEquals(firstDone.file(), secondDone.file());
+        assertTrue(firstDone.file().endsWith(first + ".ndjson.gz"), firstDone.file());
+        assertTrue(Files.exists(Path.of(firstDone.file())));
+        assertTrue(Files.exists(Path.of(secondDone.file())));
+    }
+
+    @Test
+    void exportCutShortByARestartIsReportedAsFailed() throws IOException {
+        Path part = Files.writeString(exportDir.resolve("acme-20260101T000000Z.ndjson.gz.part"), "partial");
+        persist(new RealmExportStatus("e-1", "acme", Status.RUNNING, 10, 0, 0, 100, null, Instant.now(), null, null));
+
+        RealmExportService service = service(Duration.ofDays(30));
+        service.loadPersistedExports();
+
+        RealmExportStatus status = service.status("e-1").orElseThrow();
+        assertEquals(Status.FAILED, status.status());
+        assertEquals("Interrupted by a restart", status.error());
+        assertFalse(Files.exists(part));
+        assertEquals(Status.FAILED, objectMapper.readValue(exportDir.resolve("e-1.json").toFile(), RealmExportStatus.class).status());
+    }
+
+    @Test
+    void exportsPastRetentionAreDeletedWithTheirSnapshot() throws IOException {
+        Path old = Files.writeString(exportDir.resolve("acme-old.ndjson.gz"), "x");
+        Path recent = Files.writeString(exportDir.resolve("acme-recent.ndjson.gz"), "x");
+        Instant now = Instant.now();
+        persist(new RealmExportStatus("old", "acme", Status.COMPLETED, 0, 0, 0, 1, old.toString(),
+                now.minus(Duration.ofDays(9)), now.minus(Duration.ofDays(8)), null));
+        persist(new RealmExportStatus("recent", "acme", Status.COMPLETED, 0, 0, 0, 1, recent.toString(),
+                now.minus(Duration.ofDays(2)), now.minus(Duration.ofDays(1)), null));
+
+        RealmExportService service = service(Duration.ofDays(7));
+        service.loadPersistedExports();
+
+        assertTrue(service.status("old").isEmpty());
+        assertFalse(Files.exists(old));
+        assertFalse(Files.exists(exportDir.resolve("old.json")));
+        assertEquals(recent, service.file("recent").orElseThrow());
+    }
+
+    private RealmExportService service(Duration retention) {
+        RealmExportService service = new RealmExportService(clientService, objectMapper, exportDir, 100, 1, retention);
+        services.add(service);
+        return service;
+    }
+
+    private void persist(RealmExportStatus status) throws IOException {
+        Files.write(exportDir.resolve(status.id() + ".json"), objectMapper.writeValueAsBytes(status));
+    }
+
+    private static RealmExportStatus awaitFinished(RealmExportService service, String id) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            RealmExportStatus status = service.status(id).orElseThrow();
+            if (status.status() == Status.COMPLETED || status.status() == Status.FAILED) {
+                return status;
+            }
+            Thread.sleep(20);
+        }
+        return fail("Export " + id + " did not finish");
+    }
+}
@@ -0,0 +1,141 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.paxaris.identity_service.dto.RoleReconciliationAction;
+import com.paxaris.identity_service.dto.RoleReconciliationAction.Action;
+import com.paxaris.identity_service.dto.RoleReconciliationReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class RoleReconciliationServiceTest {
+
+    private static final String PM = "http://pm";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final KeycloakClientService clientService = mock(KeycloakClientService.class);
+    private MockRestServiceServer projectManager;
+    private RoleReconciliationService service;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        projectManager = MockRestServiceServer.bindTo(restTemplate).build();
+        service = new RoleReconciliationService(clientService, restTemplate, PM, "/project/roles/{realm}/{product}",
+                Set.of("uma_protection"), 4, Duration.ofSeconds(10), 2);
+        when(clientService.getClientUUID("acme", "shop", "t")).thenReturn("c-1");
+        when(clientService.createRole(any(), any(), any(), any())).thenReturn(true);
+        when(clientService.updateRole(any(), any(), any(), any(), any())).thenReturn(true);
+        when(clientService.deleteRole(any(), any(), any(), any())).thenReturn(true);
+    }
+
+    @Test
+    void diffPlansCreatesUpdatesAndDeletesButKeepsProtectedRoles() {
+        projectManagerRoles("""
+                [{"roleName":"viewer","description":"Can view"},
+                 {"name":"editor","description":"Can edit"},
+                 {"roleName":"admin","description":"Everything"}]""");
+        keycloakRoles(Map.of("viewer", "Can view", "editor", "Old text", "legacy", "", "uma_protection", ""));
+
+        RoleReconciliationReport report = service.reconcile("acme", "shop", "t", true, false);
+
+        assertEquals(List.of(
+                RoleReconciliationAction.planned("admin", Action.CREATE, "Everything"),
+                RoleReconciliationAction.planned("editor", Action.UPDATE, "Can edit"),
+                RoleReconciliationAction.planned("legacy", Action.DELETE, null)), report.actions());
+        assertEquals(1, report.unchanged());
+        assertEquals(3, report.projectManagerRoles());
+        assertEquals(4, report.keycloakRoles());
+        verify(clientService, never()).getClientUUID(any(), any(), any());
+        verifyNoMoreWrites();
+    }
+
+    @Test
+    void appliedRunWritesOnlyTheDifferences() {
+        projectManagerRoles("[{\"roleName\":\"viewer\",\"description\":\"Can view\"},{\"roleName\":\"admin\"}]");
+        keycloakRoles(Map.of("viewer", "Can view", "legacy", ""));
+
+        RoleReconciliationReport report = service.reconcile("acme", "shop", "t", false, false);
+
+        assertTrue(report.actions().stream().allMatch(a -> a.status() == RoleReconciliationAction.Status.APPLIED));
+        verify(clientService).createRole(eq("acme"), eq("c-1"), argThat(role -> role.getName().equals("admin")), eq("t"));
+        verify(clientService).deleteRole("acme", "c-1", "legacy", "t");
+        verify(clientService, never()).updateRole(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void emptyProjectManagerListRefusesToDeleteEverything() {
+        projectManagerRoles("[]");
+        keycloakRoles(Map.of("viewer", "", "editor", ""));
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> service.reconcile("acme", "shop", "t", false, false));
+
+        assertTrue(thrown.getMessage().contains("allowDeletes=true"));
+        verifyNoMoreWrites();
+    }
+
+    @Test
+    void deletesPastTheThresholdNeedAllowDeletes() {
+        projectManagerRoles("[{\"roleName\":\"viewer\"}]");
+        keycloakRoles(Map.of("viewer", "", "a", "", "b", "", "c", ""));
+        assertThrows(IllegalStateException.class, () -> service.reconcile("acme", "shop", "t", false, false));
+        verifyNoMoreWrites();
+
+        projectManager.reset();
+        projectManagerRoles("[{\"roleName\":\"viewer\"}]");
+        RoleReconciliationReport report = service.reconcile("acme", "shop", "t", false, true);
+
+        assertEquals(3, report.actions().size());
+        verify(clientService, times(3)).deleteRole(eq("acme"), eq("c-1"), any(), eq("t"));
+    }
+
+    @Test
+    void dryRunIsNeverRefused() {
+        projectManagerRoles("[]");
+        keycloakRoles(Map.of("viewer", ""));
+
+        RoleReconciliationReport report = service.reconcile("acme", "shop", "t", true, false);
+
+        assertEquals(List.of(RoleReconciliationAction.planned("viewer", Action.DELETE, null)), report.actions());
+    }
+
+    private void projectManagerRoles(String json) {
+        projectManager.expect(requestTo(PM + "/project/roles/acme/shop"))
+                .andExpect(header("Authorization", "Bearer t"))
+                .andRespond(withSuccess(json, MediaType.APPLICATION_JSON));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void keycloakRoles(Map<String, String> roles) {
+        doAnswer(call -> {
+            Consumer<ObjectNode> sink = call.getArgument(4);
+            roles.forEach((name, description) -> sink.accept(objectMapper.createObjectNode()
+                    .put("name", name).put("description", description)));
+            return (long) roles.size();
+        }).when(clientService).forEachRole(eq("acme"), eq("shop"), eq("t"), any(), any(Consumer.class));
+    }
+
+    private void verifyNoMoreWrites() {
+        verify(clientService, never()).createRole(any(), any(), any(), any());
+        verify(clientService, never()).updateRole(any(), any(), any(), any(), any());
+        verify(clientService, never()).deleteRole(any(), any(), any(), any());
+    }
+}
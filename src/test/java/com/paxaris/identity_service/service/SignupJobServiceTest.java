@@ -0,0 +1,209 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paxaris.identity_service.dto.SignupJob;
+import com.paxaris.identity_service.dto.SignupJob.Step;
+import com.paxaris.identity_service.dto.SignupJob.StepState;
+import com.paxaris.identity_service.dto.SignupJob.StepStatus;
+import com.paxaris.identity_service.dto.SignupRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SignupJobServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final KeycloakClientService clientService = mock(KeycloakClientService.class);
+    private final ProvisioningService provisioningService = mock(ProvisioningService.class);
+
+    @TempDir
+    Path jobsDir;
+    private SignupJobService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new SignupJobService(clientService, provisioningService, mock(UploadService.class), objectMapper,
+                jobsDir, Duration.ofDays(7), 2);
+        when(clientService.getMasterToken()).thenReturn("master");
+        when(clientService.findClientUUID(any(), any(), any())).thenReturn(Optional.empty());
+        when(clientService.findUserId(any(), any(), any())).thenReturn(Optional.empty());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void firstRunCreatesEveryStepAndScrubsThePassword() throws Exception {
+        when(clientService.createAdminUser(any(), eq("master"))).thenReturn("u-1");
+
+        SignupJob job = awaitFinished(service.submit(signupRequest(), archive()).getId());
+
+        assertEquals(SignupJob.Status.SUCCEEDED, job.getStatus());
+        verify(clientService).createRealm("acme", "master");
+        verify(clientService).createClient("acme", "shop", true, "master");
+        verify(clientService).grantAdminRoles("acme", "u-1", "master");
+        verify(provisioningService).provisionRepoAndPushZip(eq("acme"), eq("shop"), any(Path.class));
+        verify(clientService, never()).realmExists(any(), any());
+        SignupRequest stored = objectMapper.readValue(jobsDir.resolve(job.getId()).resolve("request.json").toFile(), SignupRequest.class);
+        assertNull(stored.getAdminUser().getPassword());
+    }
+
+    @Test
+    void existingRealmOnTheFirstAttemptIsAConflict() throws Exception {
+        doThrow(new RuntimeException("Failed to create realm",
+                HttpClientErrorException.create(HttpStatus.CONFLICT, "Conflict", null, null, null)))
+                .when(clientService).createRealm("acme", "master");
+
+        SignupJob job = awaitFinished(service.submit(signupRequest(), archive()).getId());
+
+        assertEquals(SignupJob.Status.FAILED, job.getStatus());
+        assertEquals(StepStatus.FAILED, job.getSteps().get(Step.REALM).getStatus());
+        verify(clientService, never()).realmExists(any(), any());
+        verify(clientService, never()).createClient(any(), any(), anyBoolean(), any());
+    }
+
+    @Test
+    void retryAdoptsWhatTheFailedAttemptAlreadyCreated() throws Exception {
+        // The realm call timed out at the gateway but Keycloak created the realm and, in a racing attempt, the client
+        doThrow(HttpServerErrorException.create(HttpStatus.GATEWAY_TIMEOUT, "Gateway Timeout", null, null, null))
+                .when(clientService).createRealm("acme", "master");
+        SignupJob failed = awaitFinished(service.submit(signupRequest(), archive()).getId());
+        assertEquals(SignupJob.Status.FAILED, failed.getStatus());
+
+        when(clientService.realmExists("acme", "master")).thenReturn(true);
+        when(clientService.findClientUUID("acme", "shop", "master")).thenReturn(Optional.of("c-1"));
+        when(clientService.createAdminUser(argThat(request -> "secret".equals(request.getAdminUser().getPassword())),
+                eq("master"))).thenReturn("u-1");
+        service.retry(failed.getId(), "secret");
+        SignupJob job = awaitFinished(failed.getId());
+
+        assertEquals(SignupJob.Status.SUCCEEDED, job.getStatus());
+        assertEquals(2, job.getSteps().get(Step.REALM).getAttempts());
+        assertEquals(StepStatus.DONE, job.getSteps().get(Step.REALM).getStatus());
+        assertEquals(StepStatus.SKIPPED, job.getSteps().get(Step.CLIENT).getStatus());
+        verify(clientService, times(1)).createRealm("acme", "master");
+        verify(clientService, times(1)).createTenantFromTemplate(any(), any());
+        verify(clientService, never()).createClient(any(), any(), anyBoolean(), any());
+        verify(clientService).grantAdminRoles("acme", "u-1", "master");
+    }
+
+    @Test
+    void failedJobKeepsNoPasswordAndCannotBeRetriedWithoutOne() throws Exception {
+        doThrow(new RuntimeException("Keycloak unavailable")).when(clientService).createRealm("acme", "master");
+        SignupJob failed = awaitFinished(service.submit(signupRequest(), archive()).getId());
+
+        assertEquals(SignupJob.Status.FAILED, failed.getStatus());
+        assertNull(storedRequest(failed.getId()).getAdminUser().getPassword());
+        assertThrows(IllegalArgumentException.class, () -> service.retry(failed.getId(), null));
+        assertEquals(SignupJob.Status.FAILED, service.find(failed.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void retryRightAfterTheFailureIsStillRun() throws Exception {
+        doThrow(new RuntimeException("Keycloak unavailable")).when(clientService).createRealm("acme", "master");
+        String id = service.submit(signupRequest(), archive()).getId();
+        // Retried the moment FAILED is on disk, while the failed run may still be winding down
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (service.find(id).orElseThrow().getStatus() != SignupJob.Status.FAILED) {
+            assertTrue(System.nanoTime() < deadline, "Signup job " + id + " did not fail");
+        }
+        doNothing().when(clientService).createRealm("acme", "master");
+        when(clientService.createAdminUser(any(), eq("master"))).thenReturn("u-1");
+
+        service.retry(id, "secret");
+
+        assertEquals(SignupJob.Status.SUCCEEDED, awaitFinished(id).getStatus());
+        assertNull(storedRequest(id).getAdminUser().getPassword());
+    }
+
+    @Test
+    void interruptedTemplateSignupResumesWithoutCreatingAnythingTwice() throws Exception {
+        // A restart hit while the template import was in flight; it landed with the client and admin user
+        String id = "job-1";
+        Path dir = Files.createDirectories(jobsDir.resolve(id));
+        Files.write(dir.resolve("archive.zip"), new byte[]{1});
+        Files.write(dir.resolve("request.json"), objectMapper.writeValueAsBytes(signupRequest()));
+        SignupJob interrupted = new SignupJob();
+        interrupted.setId(id);
+        interrupted.setRealmName("acme");
+        interrupted.setClientId("shop");
+        interrupted.setStatus(SignupJob.Status.RUNNING);
+        interrupted.setCreatedAt(Instant.now());
+        for (Step step : Step.values()) {
+            interrupted.getSteps().put(step, new StepState());
+        }
+        interrupted.getSteps().get(Step.REALM).setStatus(StepStatus.RUNNING);
+        interrupted.getSteps().get(Step.REALM).setAttempts(1);
+        Files.write(dir.resolve("job.json"), objectMapper.writeValueAsBytes(interrupted));
+
+        when(clientService.realmExists("acme", "master")).thenReturn(true);
+        when(clientService.findClientUUID("acme", "shop", "master")).thenReturn(Optional.of("c-1"));
+        when(clientService.findUserId("acme", "owner", "master")).thenReturn(Optional.of("u-7"));
+
+        service.resumeUnfinishedJobs();
+        SignupJob job = awaitFinished(id);
+
+        assertEquals(SignupJob.Status.SUCCEEDED, job.getStatus());
+        assertEquals("u-7", job.getAdminUserId());
+        assertEquals(StepStatus.SKIPPED, job.getSteps().get(Step.CLIENT).getStatus());
+        assertEquals(StepStatus.SKIPPED, job.getSteps().get(Step.ADMIN_USER).getStatus());
+        verify(clientService, never()).createTenantFromTemplate(any(), any());
+        verify(clientService, never()).createRealm(any(), any());
+        verify(clientService, never()).createClient(any(), any(), anyBoolean(), any());
+        verify(clientService, never()).createAdminUser(any(), any());
+        verify(clientService).grantAdminRoles("acme", "u-7", "master");
+    }
+
+    private SignupJob awaitFinished(String id) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            SignupJob job = service.find(id).orElseThrow();
+            if (job.getStatus() == SignupJob.Status.SUCCEEDED || job.getStatus() == SignupJob.Status.FAILED) {
+                return job;
+            }
+            Thread.sleep(20);
+        }
+        return fail("Signup job " + id + " did not finish");
+    }
+
+    private SignupRequest storedRequest(String id) throws IOException {
+        return objectMapper.readValue(jobsDir.resolve(id).resolve("request.json").toFile(), SignupRequest.class);
+    }
+
+    private static MockMultipartFile archive() {
+        return new MockMultipartFile("file", "project.zip", "application/zip", new byte[]{1, 2, 3});
+    }
+
+    private static SignupRequest signupRequest() {
+        SignupRequest.AdminUser admin = new SignupRequest.AdminUser();
+        admin.setUsername("owner");
+        admin.setEmail("owner@acme.test");
+        admin.setPassword("secret");
+        SignupRequest request = new SignupRequest();
+        request.setRealmName("acme");
+        request.setClientId("shop");
+        request.setAdminUser(admin);
+        return request;
+    }
+}
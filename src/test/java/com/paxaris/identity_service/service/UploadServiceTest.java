@@ -0,0 +1,155 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paxaris.identity_service.dto.UploadStatus;
+import com.paxaris.identity_service.dto.UploadStatus.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path uploadDir;
+    private UploadService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new UploadService(objectMapper, uploadDir, DataSize.ofMegabytes(10), Duration.ofHours(24), Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void chunkAtTheWrongOffsetIsRejectedWithTheResumePoint() throws Exception {
+        UploadStatus upload = service.create(10, null);
+        service.append(upload.id(), 0L, new ByteArrayInputStream(new byte[4]));
+
+        UploadService.OffsetMismatchException thrown = assertThrows(UploadService.OffsetMismatchException.class,
+                () -> service.append(upload.id(), 2L, new ByteArrayInputStream(new byte[6])));
+
+        assertEquals(4, thrown.getCurrent().offset());
+        assertEquals(4, service.status(upload.id()).orElseThrow().offset());
+    }
+
+    @Test
+    void brokenChunkKeepsWhatArrivedAndTheUploadResumesFromThere() throws Exception {
+        byte[] content = new byte[300_000];
+        new Random(7).nextBytes(content);
+        UploadStatus upload = service.create(content.length, sha256(content));
+
+        IOException broken = assertThrows(IOException.class,
+                () -> service.append(upload.id(), 0L, new BreakingInputStream(content, 100_000)));
+        assertEquals("connection reset", broken.getMessage());
+        long resumeAt = service.status(upload.id()).orElseThrow().offset();
+        assertEquals(100_000, resumeAt);
+
+        UploadStatus done = service.append(upload.id(), resumeAt,
+                new ByteArrayInputStream(Arrays.copyOfRange(content, (int) resumeAt, content.length)));
+
+        assertEquals(Status.COMPLETE, done.status());
+        assertEquals(sha256(content), done.sha256());
+        Path claimed = uploadDir.resolve("claimed.zip");
+        service.claim(upload.id(), claimed);
+        assertArrayEquals(content, Files.readAllBytes(claimed));
+        assertTrue(sessions().isEmpty());
+    }
+
+    @Test
+    void checksumMismatchFailsTheUploadAndDropsItsData() throws Exception {
+        byte[] content = "hello".getBytes();
+        UploadStatus upload = service.create(content.length, sha256("other".getBytes()));
+
+        UploadStatus failed = service.append(upload.id(), 0L, new ByteArrayInputStream(content));
+
+        assertEquals(Status.FAILED, failed.status());
+        assertEquals("SHA-256 mismatch", failed.error());
+        assertFalse(Files.exists(uploadDir.resolve(upload.id()).resolve("data.part")));
+        assertThrows(IllegalStateException.class, () -> service.append(upload.id(), 5L, new ByteArrayInputStream(new byte[0])));
+        assertTrue(sessions().isEmpty());
+    }
+
+    @Test
+    void unknownUploadIdsDoNotCreateSessions() {
+        assertThrows(IllegalArgumentException.class, () -> service.append("no-such-upload", 0L, new ByteArrayInputStream(new byte[1])));
+        assertThrows(IllegalArgumentException.class, () -> service.claim("../escape", uploadDir.resolve("x")));
+        assertTrue(sessions().isEmpty());
+    }
+
+    @Test
+    void expiredUploadsAreRemovedWithTheirSession() throws Exception {
+        service.shutdown();
+        service = new UploadService(objectMapper, uploadDir, DataSize.ofMegabytes(10), Duration.ZERO, Duration.ofHours(1));
+        UploadStatus upload = service.create(10, null);
+        service.append(upload.id(), 0L, new ByteArrayInputStream(new byte[4]));
+        assertFalse(sessions().isEmpty());
+
+        service.removeExpiredUploads();
+
+        assertTrue(service.status(upload.id()).isEmpty());
+        assertFalse(Files.exists(uploadDir.resolve(upload.id())));
+        assertTrue(sessions().isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> sessions() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(service, "sessions");
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    /**
+     * Delivers the first {@code breakAt} bytes, then fails like a dropped connection.
+     */
+    private static final class BreakingInputStream extends InputStream {
+        private final byte[] content;
+        private final int breakAt;
+        private int position;
+
+        BreakingInputStream(byte[] content, int breakAt) {
+            this.content = content;
+            this.breakAt = breakAt;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= breakAt) {
+                throw new IOException("connection reset");
+            }
+            int n = Math.min(len, breakAt - position);
+            System.arraycopy(content, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UserImportServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final KeycloakClientService clientService = mock(KeycloakClientService.class);
+    private final UserImportService service = new UserImportService(clientService, objectMapper, 500, 2);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void csvQuotingCommasAndLineBreaksAreParsed() throws IOException {
+        when(clientService.partialImportUsers(eq("acme"), eq("t"), anyList())).thenAnswer(call -> added(call.getArgument(2)));
+        String csv = "username,email,firstName,lastName\n"
+                + "alice,alice@example.com,\"Smith, Alice\",plain\n"
+                + "bob,bob@example.com,\"He said \"\"hi\"\"\",\"two\n"
+                + "lines\"\n"
+                + "carol,carol@example.com,,\n";
+
+        List<Map<String, Object>> report = importCsv(csv);
+
+        ArgumentCaptor<List<Map<String, Object>>> users = ArgumentCaptor.forClass(List.class);
+        verify(clientService).partialImportUsers(eq("acme"), eq("t"), users.capture());
+        List<Map<String, Object>> sent = users.getValue();
+        assertEquals(3, sent.size());
+        assertEquals("Smith, Alice", sent.get(0).get("firstName"));
+        assertEquals("He said \"hi\"", sent.get(1).get("firstName"));
+        assertEquals("two\nlines", sent.get(1).get("lastName"));
+        assertEquals("carol", sent.get(2).get("username"));
+        assertEquals(null, sent.get(2).get("firstName"));
+        assertEquals(true, sent.get(2).get("enabled"));
+
+        // Report lines point at the physical line each record starts on
+        assertEquals(List.of(2, 3, 5), report.subList(0, 3).stream().map(r -> r.get("line")).toList());
+        assertEquals(Map.of("added", 3, "skipped", 0, "failed", 0), report.get(3).get("summary"));
+    }
+
+    @Test
+    void rejectedPartialImportFallsBackAndCountsConflictsAsSkipped() throws IOException {
+        when(clientService.partialImportUsers(any(), any(), anyList()))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null));
+        when(clientService.createUser(eq("acme"), eq("t"), argThatUser("alice"))).thenReturn("id-alice");
+        when(clientService.createUser(eq("acme"), eq("t"), argThatUser("bob"))).thenThrow(new RuntimeException("Failed to create user",
+                HttpClientErrorException.create(HttpStatus.CONFLICT, "Conflict", null, null, null)));
+
+        List<Map<String, Object>> report = importCsv("username\nalice\nbob\n");
+
+        assertEquals("ADDED", report.get(0).get("status"));
+        assertEquals("SKIPPED", report.get(1).get("status"));
+        assertEquals(Map.of("added", 1, "skipped", 1, "failed", 0), report.get(2).get("summary"));
+    }
+
+    @Test
+    void serverErrorFailsTheChunkWithoutFallingBack() throws IOException {
+        when(clientService.partialImportUsers(any(), any(), anyList()))
+                .thenThrow(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Unavailable", null, null, null));
+
+        List<Map<String, Object>> report = importCsv("username\nalice\nbob\n");
+
+        verify(clientService, never()).createUser(any(), any(), any());
+        assertEquals(List.of("FAILED", "FAILED"), report.subList(0, 2).stream().map(r -> r.get("status")).toList());
+        assertEquals(Map.of("added", 0, "skipped", 0, "failed", 2), report.get(2).get("summary"));
+    }
+
+    @Test
+    void unauthorizedPartialImportIsNotRetriedPerUser() throws IOException {
+        when(clientService.partialImportUsers(any(), any(), anyList()))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized", null, null, null));
+
+        List<Map<String, Object>> report = importCsv("username\nalice\n");
+
+        verify(clientService, never()).createUser(any(), any(), any());
+        assertEquals("FAILED", report.get(0).get("status"));
+    }
+
+    private List<Map<String, Object>> importCsv(String csv) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.importUsers("acme", "t", UserImportService.Format.CSV,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), out);
+        return out.toString(StandardCharsets.UTF_8).lines()
+                .map(line -> {
+                    try {
+                        return (Map<String, Object>) objectMapper.readValue(line, Map.class);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .toList();
+    }
+
+    private static List<Map<String, Object>> added(List<Map<String, Object>> users) {
+        return users.stream()
+                .map(user -> Map.<String, Object>of("resourceName", user.get("username"), "action", "ADDED", "id", "id-" + user.get("username")))
+                .toList();
+    }
+
+    private static Map<String, Object> argThatUser(String username) {
+        return argThat(user -> user != null && username.equals(user.get("username")));
+    }
+}
@@ -0,0 +1,130 @@
+package com.paxaris.identity_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.paxaris.identity_service.dto.IndexedUser;
+import com.paxaris.identity_service.dto.UserCreatedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UserSearchIndexTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final KeycloakClientService clientService = mock(KeycloakClientService.class);
+    // realm -> users Keycloak returns; a realm mapped to null fails the listing
+    private final Map<String, List<ObjectNode>> keycloak = new ConcurrentHashMap<>();
+    private UserSearchIndex index;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(clientService.getMasterToken()).thenReturn("master");
+        when(clientService.forEachUser(anyString(), eq("master"), any(), any(Consumer.class))).thenAnswer(call -> {
+            List<ObjectNode> users = keycloak.get(call.<String>getArgument(0));
+            if (users == null) {
+                throw new IllegalStateException("404 Not Found");
+            }
+            users.forEach(call.<Consumer<ObjectNode>>getArgument(3));
+            return (long) users.size();
+        });
+        index = index(10, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void changedUserIsReindexedUnderItsNewTerms() {
+        keycloak.put("acme", List.of(user("u-1", "alice", "alice@old.test")));
+        assertEquals(List.of("u-1"), ids(index.search("acme", "alice@old", 10)));
+
+        index.onUserCreated(new UserCreatedEvent("acme", "u-1", "alice", "alice@new.test", "Alice", "Liddell", true));
+
+        assertEquals(List.of(), ids(index.search("acme", "alice@old", 10)));
+        assertEquals(List.of("u-1"), ids(index.search("acme", "alice@new", 10)));
+        assertEquals(List.of("u-1"), ids(index.search("acme", "alice l", 10)));
+        assertEquals(1, index.count("acme"));
+    }
+
+    @Test
+    void realmWhoseRefreshFailsIsDroppedAndRebuiltOnTheNextQuery() {
+        keycloak.put("acme", List.of(user("u-1", "alice", null)));
+        assertEquals(1, index.count("acme"));
+
+        keycloak.remove("acme");
+        refreshAll();
+        assertThrows(IllegalStateException.class, () -> index.count("acme"), "the stale index is no longer served");
+
+        keycloak.put("acme", List.of(user("u-1", "alice", null), user("u-2", "bob", null)));
+        assertEquals(2, index.count("acme"));
+    }
+
+    @Test
+    void leastRecentlyQueriedRealmIsDroppedPastTheLimit() {
+        index.shutdown();
+        index = index(2, Duration.ofHours(1));
+        for (String realm : List.of("r1", "r2", "r3")) {
+            keycloak.put(realm, List.of(user("u-" + realm, realm + "-user", null)));
+        }
+
+        index.count("r1");
+        index.count("r2");
+        index.count("r1");
+        index.count("r3");
+        index.count("r1");
+
+        verify(clientService, times(1)).forEachUser(eq("r1"), any(), any(), any());
+        index.count("r2");
+        verify(clientService, times(2)).forEachUser(eq("r2"), any(), any(), any());
+    }
+
+    @Test
+    void idleRealmIsDroppedInsteadOfRefreshed() {
+        index.shutdown();
+        index = index(10, Duration.ZERO);
+        keycloak.put("acme", List.of(user("u-1", "alice", null)));
+        index.count("acme");
+
+        refreshAll();
+
+        verify(clientService, times(1)).forEachUser(eq("acme"), any(), any(), any());
+        index.count("acme");
+        verify(clientService, times(2)).forEachUser(eq("acme"), any(), any(), any());
+    }
+
+    private UserSearchIndex index(int maxRealms, Duration idleEviction) {
+        return new UserSearchIndex(clientService, 100, Duration.ofHours(1), Duration.ofSeconds(5), maxRealms, idleEviction);
+    }
+
+    private void refreshAll() {
+        ReflectionTestUtils.invokeMethod(index, "refreshAll");
+    }
+
+    private ObjectNode user(String id, String username, String email) {
+        ObjectNode user = objectMapper.createObjectNode().put("id", id).put("username", username).put("enabled", true);
+        if (email != null) {
+            user.put("email", email);
+        }
+        return user;
+    }
+
+    private static List<String> ids(List<IndexedUser> users) {
+        return users.stream().map(IndexedUser::id).toList();
+    }
+}
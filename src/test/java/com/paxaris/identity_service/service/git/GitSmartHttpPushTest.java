@@ -0,0 +1,122 @@
+package com.paxaris.identity_service.service.git;
+
+import com.paxaris.identity_service.support.GitHttpBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+
+import static com.paxaris.identity_service.support.GitHttpBackend.git;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Pushes packs built by {@link GitPack} through {@link GitSmartHttp} to a bare repository served by
+ * {@code git http-backend} behind a {@link GitHttpBackend}, then checks the result with git itself.
+ */
+class GitSmartHttpPushTest {
+
+    private static final String MAIN = "refs/heads/main";
+
+    @TempDir
+    Path tmp;
+
+    private GitHttpBackend server;
+    private Path bare;
+    private URI remote;
+    private final GitSmartHttp client = new GitSmartHttp(HttpClient.newHttpClient(), null);
+
+    @BeforeEach
+    void startServer() throws Exception {
+        assumeTrue(git(tmp, "--version").startsWith("git version"), "git is not installed");
+        bare = tmp.resolve("remote.git");
+        git(tmp, "init", "--bare", "-q", "--initial-branch=main", bare.toString());
+        git(bare, "config", "http.receivepack", "true");
+
+        server = new GitHttpBackend(tmp);
+        remote = URI.create(server.url() + "/remote.git");
+    }
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) server.close();
+    }
+
+    @Test
+    void pushesRootCommitAndThenFastForward() throws Exception {
+        assertEquals(Map.of(), client.advertisedRefs(remote));
+
+        GitPack first = new GitPack();
+        add(first, "README.md", "hello\n");
+        add(first, "src/main/App.java", "class App {}\n");
+        add(first, "src/main-app/x.txt", "sorted after src/main/\n");
+        add(first, "src/copy.txt", "hello\n");
+        String root = first.commit(null, "Initial commit", "Paxaris CI", "ci@paxaris.com", Instant.ofEpochSecond(1_700_000_000));
+        push(first, GitPack.ZERO_ID, root);
+
+        assertEquals(root, client.advertisedRefs(remote).get(MAIN));
+        assertEquals("", git(bare, "fsck", "--strict", "--no-progress"));
+        assertEquals("README.md\nsrc/copy.txt\nsrc/main-app/x.txt\nsrc/main/App.java\n",
+                git(bare, "ls-tree", "-r", "--name-only", "main"));
+        assertEquals("class App {}\n", git(bare, "show", "main:src/main/App.java"));
+
+        GitPack second = new GitPack();
+        add(second, "README.md", "hello again\n");
+        String next = second.commit(root, "Update project archive", "Paxaris CI", "ci@paxaris.com", Instant.ofEpochSecond(1_700_000_100));
+        push(second, root, next);
+
+        assertEquals(next, client.advertisedRefs(remote).get(MAIN));
+        assertEquals(root + "\n", git(bare, "rev-parse", "main^"));
+        assertEquals("README.md\n", git(bare, "ls-tree", "-r", "--name-only", "main"));
+        assertEquals("", git(bare, "fsck", "--strict", "--no-progress"));
+    }
+
+    @Test
+    void incrementalPushSendsOnlyNewObjects() throws Exception {
+        GitPack first = new GitPack();
+        add(first, "README.md", "hello\n");
+        add(first, "src/main/App.java", "class App {}\n");
+        add(first, "docs/guide.md", "guide\n");
+        String root = first.commit(null, "Initial commit", "Paxaris CI", "ci@paxaris.com", Instant.ofEpochSecond(1_700_000_000));
+        push(first, GitPack.ZERO_ID, root);
+
+        GitPack second = new GitPack();
+        add(second, "README.md", "hello again\n");
+        add(second, "src/main/App.java", "class App {}\n");
+        add(second, "docs/guide.md", "guide\n");
+        second.omit(first.objectIds());
+        String next = second.commit(root, "Update project archive", "Paxaris CI", "ci@paxaris.com", Instant.ofEpochSecond(1_700_000_100));
+        // new README blob, new root tree and the commit; src, src/main and docs trees are unchanged
+        assertEquals(3, second.objectCount());
+        push(second, root, next);
+
+        assertEquals(next, client.advertisedRefs(remote).get(MAIN));
+        assertEquals("README.md\ndocs/guide.md\nsrc/main/App.java\n", git(bare, "ls-tree", "-r", "--name-only", "main"));
+        assertEquals("hello again\n", git(bare, "show", "main:README.md"));
+        assertEquals("", git(bare, "fsck", "--strict", "--no-progress"));
+    }
+
+    private void add(GitPack pack, String path, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        pack.addFile(path, false, bytes.length, () -> new ByteArrayInputStream(bytes));
+    }
+
+    private void push(GitPack pack, String oldId, String newId) throws IOException {
+        Path packFile = Files.createTempFile(tmp, "push-", ".pack");
+        try (OutputStream out = Files.newOutputStream(packFile)) {
+            pack.writePack(out);
+        }
+        client.push(remote, MAIN, oldId, newId, packFile);
+    }
+}
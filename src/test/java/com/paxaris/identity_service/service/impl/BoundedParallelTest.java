@@ -0,0 +1,71 @@
+package com.paxaris.identity_service.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedParallelTest {
+
+    @Test
+    void resultsKeepInputOrderAndRespectTheCap() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Integer> items = IntStream.range(0, 20).boxed().toList();
+
+        List<Integer> results = BoundedParallel.map(items, 3, Duration.ofSeconds(10), item -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                // Later items finish first, so ordering comes from the input and not from completion
+                Thread.sleep(40 - item);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+            return item * 2;
+        }, (item, e) -> -1);
+
+        assertEquals(items.stream().map(i -> i * 2).toList(), results);
+        assertTrue(peak.get() <= 3, "at most 3 calls in flight, saw " + peak.get());
+    }
+
+    @Test
+    void failuresAreMappedWithoutAbortingTheBatch() {
+        List<String> results = BoundedParallel.map(List.of("a", "bad", "c"), 2, Duration.ofSeconds(5), item -> {
+            if (item.equals("bad")) throw new IllegalArgumentException("rejected " + item);
+            return item.toUpperCase();
+        }, (item, e) -> "failed: " + e.getMessage());
+
+        assertEquals(List.of("A", "failed: rejected bad", "C"), results);
+    }
+
+    @Test
+    void callsStillRunningAtTheDeadlineAreCancelled() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long started = System.nanoTime();
+
+        List<String> results = BoundedParallel.map(List.of("fast", "slow"), 2, Duration.ofMillis(200), item -> {
+            if (item.equals("slow")) {
+                try {
+                    Thread.sleep(30_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw new IllegalStateException(e);
+                }
+            }
+            return item;
+        }, (item, e) -> e.getClass().getSimpleName());
+
+        assertEquals(List.of("fast", TimeoutException.class.getSimpleName()), results);
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "the slow call was interrupted");
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5), "the batch did not wait for the slow call");
+    }
+}
@@ -0,0 +1,77 @@
+package com.paxaris.identity_service.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForkJoinScopeTest {
+
+    @Test
+    void joinMakesEveryForkResultAvailable() {
+        try (ForkJoinScope scope = new ForkJoinScope(Duration.ofSeconds(5))) {
+            Supplier<String> a = scope.fork(() -> "a");
+            Supplier<Integer> b = scope.fork(() -> 42);
+            scope.join();
+            assertEquals("a", a.get());
+            assertEquals(42, b.get());
+        }
+    }
+
+    @Test
+    void firstFailureCancelsSiblingsAndIsRethrown() throws InterruptedException {
+        CountDownLatch siblingInterrupted = new CountDownLatch(1);
+        long started = System.nanoTime();
+
+        try (ForkJoinScope scope = new ForkJoinScope(Duration.ofSeconds(30))) {
+            scope.fork(() -> sleepUntilInterrupted(siblingInterrupted));
+            scope.fork(() -> {
+                throw new IllegalStateException("boom");
+            });
+            IllegalStateException thrown = assertThrows(IllegalStateException.class, scope::join);
+            assertEquals("boom", thrown.getMessage());
+        }
+
+        assertTrue(siblingInterrupted.await(1, TimeUnit.SECONDS), "the sibling was cancelled");
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5), "join did not wait for the sibling");
+    }
+
+    @Test
+    void checkedFailuresAreWrapped() {
+        try (ForkJoinScope scope = new ForkJoinScope(Duration.ofSeconds(5))) {
+            scope.fork(() -> {
+                throw new IOException("connection reset");
+            });
+            RuntimeException thrown = assertThrows(RuntimeException.class, scope::join);
+            assertInstanceOf(IOException.class, thrown.getCause());
+        }
+    }
+
+    @Test
+    void deadlineCancelsRunningForks() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        try (ForkJoinScope scope = new ForkJoinScope(Duration.ofMillis(100))) {
+            scope.fork(() -> sleepUntilInterrupted(interrupted));
+            RuntimeException thrown = assertThrows(RuntimeException.class, scope::join);
+            assertTrue(thrown.getMessage().contains("Deadline"));
+        }
+
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "the running fork was cancelled");
+    }
+
+    private static String sleepUntilInterrupted(CountDownLatch interrupted) {
+        try {
+            Thread.sleep(30_000);
+            return "late";
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.paxaris.identity_service.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paxaris.identity_service.dto.KeycloakConfig;
+import com.paxaris.identity_service.support.StubHttpServer;
+import com.paxaris.identity_service.support.StubHttpServer.Response;
+import org.junit.jupiter.api.AfterEach;
+import com.paxaris.identity_service.dto.RoleAssignmentRequest;
+import com.paxaris.identity_service.dto.RoleAssignmentResult;
+import com.paxaris.identity_service.dto.RoleCreationRequest;
+import com.paxaris.identity_service.dto.RoleCreationResult;
+import com.paxaris.identity_service.dto.SignupRequest;
+import com.paxaris.identity_service.dto.UserCreatedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.client.ExpectedCount.times;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+/**
+ * Runs {@link KeycloakClientServiceImpl} against a stubbed Keycloak.
+ */
+class KeycloakClientServiceImplTest {
+
+    private StubHttpServer keycloak;
+    private KeycloakClientServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        keycloak = new StubHttpServer();
+        KeycloakConfig config = new KeycloakConfig();
+        config.setBaseUrl(keycloak.url());
+        config.setAdminUsername("admin");
+        config.setAdminPassword("secret");
+        service = new KeycloakClientServiceImpl(config, new RestTemplate(),
+                new KeycloakCodecs(new ObjectMapper()), null, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        keycloak.close();
+    }
+
+    @Test
+    void passthroughListingOpensTheUpstreamBodyUnchanged() throws IOException {
+        keycloak.on("GET", "/admin/realms/acme/users", Response.json(200, "[{\"username\":\"alice\"}]"));
+
+        try (ClientHttpResponse response = service.streamAllUsers("acme", "admin-token")) {
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals("[{\"username\":\"alice\"}]",
+                    new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals("Bearer admin-token",
+                keycloak.requests("GET", "/admin/realms/acme/users").get(0).header("Authorization"));
+    }
+
+    @Test
+    void passthroughListingThrowsBeforeStreamingWhenKeycloakRejects() {
+        keycloak.on("GET", "/admin/realms/missing/clients", Response.status(404))
+                .on("GET", "/admin/realms", Response.status(401));
+
+        assertThrows(HttpClientErrorException.NotFound.class, () -> service.streamAllClients("missing", "t"));
+        assertThrows(HttpClientErrorException.Unauthorized.class, () -> service.streamAllRealms("t"));
+    }
+
+    @Test
+    void passthroughListingThrowsBeforeStreamingOnServerError() {
+        keycloak.on("GET", "/admin/realms/acme/users", Response.status(503));
+
+        assertThrows(HttpServerErrorException.class, () -> service.streamAllUsers("acme", "t"));
+    }
+
+    /**
+     * Operations against {@link MockRestServiceServer}, which lets each call's request and reply be pinned.
+     */
+    @Nested
+    class MockedKeycloak {
+
+        private static final String BASE = "http://keycloak";
+
+        private final ApplicationEventPublisher events = mock(ApplicationEventPublisher.class);
+        private MockRestServiceServer server;
+        private KeycloakClientServiceImpl keycloakService;
+
+        @BeforeEach
+        void setUp() {
+            RestTemplate restTemplate = new RestTemplate();
+            server = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+            KeycloakConfig config = new KeycloakConfig();
+            config.setBaseUrl(BASE);
+            RealmTemplate realmTemplate = new RealmTemplate(new ObjectMapper(), new DefaultResourceLoader(),
+                    "classpath:templates/tenant-realm.json");
+            keycloakService = new KeycloakClientServiceImpl(config, restTemplate, new KeycloakCodecs(new ObjectMapper()),
+                    realmTemplate, events);
+            ReflectionTestUtils.setField(keycloakService, "bulkParallelism", 4);
+            ReflectionTestUtils.setField(keycloakService, "bulkDeadline", Duration.ofSeconds(10));
+            ReflectionTestUtils.setField(keycloakService, "resolveDeadline", Duration.ofSeconds(10));
+            ReflectionTestUtils.setField(keycloakService, "signupProvisioningMode", RealmTemplate.Mode.TEMPLATE);
+        }
+
+        @Test
+        void templateSignupCreatesTheTenantInOneCallAndAnnouncesTheAdmin() {
+            server.expect(requestTo(BASE + "/admin/realms")).andExpect(method(HttpMethod.POST))
+                    .andExpect(jsonPath("$.realm").value("acme"))
+                    .andExpect(jsonPath("$.users[0].username").value("owner"))
+                    .andRespond(withStatus(HttpStatus.CREATED));
+            server.expect(requestTo(BASE + "/admin/realms/acme/users?username=owner"))
+                    .andRespond(withSuccess("[{\"id\":\"u-9\",\"username\":\"owner\"}]", MediaType.APPLICATION_JSON));
+
+            assertTrue(keycloakService.createTenantFromTemplate(signupRequest(), "master-token"));
+
+            verify(events).publishEvent(new UserCreatedEvent("acme", "u-9", "owner", "owner@acme.test", "Olive", "Owner", true));
+            server.verify();
+        }
+
+        @Test
+        void templateRejectedAsInvalidFallsBackToSteps() {
+            server.expect(requestTo(BASE + "/admin/realms")).andRespond(withBadRequest());
+
+            assertFalse(keycloakService.createTenantFromTemplate(signupRequest(), "master-token"));
+            verifyNoInteractions(events);
+        }
+
+        @Test
+        void serverErrorOnTemplateImportFailsTheSignup() {
+            server.expect(requestTo(BASE + "/admin/realms")).andRespond(withServerError());
+
+            assertThrows(HttpServerErrorException.class, () -> keycloakService.createTenantFromTemplate(signupRequest(), "master-token"));
+        }
+
+        @Test
+        void existingRealmIsAConflictNotAFallback() {
+            server.expect(requestTo(BASE + "/admin/realms")).andRespond(withStatus(HttpStatus.CONFLICT));
+
+            RuntimeException thrown = assertThrows(RuntimeException.class,
+                    () -> keycloakService.createTenantFromTemplate(signupRequest(), "master-token"));
+            assertEquals("Realm already exists: acme", thrown.getMessage());
+        }
+
+        @Test
+        void projectManagerRegistrationGoesThroughTheSharedRestTemplate() {
+            ReflectionTestUtils.setField(keycloakService, "projectManagementBaseUrl", "http://pm");
+            server.expect(requestTo("http://pm/project/roles/save-or-update")).andExpect(method(HttpMethod.POST))
+                    .andExpect(jsonPath("$.realmName").value("acme"))
+                    .andExpect(jsonPath("$.roleName").value("admin"))
+                    .andRespond(withSuccess());
+
+            keycloakService.registerWithProjectManager(signupRequest());
+
+            server.verify();
+        }
+
+        @Test
+        void createClientRolesReportsOneResultPerRole() {
+            expectClientLookup("shop", "c-1");
+            String rolesUrl = BASE + "/admin/realms/acme/clients/c-1/roles";
+            server.expect(requestTo(rolesUrl)).andExpect(method(HttpMethod.POST)).andExpect(jsonPath("$.name").value("viewer"))
+                    .andRespond(withStatus(HttpStatus.CREATED));
+            server.expect(requestTo(rolesUrl)).andExpect(jsonPath("$.name").value("editor"))
+                    .andRespond(withStatus(HttpStatus.CONFLICT));
+            server.expect(requestTo(rolesUrl)).andExpect(jsonPath("$.name").value("broken"))
+                    .andRespond(withServerError());
+
+            List<RoleCreationResult> results = keycloakService.createClientRoles("acme", "shop",
+                    List.of(role("viewer"), role("editor"), role("broken")), "t");
+
+            assertEquals(List.of(RoleCreationResult.Status.CREATED, RoleCreationResult.Status.ALREADY_EXISTS,
+                    RoleCreationResult.Status.FAILED), results.stream().map(RoleCreationResult::status).toList());
+            assertEquals(List.of("viewer", "editor", "broken"), results.stream().map(RoleCreationResult::name).toList());
+            server.verify();
+        }
+
+        @Test
+        void createClientRolesFailsRolesStillPendingAtTheDeadline() {
+            ReflectionTestUtils.setField(keycloakService, "bulkDeadline", Duration.ofMillis(200));
+            expectClientLookup("shop", "c-1");
+            String rolesUrl = BASE + "/admin/realms/acme/clients/c-1/roles";
+            server.expect(requestTo(rolesUrl)).andExpect(jsonPath("$.name").value("quick"))
+                    .andRespond(withStatus(HttpStatus.CREATED));
+            server.expect(requestTo(rolesUrl)).andExpect(jsonPath("$.name").value("stuck"))
+                    .andRespond(delayed(Duration.ofSeconds(30), withStatus(HttpStatus.CREATED)));
+
+            long started = System.nanoTime();
+            List<RoleCreationResult> results = keycloakService.createClientRoles("acme", "shop", List.of(role("quick"), role("stuck")), "t");
+
+            assertEquals(RoleCreationResult.Status.CREATED, results.get(0).status());
+            assertEquals(RoleCreationResult.Status.FAILED, results.get(1).status());
+            assertTrue(results.get(1).reason().contains("Deadline"));
+            assertTrue(System.nanoTime() - started < Duration.ofSeconds(5).toNanos(), "the stuck call was cancelled");
+        }
+
+        @Test
+        void assignClientRolesPostsEachUsersRolesOnce() {
+            expectClientLookup("shop", "c-1");
+            server.expect(requestTo(BASE + "/admin/realms/acme/clients/c-1/roles"))
+                    .andRespond(withSuccess("[{\"id\":\"r-1\",\"name\":\"viewer\"},{\"id\":\"r-2\",\"name\":\"editor\"}]",
+                            MediaType.APPLICATION_JSON));
+            server.expect(requestTo(BASE + "/admin/realms/acme/users?username=alice"))
+                    .andRespond(withSuccess("[{\"id\":\"u-1\",\"username\":\"alice\"}]", MediaType.APPLICATION_JSON));
+            server.expect(requestTo(BASE + "/admin/realms/acme/users/u-1/role-mappings/clients/c-1"))
+                    .andExpect(method(HttpMethod.POST))
+                    .andExpect(jsonPath("$[0].id").value("r-1"))
+                    .andExpect(jsonPath("$[1].id").value("r-2"))
+                    .andRespond(withNoContent());
+            server.expect(requestTo(BASE + "/admin/realms/acme/users?username=ghost"))
+                    .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+
+            List<RoleAssignmentResult> results = keycloakService.assignClientRoles("acme", "shop", List.of(
+                    new RoleAssignmentRequest("alice", List.of("viewer", "editor")),
+                    new RoleAssignmentRequest("bob", List.of("viewer", "owner")),
+                    new RoleAssignmentRequest("ghost", List.of("viewer"))), "t");
+
+            assertEquals(RoleAssignmentResult.Status.ASSIGNED, results.get(0).status());
+            assertEquals(RoleAssignmentResult.Status.FAILED, results.get(1).status());
+            assertEquals("Role not found: owner", results.get(1).reason());
+            assertEquals(RoleAssignmentResult.Status.FAILED, results.get(2).status());
+            // bob is rejected before any call; every other expectation was met exactly once
+            server.verify();
+        }
+
+        @Test
+        void assignClientRolesFailsUsersStillPendingAtTheDeadline() {
+            ReflectionTestUtils.setField(keycloakService, "bulkDeadline", Duration.ofMillis(200));
+            expectClientLookup("shop", "c-1");
+            server.expect(requestTo(BASE + "/admin/realms/acme/clients/c-1/roles"))
+                    .andRespond(withSuccess("[{\"id\":\"r-1\",\"name\":\"viewer\"}]", MediaType.APPLICATION_JSON));
+            server.expect(requestTo(BASE + "/admin/realms/acme/users?username=slow"))
+                    .andRespond(delayed(Duration.ofSeconds(30), withSuccess("[]", MediaType.APPLICATION_JSON)));
+
+            List<RoleAssignmentResult> results = keycloakService.assignClientRoles("acme", "shop",
+                    List.of(new RoleAssignmentRequest("slow", List.of("viewer"))), "t");
+
+            assertEquals(RoleAssignmentResult.Status.FAILED, results.get(0).status());
+            assertTrue(results.get(0).reason().contains("Deadline"));
+        }
+
+        @Test
+        void assignClientRoleResolvesBothSidesThenPostsTheMapping() {
+            server.expect(requestTo(BASE + "/admin/realms/acme/users?username=alice"))
+                    .andRespond(withSuccess("[{\"id\":\"u-1\",\"username\":\"alice\"}]", MediaType.APPLICATION_JSON));
+            expectClientLookup("shop", "c-1");
+            server.expect(requestTo(BASE + "/admin/realms/acme/clients/c-1/roles"))
+                    .andRespond(withSuccess("[{\"id\":\"r-1\",\"name\":\"viewer\"}]", MediaType.APPLICATION_JSON));
+            server.expect(requestTo(BASE + "/admin/realms/acme/users/u-1/role-mappings/clients/c-1"))
+                    .andExpect(jsonPath("$[0].id").value("r-1"))
+                    .andExpect(jsonPath("$[0].name").value("viewer"))
+                    .andRespond(withNoContent());
+
+            keycloakService.assignClientRole("acme", "alice", "shop", "viewer", "t");
+
+            server.verify();
+        }
+
+        @Test
+        void assignClientRoleCancelsTheClientLookupWhenTheUserIsMissing() {
+            server.expect(requestTo(BASE + "/admin/realms/acme/users?username=ghost"))
+                    .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+            server.expect(requestTo(BASE + "/realms/master/protocol/openid-connect/userinfo"))
+                    .andRespond(delayed(Duration.ofSeconds(30), withSuccess("{}", MediaType.APPLICATION_JSON)));
+
+            long started = System.nanoTime();
+            RuntimeException thrown = assertThrows(RuntimeException.class,
+                    () -> keycloakService.assignClientRole("acme", "ghost", "shop", "viewer", "t"));
+
+            assertTrue(thrown.getMessage().contains("ghost"));
+            assertTrue(System.nanoTime() - started < Duration.ofSeconds(5).toNanos(), "the client lookup was cancelled");
+        }
+
+        @Test
+        void assignClientRoleGivesUpAtTheResolveDeadline() {
+            ReflectionTestUtils.setField(keycloakService, "resolveDeadline", Duration.ofMillis(200));
+            server.expect(requestTo(BASE + "/admin/realms/acme/users?username=alice"))
+                    .andRespond(delayed(Duration.ofSeconds(30), withSuccess("[]", MediaType.APPLICATION_JSON)));
+            expectClientLookup("shop", "c-1");
+            server.expect(requestTo(BASE + "/admin/realms/acme/clients/c-1/roles"))
+                    .andRespond(withSuccess("[{\"id\":\"r-1\",\"name\":\"viewer\"}]", MediaType.APPLICATION_JSON));
+
+            RuntimeException thrown = assertThrows(RuntimeException.class,
+                    () -> keycloakService.assignClientRole("acme", "alice", "shop", "viewer", "t"));
+
+            assertTrue(thrown.getMessage().contains("Deadline"));
+        }
+
+        @Test
+        void realmManagementRolesAreLookedUpOncePerRealm() {
+            expectRealmManagement("rm-1");
+            server.expect(times(2), requestTo(BASE + "/admin/realms/acme/users/u-1/role-mappings/clients/rm-1"))
+                    .andExpect(jsonPath("$[0].id").value("rm-1-manage-users"))
+                    .andRespond(withNoContent());
+
+            grantRealmManagementRoles(List.of("manage-users"));
+            grantRealmManagementRoles(List.of("manage-users"));
+
+            server.verify();
+        }
+
+        @Test
+        void staleRealmManagementRolesAreReloadedOnce() {
+            expectRealmManagement("rm-1");
+            server.expect(requestTo(BASE + "/admin/realms/acme/users/u-1/role-mappings/clients/rm-1"))
+                    .andRespond(withNoContent());
+            grantRealmManagementRoles(List.of("manage-users"));
+
+            // The realm was recreated: the cached client UUID is gone
+            server.reset();
+            server.expect(requestTo(BASE + "/admin/realms/acme/users/u-1/role-mappings/clients/rm-1"))
+                    .andRespond(withStatus(HttpStatus.NOT_FOUND));
+            expectRealmManagement("rm-2");
+            server.expect(requestTo(BASE + "/admin/realms/acme/users/u-1/role-mappings/clients/rm-2"))
+                    .andExpect(jsonPath("$[0].id").value("rm-2-manage-users"))
+                    .andRespond(withNoContent());
+
+            grantRealmManagementRoles(List.of("manage-users"));
+            server.verify();
+        }
+
+        @Test
+        void failedReloadIsReportedLikeAnyOtherGrantFailure() {
+            expectRealmManagement("rm-1");
+            server.expect(requestTo(BASE + "/admin/realms/acme/users/u-1/role-mappings/clients/rm-1"))
+                    .andRespond(withNoContent());
+            grantRealmManagementRoles(List.of("manage-users"));
+
+            server.reset();
+            server.expect(requestTo(BASE + "/admin/realms/acme/users/u-1/role-mappings/clients/rm-1"))
+                    .andRespond(withStatus(HttpStatus.NOT_FOUND));
+            server.expect(requestTo(BASE + "/admin/realms/acme/clients?clientId=realm-management"))
+                    .andRespond(withServerError());
+
+            RuntimeException thrown = assertThrows(RuntimeException.class, () -> grantRealmManagementRoles(List.of("manage-users")));
+            assertTrue(thrown.getMessage().startsWith("Failed to assign realm role to user"));
+            assertInstanceOf(HttpServerErrorException.class, thrown.getCause());
+        }
+
+        @Test
+        void unknownRealmManagementRoleFailsTheGrant() {
+            expectRealmManagement("rm-1");
+
+            RuntimeException thrown = assertThrows(RuntimeException.class, () -> grantRealmManagementRoles(List.of("no-such-role")));
+            assertTrue(thrown.getMessage().contains("realm-management role not found: no-such-role"));
+        }
+
+        private void grantRealmManagementRoles(List<String> roleNames) {
+            ReflectionTestUtils.invokeMethod(keycloakService, "grantRealmManagementRoles", "acme", "u-1", roleNames, "t");
+        }
+
+        private void expectRealmManagement(String uuid) {
+            server.expect(requestTo(BASE + "/admin/realms/acme/clients?clientId=realm-management"))
+                    .andRespond(withSuccess("[{\"id\":\"" + uuid + "\",\"clientId\":\"realm-management\"}]",
+                            MediaType.APPLICATION_JSON));
+            server.expect(requestTo(BASE + "/admin/realms/acme/clients/" + uuid + "/roles"))
+                    .andRespond(withSuccess("[{\"id\":\"" + uuid + "-manage-users\",\"name\":\"manage-users\"}]",
+                            MediaType.APPLICATION_JSON));
+        }
+
+        // getClientUUID checks the caller's token against the master realm before looking the client up
+        private void expectClientLookup(String clientId, String uuid) {
+            server.expect(requestTo(BASE + "/realms/master/protocol/openid-connect/userinfo"))
+                    .andRespond(withSuccess("{\"sub\":\"admin\"}", MediaType.APPLICATION_JSON));
+            server.expect(requestTo(BASE + "/admin/realms/acme/clients?clientId=" + clientId))
+                    .andRespond(withSuccess("[{\"id\":\"" + uuid + "\",\"clientId\":\"" + clientId + "\"}]",
+                            MediaType.APPLICATION_JSON));
+        }
+
+        private static SignupRequest signupRequest() {
+            SignupRequest.AdminUser admin = new SignupRequest.AdminUser();
+            admin.setUsername("owner");
+            admin.setEmail("owner@acme.test");
+            admin.setFirstName("Olive");
+            admin.setLastName("Owner");
+            admin.setPassword("secret");
+            SignupRequest request = new SignupRequest();
+            request.setRealmName("acme");
+            request.setClientId("shop");
+            request.setAdminUser(admin);
+            return request;
+        }
+
+        private static RoleCreationRequest role(String name) {
+            RoleCreationRequest request = new RoleCreationRequest();
+            request.setName(name);
+            return request;
+        }
+
+        private static ResponseCreator delayed(Duration delay, ResponseCreator response) {
+            return request -> {
+                try {
+                    Thread.sleep(delay.toMillis());
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("cancelled");
+                }
+                return response.createResponse(request);
+            };
+        }
+    }
+}
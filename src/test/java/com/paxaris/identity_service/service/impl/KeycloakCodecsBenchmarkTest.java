@@ -0,0 +1,87 @@
+package com.paxaris.identity_service.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Allocation benchmark for decoding a large user listing: the old String + TypeReference path against
+ * the cached readers in {@link KeycloakCodecs}. Allocation figures depend on the JIT and TLAB sizing, so
+ * this only runs with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class KeycloakCodecsBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(KeycloakCodecsBenchmarkTest.class);
+
+    private static final int USERS = 20_000;
+    private static final int ROUNDS = 5;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final KeycloakCodecs codecs = new KeycloakCodecs(objectMapper);
+
+    @Test
+    void streamedTypedDecodingAllocatesLessThanStringMapDecoding() throws Exception {
+        byte[] body = largeUserListing();
+
+        long stringToMaps = allocatedPerRound(() -> {
+            String text = new String(body, StandardCharsets.UTF_8);
+            List<Map<String, Object>> users = objectMapper.readValue(text, new TypeReference<>() {});
+            return users.size();
+        });
+        long streamToMaps = allocatedPerRound(() ->
+                codecs.getMapListReader().<List<?>>readValue(new ByteArrayInputStream(body)).size());
+        long streamToRecords = allocatedPerRound(() ->
+                codecs.getUserListReader().<List<?>>readValue(new ByteArrayInputStream(body)).size());
+
+        String figures = "decoding %d users (%d KB): String->maps %d KB, stream->maps %d KB, stream->records %d KB".formatted(
+                USERS, body.length / 1024, stringToMaps / 1024, streamToMaps / 1024, streamToRecords / 1024);
+        log.info(figures);
+
+        assertTrue(streamToMaps < stringToMaps, "streaming should skip the intermediate String; " + figures);
+        assertTrue(streamToRecords < streamToMaps, "typed records should skip the generic map tree; " + figures);
+    }
+
+    private long allocatedPerRound(Callable<Integer> decode) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        for (int i = 0; i < ROUNDS; i++) {
+            assertEquals(USERS, decode.call()); // warm-up
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ROUNDS; i++) {
+            decode.call();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / ROUNDS;
+    }
+
+    private static byte[] largeUserListing() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < USERS; i++) {
+            if (i > 0) json.append(',');
+            json.append("""
+                    {"id":"%1$08d-0000-4000-8000-000000000000","createdTimestamp":1700000000000,\
+                    "username":"user%1$d","enabled":true,"totp":false,"emailVerified":true,\
+                    "firstName":"First%1$d","lastName":"Last%1$d","email":"user%1$d@example.com",\
+                    "attributes":{"department":["engineering"],"locale":["en"]},\
+                    "disableableCredentialTypes":[],"requiredActions":[],"notBefore":0,\
+                    "access":{"manageGroupMembership":true,"view":true,"mapRoles":true,"impersonate":true,"manage":true}}"""
+                    .formatted(i));
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
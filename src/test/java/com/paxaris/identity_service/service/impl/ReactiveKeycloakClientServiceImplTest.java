@@ -0,0 +1,114 @@
+package com.paxaris.identity_service.service.impl;
+
+import com.paxaris.identity_service.dto.KeycloakConfig;
+import com.paxaris.identity_service.support.StubHttpServer;
+import com.paxaris.identity_service.support.StubHttpServer.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link ReactiveKeycloakClientServiceImpl} against a stubbed Keycloak.
+ */
+class ReactiveKeycloakClientServiceImplTest {
+
+    private StubHttpServer keycloak;
+    private ReactiveKeycloakClientServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        keycloak = new StubHttpServer();
+        KeycloakConfig config = new KeycloakConfig();
+        config.setBaseUrl(keycloak.url());
+        config.setAdminUsername("admin");
+        config.setAdminPassword("secret");
+        service = new ReactiveKeycloakClientServiceImpl(config, WebClient.builder(), keycloak.url());
+    }
+
+    @AfterEach
+    void tearDown() {
+        keycloak.close();
+    }
+
+    @Test
+    void publicClientLoginSendsPasswordGrantWithoutSecret() {
+        keycloak.on("POST", "/realms/acme/protocol/openid-connect/token",
+                Response.json(200, "{\"access_token\":\"user-token\",\"expires_in\":300}"));
+
+        Map<String, Object> token = service.getMyRealmToken("alice", "pw", "admin-cli", "acme").block();
+
+        assertEquals("user-token", token.get("access_token"));
+        List<StubHttpServer.Request> requests = keycloak.requests();
+        assertEquals(1, requests.size(), "no admin lookups for a public client");
+        String form = requests.get(0).body();
+        assertTrue(form.contains("grant_type=password"));
+        assertTrue(form.contains("client_id=admin-cli"));
+        assertTrue(form.contains("username=alice"));
+        assertFalse(form.contains("client_secret"));
+    }
+
+    @Test
+    void confidentialClientLoginLooksUpTheSecretFirst() {
+        keycloak.on("POST", "/realms/master/protocol/openid-connect/token",
+                        Response.json(200, "{\"access_token\":\"admin-token\"}"))
+                .on("GET", "/admin/realms/acme/clients", Response.json(200, "[{\"id\":\"c-1\",\"clientId\":\"shop\"}]"))
+                .on("GET", "/admin/realms/acme/clients/c-1/client-secret", Response.json(200, "{\"value\":\"s3cret\"}"))
+                .on("POST", "/realms/acme/protocol/openid-connect/token",
+                        Response.json(200, "{\"access_token\":\"user-token\"}"));
+
+        Map<String, Object> token = service.getMyRealmToken("alice", "pw", "shop", "acme").block();
+
+        assertEquals("user-token", token.get("access_token"));
+        StubHttpServer.Request lookup = keycloak.requests("GET", "/admin/realms/acme/clients").get(0);
+        assertEquals("clientId=shop", lookup.query());
+        assertEquals("Bearer admin-token", lookup.header("Authorization"));
+        String form = keycloak.requests("POST", "/realms/acme/.*").get(0).body();
+        assertTrue(form.contains("client_secret=s3cret"));
+    }
+
+    @Test
+    void failedLoginIsReportedAsAnError() {
+        keycloak.on("POST", "/realms/acme/protocol/openid-connect/token",
+                Response.json(401, "{\"error\":\"invalid_grant\"}"));
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> service.getMyRealmToken("alice", "wrong", "admin-cli", "acme").block());
+        assertEquals("Failed to get realm token", e.getMessage());
+    }
+
+    @Test
+    void validateTokenFollowsUserInfo() {
+        keycloak.on("GET", "/realms/acme/protocol/openid-connect/userinfo", request ->
+                "Bearer good".equals(request.header("Authorization"))
+                        ? Response.json(200, "{\"sub\":\"u-1\"}")
+                        : Response.status(401));
+
+        assertTrue(service.validateToken("acme", "good").block());
+        assertFalse(service.validateToken("acme", "expired").block());
+    }
+
+    @Test
+    void listingsAreEmittedElementByElement() {
+        keycloak.on("GET", "/admin/realms/acme/users", Response.json(200,
+                "[{\"id\":\"u-1\",\"username\":\"alice\"},{\"id\":\"u-2\",\"username\":\"bob\"},{\"id\":\"u-3\",\"username\":\"carol\"}]"));
+
+        List<Map<String, Object>> users = service.getAllUsers("acme", "admin-token").collectList().block();
+
+        assertEquals(List.of("alice", "bob", "carol"), users.stream().map(u -> u.get("username")).toList());
+    }
+
+    @Test
+    void failedListingNamesThePath() {
+        keycloak.on("GET", "/admin/realms/acme/users", Response.status(403));
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> service.getAllUsers("acme", "admin-token").collectList().block());
+        assertTrue(e.getMessage().contains("/admin/realms/acme/users"), e.getMessage());
+    }
+}
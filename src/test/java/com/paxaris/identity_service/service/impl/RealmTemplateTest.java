@@ -0,0 +1,91 @@
+package com.paxaris.identity_service.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RealmTemplateTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void bundledTemplateRendersWithTypedValues() {
+        RealmTemplate template = template("classpath:templates/tenant-realm.json");
+
+        ObjectNode realm = template.render(variables());
+
+        assertEquals("acme", realm.path("realm").textValue());
+        assertEquals("shop", realm.path("clients").get(0).path("clientId").textValue());
+        assertTrue(realm.path("clients").get(0).path("publicClient").isBoolean());
+        assertTrue(realm.path("clients").get(0).path("publicClient").booleanValue());
+        assertTrue(realm.path("clients").get(0).path("redirectUris").isArray());
+        assertEquals("*", realm.path("clients").get(0).path("redirectUris").get(0).textValue());
+        assertEquals("p@ss\"word", realm.path("users").get(0).path("credentials").get(0).path("value").textValue());
+        assertEquals(List.of("manage-users", "view-users"),
+                objectMapper.convertValue(realm.path("users").get(0).path("clientRoles").path("realm-management"), List.class));
+    }
+
+    @Test
+    void placeholdersInsideLongerStringsAreSplicedAsText(@TempDir Path dir) throws IOException {
+        Path file = Files.writeString(dir.resolve("realm.json"),
+                "{\"realm\":\"${realm}\",\"displayName\":\"Tenant ${realm} (public: ${publicClient})\"}");
+        RealmTemplate template = template("file:" + file);
+
+        ObjectNode realm = template.render(variables());
+
+        assertEquals("Tenant acme (public: true)", realm.path("displayName").textValue());
+    }
+
+    @Test
+    void renderingLeavesTheCachedTemplateUntouched() {
+        RealmTemplate template = template("classpath:templates/tenant-realm.json");
+        template.render(variables());
+
+        Map<String, Object> other = variables();
+        other.put("realm", "globex");
+
+        assertEquals("globex", template.render(other).path("realm").textValue());
+    }
+
+    @Test
+    void missingVariableIsRejected() {
+        RealmTemplate template = template("classpath:templates/tenant-realm.json");
+        Map<String, Object> variables = variables();
+        variables.remove("admin.password");
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> template.render(variables));
+        assertTrue(thrown.getMessage().contains("${admin.password}"));
+    }
+
+    private RealmTemplate template(String location) {
+        return new RealmTemplate(objectMapper, new DefaultResourceLoader(), location);
+    }
+
+    private static Map<String, Object> variables() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("realm", "acme");
+        variables.put("clientId", "shop");
+        variables.put("publicClient", true);
+        variables.put("clientAuthenticatorType", "client-id");
+        variables.put("serviceAccountsEnabled", false);
+        variables.put("redirectUris", List.of("*"));
+        variables.put("admin.username", "owner");
+        variables.put("admin.email", "owner@acme.test");
+        variables.put("admin.firstName", "Olive");
+        variables.put("admin.lastName", "Owner");
+        variables.put("admin.password", "p@ss\"word");
+        variables.put("admin.roles", List.of("manage-users", "view-users"));
+        return variables;
+    }
+}
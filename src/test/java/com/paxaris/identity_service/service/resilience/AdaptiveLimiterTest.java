@@ -0,0 +1,163 @@
+package com.paxaris.identity_service.service.resilience;
+
+import com.paxaris.identity_service.dto.AdaptiveLimitStats;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the limiter against a simulated upstream on a virtual clock with a seeded probe jitter, so the course of
+ * the limit is the same on every run.
+ */
+class AdaptiveLimiterTest {
+
+    private static final long BASE_RTT = Duration.ofMillis(20).toNanos();
+
+    @Test
+    void settlesAboveWhatTheUpstreamServesAtOnceWithoutLosingThroughput() {
+        AdaptiveLimiter limiter = limiter(16);
+        Upstream upstream = new Upstream(10, 0, false);
+
+        upstream.run(limiter, 20_000);
+        upstream.limits.clear();
+        long completedBefore = upstream.completed;
+        long startedAt = upstream.now;
+        upstream.run(limiter, 100_000);
+
+        IntSummaryStatistics settled = upstream.limits.stream().mapToInt(Integer::intValue).summaryStatistics();
+        double callsAtOnce = (upstream.completed - completedBefore) * (double) BASE_RTT / (upstream.now - startedAt);
+        // Never below what the upstream serves at once, so it never sits idle
+        assertTrue(settled.getMin() >= 10, "dropped below the upstream's capacity: " + settled);
+        // Spikes after a baseline re-probe come back down instead of staying at the maximum
+        assertTrue(settled.getAverage() >= 18 && settled.getAverage() <= 32, "did not settle: " + settled);
+        assertEquals(10.0, callsAtOnce, 0.1);
+    }
+
+    @Test
+    void failuresBackOffAndTheLimitRecovers() {
+        AdaptiveLimiter limiter = limiter(32);
+        int started = limiter.acquire();
+
+        limiter.release(started, new OutboundGuard.Outcome(true, true, BASE_RTT), true);
+        assertEquals(28, limiter.stats().limit());
+
+        for (int round = 0; round < 50; round++) {
+            runRound(limiter, 64, BASE_RTT, true);
+        }
+        assertEquals(64, limiter.stats().limit());
+    }
+
+    @Test
+    void sampledBulkCallsDragTheLimitDownAndUnsampledOnesDoNot() {
+        // Nothing queues upstream; nine in ten calls are partial imports taking fifty times a single GET
+        Upstream sampled = new Upstream(64, 10, true);
+        Upstream excluded = new Upstream(64, 10, false);
+
+        sampled.run(limiter(32), 20_000);
+        excluded.run(limiter(32), 20_000);
+
+        IntSummaryStatistics withBulk = sampled.limits.subList(10_000, 20_000).stream()
+                .mapToInt(Integer::intValue).summaryStatistics();
+        IntSummaryStatistics withoutBulk = excluded.limits.subList(10_000, 20_000).stream()
+                .mapToInt(Integer::intValue).summaryStatistics();
+        assertTrue(withBulk.getAverage() < 32, "bulk round trips were not read as queueing: " + withBulk);
+        assertEquals(64, withoutBulk.getMin(), "unsampled bulk calls lowered the limit: " + withoutBulk);
+    }
+
+    @Test
+    void callsOverTheLimitAreRefusedWithoutAQueue() {
+        AdaptiveLimiter limiter = limiter(4);
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, limiter.acquire());
+        }
+
+        assertEquals(-1, limiter.acquire());
+        AdaptiveLimitStats stats = limiter.stats();
+        assertEquals(4, stats.inFlight());
+        assertEquals(1, stats.rejected());
+    }
+
+    @Test
+    void partialImportsAndLargePagesAreBulk() {
+        assertTrue(AdaptiveLimitGuard.isBulk(URI.create("http://keycloak/admin/realms/acme/partialImport"), 100));
+        assertTrue(AdaptiveLimitGuard.isBulk(URI.create("http://keycloak/admin/realms/acme/users?first=0&max=500"), 100));
+        assertTrue(AdaptiveLimitGuard.isBulk(URI.create("http://keycloak/admin/realms/acme/users?max=-1"), 100));
+        assertTrue(AdaptiveLimitGuard.isBulk(URI.create("http://keycloak/admin/realms"), 100));
+        assertFalse(AdaptiveLimitGuard.isBulk(URI.create("http://keycloak/admin/realms/acme/users?first=0&max=20"), 100));
+        assertFalse(AdaptiveLimitGuard.isBulk(URI.create("http://keycloak/admin/realms/acme/users/u-1"), 100));
+        assertFalse(AdaptiveLimitGuard.isBulk(URI.create("http://keycloak/realms/acme/protocol/openid-connect/token"), 100));
+    }
+
+    /*
+     * Upstream serving {@code servers} calls at once, each taking BASE_RTT, behind a FIFO queue. The caller always
+     * has more work than the limit admits, so it opens calls until refused and again whenever one completes. With
+     * {@code cheapEvery > 0} only every cheapEvery-th call is a single-object call; the others are bulk calls
+     * taking fifty times as long, sampled only if {@code sampleBulk}.
+     */
+    private static final class Upstream {
+        private static final int BULK_FACTOR = 50;
+
+        private record Call(long completesAt, long sentAt, int startedInFlight, boolean bulk) {
+        }
+
+        private final PriorityQueue<Long> serverFreeAt = new PriorityQueue<>();
+        private final PriorityQueue<Call> inFlight = new PriorityQueue<>(Comparator.comparingLong(Call::completesAt));
+        private final int cheapEvery;
+        private final boolean sampleBulk;
+        private final List<Integer> limits = new ArrayList<>();
+        private long now;
+        private long sent;
+        private long completed;
+
+        private Upstream(int servers, int cheapEvery, boolean sampleBulk) {
+            this.cheapEvery = cheapEvery;
+            this.sampleBulk = sampleBulk;
+            for (int i = 0; i < servers; i++) serverFreeAt.add(0L);
+        }
+
+        private void run(AdaptiveLimiter limiter, int calls) {
+            for (int i = 0; i < calls; i++) {
+                for (int started; (started = limiter.acquire()) > 0; ) {
+                    boolean bulk = cheapEvery > 0 && sent++ % cheapEvery != 0;
+                    long end = Math.max(now, serverFreeAt.poll()) + BASE_RTT * (bulk ? BULK_FACTOR : 1);
+                    serverFreeAt.add(end);
+                    inFlight.add(new Call(end, now, started, bulk));
+                }
+                Call call = inFlight.poll();
+                now = call.completesAt();
+                completed++;
+                limiter.release(call.startedInFlight(), new OutboundGuard.Outcome(true, false, now - call.sentAt()),
+                        !call.bulk() || sampleBulk);
+                limits.add(limiter.stats().limit());
+            }
+        }
+    }
+
+    private static AdaptiveLimiter limiter(int initialLimit) {
+        return new AdaptiveLimiter("test", initialLimit, 4, 64, Duration.ZERO, new SplittableRandom(49));
+    }
+
+    /*
+     * Opens calls until the limiter refuses, then completes them all. The upstream serves {@code capacity} calls
+     * at once and queues the rest, so beyond that the round trip grows with the number in flight.
+     */
+    private static void runRound(AdaptiveLimiter limiter, int capacity, long baseRtt, boolean sampled) {
+        List<Integer> started = new ArrayList<>();
+        for (int inFlight; (inFlight = limiter.acquire()) > 0; ) {
+            started.add(inFlight);
+        }
+        long rtt = baseRtt * Math.max(capacity, started.size()) / capacity;
+        for (int inFlight : started) {
+            limiter.release(inFlight, new OutboundGuard.Outcome(true, false, rtt), sampled);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.paxaris.identity_service.service.resilience;
+
+import com.paxaris.identity_service.service.resilience.CircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+
+    @Test
+    void opensOnceEnoughCallsWereRecordedAndTheFailureRateIsReached() {
+        CircuitBreaker breaker = breaker(10, 4, Duration.ofHours(1), 2);
+
+        breaker.record(true, FAST);
+        breaker.record(true, FAST);
+        breaker.record(false, FAST);
+        // 2 of 3 failed, but fewer than minimum-calls were recorded
+        assertEquals(State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.record(false, FAST);
+        assertEquals(State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void windowOnlyCountsTheLastCalls() {
+        CircuitBreaker breaker = breaker(4, 4, Duration.ofHours(1), 2);
+
+        breaker.record(true, FAST);
+        breaker.record(false, FAST);
+        breaker.record(false, FAST);
+        breaker.record(false, FAST);
+        assertEquals(25.0, breaker.failureRate());
+        // Pushes the first failure out of the window: still one bad call in four
+        breaker.record(true, FAST);
+        assertEquals(State.CLOSED, breaker.state());
+        assertEquals(25.0, breaker.failureRate());
+
+        breaker.record(true, FAST);
+        assertEquals(State.OPEN, breaker.state());
+    }
+
+    @Test
+    void slowCallsCountAsFailures() {
+        CircuitBreaker breaker = breaker(2, 2, Duration.ofHours(1), 1);
+
+        breaker.record(false, Duration.ofSeconds(2).toNanos());
+        breaker.record(false, Duration.ofSeconds(2).toNanos());
+
+        assertEquals(State.OPEN, breaker.state());
+    }
+
+    @Test
+    void halfOpenLetsAFixedNumberOfTrialsThroughAndClosesWhenAllSucceed() {
+        CircuitBreaker breaker = breaker(2, 2, Duration.ZERO, 2);
+        breaker.record(true, FAST);
+        breaker.record(true, FAST);
+        assertEquals(State.OPEN, breaker.state());
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.record(false, FAST);
+        assertEquals(State.HALF_OPEN, breaker.state());
+        breaker.record(false, FAST);
+        assertEquals(State.CLOSED, breaker.state());
+        assertEquals(0.0, breaker.failureRate());
+        assertEquals(1L, breaker.transitions().get(State.CLOSED));
+    }
+
+    @Test
+    void failedTrialReopensTheCircuit() {
+        CircuitBreaker breaker = breaker(2, 2, Duration.ZERO, 3);
+        breaker.record(true, FAST);
+        breaker.record(true, FAST);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.record(false, FAST);
+        assertTrue(breaker.tryAcquire());
+        breaker.record(true, FAST);
+
+        assertEquals(State.OPEN, breaker.state());
+        assertEquals(2L, breaker.transitions().get(State.OPEN));
+        assertEquals(1L, breaker.transitions().get(State.HALF_OPEN));
+    }
+
+    @Test
+    void cancelledTrialGivesItsSlotBack() {
+        CircuitBreaker breaker = breaker(2, 2, Duration.ZERO, 1);
+        breaker.record(true, FAST);
+        breaker.record(true, FAST);
+
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.cancel();
+        assertTrue(breaker.tryAcquire());
+
+        breaker.record(false, FAST);
+        assertEquals(State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void outcomesOfCallsAdmittedBeforeOpeningAreIgnored() {
+        CircuitBreaker breaker = breaker(2, 2, Duration.ofHours(1), 1);
+        breaker.record(true, FAST);
+        breaker.record(true, FAST);
+
+        breaker.record(false, FAST);
+        breaker.cancel();
+
+        assertEquals(State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    private static CircuitBreaker breaker(int windowSize, int minimumCalls, Duration openFor, int halfOpenCalls) {
+        return new CircuitBreaker("test", windowSize, minimumCalls, 50, Duration.ofSeconds(1), openFor, halfOpenCalls);
+    }
+}
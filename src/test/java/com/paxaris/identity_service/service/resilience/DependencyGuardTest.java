@@ -0,0 +1,53 @@
+package com.paxaris.identity_service.service.resilience;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DependencyGuardTest {
+
+    private static final long SLOW = Duration.ofSeconds(30).toNanos();
+
+    private final DependencyGuard guard = new DependencyGuard(new MockEnvironment(), "", 100);
+
+    @Test
+    void slowPartialImportsLeaveTheBreakerClosed() {
+        URI chunk = URI.create("http://keycloak/admin/realms/acme/partialImport");
+        for (int i = 0; i < 50; i++) {
+            guard.admit(chunk, HttpMethod.POST).release(new OutboundGuard.Outcome(true, false, SLOW));
+        }
+
+        assertEquals("CLOSED", state());
+        assertEquals(0.0, guard.stats().get(Dependency.KEYCLOAK_ADMIN).failureRate());
+    }
+
+    @Test
+    void slowSingleObjectCallsStillOpenIt() {
+        URI user = URI.create("http://keycloak/admin/realms/acme/users/u-1");
+        for (int i = 0; i < 20; i++) {
+            guard.admit(user, HttpMethod.GET).release(new OutboundGuard.Outcome(true, false, SLOW));
+        }
+
+        assertEquals("OPEN", state());
+    }
+
+    @Test
+    void failedBulkCallsStillCount() {
+        URI chunk = URI.create("http://keycloak/admin/realms/acme/partialImport");
+        for (int i = 0; i < 20; i++) {
+            guard.admit(chunk, HttpMethod.POST).release(new OutboundGuard.Outcome(true, true, SLOW));
+        }
+
+        assertEquals("OPEN", state());
+        assertThrows(DependencyUnavailableException.class, () -> guard.admit(chunk, HttpMethod.POST));
+    }
+
+    private String state() {
+        return guard.stats().get(Dependency.KEYCLOAK_ADMIN).state();
+    }
+}
@@ -0,0 +1,122 @@
+package com.paxaris.identity_service.service.resilience;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GuardedExchangeFilterTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    // Records what it admitted and how each permit was released, prefixed with its name
+    private static final class RecordingGuard implements OutboundGuard {
+        private final String name;
+        private final List<String> events;
+        private final boolean refuse;
+
+        private RecordingGuard(String name, List<String> events, boolean refuse) {
+            this.name = name;
+            this.events = events;
+            this.refuse = refuse;
+        }
+
+        @Override
+        public Permit admit(URI uri, HttpMethod method) {
+            if (refuse) {
+                throw new DependencyUnavailableException(Dependency.KEYCLOAK_JWKS, "circuit open");
+            }
+            events.add(name + " admit " + method + " " + uri.getPath());
+            return outcome -> events.add(name + " release executed=" + outcome.executed() + " failed=" + outcome.failed());
+        }
+    }
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final AtomicInteger exchanges = new AtomicInteger();
+
+    @Test
+    void permitsAreHeldUntilTheBodyIsReadAndReleasedInReverse() {
+        WebClient client = client(status(HttpStatus.OK, "{\"keys\":[]}"),
+                new RecordingGuard("quota", events, false), new RecordingGuard("dependency", events, false));
+
+        String body = client.get().uri("http://keycloak/realms/acme/protocol/openid-connect/certs")
+                .retrieve().bodyToMono(String.class).block(TIMEOUT);
+
+        assertEquals("{\"keys\":[]}", body);
+        assertEquals(List.of(
+                "quota admit GET /realms/acme/protocol/openid-connect/certs",
+                "dependency admit GET /realms/acme/protocol/openid-connect/certs",
+                "dependency release executed=true failed=false",
+                "quota release executed=true failed=false"), events);
+    }
+
+    @Test
+    void serverErrorIsReleasedAsAFailure() {
+        WebClient client = client(status(HttpStatus.SERVICE_UNAVAILABLE, ""), new RecordingGuard("dependency", events, false));
+
+        assertThrows(Exception.class, () -> client.post().uri("http://pm/project/roles/save-or-update")
+                .retrieve().toBodilessEntity().block(TIMEOUT));
+
+        assertEquals(List.of(
+                "dependency admit POST /project/roles/save-or-update",
+                "dependency release executed=true failed=true"), events);
+    }
+
+    @Test
+    void refusedCallNeverReachesTheNetworkAndEarlierPermitsAreGivenBack() {
+        WebClient client = client(status(HttpStatus.OK, ""),
+                new RecordingGuard("quota", events, false), new RecordingGuard("dependency", events, true));
+
+        assertThrows(DependencyUnavailableException.class, () -> client.get().uri("http://keycloak/realms/acme/protocol/openid-connect/certs")
+                .retrieve().bodyToMono(String.class).block(TIMEOUT));
+
+        assertEquals(0, exchanges.get());
+        assertEquals(List.of(
+                "quota admit GET /realms/acme/protocol/openid-connect/certs",
+                "quota release executed=false failed=false"), events);
+    }
+
+    @Test
+    void connectionErrorIsReleasedAsAFailure() {
+        ExchangeFunction unreachable = request -> {
+            exchanges.incrementAndGet();
+            return Mono.error(new WebClientRequestException(new IOException("Connection refused"),
+                    request.method(), request.url(), request.headers()));
+        };
+        WebClient client = client(unreachable, new RecordingGuard("dependency", events, false));
+
+        assertThrows(WebClientRequestException.class, () -> client.get().uri("http://keycloak/admin/realms/acme/users")
+                .retrieve().bodyToMono(String.class).block(TIMEOUT));
+
+        assertEquals(List.of(
+                "dependency admit GET /admin/realms/acme/users",
+                "dependency release executed=true failed=true"), events);
+    }
+
+    private WebClient client(ExchangeFunction exchange, OutboundGuard... guards) {
+        return WebClient.builder()
+                .exchangeFunction(exchange)
+                .filter(new GuardedExchangeFilter(List.of(guards)))
+                .build();
+    }
+
+    private ExchangeFunction status(HttpStatus status, String body) {
+        return request -> {
+            exchanges.incrementAndGet();
+            return Mono.just(ClientResponse.create(status).header("Content-Type", "application/json").body(body).build());
+        };
+    }
+}
@@ -0,0 +1,190 @@
+package com.paxaris.identity_service.service.resilience;
+
+import com.paxaris.identity_service.dto.PriorityClassStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.paxaris.identity_service.service.resilience.RequestPriority.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InboundAdmissionTest {
+
+    private static final Duration LONG = Duration.ofSeconds(10);
+
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void freedSlotGoesToTheHighestClassBeforeOlderLowerOnes() throws Exception {
+        InboundAdmission admission = admission(1, 10, LONG, LONG, LONG);
+        assertTrue(admission.acquire(CRITICAL));
+        Future<Boolean> admin = acquire(admission, ADMIN);
+        awaitWaiting(admission, 1);
+        Future<Boolean> critical = acquire(admission, CRITICAL);
+        awaitWaiting(admission, 2);
+
+        admission.release();
+        assertTrue(critical.get(5, TimeUnit.SECONDS));
+        assertFalse(admin.isDone());
+
+        admission.release();
+        assertTrue(admin.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void lowerClassGivesUpAfterMaxWaitInsteadOfWaitingForever() {
+        InboundAdmission admission = admission(1, 10, LONG, LONG, Duration.ofMillis(100));
+        assertTrue(admission.acquire(CRITICAL));
+
+        long start = System.nanoTime();
+        assertFalse(admission.acquire(ADMIN));
+
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(100).toNanos());
+        assertEquals(1, stats(admission, ADMIN).shed());
+        assertEquals(0, admission.stats().waiting());
+    }
+
+    @Test
+    void fullQueueDisplacesTheNewestLowerWaiterOrShedsTheNewcomer() throws Exception {
+        InboundAdmission admission = admission(1, 1, LONG, LONG, LONG);
+        assertTrue(admission.acquire(CRITICAL));
+        Future<Boolean> admin = acquire(admission, ADMIN);
+        awaitWaiting(admission, 1);
+
+        Future<Boolean> critical = acquire(admission, CRITICAL);
+        assertFalse(admin.get(5, TimeUnit.SECONDS));
+        awaitWaiting(admission, 1);
+        // Nothing below NORMAL is waiting, so there is no room for it
+        assertFalse(admission.acquire(NORMAL));
+
+        admission.release();
+        assertTrue(critical.get(5, TimeUnit.SECONDS));
+        assertEquals(1, stats(admission, ADMIN).shed());
+        assertEquals(1, stats(admission, NORMAL).shed());
+        assertEquals(0, stats(admission, CRITICAL).shed());
+    }
+
+    @Test
+    void classQueuedAboveTargetForAnIntervalStartsDroppingAndShedsTheClassesBelow() throws Exception {
+        Duration target = Duration.ofMillis(10);
+        InboundAdmission admission = admission(1, 10, target, Duration.ofMillis(300), LONG);
+        startDropping(admission, Duration.ofMillis(300));
+
+        PriorityClassStats critical = stats(admission, CRITICAL);
+        assertTrue(critical.dropping());
+        assertEquals(1, critical.droppingEpisodes());
+        assertFalse(admission.acquire(NORMAL));
+        assertFalse(admission.acquire(ADMIN));
+
+        // The dropping class itself waits at most target, not max-wait
+        long start = System.nanoTime();
+        assertFalse(admission.acquire(CRITICAL));
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+
+        // Let in within target: no longer dropping
+        admission.release();
+        assertTrue(admission.acquire(CRITICAL));
+        assertFalse(stats(admission, CRITICAL).dropping());
+        admission.release();
+        assertTrue(admission.acquire(ADMIN));
+    }
+
+    @Test
+    void droppingClassThatWentQuietNoLongerStarvesTheClassesBelow() throws Exception {
+        Duration interval = Duration.ofMillis(300);
+        InboundAdmission admission = admission(1, 10, Duration.ofMillis(10), interval, LONG);
+        startDropping(admission, interval);
+        assertFalse(admission.acquire(ADMIN));
+
+        admission.release();
+        Thread.sleep(interval.toMillis() + 50);
+
+        assertTrue(admission.acquire(ADMIN));
+        assertFalse(stats(admission, CRITICAL).dropping());
+    }
+
+    @Test
+    void floodOfAdminRequestsIsShedWhileCriticalOnesKeepGettingThrough() throws Exception {
+        InboundAdmission admission = admission(8, 16, Duration.ofMillis(50), Duration.ofMillis(200), Duration.ofSeconds(2));
+        long until = System.nanoTime() + Duration.ofMillis(1500).toNanos();
+        List<Future<?>> clients = new ArrayList<>();
+        for (int i = 0; i < 28; i++) {
+            RequestPriority priority = i < 4 ? CRITICAL : ADMIN;
+            clients.add(callers.submit(() -> {
+                while (System.nanoTime() < until) {
+                    if (admission.acquire(priority)) {
+                        Thread.sleep(5);
+                        admission.release();
+                    } else {
+                        Thread.sleep(1);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> client : clients) {
+            client.get(30, TimeUnit.SECONDS);
+        }
+
+        PriorityClassStats critical = stats(admission, CRITICAL);
+        PriorityClassStats admin = stats(admission, ADMIN);
+        assertEquals(0, critical.shed(), critical.toString());
+        assertTrue(critical.admitted() > 100, critical.toString());
+        assertTrue(critical.averageSojournMs() < 50, critical.toString());
+        assertTrue(admin.shed() > 0, admin.toString());
+        assertTrue(admin.admitted() > 0, admin.toString());
+        assertEquals(0, admission.stats().inFlight());
+    }
+
+    /*
+     * Holds the only slot and lets CRITICAL requests queue past target twice, an interval apart, so the class
+     * starts dropping. The slot stays taken afterwards.
+     */
+    private void startDropping(InboundAdmission admission, Duration interval) throws Exception {
+        assertTrue(admission.acquire(CRITICAL));
+        Future<Boolean> first = acquire(admission, CRITICAL);
+        awaitWaiting(admission, 1);
+        Thread.sleep(30);
+        admission.release();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+
+        Future<Boolean> second = acquire(admission, CRITICAL);
+        awaitWaiting(admission, 1);
+        Thread.sleep(interval.toMillis() + 50);
+        admission.release();
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+    }
+
+    private Future<Boolean> acquire(InboundAdmission admission, RequestPriority priority) {
+        return callers.submit(() -> admission.acquire(priority));
+    }
+
+    private static void awaitWaiting(InboundAdmission admission, int waiting) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (admission.stats().waiting() != waiting) {
+            assertTrue(System.nanoTime() < deadline, "never saw " + waiting + " waiting: " + admission.stats());
+            Thread.sleep(1);
+        }
+    }
+
+    private static PriorityClassStats stats(InboundAdmission admission, RequestPriority priority) {
+        return admission.stats().classes().get(priority.name());
+    }
+
+    private static InboundAdmission admission(int maxConcurrent, int maxQueue, Duration target, Duration interval,
+                                              Duration maxWait) {
+        return new InboundAdmission(true, maxConcurrent, maxQueue, target, interval, maxWait);
+    }
+}
@@ -0,0 +1,148 @@
+package com.paxaris.identity_service.service.resilience;
+
+import com.paxaris.identity_service.dto.RealmQuotaStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TenantQuotaGuardTest {
+
+    private static final Duration LONG = Duration.ofSeconds(10);
+    private static final OutboundGuard.Outcome OK = new OutboundGuard.Outcome(true, false, 1);
+
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void freedQuotaSlotGoesToTheSameRealmsNextWaiter() throws Exception {
+        TenantQuotaGuard guard = guard(1, 0, LONG, LONG);
+        OutboundGuard.Permit first = admit(guard, "acme");
+        Future<OutboundGuard.Permit> second = admitLater(guard, "acme");
+        awaitWaiting(guard, "acme", 1);
+
+        first.release(OK);
+
+        assertNotNull(second.get(5, TimeUnit.SECONDS));
+        RealmQuotaStats acme = guard.stats().realms().get("acme");
+        assertEquals(1, acme.inFlight());
+        assertEquals(0, acme.borrowed());
+        assertEquals(1, acme.queued());
+        assertEquals(2, acme.admitted());
+    }
+
+    @Test
+    void freedOverflowSlotsGoToWaitingRealmsInTurn() throws Exception {
+        TenantQuotaGuard guard = guard(1, 1, LONG, LONG);
+        admit(guard, "acme");
+        OutboundGuard.Permit borrowed = admit(guard, "acme");
+        assertEquals(1, guard.stats().overflowInUse());
+        Future<OutboundGuard.Permit> acmeThird = admitLater(guard, "acme");
+        awaitWaiting(guard, "acme", 1);
+        Future<OutboundGuard.Permit> acmeFourth = admitLater(guard, "acme");
+        awaitWaiting(guard, "acme", 2);
+        // Its own quota is free, so globex gets in at once; its second call waits for overflow behind acme
+        admit(guard, "globex");
+        Future<OutboundGuard.Permit> globexSecond = admitLater(guard, "globex");
+        awaitWaiting(guard, "globex", 1);
+
+        borrowed.release(OK);
+        OutboundGuard.Permit acmeBorrowed = acmeThird.get(5, TimeUnit.SECONDS);
+        acmeBorrowed.release(OK);
+
+        assertNotNull(globexSecond.get(5, TimeUnit.SECONDS));
+        assertFalse(acmeFourth.isDone());
+        assertEquals(1, guard.stats().realms().get("globex").borrowed());
+        assertEquals(1, guard.stats().realms().get("acme").waiting());
+    }
+
+    @Test
+    void callStillWithoutASlotAfterMaxWaitIsRejected() {
+        TenantQuotaGuard guard = guard(1, 0, Duration.ofMillis(100), LONG);
+        admit(guard, "acme");
+
+        long start = System.nanoTime();
+        DependencyUnavailableException thrown = assertThrows(DependencyUnavailableException.class,
+                () -> guard.admit(uri("acme"), HttpMethod.GET));
+
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(100).toNanos());
+        assertTrue(thrown.getMessage().contains("acme"), thrown.getMessage());
+        RealmQuotaStats acme = guard.stats().realms().get("acme");
+        assertEquals(1, acme.rejected());
+        assertEquals(0, acme.waiting());
+    }
+
+    @Test
+    void permitOfACallThatNeverRanFreesItsSlot() {
+        TenantQuotaGuard guard = guard(1, 0, Duration.ZERO, LONG);
+        OutboundGuard.Permit permit = admit(guard, "acme");
+
+        permit.release(OutboundGuard.Outcome.NOT_EXECUTED);
+
+        assertEquals(0, guard.stats().realms().get("acme").inFlight());
+        assertNotNull(admit(guard, "acme"));
+    }
+
+    @Test
+    void idleRealmsAreForgottenWhenANewOneShowsUpButBusyOnesAreKept() {
+        TenantQuotaGuard guard = guard(1, 0, Duration.ZERO, Duration.ZERO);
+        admit(guard, "typo").release(OK);
+        admit(guard, "acme");
+
+        admit(guard, "globex");
+
+        assertEquals(Set.of("acme", "globex"), guard.stats().realms().keySet());
+    }
+
+    @Test
+    void masterTokenFetchIsNotChargedToTheMasterRealm() {
+        TenantQuotaGuard guard = guard(1, 0, Duration.ZERO, LONG);
+        URI masterToken = URI.create("http://keycloak/realms/master/protocol/openid-connect/token");
+
+        for (int i = 0; i < 5; i++) {
+            assertSame(OutboundGuard.Permit.NONE, guard.admit(masterToken, HttpMethod.POST));
+        }
+        assertFalse(guard.stats().realms().containsKey("master"));
+        // The master realm's admin calls still are
+        admit(guard, "master");
+        assertThrows(DependencyUnavailableException.class, () -> guard.admit(uri("master"), HttpMethod.GET));
+    }
+
+    private OutboundGuard.Permit admit(TenantQuotaGuard guard, String realm) {
+        return guard.admit(uri(realm), HttpMethod.GET);
+    }
+
+    private Future<OutboundGuard.Permit> admitLater(TenantQuotaGuard guard, String realm) {
+        return callers.submit(() -> admit(guard, realm));
+    }
+
+    private static URI uri(String realm) {
+        return URI.create("http://keycloak/admin/realms/" + realm + "/users");
+    }
+
+    private static void awaitWaiting(TenantQuotaGuard guard, String realm, int waiting) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (guard.stats().realms().get(realm) == null || guard.stats().realms().get(realm).waiting() != waiting) {
+            assertTrue(System.nanoTime() < deadline, "never saw " + waiting + " waiting in " + realm);
+            Thread.sleep(1);
+        }
+    }
+
+    private static TenantQuotaGuard guard(int base, int overflow, Duration maxWait, Duration idleEviction) {
+        return new TenantQuotaGuard(new MockEnvironment(), true, base, overflow, maxWait, idleEviction);
+    }
+}
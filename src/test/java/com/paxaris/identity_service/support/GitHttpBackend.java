@@ -0,0 +1,128 @@
+package com.paxaris.identity_service.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Local HTTP server standing in for a git host: every request goes to {@code git http-backend} over CGI,
+ * serving the bare repositories under a project root. Bodies of receive-pack requests are recorded, so
+ * tests can see what was pushed.
+ */
+public final class GitHttpBackend implements AutoCloseable {
+
+    private final Path projectRoot;
+    private final HttpServer server;
+    private final List<byte[]> pushes = new CopyOnWriteArrayList<>();
+
+    public GitHttpBackend(Path projectRoot) throws IOException {
+        this.projectRoot = projectRoot;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** Request bodies of the receive-pack calls so far: ref update commands followed by the pack. */
+    public List<byte[]> pushes() {
+        return new ArrayList<>(pushes);
+    }
+
+    /** Number of objects in the pack of a recorded receive-pack body, from the pack header. */
+    public static int packObjectCount(byte[] push) {
+        for (int i = 0; i + 12 <= push.length; i++) {
+            if (push[i] == 'P' && push[i + 1] == 'A' && push[i + 2] == 'C' && push[i + 3] == 'K') {
+                return ((push[i + 8] & 0xff) << 24) | ((push[i + 9] & 0xff) << 16)
+                        | ((push[i + 10] & 0xff) << 8) | (push[i + 11] & 0xff);
+            }
+        }
+        throw new IllegalArgumentException("No pack in the push");
+    }
+
+    /** Runs git in {@code dir} and returns its combined output, or "" when git is not installed. */
+    public static String git(Path dir, String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        Process process;
+        try {
+            process = new ProcessBuilder(command).directory(dir.toFile()).redirectErrorStream(true).start();
+        } catch (IOException e) {
+            return "";
+        }
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        process.waitFor();
+        return output;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    // CGI bridge: runs git http-backend for each request and relays its headers and body
+    private void handle(HttpExchange exchange) throws IOException {
+        ProcessBuilder cgi = new ProcessBuilder("git", "http-backend");
+        Map<String, String> env = cgi.environment();
+        env.put("GIT_PROJECT_ROOT", projectRoot.toString());
+        env.put("GIT_HTTP_EXPORT_ALL", "1");
+        env.put("REQUEST_METHOD", exchange.getRequestMethod());
+        env.put("PATH_INFO", exchange.getRequestURI().getPath());
+        env.put("QUERY_STRING", exchange.getRequestURI().getRawQuery() != null ? exchange.getRequestURI().getRawQuery() : "");
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null) env.put("CONTENT_TYPE", contentType);
+        env.put("REMOTE_ADDR", "127.0.0.1");
+
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+        if (exchange.getRequestURI().getPath().endsWith("/git-receive-pack")) {
+            pushes.add(body);
+        }
+
+        Process process = cgi.start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(body);
+        }
+
+        BufferedInputStream stdout = new BufferedInputStream(process.getInputStream());
+        int status = 200;
+        String line;
+        while (!(line = readHeaderLine(stdout)).isEmpty()) {
+            int colon = line.indexOf(':');
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Status")) {
+                status = Integer.parseInt(value.substring(0, 3));
+            } else {
+                exchange.getResponseHeaders().add(name, value);
+            }
+        }
+        exchange.sendResponseHeaders(status, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            stdout.transferTo(out);
+        }
+        process.getErrorStream().transferTo(OutputStream.nullOutputStream());
+    }
+
+    private static String readHeaderLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') line.write(b);
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,117 @@
+package com.paxaris.identity_service.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Local HTTP server standing in for Keycloak or the Project Manager in tests. Routes are matched in the
+ * order they were added, by method and a regular expression on the path; every request is recorded.
+ */
+public final class StubHttpServer implements AutoCloseable {
+
+    public record Request(String method, String path, String query, Map<String, List<String>> headers, String body) {
+        public String header(String name) {
+            return headers.entrySet().stream()
+                    .filter(e -> e.getKey().equalsIgnoreCase(name))
+                    .map(e -> e.getValue().get(0))
+                    .findFirst().orElse(null);
+        }
+    }
+
+    public record Response(int status, Map<String, String> headers, String body) {
+        public static Response json(int status, String body) {
+            return new Response(status, Map.of("Content-Type", "application/json"), body);
+        }
+
+        public static Response status(int status) {
+            return new Response(status, Map.of(), "");
+        }
+    }
+
+    private record Route(String method, Pattern path, Function<Request, Response> handler) {
+    }
+
+    private final HttpServer server;
+    private final List<Route> routes = new CopyOnWriteArrayList<>();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+    public StubHttpServer() {
+        try {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public StubHttpServer on(String method, String pathRegex, Function<Request, Response> handler) {
+        routes.add(new Route(method, Pattern.compile(pathRegex), handler));
+        return this;
+    }
+
+    public StubHttpServer on(String method, String pathRegex, Response response) {
+        return on(method, pathRegex, request -> response);
+    }
+
+    public List<Request> requests() {
+        return new ArrayList<>(requests);
+    }
+
+    public List<Request> requests(String method, String pathRegex) {
+        Pattern pattern = Pattern.compile(pathRegex);
+        return requests.stream()
+                .filter(r -> r.method().equals(method) && pattern.matcher(r.path()).matches())
+                .toList();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Request request = new Request(
+                    exchange.getRequestMethod(),
+                    exchange.getRequestURI().getPath(),
+                    exchange.getRequestURI().getRawQuery(),
+                    Map.copyOf(exchange.getRequestHeaders()),
+                    new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            requests.add(request);
+
+            Response response = routes.stream()
+                    .filter(r -> r.method().equals(request.method()) && r.path().matcher(request.path()).matches())
+                    .findFirst()
+                    .map(r -> r.handler().apply(request))
+                    .orElse(Response.status(404));
+
+            response.headers().forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+            byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+            if (body.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        }
+    }
+}